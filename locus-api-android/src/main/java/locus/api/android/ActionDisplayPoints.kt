@@ -16,6 +16,7 @@ import android.content.Context
 import android.content.Intent
 import android.net.Uri
 import locus.api.android.objects.PackPoints
+import locus.api.android.objects.PackPointsWriter
 import locus.api.android.utils.LocusConst
 import locus.api.android.utils.LocusUtils
 import locus.api.android.utils.exceptions.RequiredVersionMissingException
@@ -23,10 +24,8 @@ import locus.api.objects.Storable
 import locus.api.utils.Logger
 import locus.api.utils.Utils
 import java.io.DataInputStream
-import java.io.DataOutputStream
 import java.io.File
 import java.io.FileInputStream
-import java.io.FileOutputStream
 import java.util.*
 import locus.api.android.ActionDisplay.ExtraAction
 
@@ -287,7 +286,6 @@ object ActionDisplayPoints {
             return false
         }
 
-        var dos: DataOutputStream? = null
         try {
             file.parentFile.mkdirs()
 
@@ -296,18 +294,12 @@ object ActionDisplayPoints {
                 file.delete()
             }
 
-            // create stream
-            dos = DataOutputStream(FileOutputStream(file, false))
-
-            // write current version
-            Storable.writeList(data, dos)
-            dos.flush()
+            // write current version. Points of packs are serialized in parallel
+            PackPointsWriter.writeToFile(data, file)
             return true
         } catch (e: Exception) {
             Logger.logE(locus.api.android.TAG, "sendDataWriteOnCard(" + file.absolutePath + ", " + data + ")", e)
             return false
-        } finally {
-            Utils.closeStream(dos)
         }
     }
 
@@ -334,7 +326,7 @@ object ActionDisplayPoints {
         var dis: DataInputStream? = null
         try {
             dis = DataInputStream(ctx.contentResolver.openInputStream(fileUri))
-            return Storable.readList(PackPoints::class.java, dis)
+            return Storable.readList(PackPoints.FACTORY, dis)
         } catch (e: Exception) {
             Logger.logE(locus.api.android.TAG, "readDataFromUri($fileUri)", e)
         } finally {
@@ -353,7 +345,7 @@ object ActionDisplayPoints {
         var dis: DataInputStream? = null
         try {
             dis = DataInputStream(FileInputStream(file))
-            return Storable.readList(PackPoints::class.java, dis)
+            return Storable.readList(PackPoints.FACTORY, dis)
         } catch (e: Exception) {
             Logger.logE(locus.api.android.TAG, "readDataFromPath($filepath)", e)
         } finally {
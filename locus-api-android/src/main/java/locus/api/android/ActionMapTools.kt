@@ -117,6 +117,45 @@ class MapPreviewParams {
                 "rotation=$rotation," +
                 "radius=$radius"
     }
+
+    /**
+     * Generate key of request usable for caching of results. Center location is quantized to
+     * the grid of pixels at current zoom level, so previews with center that differ for less
+     * then a pixel share the same key.
+     */
+    fun generateCacheKey(): String {
+        val loc = locCenter
+        val x: Long
+        val y: Long
+        if (loc == null) {
+            x = -1L
+            y = -1L
+        } else {
+            // convert to Mercator pixels of 256px tiles
+            val worldSize = 256.0 * Math.pow(2.0, zoom.toDouble())
+            val sinLat = Math.sin(Math.toRadians(Math.max(-85.05112878, Math.min(85.05112878, loc.latitude))))
+            x = Math.floor((loc.longitude + 180.0) / 360.0 * worldSize).toLong()
+            y = Math.floor((0.5 - Math.log((1.0 + sinLat) / (1.0 - sinLat)) / (4.0 * Math.PI)) * worldSize).toLong()
+        }
+        return "$x,$y,$offsetX,$offsetY,$zoom,$widthPx,$heightPx,$densityDpi,$rotation,$radius"
+    }
+
+    /**
+     * Create independent copy of parameters.
+     */
+    fun copy(): MapPreviewParams {
+        val params = MapPreviewParams()
+        params.locCenter = locCenter?.let { Location(it) }
+        params.offsetX = offsetX
+        params.offsetY = offsetY
+        params.zoom = zoom
+        params.widthPx = widthPx
+        params.heightPx = heightPx
+        params.densityDpi = densityDpi
+        params.rotation = rotation
+        params.radius = radius
+        return params
+    }
 }
 
 /**
@@ -142,6 +181,14 @@ class MapPreviewResult() : Storable() {
         return imgData?.isNotEmpty() ?: false
     }
 
+    /**
+     * Get size of loaded image.
+     * @return size of image data [B]
+     */
+    fun getImageSize(): Int {
+        return imgData?.size ?: 0
+    }
+
     fun getAsImage(): Bitmap? {
         return imgData?.takeIf { isValid() }?.let {
             BitmapFactory.decodeByteArray(it, 0, it.size)
@@ -0,0 +1,322 @@
+package locus.api.android
+
+import android.content.Context
+import android.util.LruCache
+import locus.api.android.utils.DaemonThreadFactory
+import locus.api.android.utils.LocusUtils
+import locus.api.android.utils.exceptions.RequiredVersionMissingException
+import locus.api.utils.Logger
+import locus.api.utils.Utils
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * Client-side cache of map previews.
+ *
+ * Results are stored in memory LRU cache limited by size of images. Complete previews removed
+ * from memory are moved to disk cache (also limited by size), so they may be restored without
+ * request to Locus. Requests are identified by [MapPreviewParams.generateCacheKey], so previews
+ * with the center in the same pixel are shared.
+ *
+ * Every preview is fresh for [maxAge] ms. Older previews (up to [maxStale] ms) are returned
+ * immediately, while new preview is loaded on background (stale-while-revalidate). Previews with
+ * not yet loaded tiles are never considered fresh, so next request always tries to load them again.
+ */
+class MapPreviewCache @JvmOverloads constructor(
+        ctx: Context,
+        private val lv: LocusUtils.LocusVersion,
+        maxMemorySize: Int = DEFAULT_MEMORY_SIZE,
+        /**
+         * Maximal size of disk cache [B]. Set '0' to disable disk cache.
+         */
+        private val maxDiskSize: Long = DEFAULT_DISK_SIZE,
+        /**
+         * Executor used for revalidation and disk operations, `null` to use own executor.
+         */
+        executor: Executor? = null) {
+
+    /**
+     * Time [ms] for which is loaded preview considered as fresh.
+     */
+    @Volatile
+    var maxAge = DEFAULT_MAX_AGE
+    /**
+     * Time [ms] for which may be stale preview returned while new one is loaded.
+     */
+    @Volatile
+    var maxStale = DEFAULT_MAX_STALE
+
+    // application context
+    private val ctx = ctx.applicationContext ?: ctx
+    // executor used for revalidation and disk operations
+    private val executor: Executor = executor
+            ?: Executors.newSingleThreadExecutor(DaemonThreadFactory(TAG))
+    // flag if executor was created by cache
+    private val ownExecutor = executor == null
+    // directory for disk cache
+    private val dir = File(this.ctx.cacheDir, DIR_NAME)
+    // keys of previews currently revalidated
+    private val revalidating = HashSet<String>()
+    // flag if cache is just cleared, so removed items should not be stored on disk
+    @Volatile
+    private var clearing = false
+
+    // memory cache
+    private val memory = object : LruCache<String, Entry>(maxMemorySize) {
+
+        override fun sizeOf(key: String, value: Entry): Int {
+            return value.result.getImageSize() + ENTRY_OVERHEAD
+        }
+
+        override fun entryRemoved(evicted: Boolean, key: String, oldValue: Entry, newValue: Entry?) {
+            if (evicted && !clearing && oldValue.complete && maxDiskSize > 0L) {
+                this@MapPreviewCache.executor.execute { writeToDisk(key, oldValue) }
+            }
+        }
+    }
+
+    /**
+     * Get map preview defined by [params]. Preview is loaded from Locus only if there is no
+     * usable result in cache. Call this function on background thread.
+     *
+     * @param params parameters of preview
+     * @return loaded preview or `null` if Locus returned no result
+     */
+    @Throws(RequiredVersionMissingException::class)
+    fun get(params: MapPreviewParams): MapPreviewResult? {
+        val key = params.generateCacheKey()
+
+        // check cached result
+        val entry = memory.get(key) ?: readFromDisk(key)?.also { memory.put(key, it) }
+        if (entry != null) {
+            val age = System.currentTimeMillis() - entry.time
+            if (entry.complete && age <= maxAge) {
+                return entry.result
+            }
+            if (age <= maxStale) {
+                revalidate(key, params.copy())
+                return entry.result
+            }
+        }
+
+        // load new result
+        return load(key, params)
+    }
+
+    /**
+     * Remove all previews from memory and disk cache.
+     */
+    fun clear() {
+        clearing = true
+        try {
+            memory.evictAll()
+        } finally {
+            clearing = false
+        }
+        executor.execute {
+            dir.listFiles()?.forEach { it.delete() }
+        }
+    }
+
+    /**
+     * Shut down executor created by cache. Executor received in constructor is left untouched.
+     * Already scheduled disk operations are finished. Cache cannot be used after this call.
+     */
+    fun destroy() {
+        if (ownExecutor) {
+            (executor as ExecutorService).shutdown()
+        }
+    }
+
+    //*************************************************
+    // LOADING
+    //*************************************************
+
+    /**
+     * Load preview from Locus and store it in cache.
+     */
+    @Throws(RequiredVersionMissingException::class)
+    private fun load(key: String, params: MapPreviewParams): MapPreviewResult? {
+        val result = ActionMapTools.getMapPreview(ctx, lv, params)
+        if (result != null && result.isValid()) {
+            memory.put(key, Entry(result, System.currentTimeMillis(),
+                    result.numOfNotYetLoadedTiles <= 0))
+        }
+        return result
+    }
+
+    /**
+     * Load fresh preview on background. Every key is revalidated only once at a time.
+     */
+    private fun revalidate(key: String, params: MapPreviewParams) {
+        synchronized(revalidating) {
+            if (!revalidating.add(key)) {
+                return
+            }
+        }
+        executor.execute {
+            try {
+                load(key, params)
+            } catch (e: Exception) {
+                Logger.logE(TAG, "revalidate($key)", e)
+            } finally {
+                synchronized(revalidating) {
+                    revalidating.remove(key)
+                }
+            }
+        }
+    }
+
+    //*************************************************
+    // DISK CACHE
+    //*************************************************
+
+    /**
+     * Get file for entry defined by [key].
+     */
+    private fun getFile(key: String): File {
+        return File(dir, Integer.toHexString(key.hashCode()) + "_" + key.length)
+    }
+
+    /**
+     * Read entry defined by [key] from disk.
+     */
+    private fun readFromDisk(key: String): Entry? {
+        if (maxDiskSize <= 0L) {
+            return null
+        }
+        val file = getFile(key)
+        if (!file.exists()) {
+            return null
+        }
+
+        var dis: DataInputStream? = null
+        try {
+            dis = DataInputStream(FileInputStream(file))
+            if (dis.readUTF() != key) {
+                return null
+            }
+            val time = dis.readLong()
+            val data = ByteArray(dis.readInt())
+            dis.readFully(data)
+            return Entry(MapPreviewResult().apply { read(data) }, time, true)
+        } catch (e: Exception) {
+            Logger.logE(TAG, "readFromDisk($key)", e)
+            file.delete()
+            return null
+        } finally {
+            Utils.closeStream(dis)
+        }
+    }
+
+    /**
+     * Write [entry] defined by [key] to disk and trim disk cache to its maximal size. Entry is
+     * written into temporary file, that replaces existing entry once it is complete, so readers
+     * never see partially written entry.
+     */
+    private fun writeToDisk(key: String, entry: Entry) {
+        if (!dir.exists() && !dir.mkdirs()) {
+            return
+        }
+
+        // write entry
+        val file = getFile(key)
+        var tmp: File? = null
+        var dos: DataOutputStream? = null
+        try {
+            val data = entry.result.asBytes
+            tmp = File.createTempFile(file.name, TMP_SUFFIX, dir)
+            dos = DataOutputStream(FileOutputStream(tmp))
+            dos.writeUTF(key)
+            dos.writeLong(entry.time)
+            dos.writeInt(data.size)
+            dos.write(data)
+            dos.close()
+            dos = null
+
+            // replace existing entry
+            if (!tmp.renameTo(file)) {
+                file.delete()
+                if (!tmp.renameTo(file)) {
+                    Logger.logW(TAG, "writeToDisk($key), unable to rename $tmp")
+                    tmp.delete()
+                    return
+                }
+            }
+        } catch (e: Exception) {
+            Logger.logE(TAG, "writeToDisk($key)", e)
+            Utils.closeStream(dos)
+            tmp?.delete()
+            return
+        } finally {
+            Utils.closeStream(dos)
+        }
+
+        // trim cache, oldest files first. Temporary files of running writes are skipped
+        val files = dir.listFiles { f -> !f.name.endsWith(TMP_SUFFIX) } ?: return
+        var size = 0L
+        for (f in files) {
+            size += f.length()
+        }
+        if (size <= maxDiskSize) {
+            return
+        }
+        files.sortBy { it.lastModified() }
+        for (f in files) {
+            if (size <= maxDiskSize) {
+                break
+            }
+            val length = f.length()
+            if (f.delete()) {
+                size -= length
+            }
+        }
+    }
+
+    /**
+     * Cached preview together with its state.
+     */
+    private class Entry(
+            // loaded preview
+            val result: MapPreviewResult,
+            // time when preview was loaded [ms]
+            val time: Long,
+            // flag if preview has all tiles loaded
+            val complete: Boolean)
+
+    companion object {
+
+        // tag for logger
+        private const val TAG = "MapPreviewCache"
+
+        // name of directory for disk cache
+        private const val DIR_NAME = "mapPreviews"
+        // suffix of temporary files of entries
+        private const val TMP_SUFFIX = ".tmp"
+        // approximate memory overhead of single entry [B]
+        private const val ENTRY_OVERHEAD = 128
+
+        /**
+         * Default size of memory cache [B].
+         */
+        const val DEFAULT_MEMORY_SIZE = 4 * 1024 * 1024
+        /**
+         * Default size of disk cache [B].
+         */
+        const val DEFAULT_DISK_SIZE = 16L * 1024 * 1024
+        /**
+         * Default time for which is preview fresh [ms].
+         */
+        const val DEFAULT_MAX_AGE = 60 * 1000L
+        /**
+         * Default time for which may be stale preview returned [ms].
+         */
+        const val DEFAULT_MAX_STALE = 30 * 60 * 1000L
+    }
+}
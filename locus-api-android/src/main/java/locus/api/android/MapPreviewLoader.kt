@@ -0,0 +1,331 @@
+package locus.api.android
+
+import android.content.Context
+import android.database.ContentObserver
+import locus.api.android.utils.DaemonThreadFactory
+import locus.api.android.utils.LocusConst
+import locus.api.android.utils.LocusUtils
+import locus.api.android.utils.exceptions.RequiredVersionMissingException
+import locus.api.utils.Logger
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * Progressive loader of map previews.
+ *
+ * Client registers request once over [request] and receives updated previews until all map
+ * tiles are loaded. Loader observes changes of map preview provider and reloads preview as soon
+ * as Locus notifies about change. For versions of Locus that do not notify about changes, preview
+ * is reloaded with increasing delay instead. Listeners are notified only if preview changed
+ * (less missing tiles) or when it is complete.
+ *
+ * Identical concurrent requests (same [MapPreviewParams]) share single loading, so every preview
+ * is generated by Locus only once for all listeners.
+ */
+class MapPreviewLoader @JvmOverloads constructor(
+        ctx: Context,
+        private val lv: LocusUtils.LocusVersion,
+        /**
+         * Executor used for loading of previews and notification of listeners, `null` to use
+         * own executor.
+         */
+        executor: Executor? = null,
+        /**
+         * Scheduler used for delayed reloads, `null` to use own scheduler.
+         */
+        scheduler: ScheduledExecutorService? = null) {
+
+    /**
+     * Consumer of loaded previews.
+     */
+    interface OnMapPreviewListener {
+
+        /**
+         * Notification about new state of preview. Called on background thread of loader.
+         *
+         * @param result loaded preview, invalid in case of problem
+         * @param completed `true` if this is final state of preview and no more updates follows
+         */
+        fun onMapPreview(result: MapPreviewResult, completed: Boolean)
+    }
+
+    // application context
+    private val ctx = ctx.applicationContext ?: ctx
+    // executor used for loading of previews and notification of listeners
+    private val executor: Executor = executor
+            ?: Executors.newCachedThreadPool(DaemonThreadFactory(TAG))
+    // flag if executor was created by loader
+    private val ownExecutor = executor == null
+    // scheduler used for delayed reloads
+    private val scheduler: ScheduledExecutorService = scheduler
+            ?: Executors.newSingleThreadScheduledExecutor(DaemonThreadFactory(TAG))
+    // flag if scheduler was created by loader
+    private val ownScheduler = scheduler == null
+    // active loadings mapped by query
+    private val jobs = HashMap<String, Job>()
+
+    /**
+     * Request preview defined by [params]. If same request is already loading, [listener] is
+     * attached to it and immediately receives last loaded state, including information if
+     * this state is final.
+     *
+     * @param params parameters of preview. Changes of parameters after this call have no effect
+     * @param listener consumer of loaded previews
+     * @return registration, needed for cancel of request
+     */
+    @Throws(RequiredVersionMissingException::class)
+    fun request(params: MapPreviewParams, listener: OnMapPreviewListener): Registration {
+        // check version before any work
+        val uri = ActionTools.getProviderUri(lv,
+                LocusUtils.VersionCode.UPDATE_14,
+                LocusConst.CONTENT_PROVIDER_AUTHORITY_MAP_TOOLS,
+                LocusConst.CONTENT_PROVIDER_PATH_MAP_PREVIEW)
+
+        // attach to existing job or create a new one
+        val query = params.generateQuery()
+        val job: Job
+        val created: Boolean
+        synchronized(jobs) {
+            val existing = jobs[query]
+            if (existing != null) {
+                job = existing
+                created = false
+            } else {
+                job = Job(query, params)
+                jobs[query] = job
+                created = true
+            }
+            job.listeners.add(listener)
+        }
+
+        // start loading
+        if (created) {
+            try {
+                ctx.contentResolver.registerContentObserver(uri, true, job.observer)
+            } catch (e: Exception) {
+                Logger.logW(TAG, "request($query), unable to observe changes, " + e.message)
+            }
+            job.scheduleLoad(0L)
+        } else {
+            job.lastState?.let {
+                executor.execute { job.notify(listener, it.result, it.completed) }
+            }
+        }
+        return Registration(job, listener)
+    }
+
+    /**
+     * Cancel all requests and shut down executors created by loader. Executors received
+     * in constructor are left untouched. Loader cannot be used after this call.
+     */
+    fun destroy() {
+        val active = synchronized(jobs) {
+            ArrayList(jobs.values)
+        }
+        for (job in active) {
+            job.finish()
+        }
+        if (ownScheduler) {
+            scheduler.shutdownNow()
+        }
+        if (ownExecutor) {
+            (executor as ExecutorService).shutdown()
+        }
+    }
+
+    /**
+     * Loaded state of preview.
+     */
+    internal class State(
+            internal val result: MapPreviewResult,
+            internal val completed: Boolean)
+
+    /**
+     * Registration of single listener.
+     */
+    inner class Registration internal constructor(
+            private val job: Job,
+            private val listener: OnMapPreviewListener) {
+
+        /**
+         * Cancel request. Loading itself is stopped once no listener waits for it.
+         */
+        fun cancel() {
+            val finish = synchronized(jobs) {
+                job.listeners.remove(listener)
+                job.listeners.isEmpty().also {
+                    // detach job, so new requests do not join to finishing job
+                    if (it && jobs[job.query] === job) {
+                        jobs.remove(job.query)
+                    }
+                }
+            }
+            if (finish) {
+                job.finish()
+            }
+        }
+    }
+
+    /**
+     * Loading of single preview shared by all its listeners.
+     */
+    internal inner class Job(
+            internal val query: String,
+            private val params: MapPreviewParams) {
+
+        // registered listeners
+        internal val listeners = CopyOnWriteArrayList<OnMapPreviewListener>()
+        // last loaded state, stored before listeners are notified
+        @Volatile
+        internal var lastState: State? = null
+        // observer of changes in map preview provider
+        internal val observer = object : ContentObserver(null) {
+
+            override fun onChange(selfChange: Boolean) {
+                scheduleLoad(0L)
+            }
+        }
+
+        // number of already performed loads
+        private var attempts = 0
+        // scheduled load
+        private var future: ScheduledFuture<*>? = null
+        // flag if load is running
+        private var loading = false
+        // flag if new load was requested during running load
+        private var reloadRequested = false
+        // flag if job is still active
+        private var active = true
+
+        /**
+         * Schedule load of preview after [delay] ms. Scheduled load is replaced, load requested
+         * during running load is performed once the current one finish.
+         */
+        internal fun scheduleLoad(delay: Long) {
+            synchronized(this) {
+                if (!active) {
+                    return
+                }
+                if (loading) {
+                    reloadRequested = true
+                    return
+                }
+                future?.cancel(false)
+                future = scheduler.schedule({ executor.execute { load() } },
+                        delay, TimeUnit.MILLISECONDS)
+            }
+        }
+
+        /**
+         * Stop loading and release all resources.
+         */
+        internal fun finish() {
+            synchronized(jobs) {
+                if (jobs[query] === this) {
+                    jobs.remove(query)
+                }
+            }
+            synchronized(this) {
+                if (!active) {
+                    return
+                }
+                active = false
+                future?.cancel(false)
+                future = null
+            }
+            try {
+                ctx.contentResolver.unregisterContentObserver(observer)
+            } catch (e: Exception) {
+                Logger.logW(TAG, "finish($query), " + e.message)
+            }
+        }
+
+        /**
+         * Load current state of preview and notify listeners.
+         */
+        private fun load() {
+            synchronized(this) {
+                if (!active || loading) {
+                    return
+                }
+                loading = true
+                future = null
+            }
+
+            // load preview
+            val result = try {
+                ActionMapTools.getMapPreview(ctx, lv, params)
+            } catch (e: Exception) {
+                Logger.logE(TAG, "load($query)", e)
+                null
+            } ?: MapPreviewResult(null, 0)
+            attempts++
+
+            // check state of result
+            val completed = !result.isValid()
+                    || result.numOfNotYetLoadedTiles <= 0
+                    || attempts >= MAX_ATTEMPTS
+            val last = lastState?.result
+            val changed = completed || last == null
+                    || last.numOfNotYetLoadedTiles != result.numOfNotYetLoadedTiles
+            lastState = State(result, completed)
+            if (completed) {
+                finish()
+            }
+
+            // notify listeners
+            if (changed) {
+                for (listener in listeners) {
+                    notify(listener, result, completed)
+                }
+            }
+
+            // schedule next load
+            synchronized(this) {
+                loading = false
+                if (completed || !active) {
+                    return
+                }
+                if (reloadRequested) {
+                    reloadRequested = false
+                    future = scheduler.schedule({ executor.execute { load() } },
+                            0L, TimeUnit.MILLISECONDS)
+                } else {
+                    val delay = Math.min(RELOAD_DELAY_MIN shl Math.min(attempts - 1, 8),
+                            RELOAD_DELAY_MAX)
+                    future = scheduler.schedule({ executor.execute { load() } },
+                            delay, TimeUnit.MILLISECONDS)
+                }
+            }
+        }
+
+        /**
+         * Notify single [listener] about [result].
+         */
+        internal fun notify(listener: OnMapPreviewListener, result: MapPreviewResult, completed: Boolean) {
+            try {
+                listener.onMapPreview(result, completed)
+            } catch (e: Exception) {
+                Logger.logE(TAG, "notify(), listener: $listener", e)
+            }
+        }
+    }
+
+    companion object {
+
+        // tag for logger
+        private const val TAG = "MapPreviewLoader"
+
+        // minimal delay between reloads if provider does not notify about changes [ms]
+        private const val RELOAD_DELAY_MIN = 250L
+        // maximal delay between reloads [ms]
+        private const val RELOAD_DELAY_MAX = 2000L
+        // maximal number of loads for single request
+        private const val MAX_ATTEMPTS = 30
+    }
+}
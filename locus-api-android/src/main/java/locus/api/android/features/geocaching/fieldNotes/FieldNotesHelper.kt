@@ -1,5 +1,7 @@
 package locus.api.android.features.geocaching.fieldNotes
 
+import android.content.ContentProviderOperation
+import android.content.ContentResolver
 import android.content.ContentUris
 import android.content.ContentValues
 import android.content.Context
@@ -12,6 +14,7 @@ import locus.api.android.utils.LocusUtils
 import locus.api.android.utils.Utils
 import locus.api.android.utils.exceptions.RequiredVersionMissingException
 import locus.api.objects.geocaching.GeocachingLog
+import locus.api.utils.Logger
 import java.util.*
 
 /**
@@ -69,6 +72,31 @@ class FieldNotesHelper private constructor() {
         const val PATH_FIELD_NOTE_IMAGES = "fieldNoteImages"
         const val PATH_TRACKABLE_LOGS = "trackableLogs"
 
+        // maximal number of arguments in single selection (SQLite limit is 999)
+        private const val MAX_SELECTION_ARGS = 500
+
+        /**
+         * Maximal size of image data (in bytes) sent together with other values in batch
+         * operations. Bigger images are inserted to provider separately, so single transaction
+         * does not exceed limits of IPC buffer.
+         */
+        const val IMAGE_DATA_INLINE_LIMIT = 256 * 1024
+
+        /**
+         * Maximal total size of image data (in bytes) sent inline in single batch transaction.
+         * Images that would exceed this limit are inserted to provider separately.
+         */
+        const val IMAGE_DATA_BATCH_LIMIT = 1024 * 1024
+
+        /**
+         * Maximal size of image data (in bytes) inserted by separate request. Value stays safely
+         * under 1 MB limit of binder transaction buffer. Bigger images can't be stored.
+         */
+        const val IMAGE_DATA_INSERT_LIMIT = 768 * 1024
+
+        // tag for logger
+        private const val TAG = "FieldNotesHelper"
+
         /**************************************************/
         // HELPERS FOR WORK WITH CONTENT PROVIDER
         /**************************************************/
@@ -131,7 +159,7 @@ class FieldNotesHelper private constructor() {
                 val fn = createLogs(c)[0]
 
                 // get extra data
-                getImages(ctx, lv, fn)
+                loadImages(ctx.contentResolver, getUriImagesTable(lv), listOf(fn), false)
 
                 // return field note
                 return fn
@@ -149,29 +177,40 @@ class FieldNotesHelper private constructor() {
          */
         @Throws(RequiredVersionMissingException::class)
         fun get(ctx: Context, lv: LocusUtils.LocusVersion, cacheCode: String?): MutableList<FieldNote> {
+            // perform request based on 'cacheCode'
+            return if (cacheCode == null || cacheCode.isEmpty()) {
+                get(ctx.contentResolver, getUriLogsTable(lv), getUriImagesTable(lv),
+                        null, null)
+            } else {
+                get(ctx.contentResolver, getUriLogsTable(lv), getUriImagesTable(lv),
+                        ColFieldNote.CACHE_CODE + "=?", arrayOf(cacheCode))
+            }
+        }
+
+        /**
+         * Get list of field notes that match [selection] together with their images (only it's
+         * ID parameters) from provider defined by [logsUri] and [imagesUri].
+         *
+         * Whole content is loaded by two queries only (one for logs, one for all their images),
+         * images are attached to logs by their `fieldNoteId`. This makes possible to use the
+         * function also with any custom [ContentResolver], like `MockContentResolver` in tests.
+         */
+        fun get(cr: ContentResolver, logsUri: Uri, imagesUri: Uri,
+                selection: String?, selectionArgs: Array<String>?): MutableList<FieldNote> {
             // execute request
             var c: Cursor? = null
             try {
-                // perform request based on 'cacheCode'
-                c = if (cacheCode == null || cacheCode.isEmpty()) {
-                    ctx.contentResolver.query(getUriLogsTable(lv),
-                            null, null, null, null)
-                } else {
-                    ctx.contentResolver.query(getUriLogsTable(lv),
-                            null, ColFieldNote.CACHE_CODE + "=?",
-                            arrayOf(cacheCode), null)
-                }
+                c = cr.query(logsUri, null, selection, selectionArgs, null)
 
                 // handle result
                 if (c == null) {
                     return arrayListOf()
                 }
 
-                // load logs & images
+                // load logs & images. Without selection, all logs are loaded, so all images
+                // may be loaded as well
                 val logs = createLogs(c)
-                for (log in logs) {
-                    getImages(ctx, lv, log)
-                }
+                loadImages(cr, imagesUri, logs, selection == null)
                 return logs
             } finally {
                 Utils.closeQuietly(c)
@@ -199,6 +238,7 @@ class FieldNotesHelper private constructor() {
                 if (c.moveToNext()) {
                     val logs = createLogs(c)
                     if (logs.isNotEmpty()) {
+                        loadImages(ctx.contentResolver, getUriImagesTable(lv), logs, false)
                         return logs[0]
                     }
                 }
@@ -310,6 +350,150 @@ class FieldNotesHelper private constructor() {
             return newRow == 1
         }
 
+        // BATCH
+
+        /**
+         * Store list of field [notes] together with their images and list of [trackableLogs]
+         * in single batch transaction. Items with valid ID (>= 0) are updated, others are
+         * inserted. IDs of all inserted items are set back to objects. Newly inserted notes are
+         * referenced by their images over back-references of batch, so no extra request is needed.
+         *
+         * New images bigger then [IMAGE_DATA_INLINE_LIMIT], or images that would increase total
+         * size of inline data over [IMAGE_DATA_BATCH_LIMIT], are not part of transaction, but
+         * are inserted (together with data) by separate requests once the batch is successfully
+         * applied. If any new image is bigger then [IMAGE_DATA_INSERT_LIMIT], nothing is stored.
+         * @param ctx existing context
+         * @param lv active Locus version
+         * @param notes field notes to insert or update
+         * @param trackableLogs trackable logs to insert or update
+         * @return `true` if all items were successfully stored
+         */
+        @JvmOverloads
+        @Throws(RequiredVersionMissingException::class)
+        fun storeAll(ctx: Context, lv: LocusUtils.LocusVersion, notes: List<FieldNote>,
+                     trackableLogs: List<TrackableLog> = emptyList()): Boolean {
+            val logsUri = getUriLogsTable(lv)
+            val imagesUri = getUriImagesTable(lv)
+            val trackablesUri = getUriTrackablesLogsTable(lv)
+
+            // prepare operations. For every operation is stored also object that gets ID
+            // from result (inserts only)
+            val ops = ArrayList<ContentProviderOperation>()
+            val targets = ArrayList<Any?>()
+            val separateImages = ArrayList<FieldNoteImage>()
+            var inlineSize = 0L
+            for (fn in notes) {
+                // insert or update note
+                val noteIndex: Int
+                if (fn.id >= 0) {
+                    noteIndex = -1
+                    ops.add(ContentProviderOperation.newUpdate(logsUri)
+                            .withValues(createContentValues(fn))
+                            .withSelection(ColFieldNote.ID + "=?", arrayOf(fn.id.toString()))
+                            .build())
+                    targets.add(null)
+                } else {
+                    noteIndex = ops.size
+                    ops.add(ContentProviderOperation.newInsert(logsUri)
+                            .withValues(createContentValues(fn))
+                            .build())
+                    targets.add(fn)
+                }
+
+                // insert or update attached images
+                for (image in fn.images) {
+                    image.fieldNoteId = fn.id
+                    val builder = if (image.id >= 0) {
+                        ContentProviderOperation.newUpdate(imagesUri)
+                                .withValues(createContentValues(image, false))
+                                .withSelection(ColFieldNoteImage.ID + "=?", arrayOf(image.id.toString()))
+                    } else {
+                        val size = image.image?.size ?: 0
+                        if (size > IMAGE_DATA_INSERT_LIMIT) {
+                            Logger.logE(TAG, "storeAll($ctx, $lv, ${notes.size}, ${trackableLogs.size}), " +
+                                    "image too big: $size bytes, limit: $IMAGE_DATA_INSERT_LIMIT")
+                            return false
+                        }
+                        if (size > IMAGE_DATA_INLINE_LIMIT
+                                || inlineSize + size > IMAGE_DATA_BATCH_LIMIT) {
+                            separateImages.add(image)
+                            continue
+                        }
+                        inlineSize += size
+                        ContentProviderOperation.newInsert(imagesUri)
+                                .withValues(createContentValues(image, true))
+                    }
+                    if (noteIndex >= 0) {
+                        builder.withValueBackReference(ColFieldNoteImage.FIELD_NOTE_ID, noteIndex)
+                    }
+                    ops.add(builder.build())
+                    targets.add(if (image.id >= 0) null else image)
+                }
+            }
+
+            // insert or update trackable logs
+            for (item in trackableLogs) {
+                if (item.id >= 0) {
+                    ops.add(ContentProviderOperation.newUpdate(trackablesUri)
+                            .withValues(createContentValues(item))
+                            .withSelection(ColTrackableLogs.ID + "=?", arrayOf(item.id.toString()))
+                            .build())
+                    targets.add(null)
+                } else {
+                    ops.add(ContentProviderOperation.newInsert(trackablesUri)
+                            .withValues(createContentValues(item))
+                            .build())
+                    targets.add(item)
+                }
+            }
+
+            // execute request
+            if (ops.isEmpty()) {
+                return true
+            }
+            val results = try {
+                ctx.contentResolver.applyBatch(logsUri.authority, ops)
+            } catch (e: Exception) {
+                Logger.logE(TAG, "storeAll($ctx, $lv, ${notes.size}, ${trackableLogs.size})", e)
+                return false
+            }
+
+            // set new IDs to inserted items
+            for (i in results.indices) {
+                val newRow = results[i].uri ?: continue
+                val target = targets[i]
+                when (target) {
+                    is FieldNote -> {
+                        target.id = Utils.parseLong(newRow.lastPathSegment)
+                        for (image in target.images) {
+                            image.fieldNoteId = target.id
+                        }
+                    }
+                    is FieldNoteImage ->
+                        target.id = Utils.parseLong(newRow.lastPathSegment)
+                    is TrackableLog ->
+                        target.id = Utils.parseLong(newRow.lastPathSegment)
+                }
+            }
+
+            // finally insert big images, each with all its data in single request
+            var res = true
+            for (image in separateImages) {
+                val newRow = try {
+                    ctx.contentResolver.insert(imagesUri, createContentValues(image, true))
+                } catch (e: Exception) {
+                    Logger.logE(TAG, "storeAll($ctx, $lv, ${notes.size}, ${trackableLogs.size})", e)
+                    null
+                }
+                if (newRow != null) {
+                    image.id = Utils.parseLong(newRow.lastPathSegment)
+                } else {
+                    res = false
+                }
+            }
+            return res
+        }
+
         /**************************************************/
         // IMAGE HANDLERS
         /**************************************************/
@@ -347,33 +531,67 @@ class FieldNotesHelper private constructor() {
         }
 
         /**
-         * Get attached images from database and add it to FieldNote object. Keep in mind,
+         * Get attached images from database and add them to [notes]. Keep in mind,
          * that this function only grab images ID's, not whole content. So for later use,
          * you need to request specific image by 'getImage' function with it's ID.
-         * @param ctx existing context
-         * @param lv active Locus version
-         * @param fn Field Note for which we wants images
-         * @throws RequiredVersionMissingException
+         *
+         * Images are loaded by single query (or few queries for huge number of notes)
+         * and joined to notes by their `fieldNoteId`.
+         * @param cr content resolver
+         * @param imagesUri Uri to provider of images
+         * @param notes Field Notes for which we wants images
+         * @param allNotes `true` if [notes] contains all existing field notes, so all images
+         * may be loaded without any selection
          */
-        @Throws(RequiredVersionMissingException::class)
-        private fun getImages(ctx: Context, lv: LocusUtils.LocusVersion, fn: FieldNote) {
-            var c: Cursor? = null
-            try {
-                // perform request based on 'cacheCode'
-                c = ctx.contentResolver.query(getUriImagesTable(lv),
-                        arrayOf(ColFieldNoteImage.ID),
-                        ColFieldNoteImage.FIELD_NOTE_ID + "=?",
-                        arrayOf(fn.id.toString()), null)
+        private fun loadImages(cr: ContentResolver, imagesUri: Uri,
+                               notes: List<FieldNote>, allNotes: Boolean) {
+            // check notes
+            if (notes.isEmpty()) {
+                return
+            }
 
-                // handle result
-                if (c != null) {
-                    val images = createImages(c)
-                    for (image in images) {
-                        fn.images.add(image)
+            // prepare map of notes
+            val notesMap = HashMap<Long, FieldNote>(notes.size * 4 / 3 + 1)
+            for (fn in notes) {
+                notesMap[fn.id] = fn
+            }
+
+            // load images
+            val projection = arrayOf(ColFieldNoteImage.ID, ColFieldNoteImage.FIELD_NOTE_ID)
+            if (allNotes) {
+                loadImages(cr.query(imagesUri, projection, null, null, null), notesMap)
+            } else {
+                val ids = notesMap.keys.toList()
+                for (start in 0 until ids.size step MAX_SELECTION_ARGS) {
+                    val end = Math.min(start + MAX_SELECTION_ARGS, ids.size)
+
+                    // prepare selection for 'IN' query
+                    val sb = StringBuilder(ColFieldNoteImage.FIELD_NOTE_ID).append(" IN (?")
+                    for (i in start + 1 until end) {
+                        sb.append(",?")
+                    }
+                    sb.append(')')
+                    val args = Array(end - start) { ids[start + it].toString() }
+
+                    // perform request
+                    loadImages(cr.query(imagesUri, projection, sb.toString(), args, null),
+                            notesMap)
+                }
+            }
+        }
+
+        /**
+         * Attach images from [cursor] to notes in [notesMap] and close cursor.
+         */
+        private fun loadImages(cursor: Cursor?, notesMap: Map<Long, FieldNote>) {
+            try {
+                if (cursor != null) {
+                    for (image in createImages(cursor)) {
+                        notesMap[image.fieldNoteId]?.let { it.images.add(image) }
                     }
                 }
             } finally {
-                Utils.closeQuietly(c)
+                Utils.closeQuietly(cursor)
             }
         }
 
@@ -600,10 +818,20 @@ class FieldNotesHelper private constructor() {
          */
         private fun createLogs(cursor: Cursor?): MutableList<FieldNote> {
             // createLogs container and check data
-            val res = ArrayList<FieldNote>()
             if (cursor == null) {
                 throw IllegalArgumentException("Cursor cannot be 'null'")
             }
+            val res = ArrayList<FieldNote>(cursor.count)
+
+            // resolve indexes of columns (required columns first)
+            val colId = cursor.getColumnIndexOrThrow(ColFieldNote.ID)
+            val colCacheCode = cursor.getColumnIndexOrThrow(ColFieldNote.CACHE_CODE)
+            val colCacheName = cursor.getColumnIndexOrThrow(ColFieldNote.CACHE_NAME)
+            val colType = cursor.getColumnIndexOrThrow(ColFieldNote.TYPE)
+            val colTime = cursor.getColumnIndex(ColFieldNote.TIME)
+            val colNote = cursor.getColumnIndex(ColFieldNote.NOTE)
+            val colFavorite = cursor.getColumnIndex(ColFieldNote.FAVORITE)
+            val colLogged = cursor.getColumnIndex(ColFieldNote.LOGGED)
 
             // iterate over cursor
             for (i in 0 until cursor.count) {
@@ -612,27 +840,22 @@ class FieldNotesHelper private constructor() {
                 // add field note to container
                 res.add(FieldNote().apply {
                     // set parameters (required)
-                    id = cursor.getLong(
-                            cursor.getColumnIndexOrThrow(ColFieldNote.ID))
-                    cacheCode = cursor.getString(
-                            cursor.getColumnIndexOrThrow(ColFieldNote.CACHE_CODE))
-                    cacheName = cursor.getString(
-                            cursor.getColumnIndexOrThrow(ColFieldNote.CACHE_NAME))
-                    type = cursor.getInt(
-                            cursor.getColumnIndexOrThrow(ColFieldNote.TYPE))
-                    time = cursor.getLong(
-                            cursor.getColumnIndex(ColFieldNote.TIME))
+                    id = cursor.getLong(colId)
+                    cacheCode = cursor.getString(colCacheCode)
+                    cacheName = cursor.getString(colCacheName)
+                    type = cursor.getInt(colType)
+                    time = cursor.getLong(colTime)
 
                     // set parameters (optional)
-                    cursor.getColumnIndex(ColFieldNote.NOTE)
-                            .takeIf { it >= 0 }
-                            ?.let { note = cursor.getString(it) }
-                    cursor.getColumnIndex(ColFieldNote.FAVORITE)
-                            .takeIf { it >= 0 }
-                            ?.let { isFavorite = cursor.getInt(it) == 1 }
-                    cursor.getColumnIndex(ColFieldNote.LOGGED)
-                            .takeIf { it >= 0 }
-                            ?.let { isLogged = cursor.getInt(it) == 1 }
+                    if (colNote >= 0) {
+                        note = cursor.getString(colNote)
+                    }
+                    if (colFavorite >= 0) {
+                        isFavorite = cursor.getInt(colFavorite) == 1
+                    }
+                    if (colLogged >= 0) {
+                        isLogged = cursor.getInt(colLogged) == 1
+                    }
                 })
             }
 
@@ -645,10 +868,17 @@ class FieldNotesHelper private constructor() {
          */
         private fun createImages(cursor: Cursor?): MutableList<FieldNoteImage> {
             // createLogs container and check data
-            val res = ArrayList<FieldNoteImage>()
             if (cursor == null) {
                 throw IllegalArgumentException("Cursor cannot be 'null'")
             }
+            val res = ArrayList<FieldNoteImage>(cursor.count)
+
+            // resolve indexes of columns (required columns first)
+            val colId = cursor.getColumnIndexOrThrow(ColFieldNoteImage.ID)
+            val colFieldNoteId = cursor.getColumnIndex(ColFieldNoteImage.FIELD_NOTE_ID)
+            val colCaption = cursor.getColumnIndex(ColFieldNoteImage.CAPTION)
+            val colDescription = cursor.getColumnIndex(ColFieldNoteImage.DESCRIPTION)
+            val colData = cursor.getColumnIndex(ColFieldNoteImage.DATA)
 
             // iterate over cursor
             for (i in 0 until cursor.count) {
@@ -657,22 +887,21 @@ class FieldNotesHelper private constructor() {
                 // add field note to container
                 res.add(FieldNoteImage().apply {
                     // set parameters (required)
-                    id = cursor.getLong(
-                            cursor.getColumnIndexOrThrow(ColFieldNoteImage.ID))
+                    id = cursor.getLong(colId)
 
                     // set parameters (optional)
-                    cursor.getColumnIndex(ColFieldNoteImage.FIELD_NOTE_ID)
-                            .takeIf { it >= 0 }
-                            ?.let { fieldNoteId = cursor.getLong(it) }
-                    cursor.getColumnIndex(ColFieldNoteImage.CAPTION)
-                            .takeIf { it >= 0 }
-                            ?.let { caption = cursor.getString(it) }
-                    cursor.getColumnIndex(ColFieldNoteImage.DESCRIPTION)
-                            .takeIf { it >= 0 }
-                            ?.let { description = cursor.getString(it) }
-                    cursor.getColumnIndex(ColFieldNoteImage.DATA)
-                            .takeIf { it >= 0 }
-                            ?.let { image = cursor.getBlob(it) }
+                    if (colFieldNoteId >= 0) {
+                        fieldNoteId = cursor.getLong(colFieldNoteId)
+                    }
+                    if (colCaption >= 0) {
+                        caption = cursor.getString(colCaption)
+                    }
+                    if (colDescription >= 0) {
+                        description = cursor.getString(colDescription)
+                    }
+                    if (colData >= 0) {
+                        image = cursor.getBlob(colData)
+                    }
                 })
             }
 
@@ -685,10 +914,22 @@ class FieldNotesHelper private constructor() {
          */
         private fun createItems(cursor: Cursor?): MutableList<TrackableLog> {
             // createLogs container and check data
-            val res = ArrayList<TrackableLog>()
             if (cursor == null) {
                 throw IllegalArgumentException("Cursor cannot be 'null'")
             }
+            val res = ArrayList<TrackableLog>(cursor.count)
+
+            // resolve indexes of columns (required columns first)
+            val colId = cursor.getColumnIndexOrThrow(ColTrackableLogs.ID)
+            val colTbCode = cursor.getColumnIndex(ColTrackableLogs.TB_CODE)
+            val colName = cursor.getColumnIndex(ColTrackableLogs.NAME)
+            val colIcon = cursor.getColumnIndex(ColTrackableLogs.ICON)
+            val colCacheCode = cursor.getColumnIndex(ColTrackableLogs.CACHE_CODE)
+            val colAction = cursor.getColumnIndex(ColTrackableLogs.ACTION)
+            val colTrackingCode = cursor.getColumnIndex(ColTrackableLogs.TRACKING_CODE)
+            val colTime = cursor.getColumnIndex(ColTrackableLogs.TIME)
+            val colNote = cursor.getColumnIndex(ColTrackableLogs.NOTE)
+            val colLogged = cursor.getColumnIndex(ColTrackableLogs.LOGGED)
 
             // iterate over cursor
             for (i in 0 until cursor.count) {
@@ -696,37 +937,36 @@ class FieldNotesHelper private constructor() {
 
                 // createLogs object
                 res.add(TrackableLog().apply {
-                    id = cursor.getLong(
-                            cursor.getColumnIndexOrThrow(ColTrackableLogs.ID))
+                    id = cursor.getLong(colId)
 
                     // set parameters (optional)
-                    cursor.getColumnIndex(ColTrackableLogs.TB_CODE)
-                            .takeIf { it >= 0 }
-                            ?.let { tbCode = cursor.getString(it) }
-                    cursor.getColumnIndex(ColTrackableLogs.NAME)
-                            .takeIf { it >= 0 }
-                            ?.let { name = cursor.getString(it) }
-                    cursor.getColumnIndex(ColTrackableLogs.ICON)
-                            .takeIf { it >= 0 }
-                            ?.let { icon = cursor.getString(it) }
-                    cursor.getColumnIndex(ColTrackableLogs.CACHE_CODE)
-                            .takeIf { it >= 0 }
-                            ?.let { cacheCode = cursor.getString(it) }
-                    cursor.getColumnIndex(ColTrackableLogs.ACTION)
-                            .takeIf { it >= 0 }
-                            ?.let { action = cursor.getInt(it) }
-                    cursor.getColumnIndex(ColTrackableLogs.TRACKING_CODE)
-                            .takeIf { it >= 0 }
-                            ?.let { trackingCode = cursor.getString(it) }
-                    cursor.getColumnIndex(ColTrackableLogs.TIME)
-                            .takeIf { it >= 0 }
-                            ?.let { time = cursor.getLong(it) }
-                    cursor.getColumnIndex(ColTrackableLogs.NOTE)
-                            .takeIf { it >= 0 }
-                            ?.let { note = cursor.getString(it) }
-                    cursor.getColumnIndex(ColTrackableLogs.LOGGED)
-                            .takeIf { it >= 0 }
-                            ?.let { isLogged = cursor.getInt(it) == 1 }
+                    if (colTbCode >= 0) {
+                        tbCode = cursor.getString(colTbCode)
+                    }
+                    if (colName >= 0) {
+                        name = cursor.getString(colName)
+                    }
+                    if (colIcon >= 0) {
+                        icon = cursor.getString(colIcon)
+                    }
+                    if (colCacheCode >= 0) {
+                        cacheCode = cursor.getString(colCacheCode)
+                    }
+                    if (colAction >= 0) {
+                        action = cursor.getInt(colAction)
+                    }
+                    if (colTrackingCode >= 0) {
+                        trackingCode = cursor.getString(colTrackingCode)
+                    }
+                    if (colTime >= 0) {
+                        time = cursor.getLong(colTime)
+                    }
+                    if (colNote >= 0) {
+                        note = cursor.getString(colNote)
+                    }
+                    if (colLogged >= 0) {
+                        isLogged = cursor.getInt(colLogged) == 1
+                    }
                 })
             }
 
@@ -10,6 +10,17 @@ import locus.api.utils.DataWriterBigEndian;
 
 public class MapConfigLayer extends Storable {
 
+    /**
+     * Factory of empty objects, used for reading of lists.
+     */
+    public static final Storable.Factory<MapConfigLayer> FACTORY = new Storable.Factory<MapConfigLayer>() {
+
+        @Override
+        public MapConfigLayer create() {
+            return new MapConfigLayer();
+        }
+    };
+
     // name from file
     private String mName;
     // description of file
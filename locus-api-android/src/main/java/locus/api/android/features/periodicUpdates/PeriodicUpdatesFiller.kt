@@ -7,6 +7,7 @@ import java.io.IOException
 import locus.api.android.utils.IntentHelper
 import locus.api.objects.enums.PointRteAction
 import locus.api.objects.extra.TrackStats
+import locus.api.objects.utils.DistanceStrategy
 
 /**
  * Deprecated helper method used by no longer supported [PeriodicUpdatesHandler].
@@ -36,8 +37,8 @@ object PeriodicUpdatesFiller {
                 ?: update.locMyLocation
         if (update.isEnabledMyLocation) {
             // check if location is updated
-            if (pu.mLastGps == null || pu.mLastGps.distanceTo(
-                            update.locMyLocation) > pu.mLocMinDistance) {
+            if (pu.mLastGps == null || pu.mLastGps.distanceTo(update.locMyLocation,
+                            DistanceStrategy.EQUIRECTANGULAR) > pu.mLocMinDistance) {
                 pu.mLastGps = update.locMyLocation
                 update.isNewMyLocation = true
             }
@@ -78,8 +79,8 @@ object PeriodicUpdatesFiller {
         update.isNewMapCenter = false
         update.locMapCenter = IntentHelper.getLocationFromIntent(
                 i, PeriodicUpdatesConst.VAR_LOC_MAP_CENTER)
-        if (pu.mLastMapCenter == null || pu.mLastMapCenter.distanceTo(
-                        update.locMapCenter) > pu.mLocMinDistance) {
+        if (pu.mLastMapCenter == null || pu.mLastMapCenter.distanceTo(update.locMapCenter,
+                        DistanceStrategy.EQUIRECTANGULAR) > pu.mLocMinDistance) {
             pu.mLastMapCenter = update.locMapCenter
             update.isNewMapCenter = true
         }
@@ -0,0 +1,348 @@
+package locus.api.android.features.periodicUpdates
+
+import locus.api.android.utils.DaemonThreadFactory
+import locus.api.objects.extra.Location
+import locus.api.objects.utils.DistanceStrategy
+import locus.api.utils.Logger
+import java.util.*
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * Dispatcher that distribute received [UpdateContainer] objects to registered consumers.
+ *
+ * Every consumer defines groups of values it is interested in, minimal interval between two
+ * notifications and minimal change (in metres) of locations/distances. Bursts of updates are
+ * coalesced, so consumer always receives only the latest container once its interval expires.
+ * Notifications are executed on background executor, so slow consumers do not block fast ones.
+ *
+ * Usage: register subscriptions over [subscribe] and push every fresh container obtained
+ * from Locus (for example by `ActionBasics.getUpdateContainer()`) to [dispatch].
+ */
+class UpdateDispatcher @JvmOverloads constructor(
+        /**
+         * Executor used for notification of consumers, `null` to use own executor.
+         */
+        executor: Executor? = null,
+        /**
+         * Scheduler used for delayed (throttled) notifications, `null` to use own scheduler.
+         */
+        scheduler: ScheduledExecutorService? = null) {
+
+    // executor used for notification of consumers
+    private val executor: Executor = executor
+            ?: Executors.newCachedThreadPool(DaemonThreadFactory(TAG))
+    // flag if executor was created by dispatcher
+    private val ownExecutor = executor == null
+    // scheduler used for delayed notifications
+    private val scheduler: ScheduledExecutorService = scheduler
+            ?: Executors.newSingleThreadScheduledExecutor(DaemonThreadFactory(TAG))
+    // flag if scheduler was created by dispatcher
+    private val ownScheduler = scheduler == null
+
+    /**
+     * Groups of values in [UpdateContainer], consumer may subscribe to.
+     */
+    enum class FieldGroup {
+
+        /**
+         * Current user location, GPS state and satellites.
+         */
+        MY_LOCATION {
+            override fun hasChanged(old: UpdateContainer, new: UpdateContainer, minDistance: Double): Boolean {
+                return old.isEnabledMyLocation != new.isEnabledMyLocation
+                        || old.isGpsLocValid != new.isGpsLocValid
+                        || old.gpsSatsUsed != new.gpsSatsUsed
+                        || old.locMyLocation.distanceTo(new.locMyLocation,
+                        DistanceStrategy.EQUIRECTANGULAR) > minDistance
+            }
+        },
+        /**
+         * Orientation, declination, vertical speed and slope values.
+         */
+        ORIENTATION {
+            override fun hasChanged(old: UpdateContainer, new: UpdateContainer, minDistance: Double): Boolean {
+                return old.orientHeading != new.orientHeading
+                        || old.orientCourse != new.orientCourse
+                        || old.orientPitch != new.orientPitch
+                        || old.orientRoll != new.orientRoll
+                        || old.orientGpsAngle != new.orientGpsAngle
+                        || old.declination != new.declination
+                        || old.speedVertical != new.speedVertical
+                        || old.slope != new.slope
+            }
+        },
+        /**
+         * Map center, visible area, zoom and rotation.
+         */
+        MAP {
+            override fun hasChanged(old: UpdateContainer, new: UpdateContainer, minDistance: Double): Boolean {
+                return old.isMapVisible != new.isMapVisible
+                        || old.mapZoomLevel != new.mapZoomLevel
+                        || old.mapRotate != new.mapRotate
+                        || old.isUserTouching != new.isUserTouching
+                        || isLocationChanged(old.locMapCenter, new.locMapCenter, minDistance)
+            }
+        },
+        /**
+         * State and statistics of track recording.
+         */
+        TRACK_RECORDING {
+            override fun hasChanged(old: UpdateContainer, new: UpdateContainer, minDistance: Double): Boolean {
+                if (old.isTrackRecRecording != new.isTrackRecRecording
+                        || old.isTrackRecPaused != new.isTrackRecPaused
+                        || old.trackRecProfileName != new.trackRecProfileName) {
+                    return true
+                }
+                val statsOld = old.trackRecStats
+                val statsNew = new.trackRecStats
+                if (statsOld == null || statsNew == null) {
+                    return statsOld !== statsNew
+                }
+                return statsOld.numOfPoints != statsNew.numOfPoints
+                        || statsOld.totalTime != statsNew.totalTime
+                        || Math.abs(statsOld.totalLength - statsNew.totalLength) > minDistance
+            }
+        },
+        /**
+         * Guidance to point or along the track.
+         */
+        GUIDANCE {
+            override fun hasChanged(old: UpdateContainer, new: UpdateContainer, minDistance: Double): Boolean {
+                return old.guideType != new.guideType
+                        || old.guideTargetId != new.guideTargetId
+                        || old.guideValid != new.guideValid
+                        || old.guideNavPoint1Action != new.guideNavPoint1Action
+                        || old.guideWptAngle != new.guideWptAngle
+                        || Math.abs(old.guideWptDist - new.guideWptDist) > minDistance
+                        || Math.abs(old.guideNavPoint1Dist - new.guideNavPoint1Dist) > minDistance
+                        || Math.abs(old.guideDistToFinish - new.guideDistToFinish) > minDistance
+            }
+        },
+        /**
+         * Various values like active dashboard or battery state.
+         */
+        VARIOUS {
+            override fun hasChanged(old: UpdateContainer, new: UpdateContainer, minDistance: Double): Boolean {
+                return old.activeDashboardId != new.activeDashboardId
+                        || old.activeLiveTrackId != new.activeLiveTrackId
+                        || old.deviceBatteryValue != new.deviceBatteryValue
+                        || old.deviceBatteryTemperature != new.deviceBatteryTemperature
+            }
+        };
+
+        /**
+         * Check if values of this group changed between two containers.
+         *
+         * @param old previously delivered container
+         * @param new freshly received container
+         * @param minDistance minimal change of locations and distances [m]
+         * @return `true` if change is significant for consumer
+         */
+        internal abstract fun hasChanged(old: UpdateContainer, new: UpdateContainer, minDistance: Double): Boolean
+    }
+
+    /**
+     * Consumer of dispatched updates.
+     */
+    interface OnUpdateListener {
+
+        /**
+         * Notification about new update. Called on background thread of dispatcher.
+         *
+         * @param update received container
+         */
+        fun onUpdate(update: UpdateContainer)
+    }
+
+    // list of active subscriptions
+    private val subscriptions = CopyOnWriteArrayList<Subscription>()
+
+    /**
+     * Register new consumer of updates.
+     *
+     * @param groups groups of values consumer is interested in
+     * @param minInterval minimal interval between two notifications [ms]
+     * @param minDistance minimal change of locations and distances [m]
+     * @param listener consumer itself
+     * @return created subscription, needed for [unsubscribe]
+     */
+    fun subscribe(groups: Set<FieldGroup>, minInterval: Long,
+            minDistance: Double, listener: OnUpdateListener): Subscription {
+        if (groups.isEmpty() || minInterval < 0L || minDistance < 0.0) {
+            throw IllegalArgumentException("Incorrect arguments, groups: $groups, " +
+                    "interval: $minInterval, distance: $minDistance")
+        }
+        val sub = Subscription(EnumSet.copyOf(groups), minInterval, minDistance, listener)
+        subscriptions.add(sub)
+        return sub
+    }
+
+    /**
+     * Unregister existing consumer. Already running notification is finished, any pending
+     * notification is dropped.
+     *
+     * @param subscription subscription to remove
+     */
+    fun unsubscribe(subscription: Subscription) {
+        subscription.cancel()
+        subscriptions.remove(subscription)
+    }
+
+    /**
+     * Dispatch freshly received container to all registered consumers.
+     *
+     * @param update received container
+     */
+    fun dispatch(update: UpdateContainer) {
+        for (sub in subscriptions) {
+            sub.offer(update)
+        }
+    }
+
+    /**
+     * Remove all subscriptions and shut down executors created by dispatcher. Executors
+     * received in constructor are left untouched. Dispatcher cannot be used after this call.
+     */
+    fun destroy() {
+        for (sub in subscriptions) {
+            sub.cancel()
+        }
+        subscriptions.clear()
+        if (ownScheduler) {
+            scheduler.shutdownNow()
+        }
+        if (ownExecutor) {
+            (executor as ExecutorService).shutdown()
+        }
+    }
+
+    /**
+     * Single registered consumer together with its delivery state.
+     */
+    inner class Subscription internal constructor(
+            /**
+             * Groups of values consumer is interested in.
+             */
+            val groups: Set<FieldGroup>,
+            /**
+             * Minimal interval between two notifications [ms].
+             */
+            val minInterval: Long,
+            /**
+             * Minimal change of locations and distances [m].
+             */
+            val minDistance: Double,
+            private val listener: OnUpdateListener) {
+
+        // last container delivered to consumer
+        private var lastDelivered: UpdateContainer? = null
+        // time of last delivery [ms]
+        private var lastDeliveredTime: Long = 0L
+        // latest container waiting for delivery
+        private var pending: UpdateContainer? = null
+        // flag if delivery is scheduled or running
+        private var scheduled: Boolean = false
+        // flag if subscription is still active
+        private var active: Boolean = true
+
+        /**
+         * Offer new container to consumer.
+         */
+        internal fun offer(update: UpdateContainer) {
+            synchronized(this) {
+                if (!active) {
+                    return
+                }
+
+                // check significance of change against last delivered content. Pending update
+                // is always replaced, so consumer never receives outdated values
+                val last = lastDelivered
+                if (pending == null && last != null
+                        && groups.none { it.hasChanged(last, update, minDistance) }) {
+                    return
+                }
+
+                // replace older pending update, delivery is already on the way
+                pending = update
+                if (scheduled) {
+                    return
+                }
+                scheduleDelivery()
+            }
+        }
+
+        /**
+         * Cancel this subscription.
+         */
+        internal fun cancel() {
+            synchronized(this) {
+                active = false
+                pending = null
+            }
+        }
+
+        // schedule next delivery, needs to be called under lock
+        private fun scheduleDelivery() {
+            scheduled = true
+            val delay = lastDeliveredTime + minInterval - System.currentTimeMillis()
+            if (delay <= 0L) {
+                executor.execute { deliver() }
+            } else {
+                scheduler.schedule({ executor.execute { deliver() } }, delay, TimeUnit.MILLISECONDS)
+            }
+        }
+
+        // deliver pending update to consumer
+        private fun deliver() {
+            val update: UpdateContainer
+            synchronized(this) {
+                val upd = pending
+                if (!active || upd == null) {
+                    scheduled = false
+                    return
+                }
+                update = upd
+                pending = null
+                lastDelivered = update
+                lastDeliveredTime = System.currentTimeMillis()
+            }
+
+            // notify consumer outside of lock
+            try {
+                listener.onUpdate(update)
+            } catch (e: Exception) {
+                Logger.logE(TAG, "deliver(), listener: $listener", e)
+            }
+
+            // handle updates received during notification
+            synchronized(this) {
+                if (active && pending != null) {
+                    scheduleDelivery()
+                } else {
+                    scheduled = false
+                }
+            }
+        }
+    }
+
+    companion object {
+
+        // tag for logger
+        private const val TAG = "UpdateDispatcher"
+
+        /**
+         * Check if location moved more than defined limit.
+         */
+        private fun isLocationChanged(old: Location?, new: Location?, minDistance: Double): Boolean {
+            if (old == null || new == null) {
+                return old !== new
+            }
+            return old.distanceTo(new, DistanceStrategy.EQUIRECTANGULAR) > minDistance
+        }
+    }
+}
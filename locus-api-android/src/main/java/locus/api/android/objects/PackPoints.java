@@ -23,10 +23,13 @@ import android.graphics.Bitmap;
 
 import locus.api.android.utils.UtilsBitmap;
 import locus.api.objects.Storable;
+import locus.api.objects.extra.BoundingBox;
 import locus.api.objects.extra.GeoDataStyle;
+import locus.api.objects.extra.GeoDataStyleRegistry;
 import locus.api.objects.extra.Point;
 import locus.api.utils.DataReaderBigEndian;
 import locus.api.utils.DataWriterBigEndian;
+import locus.api.utils.LazyStorableList;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -34,6 +37,17 @@ import java.util.List;
 
 public class PackPoints extends Storable {
 
+    /**
+     * Factory of empty objects, used for reading of lists.
+     */
+    public static final Storable.Factory<PackPoints> FACTORY = new Storable.Factory<PackPoints>() {
+
+        @Override
+        public PackPoints create() {
+            return new PackPoints();
+        }
+    };
+
     /**
      * Unique name
      * PackPoints send to Locus with same name (to display), will be overwrite in Locus
@@ -47,6 +61,17 @@ public class PackPoints extends Storable {
 
     // ArrayList of all points stored in this object
     private List<Point> points;
+    // flag if styles of points should be written as shared table
+    private boolean styleTable;
+
+    // bounding box of all points
+    private BoundingBox bounds;
+    // list of points, bounding box was computed for
+    private List<Point> boundsPoints;
+    // number of points already included in bounding box
+    private int boundsCount;
+    // flag if points should be decoded only on demand during read
+    private boolean readLazy;
 
     /**
      * Empty constructor used for {@link Storable}
@@ -57,6 +82,7 @@ public class PackPoints extends Storable {
         this.mName = "";
         this.style = null;
         this.points = new ArrayList<>();
+        this.bounds = new BoundingBox();
     }
 
     public PackPoints(String uniqueName) {
@@ -92,19 +118,175 @@ public class PackPoints extends Storable {
         return points;
     }
 
+    /**
+     * Check if styles of points are serialized as shared table.
+     *
+     * @return {@code true} if shared table is used
+     */
+    public boolean isStyleTableEnabled() {
+        return styleTable;
+    }
+
+    /**
+     * Set if styles of points should be serialized only once as a shared table of unique
+     * styles, followed by references of every point. This notably reduces size of packs,
+     * where many points use same style. Points of received pack then share instances
+     * of identical styles.
+     * <br><br>
+     * Receiving side has to support version 1 of this container, older versions read points
+     * without styles.
+     *
+     * @param styleTable {@code true} to use shared table
+     */
+    public void setStyleTableEnabled(boolean styleTable) {
+        this.styleTable = styleTable;
+    }
+
+    //*************************************************
+    // BOUNDS
+    //*************************************************
+
+    /**
+     * Get bounding box of all points. Box is updated incrementally, so only points added
+     * since previous call are processed. If existing points are modified or removed,
+     * call {@link #invalidateBounds()}. Serialized box is always computed again from
+     * current points.
+     *
+     * @return bounding box of pack, do not modify
+     */
+    public BoundingBox getBounds() {
+        int size = points.size();
+        if (boundsPoints != points || boundsCount > size) {
+            bounds = new BoundingBox();
+            boundsPoints = points;
+            boundsCount = 0;
+        }
+
+        // include new points
+        for (int i = boundsCount; i < size; i++) {
+            Point pt = points.get(i);
+            if (pt.getLocation() != null) {
+                bounds.extend(pt.getLocation());
+            }
+        }
+        boundsCount = size;
+        return bounds;
+    }
+
+    /**
+     * Force full re-computation of bounding box.
+     */
+    public void invalidateBounds() {
+        boundsPoints = null;
+    }
+
+    /**
+     * Get bounding box for serialization. Points may be modified in place, so box is computed
+     * again, unless points are still only in serialized form.
+     *
+     * @return bounding box of pack
+     */
+    BoundingBox getBoundsForWrite() {
+        if (!(points instanceof LazyStorableList && ((LazyStorableList<?>) points).isSerialized())) {
+            invalidateBounds();
+        }
+        return getBounds();
+    }
+
+    /**
+     * Read only bounding box of serialized pack. Points are not decoded, if pack
+     * was serialized with version 2 or above.
+     *
+     * @param data serialized pack
+     * @return bounding box of pack
+     * @throws IOException thrown in case of invalid data format
+     */
+    public static BoundingBox readBounds(byte[] data) throws IOException {
+        PackPoints pack = new PackPoints();
+        pack.readLazy = true;
+        pack.read(data);
+        return pack.getBounds();
+    }
+
     //*************************************************
     // STORABLE
     //*************************************************
 
     @Override
     protected int getVersion() {
-        return 0;
+        return 2;
     }
 
     @SuppressWarnings("unchecked")
     @Override
     protected void readObject(int version, DataReaderBigEndian dr)
             throws IOException {
+        // pack parameters
+        readPackInfo(dr);
+
+        // waypoints
+        if (readLazy) {
+            points = LazyStorableList.read(Point.FACTORY, dr);
+        } else {
+            points = dr.readListStorable(Point.FACTORY);
+        }
+
+        // V1
+        styleTable = false;
+        if (version >= 1 && dr.readBoolean()) {
+            GeoDataStyleRegistry registry = new GeoDataStyleRegistry();
+            registry.read(dr);
+            if (!readLazy) {
+                registry.applyReferences(points);
+            }
+            styleTable = true;
+        }
+
+        // V2
+        invalidateBounds();
+        if (version >= 2) {
+            bounds = new BoundingBox();
+            bounds.read(dr);
+            boundsPoints = points;
+            boundsCount = points.size();
+        }
+    }
+
+    @Override
+    protected void writeObject(DataWriterBigEndian dw) throws IOException {
+        // pack parameters
+        writePackInfo(dw);
+
+        // waypoints itself
+        if (!styleTable) {
+            dw.writeListStorable(points);
+
+            // V1
+            dw.writeBoolean(false);
+        } else {
+            // waypoints with styles in shared table
+            GeoDataStyleRegistry registry = new GeoDataStyleRegistry();
+            dw.writeInt(points.size());
+            for (int i = 0, m = points.size(); i < m; i++) {
+                points.get(i).write(dw, registry);
+            }
+
+            // V1
+            dw.writeBoolean(true);
+            dw.writeStorable(registry);
+        }
+
+        // V2
+        dw.writeStorable(getBoundsForWrite());
+    }
+
+    /**
+     * Read parameters of pack (name, style, icon), that precede list of points.
+     *
+     * @param dr data reader
+     * @throws IOException thrown in case of invalid data format
+     */
+    protected void readPackInfo(DataReaderBigEndian dr) throws IOException {
         // name
         mName = dr.readString();
 
@@ -116,13 +298,15 @@ public class PackPoints extends Storable {
 
         // icon
         imgBitmap = UtilsBitmap.readBitmap(dr);
-
-        // waypoints
-        points = dr.readListStorable(Point.class);
     }
 
-    @Override
-    protected void writeObject(DataWriterBigEndian dw) throws IOException {
+    /**
+     * Write parameters of pack (name, style, icon), that precede list of points.
+     *
+     * @param dw data writer
+     * @throws IOException thrown in case of invalid data format
+     */
+    protected void writePackInfo(DataWriterBigEndian dw) throws IOException {
         // name
         dw.writeString(mName);
 
@@ -136,8 +320,5 @@ public class PackPoints extends Storable {
 
         // bitmap icon
         UtilsBitmap.writeBitmap(dw, imgBitmap, Bitmap.CompressFormat.PNG);
-
-        // waypoints itself
-        dw.writeListStorable(points);
     }
 }
@@ -0,0 +1,578 @@
+package locus.api.android.objects;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+import locus.api.objects.Storable;
+import locus.api.objects.extra.BoundingBox;
+import locus.api.objects.extra.GeoDataStyleRegistry;
+import locus.api.objects.extra.Point;
+import locus.api.utils.DataReaderBigEndian;
+import locus.api.utils.DataWriterBigEndian;
+import locus.api.utils.Logger;
+
+/**
+ * Variant of {@link PackPoints} for huge number of points, that keeps points outside of
+ * Java heap.
+ * <br><br>
+ * Every point is serialized into its {@link Storable} form immediately when added and stored
+ * in a direct {@link ByteBuffer} together with an index of offsets. Points are decoded back
+ * only when requested over {@link #getWaypoint(int)} or over read-only list returned by
+ * {@link #getWaypoints()}. Serialization of pack (for example in
+ * {@code ActionDisplayPoints.sendPacksFile}) copies already serialized points directly
+ * from the buffer, so result is byte-identical to {@link PackPoints} with same content.
+ * <br><br>
+ * Modification of points already added to pack has no effect on stored data. Receiving side
+ * limits size of single pack to {@link Storable#MAX_BODY_SIZE_STREAM}, so bigger pack
+ * cannot be written and has to be divided by {@link #split(int)} first ({@link PackPointsWriter}
+ * does this automatically). Parts created by split share buffers of this pack, so no points
+ * are copied. Points keep their styles inline, so
+ * {@link #setStyleTableEnabled(boolean)} has no effect.
+ */
+public class PackPointsDirect extends PackPoints {
+
+    // tag for logger
+    private static final String TAG = "PackPointsDirect";
+
+    // size of chunk used for copy of data from buffer
+    private static final int COPY_CHUNK = 64 * 1024;
+
+    // serialized points
+    private ByteBuffer data;
+    // offsets of points in 'data' buffer, increased by 'indexBase'
+    private ByteBuffer index;
+    // value subtracted from offsets in 'index', used by parts sharing buffers of split pack
+    private int indexBase;
+    // flag if buffers are shared with other packs, so they cannot be overwritten
+    private boolean shared;
+    // number of stored points
+    private int count;
+    // bounding box of stored points
+    private final BoundingBox dataBounds;
+    // flag if 'dataBounds' covers all stored points
+    private boolean dataBoundsValid;
+    // writer used for serialization of added points
+    private final DataWriterBigEndian writer;
+
+    /**
+     * Empty constructor used for {@link Storable}
+     * <br>
+     * Do not use directly!
+     */
+    public PackPointsDirect() {
+        this("");
+    }
+
+    /**
+     * Create new pack with default initial capacity.
+     *
+     * @param uniqueName unique name of pack
+     */
+    public PackPointsDirect(String uniqueName) {
+        this(uniqueName, 256 * 1024);
+    }
+
+    /**
+     * Create new pack.
+     *
+     * @param uniqueName    unique name of pack
+     * @param capacityBytes expected size of all serialized points in bytes
+     */
+    public PackPointsDirect(String uniqueName, int capacityBytes) {
+        super(uniqueName);
+        this.data = ByteBuffer.allocateDirect(Math.max(capacityBytes, 1024));
+        this.index = ByteBuffer.allocateDirect(4 * 1024);
+        this.indexBase = 0;
+        this.shared = false;
+        this.count = 0;
+        this.dataBounds = new BoundingBox();
+        this.dataBoundsValid = true;
+        this.writer = new DataWriterBigEndian(1024);
+    }
+
+    /**
+     * Create empty part of split pack, that shares buffers of source pack.
+     *
+     * @param uniqueName unique name of part
+     * @param source     split pack
+     */
+    private PackPointsDirect(String uniqueName, PackPointsDirect source) {
+        super(uniqueName);
+        this.dataBounds = new BoundingBox();
+        this.writer = new DataWriterBigEndian(1024);
+        setExtraStyle(source.getExtraStyle());
+        setBitmap(source.getBitmap());
+        shareRange(source, 0, 0);
+    }
+
+    //*************************************************
+    // POINTS
+    //*************************************************
+
+    /**
+     * Serialize point and add it to the pack.
+     *
+     * @param wpt point to add
+     */
+    @Override
+    public void addWaypoint(Point wpt) {
+        try {
+            writer.reset();
+            wpt.write(writer);
+            byte[] bytes = writer.toByteArray();
+            appendIndex();
+            ensureDataCapacity(bytes.length);
+            data.put(bytes);
+            count++;
+            if (dataBoundsValid && wpt.getLocation() != null) {
+                dataBounds.extend(wpt.getLocation());
+            }
+        } catch (IOException e) {
+            Logger.logE(TAG, "addWaypoint(" + wpt + ")", e);
+        }
+    }
+
+    /**
+     * Get read-only view on stored points. Every access to item of this list decodes point
+     * again from the buffer, so store obtained item if it is needed more times.
+     *
+     * @return read-only list of points
+     */
+    @Override
+    public List<Point> getWaypoints() {
+        return new PointsView();
+    }
+
+    /**
+     * Get number of stored points.
+     *
+     * @return number of points
+     */
+    public int getWaypointsCount() {
+        return count;
+    }
+
+    /**
+     * Decode point on certain index.
+     *
+     * @param position index of point
+     * @return decoded point
+     */
+    public Point getWaypoint(int position) {
+        if (position < 0 || position >= count) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", size: " + count);
+        }
+
+        return decodePoint(data, index, indexBase, count, position);
+    }
+
+    /**
+     * Get number of bytes used by serialized points.
+     *
+     * @return used bytes
+     */
+    public int getDataSize() {
+        return data.position();
+    }
+
+    /**
+     * Get view on buffer with all serialized points, ready for reading.
+     *
+     * @return read-only buffer with points
+     */
+    ByteBuffer getDataBuffer() {
+        ByteBuffer source = data.asReadOnlyBuffer();
+        source.flip();
+        return source;
+    }
+
+    /**
+     * Split pack into more packs, where every pack is serialized into at most
+     * {@code maxBodySize} bytes. First pack keeps name of this pack, next packs get suffix
+     * '_1', '_2', ... Style and icon of this pack are used by all parts. Parts share buffers
+     * with this pack, so serialized points are neither decoded nor copied.
+     *
+     * @param maxBodySize maximal size of serialized pack, usually
+     *                    {@link Storable#MAX_BODY_SIZE_STREAM}
+     * @return created packs or list with only this pack, if it fits into limit
+     * @throws IOException thrown if single point does not fit into limit
+     */
+    public List<PackPointsDirect> split(int maxBodySize) throws IOException {
+        if (getBodySize() <= maxBodySize) {
+            return Collections.singletonList(this);
+        }
+
+        // distribute points into parts
+        List<PackPointsDirect> parts = new ArrayList<>();
+        int first = 0;
+        while (first < count) {
+            String name = parts.isEmpty() ? getName() : getName() + "_" + parts.size();
+            PackPointsDirect part = new PackPointsDirect(name, this);
+            long partLimit = maxBodySize - part.getBodySize();
+
+            // find last point, that fits into part
+            int start = getOffset(first);
+            int last = first;
+            while (last < count && getOffset(last + 1) - start <= partLimit) {
+                last++;
+            }
+            if (last == first) {
+                throw new IOException("Point " + first + " of pack '" + getName() + "' " +
+                        "does not fit into limit, size: " + (getOffset(first + 1) - start) + "B, " +
+                        "max: " + partLimit + "B");
+            }
+            part.shareRange(this, first, last);
+            parts.add(part);
+            first = last;
+        }
+
+        // points in buffers are now used also by parts
+        shared = true;
+        return parts;
+    }
+
+    /**
+     * Use range of points of source pack, without copy of data.
+     *
+     * @param source source pack
+     * @param first  index of first point
+     * @param last   index after last point
+     */
+    private void shareRange(PackPointsDirect source, int first, int last) {
+        int start = source.getOffset(first);
+        int end = source.getOffset(last);
+
+        // views on part of source buffers, with position at their end
+        ByteBuffer partData = source.data.duplicate();
+        partData.limit(end);
+        partData.position(start);
+        data = partData.slice();
+        data.position(data.limit());
+        ByteBuffer partIndex = source.index.duplicate();
+        partIndex.limit(last * 4);
+        partIndex.position(first * 4);
+        index = partIndex.slice();
+        index.position(index.limit());
+        indexBase = source.indexBase + start;
+        shared = true;
+        count = last - first;
+        dataBoundsValid = false;
+    }
+
+    /**
+     * Get offset of point in data buffer.
+     *
+     * @param position index of point or number of points for end of data
+     * @return offset in bytes
+     */
+    private int getOffset(int position) {
+        return position < count ? index.getInt(position * 4) - indexBase : data.position();
+    }
+
+    /**
+     * Get size of body of serialized pack.
+     *
+     * @return size in bytes
+     * @throws IOException thrown in case of invalid data format
+     */
+    long getBodySize() throws IOException {
+        DataWriterBigEndian dw = new DataWriterBigEndian();
+        writePackInfo(dw);
+        dw.writeInt(count);
+        dw.writeBoolean(false);
+        dw.writeStorable(getBounds());
+        return (long) dw.size() + data.position();
+    }
+
+    /**
+     * Remove all points. Allocated buffers are kept for next usage, if they are not shared
+     * with parts created by {@link #split(int)}.
+     */
+    public void clearWaypoints() {
+        if (shared) {
+            data = ByteBuffer.allocateDirect(1024);
+            index = ByteBuffer.allocateDirect(4 * 1024);
+            shared = false;
+        } else {
+            data.clear();
+            index.clear();
+        }
+        indexBase = 0;
+        count = 0;
+        dataBounds.clear();
+        dataBoundsValid = true;
+    }
+
+    /**
+     * Get bounding box of all points. Box is updated already when point is added.
+     *
+     * @return bounding box of pack, do not modify
+     */
+    @Override
+    public BoundingBox getBounds() {
+        if (!dataBoundsValid) {
+            dataBounds.clear();
+            for (int i = 0; i < count; i++) {
+                Point pt = getWaypoint(i);
+                if (pt.getLocation() != null) {
+                    dataBounds.extend(pt.getLocation());
+                }
+            }
+            dataBoundsValid = true;
+        }
+        return dataBounds;
+    }
+
+    @Override
+    public void invalidateBounds() {
+        dataBoundsValid = false;
+    }
+
+    @Override
+    BoundingBox getBoundsForWrite() {
+        // points are stored only in serialized form, so they cannot be modified in place
+        return getBounds();
+    }
+
+    //*************************************************
+    // STORABLE
+    //*************************************************
+
+    @Override
+    protected void readObject(int version, DataReaderBigEndian dr)
+            throws IOException {
+        // pack parameters
+        readPackInfo(dr);
+
+        // copy serialized points without decoding
+        clearWaypoints();
+        int size = dr.readInt();
+        byte[] buffer = new byte[COPY_CHUNK];
+        for (int i = 0; i < size; i++) {
+            int itemVersion = dr.readInt();
+            int itemSize = dr.readInt();
+            appendIndex();
+            ensureDataCapacity(8 + itemSize);
+            data.putInt(itemVersion);
+            data.putInt(itemSize);
+            for (int copied = 0; copied < itemSize; ) {
+                int length = Math.min(buffer.length, itemSize - copied);
+                dr.readBytes(buffer, 0, length);
+                data.put(buffer, 0, length);
+                copied += length;
+            }
+            count++;
+        }
+        invalidateBounds();
+
+        // V1, apply styles from shared table
+        if (version >= 1 && dr.readBoolean()) {
+            GeoDataStyleRegistry registry = new GeoDataStyleRegistry();
+            registry.read(dr);
+            applyStyles(registry);
+        }
+
+        // V2
+        if (version >= 2) {
+            dataBounds.read(dr);
+            dataBoundsValid = true;
+        }
+    }
+
+    @Override
+    protected void writeObject(DataWriterBigEndian dw) throws IOException {
+        // pack parameters
+        int start = dw.size();
+        writePackInfo(dw);
+
+        // serialized points
+        dw.writeInt(count);
+        byte[] buffer = new byte[COPY_CHUNK];
+        ByteBuffer source = data.duplicate();
+        source.flip();
+        while (source.hasRemaining()) {
+            int length = Math.min(buffer.length, source.remaining());
+            source.get(buffer, 0, length);
+            dw.write(buffer, 0, length);
+        }
+
+        // V1, styles are stored inline
+        dw.writeBoolean(false);
+
+        // V2
+        dw.writeStorable(getBounds());
+        checkSize(dw.size() - start);
+    }
+
+    /**
+     * Write pack directly into output stream, without creating a copy of all points on heap.
+     *
+     * @param dos output stream
+     * @throws IOException thrown in case of invalid data format or problem with stream
+     */
+    @Override
+    public void write(DataOutputStream dos) throws IOException {
+        // serialize pack parameters
+        DataWriterBigEndian dw = new DataWriterBigEndian();
+        writePackInfo(dw);
+        dw.writeInt(count);
+
+        // serialize end of pack
+        DataWriterBigEndian dwEnd = new DataWriterBigEndian(64);
+        dwEnd.writeBoolean(false);
+        dwEnd.writeStorable(getBounds());
+
+        // write header of storable object
+        long size = (long) dw.size() + data.position() + dwEnd.size();
+        checkSize(size);
+        dos.writeInt(getVersion());
+        dos.writeInt((int) size);
+        dw.writeTo(dos);
+
+        // write points
+        byte[] buffer = new byte[COPY_CHUNK];
+        ByteBuffer source = data.duplicate();
+        source.flip();
+        while (source.hasRemaining()) {
+            int length = Math.min(buffer.length, source.remaining());
+            source.get(buffer, 0, length);
+            dos.write(buffer, 0, length);
+        }
+
+        // V1, styles are stored inline, V2
+        dwEnd.writeTo(dos);
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Check if pack with defined size of body may be read by receiving side.
+     *
+     * @param size size of body in bytes
+     * @throws IOException thrown if pack is too big
+     */
+    private void checkSize(long size) throws IOException {
+        if (size > MAX_BODY_SIZE_STREAM) {
+            throw new IOException("Pack '" + getName() + "' is too big: " + size + "B, " +
+                    "max: " + MAX_BODY_SIZE_STREAM + "B, use split()");
+        }
+    }
+
+    /**
+     * Store offset of new point into index.
+     */
+    private void appendIndex() {
+        if (index.remaining() < 4) {
+            ByteBuffer newIndex = ByteBuffer.allocateDirect(Math.max(index.capacity() * 2, 1024));
+            index.flip();
+            newIndex.put(index);
+            index = newIndex;
+        }
+        index.putInt(data.position() + indexBase);
+    }
+
+    /**
+     * Make sure data buffer has enough space for new data.
+     *
+     * @param length number of bytes to add
+     */
+    private void ensureDataCapacity(int length) {
+        if (data.remaining() >= length) {
+            return;
+        }
+
+        // grow buffer
+        long required = (long) data.position() + length;
+        long newCapacity = Math.max(required, (long) data.capacity() * 2);
+        if (required > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Pack is too big, required: " + required + " bytes");
+        }
+        ByteBuffer newData = ByteBuffer.allocateDirect((int) Math.min(newCapacity, Integer.MAX_VALUE));
+        data.flip();
+        newData.put(data);
+        data = newData;
+    }
+
+    /**
+     * Decode point from serialized data.
+     *
+     * @param data      buffer with serialized points
+     * @param index     offsets of points in buffer
+     * @param indexBase value subtracted from offsets in index
+     * @param count     number of points
+     * @param position  index of point
+     * @return decoded point
+     */
+    private static Point decodePoint(ByteBuffer data, ByteBuffer index, int indexBase,
+            int count, int position) {
+        // read serialized point
+        int start = index.getInt(position * 4) - indexBase;
+        int end = position + 1 < count ? index.getInt((position + 1) * 4) - indexBase : data.position();
+        byte[] bytes = new byte[end - start];
+        ByteBuffer source = data.duplicate();
+        source.position(start);
+        source.get(bytes);
+
+        // decode it
+        try {
+            Point pt = new Point();
+            pt.read(bytes);
+            return pt;
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid data of point " + position, e);
+        }
+    }
+
+    /**
+     * Serialize again all points with styles defined by shared table.
+     *
+     * @param registry registry with styles and references of points
+     */
+    private void applyStyles(GeoDataStyleRegistry registry) {
+        if (registry.getReferencesCount() != count) {
+            Logger.logW(TAG, "applyStyles(), " +
+                    "invalid number of references: " + registry.getReferencesCount() + ", points: " + count);
+            return;
+        }
+
+        // move existing points to new buffers
+        ByteBuffer dataOld = data;
+        ByteBuffer indexOld = index;
+        int indexBaseOld = indexBase;
+        int countOld = count;
+        data = ByteBuffer.allocateDirect(Math.max(dataOld.capacity(), 1024));
+        index = ByteBuffer.allocateDirect(Math.max(indexOld.capacity(), 1024));
+        indexBase = 0;
+        shared = false;
+        count = 0;
+        for (int i = 0; i < countOld; i++) {
+            Point pt = decodePoint(dataOld, indexOld, indexBaseOld, countOld, i);
+            registry.applyReferences(pt, i);
+            addWaypoint(pt);
+        }
+    }
+
+    /**
+     * Read-only list of points decoded on demand.
+     */
+    private class PointsView extends AbstractList<Point> implements RandomAccess {
+
+        @Override
+        public Point get(int position) {
+            return getWaypoint(position);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package locus.api.android.objects;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import locus.api.android.utils.DaemonThreadFactory;
+import locus.api.objects.Storable;
+import locus.api.objects.extra.Point;
+import locus.api.utils.DataWriterBigEndian;
+import locus.api.utils.Utils;
+
+/**
+ * Writer of list of {@link PackPoints} into file, that serialize points on more threads.
+ * <br><br>
+ * Points of every pack are split into chunks, which are serialized in parallel into own
+ * buffers. Buffers are then written in original order over {@link FileChannel}, so result
+ * is byte-identical to sequential
+ * {@link Storable#writeList(List, java.io.DataOutputStream)}. Points of
+ * {@link PackPointsDirect} are already serialized, so their buffer is written directly.
+ * Packs with enabled {@link PackPoints#setStyleTableEnabled(boolean) table of styles} are
+ * serialized as a whole in single task, because shared table depends on order of points.
+ * Only few chunks are serialized in advance, so memory needed for serialization does not
+ * depend on number of points. Size of pack is written into its header after all points.
+ * <br><br>
+ * Every written pack has to fit into {@link Storable#MAX_BODY_SIZE_STREAM}, which is limit
+ * of receiving side. Bigger {@link PackPointsDirect} packs are {@link PackPointsDirect#split(int)
+ * split} into more packs, for other packs is thrown an exception.
+ */
+public class PackPointsWriter {
+
+    // number of points serialized in single task
+    private static final int CHUNK_SIZE = 2048;
+    // minimal number of points, where parallel serialization make sense
+    private static final int MIN_POINTS_PARALLEL = 2 * CHUNK_SIZE;
+    // maximal number of chunks serialized in advance, per thread
+    private static final int TASKS_PER_THREAD = 2;
+
+    // shared executor for parallel serialization, created on first use
+    private static ExecutorService sExecutor;
+
+    /**
+     * Write packs into file.
+     *
+     * @param packs packs to write
+     * @param file  target file, existing content is overwritten
+     * @throws IOException thrown in case of problem with serialization or writing
+     */
+    public static void writeToFile(List<PackPoints> packs, File file) throws IOException {
+        // count points for parallel serialization
+        int points = 0;
+        for (int i = 0, m = packs.size(); i < m; i++) {
+            PackPoints pack = packs.get(i);
+            if (!(pack instanceof PackPointsDirect)) {
+                points += pack.getWaypoints().size();
+            }
+        }
+
+        // serialize in parallel only if it make sense
+        if (Runtime.getRuntime().availableProcessors() <= 1 || points < MIN_POINTS_PARALLEL) {
+            writeToFile(packs, file, null);
+        } else {
+            writeToFile(packs, file, getExecutor());
+        }
+    }
+
+    /**
+     * Get executor shared by all writes. Its threads are daemons, so idle pool never
+     * keeps process alive.
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    new DaemonThreadFactory("PackPointsWriter"));
+        }
+        return sExecutor;
+    }
+
+    /**
+     * Write packs into file.
+     *
+     * @param packs    packs to write
+     * @param file     target file, existing content is overwritten
+     * @param executor executor used for serialization or 'null' to serialize on current thread
+     * @throws IOException thrown in case of problem with serialization or writing
+     */
+    public static void writeToFile(List<PackPoints> packs, File file, ExecutorService executor)
+            throws IOException {
+        FileOutputStream fos = null;
+        Output output = null;
+        boolean done = false;
+        try {
+            fos = new FileOutputStream(file, false);
+            FileChannel channel = fos.getChannel();
+            output = new Output(channel, executor);
+
+            // number of packs, written at the end, because big packs may be split
+            writeFully(channel, new ByteBuffer[]{ByteBuffer.allocate(4)});
+
+            // serialize packs in original order
+            int count = 0;
+            for (int i = 0, m = packs.size(); i < m; i++) {
+                PackPoints pack = packs.get(i);
+                if (pack instanceof PackPointsDirect) {
+                    List<PackPointsDirect> parts = ((PackPointsDirect) pack)
+                            .split(Storable.MAX_BODY_SIZE_STREAM);
+                    for (int j = 0, n = parts.size(); j < n; j++) {
+                        addPack(output, parts.get(j));
+                    }
+                    count += parts.size();
+                } else {
+                    addPack(output, pack);
+                    count++;
+                }
+            }
+            output.flush();
+
+            // finally write number of packs
+            writeFully(channel, (ByteBuffer) ByteBuffer.allocate(4).putInt(count).flip(), 0L);
+            done = true;
+        } finally {
+            // executor may be shared, so stop only own tasks that will not be written
+            if (!done && output != null) {
+                output.cancel();
+            }
+            Utils.closeStream(fos);
+        }
+    }
+
+    /**
+     * Add serialization of single pack to output.
+     *
+     * @param output output of serialized data
+     * @param pack   pack to serialize
+     * @throws IOException thrown in case of problem with serialization or writing
+     */
+    private static void addPack(Output output, final PackPoints pack) throws IOException {
+        // serialize whole pack with table of styles in single task
+        if (pack.isStyleTableEnabled() && !(pack instanceof PackPointsDirect)) {
+            output.add(new Segment(Segment.PACK_COMPLETE, pack, new Callable<byte[]>() {
+
+                @Override
+                public byte[] call() throws IOException {
+                    DataWriterBigEndian dw = new DataWriterBigEndian(256 * pack.getWaypoints().size());
+                    pack.write(dw);
+                    return dw.toByteArray();
+                }
+            }));
+            return;
+        }
+
+        // header of storable object with size written after points and parameters of pack
+        DataWriterBigEndian dw = new DataWriterBigEndian();
+        dw.writeInt(pack.getVersion());
+        dw.writeInt(0);
+        pack.writePackInfo(dw);
+        if (pack instanceof PackPointsDirect) {
+            dw.writeInt(((PackPointsDirect) pack).getWaypointsCount());
+            output.add(new Segment(Segment.PACK_START, pack, ByteBuffer.wrap(dw.toByteArray())));
+
+            // points are already serialized
+            output.add(new Segment(Segment.DATA, pack, ((PackPointsDirect) pack).getDataBuffer()));
+        } else {
+            List<Point> points = pack.getWaypoints();
+            dw.writeInt(points.size());
+            output.add(new Segment(Segment.PACK_START, pack, ByteBuffer.wrap(dw.toByteArray())));
+
+            // serialize chunks of points
+            for (int i = 0, m = points.size(); i < m; i += CHUNK_SIZE) {
+                output.add(new Segment(Segment.DATA, pack,
+                        new ChunkTask(points, i, Math.min(i + CHUNK_SIZE, m))));
+            }
+        }
+        output.add(new Segment(Segment.PACK_END, pack, ByteBuffer.wrap(getPackEnd(pack))));
+    }
+
+    /**
+     * Write all buffers into channel.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer[] buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    /**
+     * Write buffer into channel at defined position. Current position of channel is not changed.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Output, that writes serialized segments in original order. Number of serialization tasks
+     * running or waiting for write is limited, so only small part of all packs is kept in memory.
+     */
+    private static class Output {
+
+        // target channel
+        private final FileChannel channel;
+        // executor used for serialization or 'null' to serialize on current thread
+        private final ExecutorService executor;
+        // maximal number of tasks running or waiting for write
+        private final int maxTasks;
+        // segments waiting for write
+        private final ArrayDeque<Segment> queue;
+        // number of tasks in queue
+        private int tasks;
+        // position of header of currently written pack
+        private long packStart;
+
+        Output(FileChannel channel, ExecutorService executor) {
+            this.channel = channel;
+            this.executor = executor;
+            this.maxTasks = executor != null ?
+                    TASKS_PER_THREAD * Runtime.getRuntime().availableProcessors() : 1;
+            this.queue = new ArrayDeque<>();
+        }
+
+        /**
+         * Add segment after all previous segments. If too many tasks is not written yet,
+         * method waits on write of the oldest ones.
+         */
+        void add(Segment segment) throws IOException {
+            if (segment.task != null) {
+                while (tasks >= maxTasks) {
+                    writeNext();
+                }
+                segment.start(executor);
+                tasks++;
+            }
+            queue.add(segment);
+        }
+
+        /**
+         * Write all remaining segments.
+         */
+        void flush() throws IOException {
+            while (!queue.isEmpty()) {
+                writeNext();
+            }
+        }
+
+        /**
+         * Cancel tasks of all segments, that are not written yet.
+         */
+        void cancel() {
+            for (Segment segment : queue) {
+                segment.cancel();
+            }
+            queue.clear();
+            tasks = 0;
+        }
+
+        /**
+         * Write the oldest segment, method waits on its serialization.
+         */
+        private void writeNext() throws IOException {
+            Segment segment = queue.poll();
+            if (segment.task != null) {
+                tasks--;
+            }
+            ByteBuffer buffer = segment.getBuffer();
+            switch (segment.type) {
+                case Segment.PACK_COMPLETE:
+                    checkSize(segment.pack, buffer.remaining() - 8);
+                    writeFully(channel, new ByteBuffer[]{buffer});
+                    break;
+                case Segment.PACK_START:
+                    packStart = channel.position();
+                    writeFully(channel, new ByteBuffer[]{buffer});
+                    break;
+                case Segment.PACK_END:
+                    // complete pack and write its size into header
+                    writeFully(channel, new ByteBuffer[]{buffer});
+                    long size = channel.position() - packStart - 8;
+                    checkSize(segment.pack, size);
+                    writeFully(channel, (ByteBuffer) ByteBuffer.allocate(4).putInt((int) size).flip(),
+                            packStart + 4);
+                    break;
+                default:
+                    writeFully(channel, new ByteBuffer[]{buffer});
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Part of serialized output, defined by data or by task that serialize them.
+     */
+    private static class Segment {
+
+        // header of pack, followed by data and end of pack
+        static final int PACK_START = 0;
+        // serialized points
+        static final int DATA = 1;
+        // end of pack
+        static final int PACK_END = 2;
+        // whole serialized pack including header
+        static final int PACK_COMPLETE = 3;
+
+        // type of segment
+        final int type;
+        // pack segment belongs to
+        final PackPoints pack;
+        // already prepared data
+        private final ByteBuffer data;
+        // task that serialize data
+        final Callable<byte[]> task;
+        // result of task
+        private Future<byte[]> result;
+
+        Segment(int type, PackPoints pack, ByteBuffer data) {
+            this.type = type;
+            this.pack = pack;
+            this.data = data;
+            this.task = null;
+        }
+
+        Segment(int type, PackPoints pack, Callable<byte[]> task) {
+            this.type = type;
+            this.pack = pack;
+            this.data = null;
+            this.task = task;
+        }
+
+        /**
+         * Start serialization task.
+         */
+        void start(ExecutorService executor) throws IOException {
+            result = executor != null ? executor.submit(task) : new DoneFuture(call(task));
+        }
+
+        /**
+         * Cancel serialization task, if it is still waiting or running.
+         */
+        void cancel() {
+            if (result != null) {
+                result.cancel(true);
+            }
+        }
+
+        /**
+         * Get serialized data. Method waits on end of serialization task.
+         */
+        ByteBuffer getBuffer() throws IOException {
+            return data != null ? data : ByteBuffer.wrap(get(result));
+        }
+    }
+
+    /**
+     * Serialization of chunk of points.
+     */
+    private static class ChunkTask implements Callable<byte[]> {
+
+        private final List<Point> points;
+        private final int from;
+        private final int to;
+
+        ChunkTask(List<Point> points, int from, int to) {
+            this.points = points;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+            DataWriterBigEndian dw = new DataWriterBigEndian(256 * (to - from));
+            for (int i = from; i < to; i++) {
+                points.get(i).write(dw);
+            }
+            return dw.toByteArray();
+        }
+    }
+
+    /**
+     * Already computed result of task executed on current thread.
+     */
+    private static class DoneFuture implements Future<byte[]> {
+
+        private final byte[] result;
+
+        DoneFuture(byte[] result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return true;
+        }
+
+        @Override
+        public byte[] get() {
+            return result;
+        }
+
+        @Override
+        public byte[] get(long timeout, TimeUnit unit) {
+            return result;
+        }
+    }
+
+    // TOOLS
+
+    /**
+     * Check if serialized pack may be read by receiving side.
+     *
+     * @param pack pack to check
+     * @param size size of body of serialized pack
+     * @throws IOException thrown if pack is too big
+     */
+    private static void checkSize(PackPoints pack, long size) throws IOException {
+        if (size > Storable.MAX_BODY_SIZE_STREAM) {
+            throw new IOException("Pack '" + pack.getName() + "' is too big: " + size + "B, " +
+                    "max: " + Storable.MAX_BODY_SIZE_STREAM + "B, split points into more packs");
+        }
+    }
+
+    /**
+     * Serialize end of pack (flag of inline styles and bounding box) that follows points.
+     */
+    private static byte[] getPackEnd(PackPoints pack) throws IOException {
+        DataWriterBigEndian dw = new DataWriterBigEndian(64);
+        dw.writeBoolean(false);
+        dw.writeStorable(pack.getBoundsForWrite());
+        return dw.toByteArray();
+    }
+
+    private static byte[] call(Callable<byte[]> task) throws IOException {
+        try {
+            return task.call();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static byte[] get(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Serialization interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause() != null ? e.getCause().getMessage() : e.getMessage(), e);
+        }
+    }
+}
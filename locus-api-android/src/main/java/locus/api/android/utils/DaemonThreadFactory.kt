@@ -0,0 +1,24 @@
+package locus.api.android.utils
+
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Factory of daemon threads for executors created internally by API helpers, so their idle
+ * threads never keep process alive.
+ */
+class DaemonThreadFactory(
+        /**
+         * Prefix of names of created threads.
+         */
+        private val name: String) : ThreadFactory {
+
+    // counter of created threads
+    private val counter = AtomicInteger()
+
+    override fun newThread(r: Runnable): Thread {
+        val thread = Thread(r, name + "-" + counter.incrementAndGet())
+        thread.isDaemon = true
+        return thread
+    }
+}
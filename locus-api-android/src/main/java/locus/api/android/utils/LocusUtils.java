@@ -1143,7 +1143,20 @@ public class LocusUtils {
      * @return new Locus object
      */
     public static Location convertToL(android.location.Location oldLoc) {
-        Location loc = new Location();
+        return convertToL(oldLoc, new Location());
+    }
+
+    /**
+     * Convert a Location object from Android to Locus format into existing object. All
+     * previous values of target object are removed. Useful together with
+     * {@link locus.api.objects.utils.LocationPool} for frequent conversions.
+     *
+     * @param oldLoc location in Android object
+     * @param loc    target Locus object
+     * @return target Locus object
+     */
+    public static Location convertToL(android.location.Location oldLoc, Location loc) {
+        loc.reset();
         loc.setProvider(oldLoc.getProvider());
         loc.setLongitude(oldLoc.getLongitude());
         loc.setLatitude(oldLoc.getLatitude());
@@ -28,6 +28,9 @@ import java.util.ArrayList;
  * as needed.
  * <p>
  * This is copy of MatrixCursor class from API25 that already fix problem with 'blob' objects
+ * <p>
+ * For large results with known types of columns, use {@link TypedMatrixCursor} that stores
+ * values without boxing.
  */
 public class MatrixCursor extends AbstractCursor {
 
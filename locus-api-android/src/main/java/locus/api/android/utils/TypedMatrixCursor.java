@@ -0,0 +1,556 @@
+package locus.api.android.utils;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.CursorIndexOutOfBoundsException;
+
+/**
+ * A mutable cursor with columnar storage of values defined by schema. Every column
+ * keeps its values in array of declared type, so numbers are stored without boxing:
+ * <ul>
+ * <li>{@link Cursor#FIELD_TYPE_INTEGER} in {@code long[]}</li>
+ * <li>{@link Cursor#FIELD_TYPE_FLOAT} in {@code double[]}</li>
+ * <li>{@link Cursor#FIELD_TYPE_STRING} in {@code String[]}</li>
+ * <li>{@link Cursor#FIELD_TYPE_BLOB} in {@code byte[][]}</li>
+ * </ul>
+ * Use {@link #newRow()} to add rows. Values that are not defined are left as {@code null}.
+ * Automatically expands internal capacity as needed.
+ * <br><br>
+ * Cursor is a replacement of {@link MatrixCursor} for providers that return large number
+ * of rows with numeric values.
+ */
+public class TypedMatrixCursor extends AbstractCursor {
+
+    // names of columns
+    private final String[] mColumnNames;
+    // types of columns
+    private final int[] mColumnTypes;
+    // number of columns
+    private final int mColumnCount;
+
+    // values of integer columns
+    private final long[][] mLongs;
+    // values of float columns
+    private final double[][] mDoubles;
+    // values of string and blob columns
+    private final Object[][] mObjects;
+    // bitsets of defined (not null) values for every column
+    private final long[][] mDefined;
+
+    // current capacity in rows
+    private int mCapacity;
+    // number of rows
+    private int mRowCount;
+
+    /**
+     * Constructs a new cursor with the given initial capacity.
+     *
+     * @param columnNames     names of the columns, the ordering of which
+     *                        determines column ordering elsewhere in this cursor
+     * @param columnTypes     types of columns, one of {@link Cursor#FIELD_TYPE_INTEGER},
+     *                        {@link Cursor#FIELD_TYPE_FLOAT}, {@link Cursor#FIELD_TYPE_STRING}
+     *                        or {@link Cursor#FIELD_TYPE_BLOB}
+     * @param initialCapacity in rows
+     */
+    public TypedMatrixCursor(String[] columnNames, int[] columnTypes, int initialCapacity) {
+        if (columnNames.length != columnTypes.length) {
+            throw new IllegalArgumentException("columnNames.length = "
+                    + columnNames.length + ", columnTypes.length = "
+                    + columnTypes.length);
+        }
+        this.mColumnNames = columnNames;
+        this.mColumnTypes = columnTypes.clone();
+        this.mColumnCount = columnNames.length;
+        if (initialCapacity < 1) {
+            initialCapacity = 1;
+        }
+        this.mCapacity = initialCapacity;
+
+        // prepare storage
+        mLongs = new long[mColumnCount][];
+        mDoubles = new double[mColumnCount][];
+        mObjects = new Object[mColumnCount][];
+        mDefined = new long[mColumnCount][];
+        for (int i = 0; i < mColumnCount; i++) {
+            switch (mColumnTypes[i]) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    mLongs[i] = new long[initialCapacity];
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    mDoubles[i] = new double[initialCapacity];
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    mObjects[i] = new String[initialCapacity];
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    mObjects[i] = new byte[initialCapacity][];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported type: "
+                            + mColumnTypes[i] + ", column: " + columnNames[i]);
+            }
+            mDefined[i] = new long[(initialCapacity + 63) >> 6];
+        }
+    }
+
+    /**
+     * Constructs a new cursor.
+     *
+     * @param columnNames names of the columns, the ordering of which
+     *                    determines column ordering elsewhere in this cursor
+     * @param columnTypes types of columns
+     */
+    public TypedMatrixCursor(String[] columnNames, int[] columnTypes) {
+        this(columnNames, columnTypes, 16);
+    }
+
+    //*************************************************
+    // ADD DATA
+    //*************************************************
+
+    /**
+     * Adds a new row to the end and returns a builder for that row. Not safe
+     * for concurrent use.
+     *
+     * @return builder which can be used to set the column values for the new
+     * row
+     */
+    public RowBuilder newRow() {
+        int row = mRowCount;
+        ensureCapacity(row + 1);
+        mRowCount++;
+        return new RowBuilder(row);
+    }
+
+    /**
+     * Adds a new row to the end with the given column values. Values are converted
+     * to types of columns. Not safe for concurrent use.
+     *
+     * @param columnValues in the same order as the the column names specified
+     *                     at cursor construction time
+     * @throws IllegalArgumentException if {@code columnValues.length !=
+     *                                  columnNames.length}
+     */
+    public void addRow(Object[] columnValues) {
+        if (columnValues.length != mColumnCount) {
+            throw new IllegalArgumentException("columnNames.length = "
+                    + mColumnCount + ", columnValues.length = "
+                    + columnValues.length);
+        }
+
+        int row = mRowCount;
+        ensureCapacity(row + 1);
+        for (int i = 0; i < mColumnCount; i++) {
+            setValue(row, i, columnValues[i]);
+        }
+        mRowCount++;
+    }
+
+    /**
+     * Ensures that this cursor has enough capacity.
+     */
+    private void ensureCapacity(int rows) {
+        if (rows <= mCapacity) {
+            return;
+        }
+        int newCapacity = mCapacity * 2;
+        if (newCapacity < rows) {
+            newCapacity = rows;
+        }
+        for (int i = 0; i < mColumnCount; i++) {
+            switch (mColumnTypes[i]) {
+                case Cursor.FIELD_TYPE_INTEGER: {
+                    long[] values = new long[newCapacity];
+                    System.arraycopy(mLongs[i], 0, values, 0, mRowCount);
+                    mLongs[i] = values;
+                    break;
+                }
+                case Cursor.FIELD_TYPE_FLOAT: {
+                    double[] values = new double[newCapacity];
+                    System.arraycopy(mDoubles[i], 0, values, 0, mRowCount);
+                    mDoubles[i] = values;
+                    break;
+                }
+                case Cursor.FIELD_TYPE_STRING: {
+                    String[] values = new String[newCapacity];
+                    System.arraycopy(mObjects[i], 0, values, 0, mRowCount);
+                    mObjects[i] = values;
+                    break;
+                }
+                default: {
+                    byte[][] values = new byte[newCapacity][];
+                    System.arraycopy(mObjects[i], 0, values, 0, mRowCount);
+                    mObjects[i] = values;
+                    break;
+                }
+            }
+            long[] defined = new long[(newCapacity + 63) >> 6];
+            System.arraycopy(mDefined[i], 0, defined, 0, mDefined[i].length);
+            mDefined[i] = defined;
+        }
+        mCapacity = newCapacity;
+    }
+
+    /**
+     * Set 'long' value to cell.
+     */
+    private void setLong(int row, int column, long value) {
+        switch (mColumnTypes[column]) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                mLongs[column][row] = value;
+                break;
+            case Cursor.FIELD_TYPE_FLOAT:
+                mDoubles[column][row] = value;
+                break;
+            case Cursor.FIELD_TYPE_STRING:
+                mObjects[column][row] = Long.toString(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unable to store number in blob column: "
+                        + mColumnNames[column]);
+        }
+        mDefined[column][row >> 6] |= 1L << row;
+    }
+
+    /**
+     * Set 'double' value to cell.
+     */
+    private void setDouble(int row, int column, double value) {
+        switch (mColumnTypes[column]) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                mLongs[column][row] = (long) value;
+                break;
+            case Cursor.FIELD_TYPE_FLOAT:
+                mDoubles[column][row] = value;
+                break;
+            case Cursor.FIELD_TYPE_STRING:
+                mObjects[column][row] = Double.toString(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unable to store number in blob column: "
+                        + mColumnNames[column]);
+        }
+        mDefined[column][row >> 6] |= 1L << row;
+    }
+
+    /**
+     * Set any value to cell. Value is converted to type of column.
+     */
+    private void setValue(int row, int column, Object value) {
+        if (value == null) {
+            clearValue(row, column);
+            return;
+        }
+
+        // store value
+        switch (mColumnTypes[column]) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                if (value instanceof Number) {
+                    setLong(row, column, ((Number) value).longValue());
+                } else if (value instanceof Boolean) {
+                    setLong(row, column, (Boolean) value ? 1L : 0L);
+                } else {
+                    setLong(row, column, Long.parseLong(value.toString()));
+                }
+                break;
+            case Cursor.FIELD_TYPE_FLOAT:
+                if (value instanceof Number) {
+                    setDouble(row, column, ((Number) value).doubleValue());
+                } else {
+                    setDouble(row, column, Double.parseDouble(value.toString()));
+                }
+                break;
+            case Cursor.FIELD_TYPE_STRING:
+                mObjects[column][row] = value.toString();
+                mDefined[column][row >> 6] |= 1L << row;
+                break;
+            default:
+                if (!(value instanceof byte[])) {
+                    throw new IllegalArgumentException("Unable to store "
+                            + value.getClass().getSimpleName() + " in blob column: "
+                            + mColumnNames[column]);
+                }
+                mObjects[column][row] = value;
+                mDefined[column][row >> 6] |= 1L << row;
+                break;
+        }
+    }
+
+    /**
+     * Set cell to 'null'.
+     */
+    private void clearValue(int row, int column) {
+        if (mObjects[column] != null) {
+            mObjects[column][row] = null;
+        }
+        mDefined[column][row >> 6] &= ~(1L << row);
+    }
+
+    /**
+     * Builds a row of values using either of these approaches:
+     * <ul>
+     * <li>Values can be added with explicit column ordering using
+     * {@link #add(long)}, {@link #add(double)}, {@link #add(String)}, {@link #add(byte[])}
+     * or {@link #add(Object)}, which starts from the left-most column and adds one
+     * column value at a time. This follows the same ordering as the column
+     * names specified at cursor construction time.
+     * <li>Column and value pairs can be offered for possible inclusion using
+     * {@link #add(String, Object)}. If the cursor includes the given column,
+     * the value will be set for that column, otherwise the value is ignored.
+     * This approach is useful when matching data to a custom projection.
+     * </ul>
+     * Undefined values are left as {@code null}.
+     */
+    public class RowBuilder {
+
+        private final int row;
+        private int column;
+
+        RowBuilder(int row) {
+            this.row = row;
+            this.column = 0;
+        }
+
+        /**
+         * Get index of next column and move to following one.
+         */
+        private int nextColumn() {
+            if (column == mColumnCount) {
+                throw new CursorIndexOutOfBoundsException(
+                        "No more columns left.");
+            }
+            return column++;
+        }
+
+        /**
+         * Sets the next column value in this row without boxing.
+         *
+         * @return this builder to support chaining
+         * @throws CursorIndexOutOfBoundsException if you try to add too many
+         *                                         values
+         */
+        public RowBuilder add(long value) {
+            setLong(row, nextColumn(), value);
+            return this;
+        }
+
+        /**
+         * Sets the next column value in this row without boxing.
+         *
+         * @return this builder to support chaining
+         * @throws CursorIndexOutOfBoundsException if you try to add too many
+         *                                         values
+         */
+        public RowBuilder add(double value) {
+            setDouble(row, nextColumn(), value);
+            return this;
+        }
+
+        /**
+         * Sets the next column value in this row.
+         *
+         * @return this builder to support chaining
+         * @throws CursorIndexOutOfBoundsException if you try to add too many
+         *                                         values
+         */
+        public RowBuilder add(String value) {
+            setValue(row, nextColumn(), value);
+            return this;
+        }
+
+        /**
+         * Sets the next column value in this row.
+         *
+         * @return this builder to support chaining
+         * @throws CursorIndexOutOfBoundsException if you try to add too many
+         *                                         values
+         */
+        public RowBuilder add(byte[] value) {
+            setValue(row, nextColumn(), value);
+            return this;
+        }
+
+        /**
+         * Sets the next column value in this row. Value is converted to type of column.
+         *
+         * @return this builder to support chaining
+         * @throws CursorIndexOutOfBoundsException if you try to add too many
+         *                                         values
+         */
+        public RowBuilder add(Object value) {
+            setValue(row, nextColumn(), value);
+            return this;
+        }
+
+        /**
+         * Offer value for possible inclusion if this cursor defines the given
+         * column. Columns not defined by the cursor are silently ignored.
+         *
+         * @return this builder to support chaining
+         */
+        public RowBuilder add(String columnName, Object value) {
+            for (int i = 0; i < mColumnCount; i++) {
+                if (columnName.equals(mColumnNames[i])) {
+                    setValue(row, i, value);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Offer value for possible inclusion if this cursor defines the given
+         * column, without boxing.
+         *
+         * @return this builder to support chaining
+         */
+        public RowBuilder add(String columnName, long value) {
+            for (int i = 0; i < mColumnCount; i++) {
+                if (columnName.equals(mColumnNames[i])) {
+                    setLong(row, i, value);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Offer value for possible inclusion if this cursor defines the given
+         * column, without boxing.
+         *
+         * @return this builder to support chaining
+         */
+        public RowBuilder add(String columnName, double value) {
+            for (int i = 0; i < mColumnCount; i++) {
+                if (columnName.equals(mColumnNames[i])) {
+                    setDouble(row, i, value);
+                }
+            }
+            return this;
+        }
+    }
+
+    //*************************************************
+    // CURSOR
+    //*************************************************
+
+    /**
+     * Check validity of column and current position and return 'true' if cell contains value.
+     */
+    private boolean isDefined(int column) {
+        if (column < 0 || column >= mColumnCount) {
+            throw new CursorIndexOutOfBoundsException("Requested column: "
+                    + column + ", # of columns: " + mColumnCount);
+        }
+        if (mPos < 0) {
+            throw new CursorIndexOutOfBoundsException("Before first row.");
+        }
+        if (mPos >= mRowCount) {
+            throw new CursorIndexOutOfBoundsException("After last row.");
+        }
+        return (mDefined[column][mPos >> 6] & (1L << mPos)) != 0L;
+    }
+
+    @Override
+    public int getCount() {
+        return mRowCount;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mColumnNames;
+    }
+
+    @Override
+    public String getString(int column) {
+        if (!isDefined(column)) {
+            return null;
+        }
+        switch (mColumnTypes[column]) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return Long.toString(mLongs[column][mPos]);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return Double.toString(mDoubles[column][mPos]);
+            case Cursor.FIELD_TYPE_STRING:
+                return (String) mObjects[column][mPos];
+            default:
+                throw new IllegalStateException("Unable to convert blob to string, column: "
+                        + mColumnNames[column]);
+        }
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        if (!isDefined(column)) {
+            return 0L;
+        }
+        switch (mColumnTypes[column]) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return mLongs[column][mPos];
+            case Cursor.FIELD_TYPE_FLOAT:
+                return (long) mDoubles[column][mPos];
+            case Cursor.FIELD_TYPE_STRING:
+                return Long.parseLong((String) mObjects[column][mPos]);
+            default:
+                throw new IllegalStateException("Unable to convert blob to number, column: "
+                        + mColumnNames[column]);
+        }
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        if (!isDefined(column)) {
+            return 0.0;
+        }
+        switch (mColumnTypes[column]) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return mLongs[column][mPos];
+            case Cursor.FIELD_TYPE_FLOAT:
+                return mDoubles[column][mPos];
+            case Cursor.FIELD_TYPE_STRING:
+                return Double.parseDouble((String) mObjects[column][mPos]);
+            default:
+                throw new IllegalStateException("Unable to convert blob to number, column: "
+                        + mColumnNames[column]);
+        }
+    }
+
+    @Override
+    public byte[] getBlob(int column) {
+        if (!isDefined(column)) {
+            return null;
+        }
+        if (mColumnTypes[column] != Cursor.FIELD_TYPE_BLOB) {
+            throw new IllegalStateException("Column is not a blob: "
+                    + mColumnNames[column]);
+        }
+        return (byte[]) mObjects[column][mPos];
+    }
+
+    /**
+     * Returns data type of the given column. Type is defined by schema of cursor,
+     * or {@link Cursor#FIELD_TYPE_NULL} for undefined values.
+     */
+    @Override
+    public int getType(int column) {
+        return isDefined(column) ? mColumnTypes[column] : Cursor.FIELD_TYPE_NULL;
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return !isDefined(column);
+    }
+}
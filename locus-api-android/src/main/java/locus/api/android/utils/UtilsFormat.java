@@ -2,9 +2,10 @@ package locus.api.android.utils;
 
 import android.text.Html;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
-import java.util.Locale;
 
 /**
  * Class that serve formatting units to defined formats.
@@ -104,13 +105,28 @@ public class UtilsFormat {
      * @return formatted value
      */
     public static String formatAltitude(int format, double altitude, int accuracy, boolean addUnits) {
-        double value = formatAltitudeValue(format, altitude);
-        String res = formatDouble(value, accuracy);
+        StringBuilder sb = TEXT_BUILDER.get();
+        sb.setLength(0);
+        return formatAltitude(sb, format, altitude, accuracy, addUnits).toString();
+    }
+
+    /**
+     * Format altitude value and append it to builder.
+     *
+     * @param sb       target builder
+     * @param format   format of altitude
+     * @param altitude altitude [in metres]
+     * @param accuracy number of decimal places
+     * @param addUnits {@code true} to add units
+     * @return target builder
+     */
+    public static StringBuilder formatAltitude(StringBuilder sb, int format, double altitude,
+            int accuracy, boolean addUnits) {
+        formatDouble(sb, formatAltitudeValue(format, altitude), accuracy, 1, '.');
         if (addUnits) {
-            return res + " " + formatAltitudeUnits(format);
-        } else {
-            return res;
+            sb.append(' ').append(formatAltitudeUnits(format));
         }
+        return sb;
     }
 
     /**
@@ -383,172 +399,106 @@ public class UtilsFormat {
      */
     public static String formatDistance(int unitType, double dist,
             UnitsPrecision precision, boolean addUnits) {
-        String value = null;
+        StringBuilder sb = TEXT_BUILDER.get();
+        sb.setLength(0);
+        return formatDistance(sb, unitType, dist, precision, addUnits).toString();
+    }
+
+    /**
+     * Format distance values by various parameters and append result to builder.
+     *
+     * @param sb        target builder
+     * @param unitType  type of unit
+     * @param dist      distance value
+     * @param precision required precision
+     * @param addUnits  <code>true</code> to add units to result
+     * @return target builder
+     */
+    public static StringBuilder formatDistance(StringBuilder sb, int unitType, double dist,
+            UnitsPrecision precision, boolean addUnits) {
+        boolean high = precision == UnitsPrecision.HIGH;
         switch (unitType) {
             case VALUE_UNITS_DISTANCE_ME_M:
-                switch (precision) {
-                    case LOW:
-                    case MEDIUM:
-                        value = formatDouble(dist, 0);
-                        break;
-                    case HIGH:
-                        value = formatDouble(dist, 1);
-                        break;
-                }
+                formatDouble(sb, dist, high ? 1 : 0, 1, '.');
                 break;
             case VALUE_UNITS_DISTANCE_ME_MKM:
-                switch (precision) {
-                    case LOW:
-                    case MEDIUM:
-                        if (dist >= UNIT_KILOMETER_TO_METER) {
-                            double km = dist / UNIT_KILOMETER_TO_METER;
-                            if (km >= 100.0) {
-                                value = formatDouble(km, 0);
-                            } else {
-                                value = formatDouble(km, 1);
-                            }
-                        } else {
-                            value = formatDistance(dist, 0);
-                        }
-                        break;
-                    case HIGH:
-                        if (dist >= UNIT_KILOMETER_TO_METER) {
-                            double km = dist / UNIT_KILOMETER_TO_METER;
-                            if (km >= 100.0) {
-                                value = formatDouble(km, 1);
-                            } else {
-                                value = formatDouble(km, 2);
-                            }
-                        } else {
-                            value = formatDouble(dist, 1);
-                        }
-                        break;
+                if (dist >= UNIT_KILOMETER_TO_METER) {
+                    double km = dist / UNIT_KILOMETER_TO_METER;
+                    formatDouble(sb, km, (km >= 100.0 ? 0 : 1) + (high ? 1 : 0), 1, '.');
+                } else if (high) {
+                    formatDouble(sb, dist, 1, 1, '.');
+                } else {
+                    formatDistance(sb, dist, 0);
                 }
                 break;
             case VALUE_UNITS_DISTANCE_IM_F:
-                switch (precision) {
-                    case LOW:
-                    case MEDIUM:
-                        value = formatDistance(dist * UNIT_METER_TO_FEET, 0);
-                        break;
-                    case HIGH:
-                        value = formatDistance(dist * UNIT_METER_TO_FEET, 1);
-                        break;
-                }
+                formatDistance(sb, dist * UNIT_METER_TO_FEET, high ? 1 : 0);
                 break;
             case VALUE_UNITS_DISTANCE_IM_FM:
-                value = formatDistanceImperial(dist, dist * UNIT_METER_TO_FEET, precision);
+                formatDistanceImperial(sb, dist, dist * UNIT_METER_TO_FEET, high);
                 break;
             case VALUE_UNITS_DISTANCE_IM_Y:
-                switch (precision) {
-                    case LOW:
-                    case MEDIUM:
-                        value = formatDistance(dist * 1.0936, 0);
-                        break;
-                    case HIGH:
-                        value = formatDistance(dist * 1.0936, 1);
-                        break;
-                }
+                formatDistance(sb, dist * 1.0936, high ? 1 : 0);
                 break;
             case VALUE_UNITS_DISTANCE_IM_YM:
-                value = formatDistanceImperial(dist, dist * 1.0936, precision);
+                formatDistanceImperial(sb, dist, dist * 1.0936, high);
                 break;
             case VALUE_UNITS_DISTANCE_NA_MNMI:
-                switch (precision) {
-                    case LOW:
-                    case MEDIUM:
-                        if (dist > UNIT_NMILE_TO_METER) {
-                            double nmi = dist / UNIT_NMILE_TO_METER;
-                            if (nmi >= 100) {
-                                value = formatDouble(nmi, 0);
-                            } else {
-                                value = formatDouble(nmi, 1);
-                            }
-                        } else {
-                            value = formatDistance(dist, 0);
-                        }
-                        break;
-                    case HIGH:
-                        if (dist > UNIT_NMILE_TO_METER) {
-                            double nmi = dist / UNIT_NMILE_TO_METER;
-                            if (nmi >= 100) {
-                                value = formatDouble(nmi, 1);
-                            } else {
-                                value = formatDouble(nmi, 2);
-                            }
-                        } else {
-                            value = formatDistance(dist, 1);
-                        }
-                        break;
+                if (dist > UNIT_NMILE_TO_METER) {
+                    double nmi = dist / UNIT_NMILE_TO_METER;
+                    formatDouble(sb, nmi, (nmi >= 100 ? 0 : 1) + (high ? 1 : 0), 1, '.');
+                } else {
+                    formatDistance(sb, dist, high ? 1 : 0);
                 }
                 break;
         }
 
-        // return result
+        // add units
         if (addUnits) {
-            return value + " " + formatDistanceUnits(unitType, dist);
-        } else {
-            return value;
+            sb.append(' ').append(formatDistanceUnits(unitType, dist));
         }
+        return sb;
     }
 
     /**
      * Simple helper function for formatting double values as distance.
      *
+     * @param sb            target builder
      * @param dist          distance value
      * @param basePrecision base precision used for smallest values
-     * @return formatted distance
      */
-    private static String formatDistance(double dist, int basePrecision) {
+    private static void formatDistance(StringBuilder sb, double dist, int basePrecision) {
         if (dist < 10) {
-            return formatDouble(dist, basePrecision);
+            formatDouble(sb, dist, basePrecision, 1, '.');
         } else {
-            return formatDouble(dist, basePrecision > 0 ? basePrecision - 1 : 0);
+            formatDouble(sb, dist, basePrecision > 0 ? basePrecision - 1 : 0, 1, '.');
         }
     }
 
     /**
      * Format distance value as imperial unit (mile, feet/yards).
      *
+     * @param sb         target builder
      * @param dist       distance value
      * @param distInUnit already converted distance to feet/yards units
-     * @param precision  required precision
-     * @return formatted distance
-     */
-    private static String formatDistanceImperial(double dist, double distInUnit,
-            UnitsPrecision precision) {
-        switch (precision) {
-            case LOW:
-            case MEDIUM:
-                if (distInUnit >= 1000.0) {
-                    double mi = dist / UNIT_MILE_TO_METER;
-                    if (mi >= 100) {
-                        return formatDouble(mi, 0);
-                    } else if (mi >= 1) {
-                        return formatDouble(mi, 1);
-                    } else {
-                        return formatDouble(mi, 2);
-                    }
-                } else {
-                    return formatDistance(distInUnit, 0);
-                }
-            case HIGH:
-                if (distInUnit >= 1000.0) {
-                    double mi = dist / UNIT_MILE_TO_METER;
-                    if (mi >= 100) {
-                        return formatDouble(mi, 1);
-                    } else if (mi >= 1) {
-                        return formatDouble(mi, 2);
-                    } else {
-                        return formatDouble(mi, 3);
-                    }
-                } else {
-                    return formatDistance(distInUnit, 1);
-                }
+     * @param high       {@code true} for high precision
+     */
+    private static void formatDistanceImperial(StringBuilder sb, double dist, double distInUnit,
+            boolean high) {
+        if (distInUnit >= 1000.0) {
+            double mi = dist / UNIT_MILE_TO_METER;
+            int precision;
+            if (mi >= 100) {
+                precision = 0;
+            } else if (mi >= 1) {
+                precision = 1;
+            } else {
+                precision = 2;
+            }
+            formatDouble(sb, mi, precision + (high ? 1 : 0), 1, '.');
+        } else {
+            formatDistance(sb, distInUnit, high ? 1 : 0);
         }
-
-        // return empty string
-        return "";
     }
 
     public static double formatDistanceValue(int unitType, double dist) {
@@ -744,21 +694,33 @@ public class UtilsFormat {
      * @return Formated speed in appropriate units.
      */
     public static String formatSpeed(int unitType, double speed, boolean withoutUnits) {
+        StringBuilder sb = TEXT_BUILDER.get();
+        sb.setLength(0);
+        return formatSpeed(sb, unitType, speed, withoutUnits).toString();
+    }
+
+    /**
+     * Format speed to correct format and append it to builder.
+     *
+     * @param sb    target builder
+     * @param speed Speed in m/s.
+     * @return target builder
+     */
+    public static StringBuilder formatSpeed(StringBuilder sb, int unitType, double speed,
+            boolean withoutUnits) {
         // format speed value
-        String result;
         if (speed < 0.0) {
-            result = "--";
+            sb.append("--");
         } else {
             speed = formatSpeedValue(unitType, speed);
-            result = formatDouble(speed, speed > 100 ? 0 : 1);
+            formatDouble(sb, speed, speed > 100 ? 0 : 1, 1, '.');
         }
 
         // attach units if requested
-        if (withoutUnits) {
-            return result;
-        } else {
-            return result + " " + formatSpeedUnits(unitType);
+        if (!withoutUnits) {
+            sb.append(' ').append(formatSpeedUnits(unitType));
         }
+        return sb;
     }
 
     public static double formatSpeedValue(int format, double speed) {
@@ -917,99 +879,211 @@ public class UtilsFormat {
     // FORMAT DOUBLE PART
     //*************************************************
 
+    // maximal supported number of decimal places
+    private static final int MAX_PRECISION = 6;
+    // maximal supported minimal length of integer part
+    private static final int MAX_MIN_LENGTH = 7;
+    // maximal scaled value, that is safely formatted over 'long'
+    private static final double MAX_FAST_VALUE = 1e15;
+    // powers of ten for supported precisions
+    private static final long[] POW10 = new long[]{
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L};
+    // maximal length of formatted number (huge double value with all decimal places)
+    private static final int MAX_LENGTH = 330;
+    // splitter for exact multiplication (2^27 + 1)
+    private static final double SPLITTER = 134217729.0;
+    // half of unit, used for detection of ties in huge numbers
+    private static final BigDecimal HALF = new BigDecimal("0.5");
+    // text for NaN value
+    private static final char[] TEXT_NAN = "NaN".toCharArray();
+    // text for infinite value
+    private static final char INFINITY = '\u221E';
+
+    // temporary buffer for formatting of numbers, per thread
+    private static final ThreadLocal<char[]> NUMBER_BUFFER = new ThreadLocal<char[]>() {
+
+        @Override
+        protected char[] initialValue() {
+            return new char[MAX_LENGTH];
+        }
+    };
+
+    // temporary builder for formatting of texts, per thread
+    private static final ThreadLocal<StringBuilder> TEXT_BUILDER = new ThreadLocal<StringBuilder>() {
+
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(32);
+        }
+    };
+
     public static String formatDouble(double value, int precision) {
         return formatDouble(value, precision, 1);
     }
 
     public static String formatDouble(double value, int precision, int minlen) {
-        if (minlen < 0) {
-            minlen = 0;
-        } else if (minlen > formats.length - 1) {
-            minlen = formats.length - 1;
-        }
-        if (precision < 0) {
-            precision = 0;
-        } else if (precision > formats[0].length - 1) {
-            precision = formats[0].length - 1;
-        }
-        return formats[minlen][precision].format(value);
-    }
-
-    private static DecimalFormat[][] formats;
-
-    static {
-        formats = new DecimalFormat[][]{
-                {
-                        new DecimalFormat("#"),
-                        new DecimalFormat("#.0"),
-                        new DecimalFormat("#.00"),
-                        new DecimalFormat("#.000"),
-                        new DecimalFormat("#.0000"),
-                        new DecimalFormat("#.00000"),
-                        new DecimalFormat("#.000000")
-                }, {
-                new DecimalFormat("#0"),
-                new DecimalFormat("#0.0"),
-                new DecimalFormat("#0.00"),
-                new DecimalFormat("#0.000"),
-                new DecimalFormat("#0.0000"),
-                new DecimalFormat("#0.00000"),
-                new DecimalFormat("#0.000000")
-        }, {
-                new DecimalFormat("#00"),
-                new DecimalFormat("#00.0"),
-                new DecimalFormat("#00.00"),
-                new DecimalFormat("#00.000"),
-                new DecimalFormat("#00.0000"),
-                new DecimalFormat("#00.00000"),
-                new DecimalFormat("#00.000000")
-        }, {
-                new DecimalFormat("#000"),
-                new DecimalFormat("#000.0"),
-                new DecimalFormat("#000.00"),
-                new DecimalFormat("#000.000"),
-                new DecimalFormat("#000.0000"),
-                new DecimalFormat("#000.00000"),
-                new DecimalFormat("#000.000000")
-        }, {
-                new DecimalFormat("#0000"),
-                new DecimalFormat("#0000.0"),
-                new DecimalFormat("#0000.00"),
-                new DecimalFormat("#0000.000"),
-                new DecimalFormat("#0000.0000"),
-                new DecimalFormat("#0000.00000"),
-                new DecimalFormat("#0000.000000")
-        }, {
-                new DecimalFormat("#00000"),
-                new DecimalFormat("#00000.0"),
-                new DecimalFormat("#00000.00"),
-                new DecimalFormat("#00000.000"),
-                new DecimalFormat("#00000.0000"),
-                new DecimalFormat("#00000.00000"),
-                new DecimalFormat("#00000.000000")
-        }, {
-                new DecimalFormat("#000000"),
-                new DecimalFormat("#000000.0"),
-                new DecimalFormat("#000000.00"),
-                new DecimalFormat("#000000.000"),
-                new DecimalFormat("#000000.0000"),
-                new DecimalFormat("#000000.00000"),
-                new DecimalFormat("#000000.000000")
-        }, {
-                new DecimalFormat("#0000000"),
-                new DecimalFormat("#0000000.0"),
-                new DecimalFormat("#0000000.00"),
-                new DecimalFormat("#0000000.000"),
-                new DecimalFormat("#0000000.0000"),
-                new DecimalFormat("#0000000.00000"),
-                new DecimalFormat("#0000000.000000")
-        }
-        };
-        for (DecimalFormat[] format : formats) {
-            for (DecimalFormat aFormat : format) {
-                aFormat.setDecimalFormatSymbols(
-                        new DecimalFormatSymbols(Locale.ENGLISH));
+        StringBuilder sb = TEXT_BUILDER.get();
+        sb.setLength(0);
+        return formatDouble(sb, value, precision, minlen, '.').toString();
+    }
+
+    /**
+     * Format number with fixed number of decimal places and append it to builder. Value is
+     * rounded half-even, same as by {@link DecimalFormat}, but without any allocation.
+     * Method is thread-safe.
+     *
+     * @param sb               target builder
+     * @param value            value to format
+     * @param precision        number of decimal places (0 - 6)
+     * @param minlen           minimal number of digits of integer part (0 - 7)
+     * @param decimalSeparator separator of decimal places, for example from
+     *                         {@link DecimalFormatSymbols#getDecimalSeparator()}
+     * @return target builder
+     */
+    public static StringBuilder formatDouble(StringBuilder sb, double value,
+            int precision, int minlen, char decimalSeparator) {
+        char[] buffer = NUMBER_BUFFER.get();
+        int length = formatDouble(buffer, 0, value, precision, minlen, decimalSeparator);
+        return sb.append(buffer, 0, length);
+    }
+
+    /**
+     * Format number with fixed number of decimal places into array of chars.
+     *
+     * @param dst              target array, 32 chars are enough for values below 10^9, up to
+     *                         330 chars are written for the largest values
+     * @param offset           offset in target array
+     * @param value            value to format
+     * @param precision        number of decimal places (0 - 6)
+     * @param minlen           minimal number of digits of integer part (0 - 7)
+     * @param decimalSeparator separator of decimal places
+     * @return number of written chars
+     * @see #formatDouble(StringBuilder, double, int, int, char)
+     */
+    public static int formatDouble(char[] dst, int offset, double value,
+            int precision, int minlen, char decimalSeparator) {
+        precision = Math.max(0, Math.min(precision, MAX_PRECISION));
+        minlen = Math.max(0, Math.min(minlen, MAX_MIN_LENGTH));
+        int pos = offset;
+
+        // special values
+        if (Double.isNaN(value)) {
+            System.arraycopy(TEXT_NAN, 0, dst, pos, TEXT_NAN.length);
+            return TEXT_NAN.length;
+        }
+        boolean negative = value < 0.0 || (value == 0.0 && 1.0 / value < 0.0);
+        if (negative) {
+            dst[pos++] = '-';
+        }
+        if (Double.isInfinite(value)) {
+            dst[pos++] = INFINITY;
+            return pos - offset;
+        }
+
+        // round value
+        double abs = Math.abs(value);
+        double scaled = abs * POW10[precision];
+        if (scaled >= MAX_FAST_VALUE) {
+            return formatDoubleExact(dst, offset, pos, abs, precision, minlen, decimalSeparator);
+        }
+        long rounded = (long) Math.rint(scaled);
+        if (scaled - Math.floor(scaled) == 0.5) {
+            // exactly in half, so decide by rounding error of multiplication
+            double error = getMultiplyError(abs, POW10[precision], scaled);
+            if (error > 0.0) {
+                rounded = (long) Math.ceil(scaled);
+            } else if (error < 0.0) {
+                rounded = (long) Math.floor(scaled);
             }
         }
+
+        // integer part
+        long intPart = rounded / POW10[precision];
+        long fracPart = rounded % POW10[precision];
+        int intDigits = intPart == 0 ? 0 : countDigits(intPart);
+        if (intDigits < minlen) {
+            intDigits = minlen;
+        }
+        if (intDigits == 0 && precision == 0) {
+            intDigits = 1;
+        }
+        pos = writeDigits(dst, pos, intPart, intDigits);
+
+        // decimal part
+        if (precision > 0) {
+            dst[pos++] = decimalSeparator;
+            pos = writeDigits(dst, pos, fracPart, precision);
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Format huge number over its shortest decimal representation, same as
+     * {@link DecimalFormat} does.
+     */
+    private static int formatDoubleExact(char[] dst, int offset, int pos, double abs,
+            int precision, int minlen, char decimalSeparator) {
+        BigDecimal value = BigDecimal.valueOf(abs);
+        RoundingMode mode = RoundingMode.HALF_EVEN;
+        BigDecimal rest = value.subtract(value.setScale(precision, RoundingMode.DOWN)).movePointRight(precision);
+        if (rest.compareTo(HALF) == 0) {
+            // tie in shortest representation, decide by exact binary value
+            int cmp = new BigDecimal(abs).compareTo(value);
+            if (cmp > 0) {
+                mode = RoundingMode.UP;
+            } else if (cmp < 0) {
+                mode = RoundingMode.DOWN;
+            }
+        }
+        String text = value.setScale(precision, mode).toPlainString();
+        int dot = text.indexOf('.');
+        int intLength = dot >= 0 ? dot : text.length();
+        for (int i = intLength; i < minlen; i++) {
+            dst[pos++] = '0';
+        }
+        text.getChars(0, intLength, dst, pos);
+        pos += intLength;
+        if (dot >= 0) {
+            dst[pos++] = decimalSeparator;
+            text.getChars(dot + 1, text.length(), dst, pos);
+            pos += text.length() - dot - 1;
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Get exact rounding error of multiplication 'a * b = product' (Dekker's algorithm).
+     */
+    private static double getMultiplyError(double a, double b, double product) {
+        double c = SPLITTER * a;
+        double aHigh = c - (c - a);
+        double aLow = a - aHigh;
+        c = SPLITTER * b;
+        double bHigh = c - (c - b);
+        double bLow = b - bHigh;
+        return ((aHigh * bHigh - product) + aHigh * bLow + aLow * bHigh) + aLow * bLow;
+    }
+
+    /**
+     * Get number of digits of positive number.
+     */
+    private static int countDigits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Write positive number with defined number of digits, padded by zeros.
+     */
+    private static int writeDigits(char[] dst, int pos, long value, int digits) {
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            dst[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
     }
 }
@@ -0,0 +1,160 @@
+package locus.api.android.objects;
+
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import locus.api.objects.Storable;
+import locus.api.objects.extra.BoundingBox;
+import locus.api.objects.extra.Location;
+import locus.api.objects.extra.Point;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PackPointsDirectTest {
+
+    @Test
+    public void sameOutputAsPackPoints() throws Exception {
+        PackPoints pack = new PackPoints("pack");
+        PackPointsDirect packDirect = new PackPointsDirect("pack");
+        for (int i = 0; i < 500; i++) {
+            pack.addWaypoint(createPoint(i));
+            packDirect.addWaypoint(createPoint(i));
+        }
+        assertArrayEquals(pack.getAsBytes(), packDirect.getAsBytes());
+        assertEquals(pack.getBounds(), packDirect.getBounds());
+    }
+
+    @Test
+    public void splitNotNeeded() throws Exception {
+        PackPointsDirect pack = createPack(100);
+        List<PackPointsDirect> parts = pack.split(Storable.MAX_BODY_SIZE_STREAM);
+        assertEquals(1, parts.size());
+        assertSame(pack, parts.get(0));
+    }
+
+    @Test
+    public void split() throws Exception {
+        PackPointsDirect pack = createPack(1000);
+        List<PackPointsDirect> parts = pack.split(8 * 1024);
+        assertTrue(parts.size() > 1);
+
+        // check content of parts
+        int index = 0;
+        BoundingBox bounds = new BoundingBox();
+        for (int i = 0; i < parts.size(); i++) {
+            PackPointsDirect part = parts.get(i);
+            assertEquals(i == 0 ? "pack" : "pack_" + i, part.getName());
+            assertTrue(part.getBodySize() <= 8 * 1024);
+            assertTrue(part.getAsBytes().length - 8 <= 8 * 1024);
+            for (int j = 0; j < part.getWaypointsCount(); j++) {
+                assertEquals("point " + index, part.getWaypoint(j).getName());
+                index++;
+            }
+            bounds.extend(part.getBounds());
+        }
+        assertEquals(1000, index);
+        assertEquals(pack.getBounds(), bounds);
+    }
+
+    @Test
+    public void splitPartsIndependent() throws Exception {
+        PackPointsDirect pack = createPack(1000);
+        List<PackPointsDirect> parts = pack.split(8 * 1024);
+        PackPointsDirect part = parts.get(1);
+        int first = parts.get(0).getWaypointsCount();
+        int partCount = part.getWaypointsCount();
+
+        // part may be split again
+        int index = first + partCount;
+        for (PackPointsDirect subPart : parts.get(2).split(2 * 1024)) {
+            for (int i = 0; i < subPart.getWaypointsCount(); i++) {
+                assertEquals("point " + index, subPart.getWaypoint(i).getName());
+                index++;
+            }
+        }
+        assertEquals(first + partCount + parts.get(2).getWaypointsCount(), index);
+
+        // modification of source pack does not affect parts
+        pack.clearWaypoints();
+        pack.addWaypoint(createPoint(5000));
+        assertEquals("point " + first, part.getWaypoint(0).getName());
+
+        // points may be added also into part
+        part.addWaypoint(createPoint(6000));
+        assertEquals(partCount + 1, part.getWaypointsCount());
+        assertEquals("point " + (first + partCount - 1), part.getWaypoint(partCount - 1).getName());
+        assertEquals("point 6000", part.getWaypoint(partCount).getName());
+        assertEquals("point " + (first - 1), parts.get(0).getWaypoint(first - 1).getName());
+        assertEquals("point 5000", pack.getWaypoint(0).getName());
+        PackPoints copy = new PackPoints();
+        copy.read(part.getAsBytes());
+        assertEquals(partCount + 1, copy.getWaypoints().size());
+    }
+
+    @Test(expected = IOException.class)
+    public void splitPointTooBig() throws Exception {
+        createPack(10).split(64);
+    }
+
+    @Test
+    public void writerSplitsHugePack() throws Exception {
+        PackPointsDirect pack = createPack(1);
+        Point pt = createPoint(0);
+        pt.setParameterDescription(new String(new char[2000]).replace('\0', 'x'));
+        for (int i = 1; i < 6000; i++) {
+            pt.setName("point " + i);
+            pack.addWaypoint(pt);
+        }
+        assertTrue(pack.getBodySize() > Storable.MAX_BODY_SIZE_STREAM);
+
+        // write and read back
+        File file = File.createTempFile("packs", ".bin");
+        try {
+            PackPointsWriter.writeToFile(Collections.<PackPoints>singletonList(pack), file);
+            DataInputStream dis = new DataInputStream(new FileInputStream(file));
+            List<PackPoints> packs;
+            try {
+                packs = Storable.readList(PackPoints.class, dis);
+            } finally {
+                dis.close();
+            }
+            assertTrue(packs.size() > 1);
+            int count = 0;
+            for (PackPoints item : packs) {
+                count += item.getWaypoints().size();
+            }
+            assertEquals(6000, count);
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    private static PackPointsDirect createPack(int count) {
+        PackPointsDirect pack = new PackPointsDirect("pack");
+        for (int i = 0; i < count; i++) {
+            pack.addWaypoint(createPoint(i));
+        }
+        return pack;
+    }
+
+    private static Point createPoint(int index) {
+        Point pt = new Point("point " + index,
+                new Location(50.0 + index / 1000.0, 14.0 - index / 1000.0));
+        pt.setId(index);
+        pt.setTimeCreated(1546300800000L);
+        return pt;
+    }
+}
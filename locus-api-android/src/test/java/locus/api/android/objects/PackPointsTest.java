@@ -0,0 +1,269 @@
+package locus.api.android.objects;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import locus.api.objects.extra.BoundingBox;
+import locus.api.objects.extra.GeoDataStyle;
+import locus.api.objects.extra.Location;
+import locus.api.objects.extra.Point;
+import locus.api.utils.DataReaderBigEndian;
+import locus.api.utils.DataWriterBigEndian;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of serialization of {@link PackPoints}.
+ * <br><br>
+ * Fixtures in 'src/test/resources/fixtures' contain {@link #samples()} serialized by
+ * a specific version of library and must never change. After intentional change
+ * of serialization format, run {@link #main(String[])} to create fixtures of the new
+ * version and add them next to existing ones.
+ */
+public class PackPointsTest {
+
+    // number of points in single pack
+    private static final int POINTS = 100;
+
+    @Test
+    public void roundTrip() throws Exception {
+        for (PackPoints pack : samples()) {
+            byte[] data = pack.getAsBytes();
+            PackPoints copy = new PackPoints();
+            copy.read(data);
+            assertPackEquals(pack, copy);
+            assertArrayEquals(data, copy.getAsBytes());
+        }
+    }
+
+    @Test
+    public void styleTableSharesStyles() throws Exception {
+        PackPoints pack = samples().get(1);
+        PackPoints copy = new PackPoints();
+        copy.read(pack.getAsBytes());
+
+        // points with identical style share single instance
+        for (int i = 3; i < copy.getWaypoints().size(); i++) {
+            assertSame(copy.getWaypoints().get(i - 3).styleNormal,
+                    copy.getWaypoints().get(i).styleNormal);
+        }
+    }
+
+    @Test
+    public void styleTableKeepsStyles() throws Exception {
+        PackPoints pack = new PackPoints("pack");
+        List<GeoDataStyle.IconStyle> iconStyles = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            GeoDataStyle style = new GeoDataStyle("style");
+            style.setIconStyle("file:///icons/0.png", 0xFF000000, 0.0f, 1.0f);
+            iconStyles.add(style.getIconStyle());
+            Point pt = new Point("point " + i, new Location(50.0, 14.0));
+            pt.styleNormal = style;
+            pack.addWaypoint(pt);
+        }
+        pack.setStyleTableEnabled(true);
+        pack.getAsBytes();
+
+        // written styles are not modified
+        for (int i = 0; i < 2; i++) {
+            assertSame(iconStyles.get(i), pack.getWaypoints().get(i).styleNormal.getIconStyle());
+        }
+    }
+
+    @Test
+    public void readBounds() throws Exception {
+        for (PackPoints pack : samples()) {
+            assertEquals(pack.getBounds(), PackPoints.readBounds(pack.getAsBytes()));
+        }
+    }
+
+    @Test
+    public void writeBoundsAfterInPlaceEdit() throws Exception {
+        PackPoints pack = samples().get(0);
+        pack.getBounds();
+
+        // modify point without invalidation of bounds
+        pack.getWaypoints().get(10).getLocation().setLatitude(89.5);
+        assertEquals(89.5, PackPoints.readBounds(pack.getAsBytes()).getMaxLatitude(), 0.0);
+    }
+
+    @Test
+    public void readVersion1Fixture() throws Exception {
+        List<PackPoints> expected = samples();
+        List<PackPoints> packs = readFixture("packs_v1.bin");
+        assertEquals(expected.size(), packs.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertPackEquals(expected.get(i), packs.get(i));
+
+            // bounds are not stored in version 1, so they are computed from points
+            assertEquals(expected.get(i).getBounds(), packs.get(i).getBounds());
+
+            // loaded pack is written in current version
+            assertArrayEquals(expected.get(i).getAsBytes(), packs.get(i).getAsBytes());
+        }
+    }
+
+    @Test
+    public void readVersion2Fixture() throws Exception {
+        List<PackPoints> expected = samples();
+        List<PackPoints> packs = readFixture("packs_v2.bin");
+        assertEquals(expected.size(), packs.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertPackEquals(expected.get(i), packs.get(i));
+            assertEquals(expected.get(i).getBounds(), packs.get(i).getBounds());
+        }
+
+        // loaded packs are written in current version, points with current version of location
+        assertArrayEquals(writeList(expected), writeList(packs));
+    }
+
+    @Test
+    public void writerSameOutput() throws Exception {
+        List<PackPoints> packs = new ArrayList<>(samples());
+        PackPoints big = new PackPoints("big");
+        for (int i = 0; i < 10000; i++) {
+            big.addWaypoint(new Point("point " + i, new Location(50.0 + i / 10000.0, 14.0)));
+        }
+        packs.add(big);
+        byte[] expected = writeList(packs);
+
+        // sequential and parallel serialization
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        File file = File.createTempFile("packs", ".bin");
+        try {
+            PackPointsWriter.writeToFile(packs, file, null);
+            assertArrayEquals(expected, readFile(file));
+            PackPointsWriter.writeToFile(packs, file, executor);
+            assertArrayEquals(expected, readFile(file));
+        } finally {
+            executor.shutdown();
+            file.delete();
+        }
+    }
+
+    //*************************************************
+    // SAMPLES
+    //*************************************************
+
+    /**
+     * Create samples stored in fixtures. First pack is written without, second with
+     * shared table of styles.
+     */
+    static List<PackPoints> samples() {
+        Random random = new Random(5L);
+        List<GeoDataStyle> styles = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            GeoDataStyle style = new GeoDataStyle("style " + i);
+            style.setIconStyle("file:///icons/" + i + ".png", 0xFF000000 + i, 0.0f, 1.0f);
+            styles.add(style);
+        }
+
+        List<PackPoints> res = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            PackPoints pack = new PackPoints("pack " + i);
+            for (int j = 0; j < POINTS; j++) {
+                Location loc = new Location(
+                        random.nextDouble() * 170.0 - 85.0,
+                        random.nextDouble() * 360.0 - 180.0);
+                Point pt = new Point("point " + j, loc);
+                pt.setId(j);
+                pt.setTimeCreated(1546300800000L);
+                pt.styleNormal = styles.get(j % styles.size());
+                pack.addWaypoint(pt);
+            }
+            pack.setStyleTableEnabled(i == 1);
+            res.add(pack);
+        }
+        return res;
+    }
+
+    /**
+     * Write fixture with current version of serialization.
+     *
+     * @param args output directory and suffix of name (version), like 'v2'
+     */
+    public static void main(String[] args) throws IOException {
+        File file = new File(args[0], "packs" + (args.length > 1 ? "_" + args[1] : "") + ".bin");
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(writeList(samples()));
+        } finally {
+            fos.close();
+        }
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Compare name, points and styles of packs.
+     */
+    private static void assertPackEquals(PackPoints expected, PackPoints pack) {
+        assertEquals(expected.getName(), pack.getName());
+        assertNull(pack.getBitmap());
+        assertEquals(expected.getWaypoints().size(), pack.getWaypoints().size());
+        for (int i = 0; i < expected.getWaypoints().size(); i++) {
+            Point expPt = expected.getWaypoints().get(i);
+            Point pt = pack.getWaypoints().get(i);
+            assertEquals(expPt.getId(), pt.getId());
+            assertEquals(expPt.getName(), pt.getName());
+            assertEquals(expPt.getLocation().getLatitude(), pt.getLocation().getLatitude(), 0.0);
+            assertEquals(expPt.getLocation().getLongitude(), pt.getLocation().getLongitude(), 0.0);
+            assertNotNull(pt.styleNormal);
+            assertEquals(expPt.styleNormal.getName(), pt.styleNormal.getName());
+            assertEquals(expPt.styleNormal.getIconStyleIconUrl(), pt.styleNormal.getIconStyleIconUrl());
+        }
+    }
+
+    private static byte[] writeList(List<PackPoints> packs) throws IOException {
+        DataWriterBigEndian dw = new DataWriterBigEndian();
+        dw.writeListStorable(packs);
+        return dw.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<PackPoints> readFixture(String name) throws IOException {
+        return (List<PackPoints>) new DataReaderBigEndian(loadFixture(name))
+                .readListStorable(PackPoints.class);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        return readStream(new FileInputStream(file));
+    }
+
+    private static byte[] loadFixture(String name) throws IOException {
+        InputStream is = PackPointsTest.class.getResourceAsStream("/fixtures/" + name);
+        assertNotNull("Missing fixture " + name, is);
+        return readStream(is);
+    }
+
+    private static byte[] readStream(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                baos.write(buffer, 0, read);
+            }
+            return baos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package locus.api.android.utils;
+
+import org.junit.Test;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class UtilsFormatTest {
+
+    @Test
+    public void formatDoubleSameAsDecimalFormat() {
+        List<Double> values = createValues();
+        for (int minlen = 0; minlen <= 7; minlen++) {
+            for (int precision = 0; precision <= 6; precision++) {
+                DecimalFormat format = createFormat(precision, minlen);
+                for (double value : values) {
+                    assertEquals("value: " + value + ", precision: " + precision + ", minlen: " + minlen,
+                            format.format(value), UtilsFormat.formatDouble(value, precision, minlen));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void formatDoubleLimitsParameters() {
+        assertEquals(createFormat(0, 0).format(12.5), UtilsFormat.formatDouble(12.5, -1, -1));
+        assertEquals(createFormat(6, 7).format(12.5), UtilsFormat.formatDouble(12.5, 10, 10));
+    }
+
+    @Test
+    public void builderSameAsText() {
+        Random random = new Random(2L);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            double value = Math.pow(10.0, random.nextDouble() * 8.0 - 2.0);
+
+            // distance
+            for (int unit = UtilsFormat.VALUE_UNITS_DISTANCE_ME_M;
+                 unit <= UtilsFormat.VALUE_UNITS_DISTANCE_NA_MNMI; unit++) {
+                for (UtilsFormat.UnitsPrecision precision : UtilsFormat.UnitsPrecision.values()) {
+                    sb.setLength(0);
+                    sb.append('>');
+                    UtilsFormat.formatDistance(sb, unit, value, precision, true);
+                    assertEquals(">" + UtilsFormat.formatDistance(unit, value, precision, true),
+                            sb.toString());
+                }
+            }
+
+            // speed, also invalid
+            for (int unit = UtilsFormat.VALUE_UNITS_SPEED_KMH;
+                 unit <= UtilsFormat.VALUE_UNITS_SPEED_KNOT; unit++) {
+                sb.setLength(0);
+                UtilsFormat.formatSpeed(sb, unit, i % 10 == 0 ? -1.0 : value, false);
+                assertEquals(UtilsFormat.formatSpeed(unit, i % 10 == 0 ? -1.0 : value, false),
+                        sb.toString());
+            }
+
+            // altitude
+            for (int unit = UtilsFormat.VALUE_UNITS_ALTITUDE_METRES;
+                 unit <= UtilsFormat.VALUE_UNITS_ALTITUDE_FEET; unit++) {
+                sb.setLength(0);
+                UtilsFormat.formatAltitude(sb, unit, value, i % 3, true);
+                assertEquals(UtilsFormat.formatAltitude(unit, value, i % 3, true), sb.toString());
+            }
+        }
+
+        // units separated by space
+        sb.setLength(0);
+        assertEquals("1.5 km", UtilsFormat.formatDistance(sb,
+                UtilsFormat.VALUE_UNITS_DISTANCE_ME_MKM, 1520.0,
+                UtilsFormat.UnitsPrecision.MEDIUM, true).toString());
+        sb.setLength(0);
+        assertEquals("36.0 km/h", UtilsFormat.formatSpeed(sb,
+                UtilsFormat.VALUE_UNITS_SPEED_KMH, 10.0, false).toString());
+        sb.setLength(0);
+        assertEquals("350 m", UtilsFormat.formatAltitude(sb,
+                UtilsFormat.VALUE_UNITS_ALTITUDE_METRES, 350.4, 0, true).toString());
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Create format same as used by UtilsFormat before, for comparison.
+     */
+    private static DecimalFormat createFormat(int precision, int minlen) {
+        StringBuilder pattern = new StringBuilder("#");
+        for (int i = 0; i < minlen; i++) {
+            pattern.append('0');
+        }
+        if (precision > 0) {
+            pattern.append('.');
+            for (int i = 0; i < precision; i++) {
+                pattern.append('0');
+            }
+        }
+        DecimalFormat format = new DecimalFormat(pattern.toString());
+        format.setDecimalFormatSymbols(new DecimalFormatSymbols(Locale.ENGLISH));
+        return format;
+    }
+
+    /**
+     * Create values for test: random values over wide range, exact ties of all precisions,
+     * values around limit of fast formatting and special values.
+     */
+    private static List<Double> createValues() {
+        List<Double> res = new ArrayList<>();
+        Random random = new Random(1L);
+        for (int i = 0; i < 3000; i++) {
+            double value = Math.pow(10.0, random.nextDouble() * 24.0 - 8.0);
+            res.add(random.nextBoolean() ? value : -value);
+        }
+
+        // ties like 0.5, 0.25, 0.125 ... and decimal ties like 0.15, 2.675
+        for (int i = 0; i < 1000; i++) {
+            int precision = random.nextInt(7);
+            long digits = random.nextInt(1000000);
+            res.add((digits + 0.5) / Math.pow(10.0, precision));
+            res.add((digits * 2 + 1) / Math.pow(2.0, 1 + random.nextInt(10)));
+        }
+
+        // around limit of formatting over 'long'
+        for (int precision = 0; precision <= 6; precision++) {
+            double limit = 1e15 / Math.pow(10.0, precision);
+            res.add(Math.nextDown(limit));
+            res.add(limit);
+            res.add(limit + 0.5);
+            res.add(Math.nextUp(limit) * 3.0);
+        }
+
+        // special values
+        double[] special = {0.0, -0.0, 0.5, 1.5, 2.5, -0.5, 0.004, -0.004, 9.9999995,
+                999999.5, 1e20, 1.2345678901234567e100, Double.MAX_VALUE, Double.MIN_VALUE,
+                Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (double value : special) {
+            res.add(value);
+        }
+        return res;
+    }
+}
@@ -23,10 +23,10 @@ package locus.api.objects;
 import locus.api.objects.enums.PointRteAction;
 import locus.api.objects.extra.GeoDataExtra;
 import locus.api.objects.extra.GeoDataStyle;
+import locus.api.objects.extra.GeoDataStyleRegistry;
 import locus.api.utils.DataReaderBigEndian;
 import locus.api.utils.DataWriterBigEndian;
 import locus.api.utils.Logger;
-import locus.api.utils.Utils;
 
 import java.io.IOException;
 import java.util.Hashtable;
@@ -63,6 +63,8 @@ public abstract class GeoData extends Storable {
 
     // extra data with parameters
     public GeoDataExtra extraData;
+    // flag if decoded parameters of extra data should be cached
+    private boolean extraDataCache;
 
     // style for normal state
     public GeoDataStyle styleNormal;
@@ -160,6 +162,7 @@ public abstract class GeoData extends Storable {
     protected void readExtraData(DataReaderBigEndian dr) throws IOException {
         if (dr.readBoolean()) {
             extraData = new GeoDataExtra();
+            extraData.setDecodedCacheEnabled(extraDataCache);
             extraData.read(dr);
         }
     }
@@ -185,6 +188,27 @@ public abstract class GeoData extends Storable {
     }
 
     protected void writeStyles(DataWriterBigEndian dw) throws IOException {
+        writeStyles(dw, null);
+    }
+
+    /**
+     * Write styles of item.
+     *
+     * @param dw       data writer
+     * @param registry registry of container that stores styles instead of item, or 'null'
+     *                 to write styles inline
+     * @throws IOException thrown in case of invalid data format
+     */
+    protected void writeStyles(DataWriterBigEndian dw, GeoDataStyleRegistry registry)
+            throws IOException {
+        // styles are stored in shared registry of container
+        if (registry != null) {
+            registry.addReferences(this);
+            dw.writeBoolean(false);
+            dw.writeBoolean(false);
+            return;
+        }
+
         if (styleNormal != null) {
             dw.writeBoolean(true);
             dw.writeStorable(styleNormal);
@@ -349,6 +373,21 @@ public abstract class GeoData extends Storable {
         return extraData != null;
     }
 
+    /**
+     * Enable or disable cache of decoded parameters. Useful for items, that are repeatedly
+     * drawn or displayed in lists, where same parameters (description, style name,
+     * attachments) are read again and again. Cache is automatically invalidated on every
+     * change of parameters.
+     *
+     * @param enabled {@code true} to enable cache
+     */
+    public void setParameterCacheEnabled(boolean enabled) {
+        this.extraDataCache = enabled;
+        if (extraData != null) {
+            extraData.setDecodedCacheEnabled(enabled);
+        }
+    }
+
     // these are helper functions for more quick access
     // to parameter values without need to check state
     // of GeoDataExtra object
@@ -374,7 +413,7 @@ public abstract class GeoData extends Storable {
         boolean created = createExtraData();
 
         // add parameter and return result
-        return afterItemAdded(extraData.addParameter(paramId, Integer.toString(value)), created);
+        return afterItemAdded(extraData.addParameter(paramId, (long) value), created);
     }
 
     public boolean addParameter(int paramId, byte param) {
@@ -443,12 +482,7 @@ public abstract class GeoData extends Storable {
         if (extraData == null) {
             return GeoDataExtra.SOURCE_UNKNOWN;
         }
-        byte[] res = extraData.getParameterRaw(GeoDataExtra.PAR_SOURCE);
-        if (res == null || res.length != 1) {
-            return GeoDataExtra.SOURCE_UNKNOWN;
-        } else {
-            return res[0];
-        }
+        return extraData.getParameterByte(GeoDataExtra.PAR_SOURCE, GeoDataExtra.SOURCE_UNKNOWN);
     }
 
     /**
@@ -537,9 +571,9 @@ public abstract class GeoData extends Storable {
      * @return routing action
      */
     public PointRteAction getParameterRteAction() {
-        String param = getParameter(GeoDataExtra.PAR_RTE_POINT_ACTION);
-        if (param != null && param.length() > 0) {
-            return PointRteAction.getActionById(Utils.parseInt(param));
+        if (extraData != null && extraData.hasParameterValue(GeoDataExtra.PAR_RTE_POINT_ACTION)) {
+            return PointRteAction.getActionById(
+                    extraData.getParameterInt(GeoDataExtra.PAR_RTE_POINT_ACTION, 0));
         } else {
             return PointRteAction.UNDEFINED;
         }
@@ -686,9 +720,8 @@ public abstract class GeoData extends Storable {
      */
     public int getParamRteIndex() {
         // get parameter from container
-        String parIndex = getParameter(GeoDataExtra.PAR_RTE_INDEX);
-        if (parIndex != null) {
-            return Utils.parseInt(parIndex);
+        if (hasParameter(GeoDataExtra.PAR_RTE_INDEX)) {
+            return extraData.getParameterInt(GeoDataExtra.PAR_RTE_INDEX, 0);
         }
         return -1;
     }
@@ -748,6 +781,7 @@ public abstract class GeoData extends Storable {
     private boolean createExtraData() {
         if (extraData == null) {
             extraData = new GeoDataExtra();
+            extraData.setDecodedCacheEnabled(extraDataCache);
             return true;
         } else {
             return false;
@@ -26,8 +26,13 @@ import locus.api.utils.Logger;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @SuppressWarnings("TryWithIdenticalCatches")
 public abstract class Storable {
@@ -35,6 +40,16 @@ public abstract class Storable {
     // tag for logger
     private static final String TAG = "Storable";
 
+    /**
+     * Maximal size of body of single object, that may be read from {@link DataReaderBigEndian}.
+     */
+    public static final int MAX_BODY_SIZE = 20 * 1024 * 1024;
+    /**
+     * Maximal size of body of single object, that may be read from {@link DataInputStream}.
+     * Objects written into files or streams should never exceed this limit.
+     */
+    public static final int MAX_BODY_SIZE_STREAM = 10 * 1024 * 1024;
+
     /*
      * Container for inner data
      */
@@ -46,6 +61,24 @@ public abstract class Storable {
         byte[] data;
     }
 
+    /**
+     * Factory of empty instances of certain {@link Storable} class, used during read.
+     *
+     * @param <E> type of created objects
+     */
+    public interface Factory<E extends Storable> {
+
+        /**
+         * Create new empty instance.
+         *
+         * @return created object
+         */
+        E create();
+    }
+
+    // registered factories by class
+    private static final Map<Class<?>, Factory<?>> FACTORIES = new ConcurrentHashMap<>();
+
     // PUBLIC CONSTRUCTORS
 
     /**
@@ -110,7 +143,7 @@ public abstract class Storable {
         int size = dr.readInt();
 
         // check size to prevent OOE
-        if (size < 0 || size > 20 * 1024 * 1024) {
+        if (size < 0 || size > MAX_BODY_SIZE) {
             throw new IOException("item size too big, size:" + size + ", max: 20MB");
         }
 
@@ -153,14 +186,13 @@ public abstract class Storable {
         int size = dis.readInt();
 
         // check size to prevent OOE
-        if (size < 0 || size > 10 * 1024 * 1024) {
+        if (size < 0 || size > MAX_BODY_SIZE_STREAM) {
             throw new IOException("item size too big, size:" + size + ", max: 10MB");
         }
 
         // read object data
         bc.data = new byte[size];
-        //noinspection ResultOfMethodCallIgnored
-        dis.read(bc.data);
+        dis.readFully(bc.data);
 
         // return filled container
         return bc;
@@ -187,16 +219,38 @@ public abstract class Storable {
      * @throws IOException thrown in case of invalid data format
      */
     public void write(DataWriterBigEndian dw) throws IOException {
+        int startSize = writeHeader(dw);
+
+        // write object itself
+        writeObject(dw);
+
+        writeSize(dw, startSize);
+    }
+
+    /**
+     * Write header of object (version and empty size), that precedes content of object.
+     *
+     * @param dw data writer
+     * @return position of content, used by {@link #writeSize(DataWriterBigEndian, int)}
+     * @throws IOException thrown in case of invalid data format
+     */
+    protected final int writeHeader(DataWriterBigEndian dw) throws IOException {
         // write version
         dw.writeInt(getVersion());
 
         // save position and write empty size
         dw.writeInt(0);
-        int startSize = dw.size();
-
-        // write object itself
-        writeObject(dw);
+        return dw.size();
+    }
 
+    /**
+     * Write size of content into header of object, once whole content is written.
+     *
+     * @param dw        data writer
+     * @param startSize position of content returned by {@link #writeHeader(DataWriterBigEndian)}
+     * @throws IOException thrown in case of invalid data format
+     */
+    protected final void writeSize(DataWriterBigEndian dw, int startSize) throws IOException {
         // return back and write 'totalSize'
         int totalSize = dw.size() - startSize;
         if (totalSize > 0) {
@@ -207,6 +261,19 @@ public abstract class Storable {
         }
     }
 
+    /**
+     * Write current object into output stream. Result is same as writing of
+     * {@link #getAsBytes()} result.
+     *
+     * @param dos output stream
+     * @throws IOException thrown in case of invalid data format or problem with stream
+     */
+    public void write(DataOutputStream dos) throws IOException {
+        DataWriterBigEndian dw = new DataWriterBigEndian();
+        write(dw);
+        dw.writeTo(dos);
+    }
+
     /**
      * This function is called from {@link #write} function. Do not call it directly until you know,
      * what exactly are you doing.
@@ -251,6 +318,105 @@ public abstract class Storable {
     // STATIC TOOLS
     //*************************************************
 
+    // FACTORIES
+
+    /**
+     * Register factory of instances for certain class. Registered factory is then used by
+     * all methods, that read objects of this class, like {@link #read(Class, DataReaderBigEndian)},
+     * {@link #readList(Class, byte[])} or {@link DataReaderBigEndian#readListStorable(Class)}.
+     * Classes without registered factory are created over their empty constructor, found
+     * by reflection only once. For reading of large lists, prefer methods that accept
+     * factory directly, like {@link #readList(Factory, DataReaderBigEndian)}, that do not
+     * depend on registration at all.
+     *
+     * @param claz    class of objects
+     * @param factory factory of objects
+     * @param <E>     type of objects
+     */
+    public static <E extends Storable> void registerFactory(Class<E> claz, Factory<E> factory) {
+        if (claz == null || factory == null) {
+            throw new NullPointerException("registerFactory(" + claz + ", " + factory + "), " +
+                    "parameters cannot be null");
+        }
+        FACTORIES.put(claz, factory);
+    }
+
+    /**
+     * Get factory of instances for certain class.
+     *
+     * @param claz class of objects
+     * @param <E>  type of objects
+     * @return registered factory or factory based on empty constructor of class
+     * @throws InstantiationException throws if class cannot be initialized
+     * @throws IllegalAccessException in case of access to class constructor is limited
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Storable> Factory<E> getFactory(Class<E> claz)
+            throws InstantiationException, IllegalAccessException {
+        Factory<E> factory = (Factory<E>) FACTORIES.get(claz);
+        if (factory == null) {
+            factory = new ConstructorFactory<>(claz);
+            FACTORIES.put(claz, factory);
+        }
+        return factory;
+    }
+
+    /**
+     * Get factory of instances for certain class for reading of data. Same as
+     * {@link #getFactory(Class)}, only problems are reported as {@link IOException}.
+     *
+     * @param claz class of objects
+     * @param <E>  type of objects
+     * @return factory of objects
+     * @throws IOException thrown if class cannot be initialized
+     */
+    public static <E extends Storable> Factory<E> getFactoryForRead(Class<E> claz)
+            throws IOException {
+        try {
+            return getFactory(claz);
+        } catch (InstantiationException e) {
+            throw new IOException("Unable to create instance of " + claz, e);
+        } catch (IllegalAccessException e) {
+            throw new IOException("Unable to create instance of " + claz, e);
+        }
+    }
+
+    /**
+     * Factory, that create objects over empty constructor of class.
+     */
+    private static class ConstructorFactory<E extends Storable> implements Factory<E> {
+
+        // empty constructor of class
+        private final Constructor<E> constructor;
+
+        ConstructorFactory(Class<E> claz) throws InstantiationException, IllegalAccessException {
+            if (Modifier.isAbstract(claz.getModifiers()) || claz.isInterface()) {
+                throw new InstantiationException(claz + " is abstract");
+            }
+            try {
+                constructor = claz.getDeclaredConstructor();
+                constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new InstantiationException(claz + " has no empty constructor");
+            } catch (SecurityException e) {
+                throw new IllegalAccessException(e.getMessage());
+            }
+        }
+
+        @Override
+        public E create() {
+            try {
+                return constructor.newInstance();
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException("Unable to create instance of " +
+                        constructor.getDeclaringClass(), e.getCause());
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to create instance of " +
+                        constructor.getDeclaringClass(), e);
+            }
+        }
+    }
+
     // TOOLS
 
     /**
@@ -269,7 +435,7 @@ public abstract class Storable {
         BodyContainer bc = readHeader(dr);
 
         // now initialize object. Data are already loaded, so error will not break data flow
-        E storable = claz.newInstance();
+        E storable = getFactory(claz).create();
         storable.readObject(bc.version, new DataReaderBigEndian(bc.data));
         return storable;
     }
@@ -285,6 +451,46 @@ public abstract class Storable {
         readHeader(dr);
     }
 
+    /**
+     * Read list of objects in format of {@link DataWriterBigEndian#writeListStorable(List)}.
+     * Method is used by {@link DataReaderBigEndian#readListStorable(Class)}.
+     *
+     * @param claz class to instantiate and read
+     * @param dr   reader with data
+     * @return loaded list of items
+     * @throws IOException thrown in case of invalid data format or if class cannot be initialized
+     */
+    public static <E extends Storable> List<E> readList(Class<E> claz,
+            DataReaderBigEndian dr) throws IOException {
+        return readList(getFactoryForRead(claz), dr);
+    }
+
+    /**
+     * Read list of objects in format of {@link DataWriterBigEndian#writeListStorable(List)}.
+     *
+     * @param factory factory of read items
+     * @param dr      reader with data
+     * @return loaded list of items
+     * @throws IOException thrown in case of invalid data format
+     */
+    public static <E extends Storable> List<E> readList(Factory<E> factory,
+            DataReaderBigEndian dr) throws IOException {
+        // read size
+        int count = dr.readInt();
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+
+        // read items
+        List<E> objs = new ArrayList<>(Math.min(count, dr.available() / 8 + 1));
+        for (int i = 0; i < count; i++) {
+            E item = factory.create();
+            item.read(dr);
+            objs.add(item);
+        }
+        return objs;
+    }
+
     // LIST READING/WRITING
 
     /**
@@ -300,6 +506,19 @@ public abstract class Storable {
         return new DataReaderBigEndian(data).readListStorable(claz);
     }
 
+    /**
+     * Read list of certain classes from input stream.
+     *
+     * @param factory factory of read items
+     * @param data    byte array with pack data
+     * @return loaded list of items
+     * @throws IOException thrown in case of invalid data format
+     */
+    public static <E extends Storable> List<E> readList(Factory<E> factory,
+            byte[] data) throws IOException {
+        return new DataReaderBigEndian(data).readListStorable(factory);
+    }
+
     /**
      * Read list of certain classes from input stream.
      *
@@ -310,26 +529,31 @@ public abstract class Storable {
      */
     public static <E extends Storable> List<E> readList(Class<E> claz,
             DataInputStream dis) throws IOException {
-        // prepare container
-        List<E> objs = new ArrayList<>();
+        return readList(getFactoryForRead(claz), dis);
+    }
 
+    /**
+     * Read list of certain classes from input stream.
+     *
+     * @param factory factory of read items
+     * @param dis     input stream with data
+     * @return loaded list of items
+     * @throws IOException thrown in case of invalid data format
+     */
+    public static <E extends Storable> List<E> readList(Factory<E> factory,
+            DataInputStream dis) throws IOException {
         // read size
         int count = dis.readInt();
-        if (count == 0) {
-            return objs;
+        if (count <= 0) {
+            return new ArrayList<>();
         }
 
-        // read locations
+        // read items
+        List<E> objs = new ArrayList<>(Math.min(count, 1024));
         for (int i = 0; i < count; i++) {
-            try {
-                E item = claz.newInstance();
-                item.read(dis);
-                objs.add(item);
-            } catch (InstantiationException e) {
-                Logger.logE(TAG, "readList(" + claz + ", " + dis + ")", e);
-            } catch (IllegalAccessException e) {
-                Logger.logE(TAG, "readList(" + claz + ", " + dis + ")", e);
-            }
+            E item = factory.create();
+            item.read(dis);
+            objs.add(item);
         }
         return objs;
     }
@@ -378,7 +602,7 @@ public abstract class Storable {
 
         // write objects
         for (int i = 0, n = objs.size(); i < n; i++) {
-            dos.write(objs.get(i).getAsBytes());
+            objs.get(i).write(dos);
         }
     }
 }
@@ -0,0 +1,250 @@
+package locus.api.objects.extra;
+
+import java.io.IOException;
+
+import locus.api.objects.Storable;
+import locus.api.utils.DataReaderBigEndian;
+import locus.api.utils.DataWriterBigEndian;
+
+/**
+ * Area defined by minimal and maximal coordinates of content.
+ * <br><br>
+ * Box is computed as simple min/max of coordinates, so content that cross antimeridian
+ * is covered by box over the whole range of longitudes between its edges.
+ */
+public class BoundingBox extends Storable {
+
+    // minimal latitude
+    private double mMinLat;
+    // minimal longitude
+    private double mMinLon;
+    // maximal latitude
+    private double mMaxLat;
+    // maximal longitude
+    private double mMaxLon;
+
+    /**
+     * Create empty box.
+     */
+    public BoundingBox() {
+        clear();
+    }
+
+    /**
+     * Create copy of existing box.
+     *
+     * @param box box to copy
+     */
+    public BoundingBox(BoundingBox box) {
+        set(box);
+    }
+
+    //*************************************************
+    // GET & SET
+    //*************************************************
+
+    public double getMinLatitude() {
+        return mMinLat;
+    }
+
+    public double getMinLongitude() {
+        return mMinLon;
+    }
+
+    public double getMaxLatitude() {
+        return mMaxLat;
+    }
+
+    public double getMaxLongitude() {
+        return mMaxLon;
+    }
+
+    /**
+     * Get latitude of center of box.
+     *
+     * @return latitude of center or '0' for empty box
+     */
+    public double getCenterLatitude() {
+        return isEmpty() ? 0.0 : (mMinLat + mMaxLat) / 2.0;
+    }
+
+    /**
+     * Get longitude of center of box.
+     *
+     * @return longitude of center or '0' for empty box
+     */
+    public double getCenterLongitude() {
+        return isEmpty() ? 0.0 : (mMinLon + mMaxLon) / 2.0;
+    }
+
+    /**
+     * Check if box contains any content.
+     *
+     * @return {@code true} if box is empty
+     */
+    public boolean isEmpty() {
+        return mMinLat > mMaxLat;
+    }
+
+    /**
+     * Set values of other box.
+     *
+     * @param box box to copy
+     */
+    public void set(BoundingBox box) {
+        mMinLat = box.mMinLat;
+        mMinLon = box.mMinLon;
+        mMaxLat = box.mMaxLat;
+        mMaxLon = box.mMaxLon;
+    }
+
+    /**
+     * Remove all content of box.
+     */
+    public void clear() {
+        mMinLat = Double.POSITIVE_INFINITY;
+        mMinLon = Double.POSITIVE_INFINITY;
+        mMaxLat = Double.NEGATIVE_INFINITY;
+        mMaxLon = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Extend box to contain defined coordinates.
+     *
+     * @param lat latitude
+     * @param lon longitude
+     */
+    public void extend(double lat, double lon) {
+        if (lat < mMinLat) {
+            mMinLat = lat;
+        }
+        if (lat > mMaxLat) {
+            mMaxLat = lat;
+        }
+        if (lon < mMinLon) {
+            mMinLon = lon;
+        }
+        if (lon > mMaxLon) {
+            mMaxLon = lon;
+        }
+    }
+
+    /**
+     * Extend box to contain defined location.
+     *
+     * @param loc location
+     */
+    public void extend(Location loc) {
+        extend(loc.getLatitude(), loc.getLongitude());
+    }
+
+    /**
+     * Extend box to contain other box.
+     *
+     * @param box box to include
+     */
+    public void extend(BoundingBox box) {
+        if (box.isEmpty()) {
+            return;
+        }
+        extend(box.mMinLat, box.mMinLon);
+        extend(box.mMaxLat, box.mMaxLon);
+    }
+
+    //*************************************************
+    // QUERIES
+    //*************************************************
+
+    /**
+     * Check if box contains coordinates.
+     *
+     * @param lat latitude
+     * @param lon longitude
+     * @return {@code true} if coordinates are inside or on edge of box
+     */
+    public boolean contains(double lat, double lon) {
+        return lat >= mMinLat && lat <= mMaxLat
+                && lon >= mMinLon && lon <= mMaxLon;
+    }
+
+    /**
+     * Check if box intersects area.
+     *
+     * @param minLat minimal latitude of area
+     * @param minLon minimal longitude of area
+     * @param maxLat maximal latitude of area
+     * @param maxLon maximal longitude of area
+     * @return {@code true} if box and area have any common part
+     */
+    public boolean intersects(double minLat, double minLon, double maxLat, double maxLon) {
+        return !isEmpty()
+                && minLat <= mMaxLat && maxLat >= mMinLat
+                && minLon <= mMaxLon && maxLon >= mMinLon;
+    }
+
+    /**
+     * Check if box intersects other box.
+     *
+     * @param box other box
+     * @return {@code true} if boxes have any common part
+     */
+    public boolean intersects(BoundingBox box) {
+        return !box.isEmpty() && intersects(box.mMinLat, box.mMinLon, box.mMaxLat, box.mMaxLon);
+    }
+
+    //*************************************************
+    // OBJECT
+    //*************************************************
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BoundingBox)) {
+            return false;
+        }
+        BoundingBox other = (BoundingBox) o;
+        return mMinLat == other.mMinLat && mMinLon == other.mMinLon
+                && mMaxLat == other.mMaxLat && mMaxLon == other.mMaxLon;
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = Double.doubleToLongBits(mMinLat);
+        hash = 31 * hash + Double.doubleToLongBits(mMinLon);
+        hash = 31 * hash + Double.doubleToLongBits(mMaxLat);
+        hash = 31 * hash + Double.doubleToLongBits(mMaxLon);
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingBox [" + mMinLat + ", " + mMinLon + ", " + mMaxLat + ", " + mMaxLon + "]";
+    }
+
+    //*************************************************
+    // STORABLE
+    //*************************************************
+
+    @Override
+    protected int getVersion() {
+        return 0;
+    }
+
+    @Override
+    protected void readObject(int version, DataReaderBigEndian dr) throws IOException {
+        mMinLat = dr.readDouble();
+        mMinLon = dr.readDouble();
+        mMaxLat = dr.readDouble();
+        mMaxLon = dr.readDouble();
+    }
+
+    @Override
+    protected void writeObject(DataWriterBigEndian dw) throws IOException {
+        dw.writeDouble(mMinLat);
+        dw.writeDouble(mMinLon);
+        dw.writeDouble(mMaxLat);
+        dw.writeDouble(mMaxLon);
+    }
+}
@@ -23,6 +23,7 @@ package locus.api.objects.extra;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
 
 import locus.api.objects.Storable;
@@ -30,6 +31,7 @@ import locus.api.utils.DataReaderBigEndian;
 import locus.api.utils.DataWriterBigEndian;
 import locus.api.utils.Logger;
 import locus.api.utils.SparseArrayCompat;
+import locus.api.utils.SparseByteArrayPacked;
 import locus.api.utils.Utils;
 
 @SuppressWarnings({"unused", "WeakerAccess"})
@@ -277,9 +279,19 @@ public class GeoDataExtra extends Storable {
     // below in "Attachments" section
 
     /**
-     * table for additional parameters
+     * table for additional parameters, packed in a single buffer
      */
-    SparseArrayCompat<byte[]> parameters;
+    SparseByteArrayPacked parameters;
+    /**
+     * cache of decoded text parameters, 'null' if cache is not enabled. Access is
+     * synchronized on cache itself, as it is filled also by getters
+     */
+    private volatile SparseArrayCompat<String> cacheDecoded;
+    /**
+     * cache of decoded attachments, 'null' if cache is not enabled. Access is
+     * synchronized on cache itself, as it is filled also by getters
+     */
+    private volatile EnumMap<AttachType, List<LabelTextContainer>> cacheAttachments;
 
     public static class LabelTextContainer {
 
@@ -335,7 +347,58 @@ public class GeoDataExtra extends Storable {
     }
 
     public GeoDataExtra() {
-        parameters = new SparseArrayCompat<>();
+        parameters = new SparseByteArrayPacked();
+    }
+
+    //*************************************************
+    // DECODED VALUES CACHE
+    //*************************************************
+
+    /**
+     * Enable or disable cache of decoded text parameters and attachments. Cache is useful for
+     * items, which parameters are read repeatedly (drawing of labels, lists), but it needs some
+     * extra memory, so it is disabled by default.
+     * <br><br>
+     * Cached values may be read from multiple threads, but parameters itself still must not
+     * be modified concurrently with reading.
+     *
+     * @param enabled {@code true} to enable cache
+     */
+    public void setDecodedCacheEnabled(boolean enabled) {
+        if (enabled && cacheDecoded == null) {
+            cacheDecoded = new SparseArrayCompat<>(0);
+            cacheAttachments = new EnumMap<>(AttachType.class);
+        } else if (!enabled) {
+            cacheDecoded = null;
+            cacheAttachments = null;
+        }
+    }
+
+    /**
+     * Check if cache of decoded values is enabled.
+     *
+     * @return {@code true} if cache is enabled
+     */
+    public boolean isDecodedCacheEnabled() {
+        return cacheDecoded != null;
+    }
+
+    /**
+     * Remove all cached values. Needs to be called after every change in parameters.
+     */
+    private void invalidateCache() {
+        SparseArrayCompat<String> cache = cacheDecoded;
+        if (cache != null) {
+            synchronized (cache) {
+                cache.clear();
+            }
+        }
+        EnumMap<AttachType, List<LabelTextContainer>> cacheAtt = cacheAttachments;
+        if (cacheAtt != null) {
+            synchronized (cacheAtt) {
+                cacheAtt.clear();
+            }
+        }
     }
 
     //*************************************************
@@ -354,20 +417,22 @@ public class GeoDataExtra extends Storable {
         parameters.clear();
         for (int i = 0; i < size; i++) {
             int key = dr.readInt();
-            parameters.put(key, dr.readBytes(dr.readInt()));
+            parameters.put(key, dr, dr.readInt());
         }
+        invalidateCache();
     }
 
     @Override
     protected void writeObject(DataWriterBigEndian dw) throws IOException {
+        // write values directly from shared buffer
+        byte[] data = parameters.getData();
         dw.writeInt(parameters.size());
         for (int i = 0, m = parameters.size(); i < m; i++) {
-            int key = parameters.keyAt(i);
-            dw.writeInt(key);
-            byte[] data = parameters.valueAt(i);
-            dw.writeInt(data.length);
-            if (data.length > 0) {
-                dw.write(data);
+            dw.writeInt(parameters.keyAt(i));
+            int length = parameters.lengthAt(i);
+            dw.writeInt(length);
+            if (length > 0) {
+                dw.write(data, parameters.offsetAt(i), length);
             }
         }
     }
@@ -407,6 +472,7 @@ public class GeoDataExtra extends Storable {
 
         // finally insert value
         parameters.put(key, Utils.doStringToBytes(value));
+        invalidateCache();
         return true;
     }
 
@@ -421,6 +487,29 @@ public class GeoDataExtra extends Storable {
         return addParameter(key, new byte[]{value});
     }
 
+    /**
+     * Add a single parameter to container, defined by ID and it's number value. Number is
+     * stored in it's text representation, same as by {@link #addParameter(int, String)}.
+     *
+     * @param key   key value
+     * @param value value itself
+     * @return {@code true} if parameter was correctly added
+     */
+    public boolean addParameter(int key, long value) {
+        // check keys
+        if (key > 1000 && key < 2000) {
+            Logger.logW(TAG, "addParam(" + key + ", " + value + "), " +
+                    "values 1000 - 1999 reserved!");
+            removeParameter(key);
+            return false;
+        }
+
+        // finally insert value
+        parameters.putLong(key, value);
+        invalidateCache();
+        return true;
+    }
+
     /**
      * Add a single parameter to container, defined by ID and it's byte array representation.
      *
@@ -446,22 +535,35 @@ public class GeoDataExtra extends Storable {
 
         // finally insert value
         parameters.put(key, value);
+        invalidateCache();
         return true;
     }
 
 
     public String getParameter(int key) {
-        byte[] data = parameters.get(key);
-        if (data != null) {
-            return Utils.doBytesToString(data);
-        } else {
-            return null;
+        // use cache if enabled
+        SparseArrayCompat<String> cache = cacheDecoded;
+        if (cache != null) {
+            String value;
+            synchronized (cache) {
+                value = cache.get(key);
+            }
+            if (value == null) {
+                value = parameters.getString(key);
+                if (value != null) {
+                    synchronized (cache) {
+                        cache.put(key, value);
+                    }
+                }
+            }
+            return value;
         }
+        return parameters.getString(key);
     }
 
     /**
-     * Return Raw data from storage. Do not modify these data directly. For
-     * fast access is provided original array, not any copy!
+     * Return Raw data from storage. Parameters are stored in shared buffer, so result
+     * is a copy of stored data.
      *
      * @param key key ID
      * @return raw parameters data
@@ -470,6 +572,62 @@ public class GeoDataExtra extends Storable {
         return parameters.get(key);
     }
 
+    /**
+     * Get parameter stored as a single byte (for example {@link #PAR_SOURCE}).
+     *
+     * @param key      key ID
+     * @param defValue value returned if parameter not exists or is not a single byte
+     * @return parameter value
+     */
+    public byte getParameterByte(int key, byte defValue) {
+        return parameters.getByte(key, defValue);
+    }
+
+    /**
+     * Get parameter stored as a text representation of integer number. Value is parsed
+     * directly from stored data, without creating of String object.
+     *
+     * @param key      key ID
+     * @param defValue value returned if parameter not exists or is not valid number
+     * @return parameter value
+     */
+    public int getParameterInt(int key, int defValue) {
+        return parameters.getInt(key, defValue);
+    }
+
+    /**
+     * Get parameter stored as a text representation of long number.
+     *
+     * @param key      key ID
+     * @param defValue value returned if parameter not exists or is not valid number
+     * @return parameter value
+     */
+    public long getParameterLong(int key, long defValue) {
+        return parameters.getLong(key, defValue);
+    }
+
+    /**
+     * Get parameter stored as a text representation of decimal number.
+     *
+     * @param key      key ID
+     * @param defValue value returned if parameter not exists or is not valid number
+     * @return parameter value
+     */
+    public float getParameterFloat(int key, float defValue) {
+        return parameters.getFloat(key, defValue);
+    }
+
+    /**
+     * Get parameter stored as a text representation of decimal number.
+     *
+     * @param key      key ID
+     * @param defValue value returned if parameter not exists or is not valid number
+     * @return parameter value
+     */
+    public double getParameterDouble(int key, double defValue) {
+        return parameters.getDouble(key, defValue);
+    }
+
     /**
      * Get parameter from private container. Result is always not-null.
      *
@@ -486,12 +644,25 @@ public class GeoDataExtra extends Storable {
     }
 
     public boolean hasParameter(int key) {
-        return parameters.get(key) != null;
+        return parameters.containsKey(key);
+    }
+
+    /**
+     * Check if parameter exists and its value is not empty. Value is not decoded.
+     *
+     * @param key key ID
+     * @return {@code true} if non-empty value exists
+     */
+    public boolean hasParameterValue(int key) {
+        int index = parameters.indexOfKey(key);
+        return index >= 0 && parameters.lengthAt(index) > 0;
     }
 
     public String removeParameter(int key) {
         String value = getParameter(key);
-        parameters.remove(key);
+        if (parameters.remove(key)) {
+            invalidateCache();
+        }
         return value;
     }
 
@@ -694,6 +865,21 @@ public class GeoDataExtra extends Storable {
      * @return list of all attachments
      */
     public List<LabelTextContainer> getAttachments(AttachType type) {
+        // use cache if enabled, cached lists are never modified
+        EnumMap<AttachType, List<LabelTextContainer>> cache = cacheAttachments;
+        if (cache != null) {
+            List<LabelTextContainer> data;
+            synchronized (cache) {
+                data = cache.get(type);
+            }
+            if (data == null) {
+                data = getFromStorage(type.min, type.max);
+                synchronized (cache) {
+                    cache.put(type, data);
+                }
+            }
+            return new ArrayList<>(data);
+        }
         return getFromStorage(type.min, type.max);
     }
 
@@ -729,7 +915,10 @@ public class GeoDataExtra extends Storable {
     }
 
     public int getAllAttachmentsCount() {
-        return getAllAttachments().size();
+        return countInStorage(AttachType.PHOTO.min, AttachType.PHOTO.max)
+                + countInStorage(AttachType.AUDIO.min, AttachType.AUDIO.max)
+                + countInStorage(AttachType.VIDEO.min, AttachType.VIDEO.max)
+                + countInStorage(AttachType.OTHER.min, AttachType.OTHER.max);
     }
 
     private boolean addToStorage(String label, String text, int rangeFrom, int rangeTo) {
@@ -746,24 +935,49 @@ public class GeoDataExtra extends Storable {
             item = text;
         }
 
-        for (int key = rangeFrom; key <= rangeTo; key++) {
-            String value = getParameter(key);
-            if (value == null) {
-                parameters.put(key, Utils.doStringToBytes(item));
-                return true;
-            } else if (value.equalsIgnoreCase(item)) {
+        // iterate over existing keys in range, they are sorted
+        int key = rangeFrom;
+        for (int i = startIndexOfRange(rangeFrom), m = parameters.size(); i < m; i++) {
+            int keyAt = parameters.keyAt(i);
+            if (keyAt > rangeTo || keyAt > key) {
+                // found free slot
+                break;
+            } else if (getParameter(keyAt).equalsIgnoreCase(item)) {
                 // item already exists
                 return false;
             } else {
                 // some other item already included, move to next index
+                key++;
             }
         }
+
+        // insert into first free slot
+        if (key <= rangeTo) {
+            parameters.put(key, Utils.doStringToBytes(item));
+            invalidateCache();
+            return true;
+        }
         return false;
     }
 
+    /**
+     * Get index of first stored parameter with key equal or bigger then defined value.
+     *
+     * @param rangeFrom minimal key
+     * @return index of parameter
+     */
+    private int startIndexOfRange(int rangeFrom) {
+        int index = parameters.indexOfKey(rangeFrom);
+        return index >= 0 ? index : ~index;
+    }
+
     private List<LabelTextContainer> getFromStorage(int rangeFrom, int rangeTo) {
         List<LabelTextContainer> data = new ArrayList<>();
-        for (int key = rangeFrom; key <= rangeTo; key++) {
+        for (int i = startIndexOfRange(rangeFrom), m = parameters.size(); i < m; i++) {
+            int key = parameters.keyAt(i);
+            if (key > rangeTo) {
+                break;
+            }
             String value = getParameter(key);
             if (value == null || value.length() == 0) {
                 continue;
@@ -775,6 +989,19 @@ public class GeoDataExtra extends Storable {
         return data;
     }
 
+    private int countInStorage(int rangeFrom, int rangeTo) {
+        int count = 0;
+        for (int i = startIndexOfRange(rangeFrom), m = parameters.size(); i < m; i++) {
+            if (parameters.keyAt(i) > rangeTo) {
+                break;
+            }
+            if (parameters.lengthAt(i) > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     private List<String> convertToTexts(List<LabelTextContainer> data) {
         List<String> result = new ArrayList<>();
         for (int i = 0, m = data.size(); i < m; i++) {
@@ -789,24 +1016,26 @@ public class GeoDataExtra extends Storable {
             return false;
         }
 
-        for (int key = rangeFrom; key <= rangeTo; key++) {
-            String value = getParameter(key);
-            if (value == null) {
-                // no item
-            } else if (value.endsWith(item)) {
-                parameters.remove(key);
+        for (int i = startIndexOfRange(rangeFrom), m = parameters.size(); i < m; i++) {
+            int key = parameters.keyAt(i);
+            if (key > rangeTo) {
+                break;
+            }
+            if (getParameter(key).endsWith(item)) {
+                parameters.removeAt(i);
+                invalidateCache();
                 return true;
-            } else {
-                // some other item already included, move to next index
             }
         }
         return false;
     }
 
     private void removeAllFromStorage(int rangeFrom, int rangeTo) {
-        for (int i = rangeFrom; i <= rangeTo; i++) {
-            parameters.remove(i);
+        int index = startIndexOfRange(rangeFrom);
+        while (index < parameters.size() && parameters.keyAt(index) <= rangeTo) {
+            parameters.removeAt(index);
         }
+        invalidateCache();
     }
 
     //*************************************************
@@ -0,0 +1,379 @@
+package locus.api.objects.extra;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import locus.api.objects.GeoData;
+import locus.api.objects.Storable;
+import locus.api.utils.DataReaderBigEndian;
+import locus.api.utils.DataWriterBigEndian;
+import locus.api.utils.Logger;
+
+/**
+ * Registry of unique styles, that allows to share single instance of {@link GeoDataStyle}
+ * (and its {@link GeoDataStyle.IconStyle} and {@link LineStyle}) among many items.
+ * <br><br>
+ * Styles are compared by their serialized content, so two independently created styles with
+ * same parameters are considered as identical. Registry may be used
+ * <ul>
+ * <li>in memory, over {@link #intern(GeoDataStyle)} or {@link #intern(GeoData)}, to reduce
+ * number of style instances held by loaded items</li>
+ * <li>during serialization of containers with many items (like {@code PackPoints}), where
+ * table of unique styles is written only once, followed by references of every item</li>
+ * </ul>
+ * Registry keeps own copies of added styles, so styles of items are not modified by
+ * {@link #add(GeoDataStyle)}. Be aware that interned styles are shared, so any modification
+ * of such style affects all items that use it. Registry is not thread-safe.
+ */
+public class GeoDataStyleRegistry extends Storable {
+
+    // tag for logger
+    private static final String TAG = "GeoDataStyleRegistry";
+
+    // index value for a not defined style
+    public static final int NO_STYLE = -1;
+
+    // unique styles
+    private List<GeoDataStyle> mStyles;
+    // indexes of unique styles by its content
+    private Map<StyleKey, Integer> mStylesIndex;
+    // indexes of already known style instances
+    private Map<GeoDataStyle, Integer> mInstancesIndex;
+    // unique icon styles by its content
+    private Map<StyleKey, GeoDataStyle.IconStyle> mIconStyles;
+    // unique line styles by its content
+    private Map<StyleKey, LineStyle> mLineStyles;
+
+    // references of serialized items to styles (normal, highlight)
+    private int[] mRefs;
+    // number of valid values in 'mRefs'
+    private int mRefsCount;
+
+    /**
+     * Create new empty registry.
+     */
+    public GeoDataStyleRegistry() {
+        mStyles = new ArrayList<>();
+        mStylesIndex = new HashMap<>();
+        mInstancesIndex = new IdentityHashMap<>();
+        mIconStyles = new HashMap<>();
+        mLineStyles = new HashMap<>();
+        mRefs = new int[32];
+        mRefsCount = 0;
+    }
+
+    //*************************************************
+    // STYLES
+    //*************************************************
+
+    /**
+     * Get number of unique styles in registry.
+     *
+     * @return number of styles
+     */
+    public int size() {
+        return mStyles.size();
+    }
+
+    /**
+     * Get unique style on certain index.
+     *
+     * @param index index of style
+     * @return style or 'null' for {@link #NO_STYLE} or invalid index
+     */
+    public GeoDataStyle get(int index) {
+        if (index < 0 || index >= mStyles.size()) {
+            return null;
+        }
+        return mStyles.get(index);
+    }
+
+    /**
+     * Add style to registry, if same style is not already registered. Registry stores its own
+     * copy of style, so defined instance is never modified and should not be modified later,
+     * as registry remembers index of every added instance.
+     *
+     * @param style style to add
+     * @return index of unique style or {@link #NO_STYLE} if style is 'null'
+     */
+    public int add(GeoDataStyle style) {
+        if (style == null) {
+            return NO_STYLE;
+        }
+
+        // search for already known instance
+        Integer index = mInstancesIndex.get(style);
+        if (index != null) {
+            return index;
+        }
+
+        // search for existing style with same content
+        StyleKey key = StyleKey.create(style);
+        index = key != null ? mStylesIndex.get(key) : null;
+        if (index == null) {
+            // copy that cannot be created is registered as is, without shared sub-styles
+            GeoDataStyle copy = copy(style, key);
+            index = register(copy, copy != style ? key : null);
+        }
+        mInstancesIndex.put(style, index);
+        return index;
+    }
+
+    /**
+     * Register new unique style, that is owned by registry.
+     *
+     * @param style style to register
+     * @param key   key of style or 'null' if style cannot be serialized
+     * @return index of style
+     */
+    private int register(GeoDataStyle style, StyleKey key) {
+        if (key != null) {
+            style.iconStyle = internIconStyle(style.iconStyle);
+            style.setLineStyle(internLineStyle(style.getLineStyle()));
+        }
+        mStyles.add(style);
+        int index = mStyles.size() - 1;
+        if (key != null) {
+            mStylesIndex.put(key, index);
+            mInstancesIndex.put(style, index);
+        }
+        return index;
+    }
+
+    /**
+     * Create copy of style from its serialized content.
+     *
+     * @param style style to copy
+     * @param key   key of style or 'null' if style cannot be serialized
+     * @return copy of style or style itself, if copy cannot be created
+     */
+    private static GeoDataStyle copy(GeoDataStyle style, StyleKey key) {
+        if (key == null) {
+            return style;
+        }
+        try {
+            GeoDataStyle copy = new GeoDataStyle();
+            copy.read(key.data);
+            return copy;
+        } catch (IOException e) {
+            Logger.logE(TAG, "copy(" + style + ")", e);
+            return style;
+        }
+    }
+
+    /**
+     * Get shared instance of style with same content as defined style.
+     *
+     * @param style style to intern
+     * @return shared instance of style, or 'null' if style is 'null'
+     */
+    public GeoDataStyle intern(GeoDataStyle style) {
+        return get(add(style));
+    }
+
+    /**
+     * Replace styles of item by its shared instances.
+     *
+     * @param item item to modify
+     */
+    public void intern(GeoData item) {
+        item.styleNormal = intern(item.styleNormal);
+        item.styleHighlight = intern(item.styleHighlight);
+    }
+
+    /**
+     * Get shared instance of icon style.
+     */
+    private GeoDataStyle.IconStyle internIconStyle(GeoDataStyle.IconStyle style) {
+        if (style == null) {
+            return null;
+        }
+        StyleKey key = StyleKey.create(style);
+        if (key == null) {
+            return style;
+        }
+        GeoDataStyle.IconStyle existing = mIconStyles.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        mIconStyles.put(key, style);
+        return style;
+    }
+
+    /**
+     * Get shared instance of line style.
+     */
+    private LineStyle internLineStyle(LineStyle style) {
+        if (style == null) {
+            return null;
+        }
+        StyleKey key = StyleKey.create(style);
+        if (key == null) {
+            return style;
+        }
+        LineStyle existing = mLineStyles.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        mLineStyles.put(key, style);
+        return style;
+    }
+
+    //*************************************************
+    // REFERENCES
+    //*************************************************
+
+    /**
+     * Register styles of item and store references to them. Method is used by
+     * {@link GeoData} serialized with a registry of its container.
+     *
+     * @param item item that is serialized
+     */
+    public void addReferences(GeoData item) {
+        if (mRefsCount + 2 > mRefs.length) {
+            mRefs = Arrays.copyOf(mRefs, mRefs.length * 2);
+        }
+        mRefs[mRefsCount++] = add(item.styleNormal);
+        mRefs[mRefsCount++] = add(item.styleHighlight);
+    }
+
+    /**
+     * Get number of items with stored references.
+     *
+     * @return number of items
+     */
+    public int getReferencesCount() {
+        return mRefsCount / 2;
+    }
+
+    /**
+     * Set styles to item based on stored references.
+     *
+     * @param item     item to modify
+     * @param position position of item in serialized order
+     */
+    public void applyReferences(GeoData item, int position) {
+        item.styleNormal = get(mRefs[position * 2]);
+        item.styleHighlight = get(mRefs[position * 2 + 1]);
+    }
+
+    /**
+     * Set styles to all items based on stored references.
+     *
+     * @param items items in same order, as were serialized
+     */
+    public void applyReferences(List<? extends GeoData> items) {
+        if (items.size() != getReferencesCount()) {
+            Logger.logW(TAG, "applyReferences(), " +
+                    "invalid number of items: " + items.size() + ", references: " + getReferencesCount());
+            return;
+        }
+        for (int i = 0, m = items.size(); i < m; i++) {
+            applyReferences(items.get(i), i);
+        }
+    }
+
+    /**
+     * Remove all styles and references.
+     */
+    public void clear() {
+        mStyles.clear();
+        mStylesIndex.clear();
+        mInstancesIndex.clear();
+        mIconStyles.clear();
+        mLineStyles.clear();
+        mRefsCount = 0;
+    }
+
+    //*************************************************
+    // STORABLE
+    //*************************************************
+
+    @Override
+    protected int getVersion() {
+        return 0;
+    }
+
+    @Override
+    protected void readObject(int version, DataReaderBigEndian dr) throws IOException {
+        clear();
+
+        // styles
+        for (int i = 0, m = dr.readInt(); i < m; i++) {
+            GeoDataStyle style = new GeoDataStyle();
+            style.read(dr);
+            register(style, StyleKey.create(style));
+        }
+
+        // references
+        mRefsCount = dr.readInt() * 2;
+        mRefs = new int[Math.max(mRefsCount, 32)];
+        for (int i = 0; i < mRefsCount; i++) {
+            mRefs[i] = dr.readInt();
+        }
+    }
+
+    @Override
+    protected void writeObject(DataWriterBigEndian dw) throws IOException {
+        // styles
+        dw.writeInt(mStyles.size());
+        for (int i = 0, m = mStyles.size(); i < m; i++) {
+            dw.writeStorable(mStyles.get(i));
+        }
+
+        // references
+        dw.writeInt(getReferencesCount());
+        for (int i = 0; i < mRefsCount; i++) {
+            dw.writeInt(mRefs[i]);
+        }
+    }
+
+    /**
+     * Key of style based on its serialized content.
+     */
+    private static class StyleKey {
+
+        // serialized style
+        private final byte[] data;
+        // precomputed hash
+        private final int hash;
+
+        private StyleKey(byte[] data) {
+            this.data = data;
+            this.hash = Arrays.hashCode(data);
+        }
+
+        /**
+         * Create key for a style.
+         *
+         * @param style style to serialize
+         * @return created key or 'null' if style cannot be serialized
+         */
+        private static StyleKey create(Storable style) {
+            byte[] data = style.getAsBytes();
+            return data != null ? new StyleKey(data) : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StyleKey)) {
+                return false;
+            }
+            StyleKey other = (StyleKey) o;
+            return hash == other.hash && Arrays.equals(data, other.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
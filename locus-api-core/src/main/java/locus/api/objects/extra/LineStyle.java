@@ -1,11 +1,14 @@
 package locus.api.objects.extra;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Hashtable;
+import java.util.List;
 
 import locus.api.objects.Storable;
 import locus.api.utils.DataReaderBigEndian;
 import locus.api.utils.DataWriterBigEndian;
+import locus.api.utils.Utils;
 
 /**
  * Created by menion on 19/10/2017.
@@ -26,6 +29,13 @@ public class LineStyle extends Storable {
     public static String KEY_CP_SLOPE_MANUAL = "slo_man";
     public static String KEY_CP_SLOPE_MANUAL_MIN = "slo_man_min";
     public static String KEY_CP_SLOPE_MANUAL_MAX = "slo_man_max";
+    public static String KEY_CP_COLORS = "colors";
+
+    // number of colors in compiled coloring ramp
+    private static final int RAMP_SIZE = 256;
+    // default base colors of coloring ramp, from lowest to highest value
+    private static final int[] RAMP_COLORS_DEFAULT = new int[]{
+            0xFF0000FF, 0xFF00FFFF, 0xFF00FF00, 0xFFFFFF00, 0xFFFF0000};
 
     /**
      * Type how line is presented to user.
@@ -96,6 +106,9 @@ public class LineStyle extends Storable {
     // color of fill
     private int mColorFill;
 
+    // compiled coloring configuration, created on demand
+    private ColoringRamp mRamp;
+
     /**
      * Default empty constructor.
      */
@@ -157,6 +170,7 @@ public class LineStyle extends Storable {
      */
     public LineStyle setColorBase(int colorBase) {
         mColorBase = colorBase;
+        mRamp = null;
         return this;
     }
 
@@ -230,6 +244,7 @@ public class LineStyle extends Storable {
      */
     public LineStyle setColoring(Coloring coloring) {
         mColoring = coloring;
+        mRamp = null;
         return this;
     }
 
@@ -270,9 +285,67 @@ public class LineStyle extends Storable {
         } else {
             mColoringParams.put(key, value);
         }
+        mRamp = null;
         return this;
     }
 
+    /**
+     * Get base colors of coloring ramp, from lowest to highest value.
+     *
+     * @return defined colors or default colors, if no valid colors are defined
+     */
+    public int[] getColoringColors() {
+        int[] colors = parseColors(getColoringParam(KEY_CP_COLORS));
+        return colors != null ? colors : RAMP_COLORS_DEFAULT.clone();
+    }
+
+    /**
+     * Set base colors of coloring ramp. Colors are stored in coloring parameters, so they
+     * are serialized together with style.
+     *
+     * @param colors at least two ARGB colors, from lowest to highest value, or 'null' to use
+     *               default colors
+     * @return current object
+     */
+    public LineStyle setColoringColors(int[] colors) {
+        if (colors == null || colors.length < 2) {
+            return setColoringParam(KEY_CP_COLORS, null);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < colors.length; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(Integer.toHexString(colors[i]));
+        }
+        return setColoringParam(KEY_CP_COLORS, sb.toString());
+    }
+
+    /**
+     * Parse colors stored in coloring parameters.
+     *
+     * @param value stored value
+     * @return colors or 'null' if value is not defined or invalid
+     */
+    private static int[] parseColors(String value) {
+        if (value == null || value.length() == 0) {
+            return null;
+        }
+        String[] parts = value.split(",");
+        if (parts.length < 2) {
+            return null;
+        }
+        try {
+            int[] colors = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                colors[i] = (int) Long.parseLong(parts[i].trim(), 16);
+            }
+            return colors;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     // WIDTH
 
     /**
@@ -386,6 +459,282 @@ public class LineStyle extends Storable {
         return this;
     }
 
+    //*************************************************
+    // COLORING RAMP
+    //*************************************************
+
+    /**
+     * Compute colors of all segments of track based on defined coloring. Segment 'i' is
+     * line between points 'i' and 'i + 1'. Segments without valid value (for example
+     * missing altitude) get base color.
+     *
+     * @param track  track to colorize
+     * @param colors container for result, may be 'null' or too small, in such case new
+     *               array is created
+     * @return array of ARGB colors, valid for first {@code pointsCount - 1} items
+     */
+    public int[] getColors(Track track, int[] colors) {
+        return getColors(track, null, colors);
+    }
+
+    /**
+     * Compute colors of all segments of track based on defined coloring, with values of
+     * segments computed into container of caller, so repeated coloring does not allocate.
+     *
+     * @param track  track to colorize
+     * @param values container for values of segments, may be 'null' or too small, in such
+     *               case new array is created
+     * @param colors container for result, may be 'null' or too small, in such case new
+     *               array is created
+     * @return array of ARGB colors, valid for first {@code pointsCount - 1} items
+     * @see #getColors(Track, int[])
+     */
+    public int[] getColors(Track track, double[] values, int[] colors) {
+        // prepare container
+        int segments = Math.max(0, track.getPointsCount() - 1);
+        if (colors == null || colors.length < segments) {
+            colors = new int[segments];
+        }
+
+        // simple coloring
+        if (mColoring == Coloring.SIMPLE) {
+            Arrays.fill(colors, 0, segments, mColorBase);
+            return colors;
+        }
+
+        // compute values and convert them to colors
+        if (values == null || values.length < segments) {
+            values = new double[segments];
+        }
+        computeValues(mColoring, track.getPoints(), values, segments);
+        return getColors(values, segments, colors);
+    }
+
+    /**
+     * Convert values of segments to colors based on defined coloring. Values are expected in
+     * base units of coloring (m/s, m, %, bpm, ...). Not defined values are marked by
+     * {@link Double#NaN} and get base color.
+     *
+     * @param values values of segments
+     * @param count  number of valid values
+     * @param colors container for result, may be 'null' or too small, in such case new
+     *               array is created
+     * @return array of ARGB colors, valid for first 'count' items
+     */
+    public int[] getColors(double[] values, int count, int[] colors) {
+        if (colors == null || colors.length < count) {
+            colors = new int[count];
+        }
+        ColoringRamp ramp = getRamp();
+
+        // simple coloring
+        if (ramp.lut == null) {
+            Arrays.fill(colors, 0, count, mColorBase);
+            return colors;
+        }
+
+        // define range of values
+        double min = ramp.min;
+        double max = ramp.max;
+        if (!ramp.manual) {
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                double value = values[i];
+                if (value < min) {
+                    min = value;
+                }
+                if (value > max) {
+                    max = value;
+                }
+            }
+        }
+        double scale = max > min ? (RAMP_SIZE - 1) / (max - min) : 0.0;
+
+        // convert values to colors
+        int[] lut = ramp.lut;
+        for (int i = 0; i < count; i++) {
+            double value = values[i];
+            if (Double.isNaN(value)) {
+                colors[i] = mColorBase;
+                continue;
+            }
+            int index = (int) ((value - min) * scale);
+            if (index < 0) {
+                index = 0;
+            } else if (index >= RAMP_SIZE) {
+                index = RAMP_SIZE - 1;
+            }
+            colors[i] = lut[index];
+        }
+        return colors;
+    }
+
+    /**
+     * Get compiled coloring configuration. Ramp is cached till change of coloring parameters.
+     *
+     * @return compiled ramp
+     */
+    private ColoringRamp getRamp() {
+        ColoringRamp ramp = mRamp;
+        if (ramp == null) {
+            ramp = new ColoringRamp(this);
+            mRamp = ramp;
+        }
+        return ramp;
+    }
+
+    /**
+     * Compute values of segments for certain coloring type.
+     *
+     * @param coloring type of coloring
+     * @param points   points of track
+     * @param values   container for values of segments
+     * @param count    number of segments
+     */
+    private static void computeValues(Coloring coloring, List<Location> points,
+            double[] values, int count) {
+        double speedPrev = Double.NaN;
+        for (int i = 0; i < count; i++) {
+            Location loc1 = points.get(i);
+            Location loc2 = points.get(i + 1);
+            double value = Double.NaN;
+            switch (coloring) {
+                case BY_SPEED:
+                    value = getSpeed(loc1, loc2);
+                    break;
+                case BY_SPEED_CHANGE:
+                    double speed = getSpeed(loc1, loc2);
+                    value = speed - speedPrev;
+                    speedPrev = speed;
+                    break;
+                case BY_ALTITUDE:
+                    if (loc1.hasAltitude() && loc2.hasAltitude()) {
+                        value = (loc1.getAltitude() + loc2.getAltitude()) / 2.0;
+                    }
+                    break;
+                case BY_SLOPE:
+                    if (loc1.hasAltitude() && loc2.hasAltitude()) {
+                        double dist = loc1.distanceTo(loc2);
+                        if (dist > 0.0) {
+                            value = (loc2.getAltitude() - loc1.getAltitude()) / dist * 100.0;
+                        }
+                    }
+                    break;
+                case BY_ACCURACY:
+                    if (loc1.hasAccuracy() && loc2.hasAccuracy()) {
+                        value = (loc1.getAccuracy() + loc2.getAccuracy()) / 2.0;
+                    }
+                    break;
+                case BY_HRM:
+                    if (loc2.hasSensorHeartRate()) {
+                        value = loc2.getSensorHeartRate();
+                    }
+                    break;
+                case BY_CADENCE:
+                    if (loc2.hasSensorCadence()) {
+                        value = loc2.getSensorCadence();
+                    }
+                    break;
+                default:
+                    break;
+            }
+            values[i] = value;
+        }
+    }
+
+    /**
+     * Get speed on segment between two points.
+     *
+     * @return speed [m/s] or {@link Double#NaN} if not known
+     */
+    private static double getSpeed(Location loc1, Location loc2) {
+        if (loc1.hasSpeedOptimal() && loc2.hasSpeedOptimal()) {
+            return (loc1.getSpeedOptimal() + loc2.getSpeedOptimal()) / 2.0;
+        }
+        long time = loc2.getTime() - loc1.getTime();
+        if (time > 0L) {
+            return loc1.distanceTo(loc2) / (time / 1000.0);
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Compiled configuration of coloring.
+     */
+    private static class ColoringRamp {
+
+        // table of colors, 'null' for simple coloring
+        private final int[] lut;
+        // flag if manual range of values is defined
+        private final boolean manual;
+        // manual minimal value
+        private final double min;
+        // manual maximal value
+        private final double max;
+
+        private ColoringRamp(LineStyle style) {
+            // simple coloring
+            if (style.mColoring == Coloring.SIMPLE) {
+                lut = null;
+                manual = false;
+                min = 0.0;
+                max = 0.0;
+                return;
+            }
+
+            // manual range
+            String keyManual = null;
+            String keyMin = null;
+            String keyMax = null;
+            if (style.mColoring == Coloring.BY_ALTITUDE) {
+                keyManual = KEY_CP_ALTITUDE_MANUAL;
+                keyMin = KEY_CP_ALTITUDE_MANUAL_MIN;
+                keyMax = KEY_CP_ALTITUDE_MANUAL_MAX;
+            } else if (style.mColoring == Coloring.BY_SLOPE) {
+                keyManual = KEY_CP_SLOPE_MANUAL;
+                keyMin = KEY_CP_SLOPE_MANUAL_MIN;
+                keyMax = KEY_CP_SLOPE_MANUAL_MAX;
+            }
+            String valueManual = keyManual != null ? style.getColoringParam(keyManual) : null;
+            if (valueManual != null && Utils.parseBoolean(valueManual)) {
+                manual = true;
+                min = Utils.parseDouble(style.getColoringParam(keyMin));
+                max = Utils.parseDouble(style.getColoringParam(keyMax));
+            } else {
+                manual = false;
+                min = 0.0;
+                max = 0.0;
+            }
+
+            // interpolate colors
+            int[] colors = parseColors(style.getColoringParam(KEY_CP_COLORS));
+            if (colors == null) {
+                colors = RAMP_COLORS_DEFAULT;
+            }
+            lut = new int[RAMP_SIZE];
+            int parts = colors.length - 1;
+            for (int i = 0; i < RAMP_SIZE; i++) {
+                float pos = i * parts / (float) (RAMP_SIZE - 1);
+                int part = Math.min((int) pos, parts - 1);
+                lut[i] = interpolate(colors[part], colors[part + 1], pos - part);
+            }
+        }
+
+        /**
+         * Linear interpolation between two ARGB colors.
+         */
+        private static int interpolate(int color1, int color2, float ratio) {
+            int result = 0;
+            for (int shift = 0; shift <= 24; shift += 8) {
+                int c1 = (color1 >>> shift) & 0xFF;
+                int c2 = (color2 >>> shift) & 0xFF;
+                result |= Math.round(c1 + (c2 - c1) * ratio) << shift;
+            }
+            return result;
+        }
+    }
+
     //*************************************************
     // TOOLS
     //*************************************************
@@ -425,6 +774,7 @@ public class LineStyle extends Storable {
         mColorOutline = dr.readInt();
         mDrawFill = dr.readBoolean();
         mColorFill = dr.readInt();
+        mRamp = null;
     }
 
     @Override
@@ -21,11 +21,11 @@
 package locus.api.objects.extra;
 
 import locus.api.objects.Storable;
+import locus.api.objects.utils.DistanceStrategy;
 import locus.api.objects.utils.LocationCompute;
 import locus.api.utils.DataReaderBigEndian;
 import locus.api.utils.DataWriterBigEndian;
 import locus.api.utils.Logger;
-import locus.api.utils.Utils;
 
 import java.io.IOException;
 
@@ -35,6 +35,17 @@ public class Location extends Storable {
     // tag for logger
     private static final String TAG = "Location";
 
+    /**
+     * Factory of empty objects, used for reading of lists.
+     */
+    public static final Storable.Factory<Location> FACTORY = new Storable.Factory<Location>() {
+
+        @Override
+        public Location create() {
+            return new Location();
+        }
+    };
+
     // location unique ID
     private long mId;
     // provider for location source
@@ -54,172 +65,91 @@ public class Location extends Storable {
     // altitude value
     private double mAltitude;
 
-    // container for basic values
+    // flags of defined extra values
+    private int mExtraFlags;
+    // basic extra values, created with first defined value
     private ExtraBasic mExtraBasic;
-    // container for ANT sensor values
+    // values from sensors, created with first defined value
     private ExtraSensor mExtraSensor;
 
+    // flags of extra values
+    private static final int FLAG_SPEED = 1;
+    private static final int FLAG_BEARING = 1 << 1;
+    private static final int FLAG_ACCURACY = 1 << 2;
+    private static final int FLAG_SENSOR_HR = 1 << 3;
+    private static final int FLAG_SENSOR_CADENCE = 1 << 4;
+    private static final int FLAG_SENSOR_SPEED = 1 << 5;
+    private static final int FLAG_SENSOR_POWER = 1 << 6;
+    private static final int FLAG_SENSOR_STRIDES = 1 << 7;
+    private static final int FLAG_SENSOR_TEMPERATURE = 1 << 8;
+    // all basic values
+    private static final int FLAGS_BASIC = FLAG_SPEED | FLAG_BEARING | FLAG_ACCURACY;
+    // all sensor values
+    private static final int FLAGS_SENSOR = FLAG_SENSOR_HR | FLAG_SENSOR_CADENCE
+            | FLAG_SENSOR_SPEED | FLAG_SENSOR_POWER | FLAG_SENSOR_STRIDES | FLAG_SENSOR_TEMPERATURE;
+    // shift of sensor flags in serialized byte (version 3+)
+    private static final int SENSOR_FLAGS_SHIFT = 3;
+
     /**
-     * Container for extended data for location class.
+     * Container for basic extra values.
      */
-    private static class ExtraBasic implements Cloneable {
-
-        boolean hasSpeed;
-        float speed;
-
-        boolean hasBearing;
-        float bearing;
-
-        boolean hasAccuracy;
-        float accuracy;
+    private static final class ExtraBasic {
+
+        // speed value [m/s]
+        private float speed;
+        // bearing value [°]
+        private float bearing;
+        // accuracy value [m]
+        private float accuracy;
+
+        private void set(ExtraBasic extra) {
+            speed = extra.speed;
+            bearing = extra.bearing;
+            accuracy = extra.accuracy;
+        }
 
-        ExtraBasic() {
-            hasSpeed = false;
+        private void clear() {
             speed = 0.0f;
-            hasBearing = false;
             bearing = 0.0f;
-            hasAccuracy = false;
             accuracy = 0.0f;
         }
-
-        @Override
-        public ExtraBasic clone() {
-            ExtraBasic newExtra = new ExtraBasic();
-            newExtra.hasSpeed = hasSpeed;
-            newExtra.speed = speed;
-            newExtra.hasBearing = hasBearing;
-            newExtra.bearing = bearing;
-            newExtra.hasAccuracy = hasAccuracy;
-            newExtra.accuracy = accuracy;
-            return newExtra;
-        }
-
-        boolean hasData() {
-            return hasSpeed || hasBearing || hasAccuracy;
-        }
-
-        @Override
-        public String toString() {
-            return Utils.toString(ExtraBasic.this, "    ");
-        }
     }
 
     /**
-     * Container for data usually received from sensors.
+     * Container for values from sensors. These are defined only for a small part of
+     * locations, so plain location does not keep space for them.
      */
-    private static class ExtraSensor extends Storable implements Cloneable {
-
-        boolean hasHr;
-        int hr;
-
-        boolean hasCadence;
-        int cadence;
-
-        boolean hasSpeed;
-        float speed;
-
-        boolean hasPower;
-        float power;
-
-        boolean hasStrides;
-        int strides;
-
-        @Deprecated
-        private boolean hasBattery;
-        @Deprecated
-        private int battery;
-
-        boolean hasTemperature;
-        float temperature;
+    private static final class ExtraSensor {
+
+        // heart rate value [bpm]
+        private int hr;
+        // cadence value
+        private int cadence;
+        // speed value [m/s]
+        private float speed;
+        // power value [W]
+        private float power;
+        // number of strides
+        private int strides;
+        // temperature value [°C]
+        private float temperature;
+
+        private void set(ExtraSensor extra) {
+            hr = extra.hr;
+            cadence = extra.cadence;
+            speed = extra.speed;
+            power = extra.power;
+            strides = extra.strides;
+            temperature = extra.temperature;
+        }
 
-        public ExtraSensor() {
-            hasHr = false;
+        private void clear() {
             hr = 0;
-            hasCadence = false;
             cadence = 0;
-            hasSpeed = false;
             speed = 0.0f;
-            hasPower = false;
             power = 0.0f;
-            hasStrides = false;
             strides = 0;
-            hasBattery = false;
-            battery = 0;
-            hasTemperature = false;
-            temperature = 0;
-        }
-
-        @Override
-        public ExtraSensor clone() {
-            ExtraSensor newExtra = new ExtraSensor();
-            newExtra.hasHr = hasHr;
-            newExtra.hr = hr;
-            newExtra.hasCadence = hasCadence;
-            newExtra.cadence = cadence;
-            newExtra.hasSpeed = hasSpeed;
-            newExtra.speed = speed;
-            newExtra.hasPower = hasPower;
-            newExtra.power = power;
-            newExtra.hasStrides = hasStrides;
-            newExtra.strides = strides;
-            newExtra.hasTemperature = hasTemperature;
-            newExtra.temperature = temperature;
-            return newExtra;
-        }
-
-        boolean hasData() {
-            return hasHr || hasCadence ||
-                    hasSpeed || hasPower ||
-                    hasStrides || hasTemperature;
-        }
-
-        @Override
-        protected int getVersion() {
-            return 1;
-        }
-
-        @Override
-        protected void readObject(int version, DataReaderBigEndian dr)
-                throws IOException {
-            hasHr = dr.readBoolean();
-            hr = dr.readInt();
-            hasCadence = dr.readBoolean();
-            cadence = dr.readInt();
-            hasSpeed = dr.readBoolean();
-            speed = dr.readFloat();
-            hasPower = dr.readBoolean();
-            power = dr.readFloat();
-            hasStrides = dr.readBoolean();
-            strides = dr.readInt();
-            hasBattery = dr.readBoolean();
-            battery = dr.readInt();
-            if (version >= 1) {
-                hasTemperature = dr.readBoolean();
-                temperature = dr.readFloat();
-            }
-        }
-
-        @Override
-        protected void writeObject(DataWriterBigEndian dw) throws IOException {
-            dw.writeBoolean(hasHr);
-            dw.writeInt(hr);
-            dw.writeBoolean(hasCadence);
-            dw.writeInt(cadence);
-            dw.writeBoolean(hasSpeed);
-            dw.writeFloat(speed);
-            dw.writeBoolean(hasPower);
-            dw.writeFloat(power);
-            dw.writeBoolean(hasStrides);
-            dw.writeInt(strides);
-            dw.writeBoolean(hasBattery);
-            dw.writeInt(battery);
-            dw.writeBoolean(hasTemperature);
-            dw.writeFloat(temperature);
-        }
-
-        @Override
-        public String toString() {
-            return Utils.toString(ExtraSensor.this, "    ");
+            temperature = 0.0f;
         }
     }
 
@@ -229,13 +159,7 @@ public class Location extends Storable {
      * Do not use directly!
      */
     public Location() {
-        mId = -1L;
-        provider = "";
-        time = 0L;
-        latitude = 0.0;
-        longitude = 0.0;
-        mExtraBasic = null;
-        mExtraSensor = null;
+        reset();
     }
 
     public Location(double lat, double lon) {
@@ -251,6 +175,8 @@ public class Location extends Storable {
 
     /**
      * Sets the contents of the location to the values from the given location.
+     * Nothing is shared with source location, so both objects may be modified
+     * independently after the call.
      *
      * @param loc source location object
      */
@@ -260,28 +186,69 @@ public class Location extends Storable {
         time = loc.time;
         latitude = loc.latitude;
         longitude = loc.longitude;
-        mHasAltitude = loc.hasAltitude();
+        mHasAltitude = loc.mHasAltitude;
         mAltitude = loc.getAltitude();
 
-        // set extra basic data
-        if (loc.mExtraBasic != null && loc.mExtraBasic.hasData()) {
-            mExtraBasic = loc.mExtraBasic.clone();
-            if (!mExtraBasic.hasData()) {
-                mExtraBasic = null;
-            }
-        } else {
-            mExtraBasic = null;
+        // set extra data, existing containers are reused
+        mExtraFlags = loc.mExtraFlags;
+        if (loc.mExtraBasic != null) {
+            getExtraBasic().set(loc.mExtraBasic);
+        } else if (mExtraBasic != null) {
+            mExtraBasic.clear();
         }
+        if (loc.mExtraSensor != null) {
+            getExtraSensor().set(loc.mExtraSensor);
+        } else if (mExtraSensor != null) {
+            mExtraSensor.clear();
+        }
+    }
 
-        // set extra ant data
-        if (loc.mExtraSensor != null && loc.mExtraSensor.hasData()) {
-            mExtraSensor = loc.mExtraSensor.clone();
-            if (!mExtraSensor.hasData()) {
-                mExtraSensor = null;
-            }
-        } else {
-            mExtraSensor = null;
+    /**
+     * Remove all values and set object to the state of newly created location,
+     * so object may be reused.
+     */
+    public void reset() {
+        mId = -1L;
+        provider = "";
+        time = 0L;
+        latitude = 0.0;
+        longitude = 0.0;
+        mHasAltitude = false;
+        mAltitude = 0.0;
+        clearExtra();
+    }
+
+    /**
+     * Remove all extra values. Existing containers are kept for reuse.
+     */
+    private void clearExtra() {
+        mExtraFlags = 0;
+        if (mExtraBasic != null) {
+            mExtraBasic.clear();
+        }
+        if (mExtraSensor != null) {
+            mExtraSensor.clear();
+        }
+    }
+
+    /**
+     * Get container for basic values, created if not exists yet.
+     */
+    private ExtraBasic getExtraBasic() {
+        if (mExtraBasic == null) {
+            mExtraBasic = new ExtraBasic();
         }
+        return mExtraBasic;
+    }
+
+    /**
+     * Get container for sensor values, created if not exists yet.
+     */
+    private ExtraSensor getExtraSensor() {
+        if (mExtraSensor == null) {
+            mExtraSensor = new ExtraSensor();
+        }
+        return mExtraSensor;
     }
 
     //*************************************************
@@ -290,7 +257,7 @@ public class Location extends Storable {
 
     @Override
     protected int getVersion() {
-        return 2;
+        return 3;
     }
 
     @Override
@@ -303,17 +270,26 @@ public class Location extends Storable {
         mHasAltitude = dr.readBoolean();
         mAltitude = dr.readDouble();
 
+        // remove extra data of reused object
+        clearExtra();
+
         // red basic data
         if (dr.readBoolean()) {
-            mExtraBasic = new ExtraBasic();
-            mExtraBasic.hasAccuracy = dr.readBoolean();
-            mExtraBasic.accuracy = dr.readFloat();
-            mExtraBasic.hasBearing = dr.readBoolean();
-            mExtraBasic.bearing = dr.readFloat();
-            mExtraBasic.hasSpeed = dr.readBoolean();
-            mExtraBasic.speed = dr.readFloat();
-            if (!mExtraBasic.hasData()) {
-                mExtraBasic = null;
+            boolean hasAccuracy = dr.readBoolean();
+            float accuracy = dr.readFloat();
+            boolean hasBearing = dr.readBoolean();
+            float bearing = dr.readFloat();
+            boolean hasSpeed = dr.readBoolean();
+            float speed = dr.readFloat();
+            if (hasAccuracy) {
+                setAccuracy(accuracy);
+            }
+            if (hasBearing) {
+                mExtraFlags |= FLAG_BEARING;
+                getExtraBasic().bearing = bearing;
+            }
+            if (hasSpeed) {
+                setSpeed(speed);
             }
         }
 
@@ -325,27 +301,98 @@ public class Location extends Storable {
         // read sensor data
         if (dr.readBoolean()) {
             if (version == 1) {
-                readSensorVersion1(dr);
+                readSensors(dr, -1);
             } else {
-                mExtraSensor = new ExtraSensor();
-                mExtraSensor.read(dr);
+                // sensors stored as separate object (version 2), read it without extra copy
+                int sensorVersion = dr.readInt();
+                int size = dr.readInt();
+                if (size < 0 || size > dr.available()) {
+                    throw new IOException("Invalid size of sensor data: " + size);
+                }
+                int end = (int) (dr.length() - dr.available()) + size;
+                readSensors(dr, sensorVersion);
+                dr.seek(end);
+            }
+        }
+
+        // V3
+        if (version >= 3) {
+            int flags = (dr.readByte() << SENSOR_FLAGS_SHIFT) & FLAGS_SENSOR;
+            if (flags != 0) {
+                ExtraSensor sensor = getExtraSensor();
+                if ((flags & FLAG_SENSOR_HR) != 0) {
+                    sensor.hr = dr.readInt();
+                }
+                if ((flags & FLAG_SENSOR_CADENCE) != 0) {
+                    sensor.cadence = dr.readInt();
+                }
+                if ((flags & FLAG_SENSOR_SPEED) != 0) {
+                    sensor.speed = dr.readFloat();
+                }
+                if ((flags & FLAG_SENSOR_POWER) != 0) {
+                    sensor.power = dr.readFloat();
+                }
+                if ((flags & FLAG_SENSOR_STRIDES) != 0) {
+                    sensor.strides = dr.readInt();
+                }
+                if ((flags & FLAG_SENSOR_TEMPERATURE) != 0) {
+                    sensor.temperature = dr.readFloat();
+                }
+                mExtraFlags |= flags;
             }
         }
     }
 
-    private void readSensorVersion1(DataReaderBigEndian dr) {
-        mExtraSensor = new ExtraSensor();
-        mExtraSensor.hasHr = dr.readBoolean();
-        mExtraSensor.hr = dr.readInt();
-        mExtraSensor.hasCadence = dr.readBoolean();
-        mExtraSensor.cadence = dr.readInt();
-        mExtraSensor.hasSpeed = dr.readBoolean();
-        mExtraSensor.speed = dr.readFloat();
-        mExtraSensor.hasPower = dr.readBoolean();
-        mExtraSensor.power = dr.readFloat();
+    /**
+     * Read sensor values stored in format of version 1 and 2.
+     *
+     * @param dr         reader
+     * @param version    version of sensor block, or '-1' for sensors stored directly in
+     *                   version 1 of location
+     */
+    private void readSensors(DataReaderBigEndian dr, int version) {
+        boolean hasHr = dr.readBoolean();
+        int hr = dr.readInt();
+        boolean hasCadence = dr.readBoolean();
+        int cadence = dr.readInt();
+        boolean hasSpeed = dr.readBoolean();
+        float speed = dr.readFloat();
+        boolean hasPower = dr.readBoolean();
+        float power = dr.readFloat();
+        if (hasHr) {
+            setSensorHeartRate(hr);
+        }
+        if (hasCadence) {
+            setSensorCadence(cadence);
+        }
+        if (hasSpeed) {
+            setSensorSpeed(speed);
+        }
+        if (hasPower) {
+            setSensorPower(power);
+        }
+
+        // end of sensors in version 1 of location
+        if (version < 0) {
+            return;
+        }
+
+        // strides and (deprecated) battery
+        boolean hasStrides = dr.readBoolean();
+        int strides = dr.readInt();
+        dr.readBoolean();
+        dr.readInt();
+        if (hasStrides) {
+            setSensorStrides(strides);
+        }
 
-        if (!mExtraSensor.hasData()) {
-            mExtraSensor = null;
+        // V1
+        if (version >= 1) {
+            boolean hasTemperature = dr.readBoolean();
+            float temperature = dr.readFloat();
+            if (hasTemperature) {
+                setSensorTemperature(temperature);
+            }
         }
     }
 
@@ -360,24 +407,43 @@ public class Location extends Storable {
         dw.writeDouble(mAltitude);
 
         // write basic data
-        if (mExtraBasic == null || !mExtraBasic.hasData()) {
+        if ((mExtraFlags & FLAGS_BASIC) == 0) {
             dw.writeBoolean(false);
         } else {
             dw.writeBoolean(true);
-            dw.writeBoolean(mExtraBasic.hasAccuracy);
-            dw.writeFloat(mExtraBasic.accuracy);
-            dw.writeBoolean(mExtraBasic.hasBearing);
-            dw.writeFloat(mExtraBasic.bearing);
-            dw.writeBoolean(mExtraBasic.hasSpeed);
-            dw.writeFloat(mExtraBasic.speed);
+            dw.writeBoolean(hasAccuracy());
+            dw.writeFloat(getAccuracy());
+            dw.writeBoolean(hasBearing());
+            dw.writeFloat(getBearing());
+            dw.writeBoolean(hasSpeed());
+            dw.writeFloat(getSpeed());
         }
 
-        // write ant data (version 1+)
-        if (mExtraSensor == null || !mExtraSensor.hasData()) {
-            dw.writeBoolean(false);
-        } else {
-            dw.writeBoolean(true);
-            mExtraSensor.write(dw);
+        // block of sensors used in version 1 and 2, no longer written
+        dw.writeBoolean(false);
+
+        // V3, flags of sensors followed by defined values only
+        int flags = mExtraFlags & FLAGS_SENSOR;
+        dw.writeByte((byte) (flags >> SENSOR_FLAGS_SHIFT));
+        if (flags != 0) {
+            if (hasSensorHeartRate()) {
+                dw.writeInt(mExtraSensor.hr);
+            }
+            if (hasSensorCadence()) {
+                dw.writeInt(mExtraSensor.cadence);
+            }
+            if (hasSensorSpeed()) {
+                dw.writeFloat(mExtraSensor.speed);
+            }
+            if (hasSensorPower()) {
+                dw.writeFloat(mExtraSensor.power);
+            }
+            if (hasSensorStrides()) {
+                dw.writeInt(mExtraSensor.strides);
+            }
+            if (hasSensorTemperature()) {
+                dw.writeFloat(mExtraSensor.temperature);
+            }
         }
     }
 
@@ -569,8 +635,7 @@ public class Location extends Storable {
      * @return {@code true} if location has defined speed value
      */
     public boolean hasSpeed() {
-        return mExtraBasic != null &&
-                mExtraBasic.hasSpeed;
+        return (mExtraFlags & FLAG_SPEED) != 0;
     }
 
     /**
@@ -579,10 +644,7 @@ public class Location extends Storable {
      * @return speed value (in metres/sec)
      */
     public float getSpeed() {
-        if (hasSpeed()) {
-            return mExtraBasic.speed;
-        }
-        return 0.0f;
+        return mExtraBasic == null ? 0.0f : mExtraBasic.speed;
     }
 
     /**
@@ -591,14 +653,8 @@ public class Location extends Storable {
      * @param speed speed value (in metres/sec)
      */
     public void setSpeed(float speed) {
-        // check container
-        if (mExtraBasic == null) {
-            mExtraBasic = new ExtraBasic();
-        }
-
-        // set value
-        mExtraBasic.speed = speed;
-        mExtraBasic.hasSpeed = true;
+        getExtraBasic().speed = speed;
+        mExtraFlags |= FLAG_SPEED;
     }
 
     /**
@@ -606,15 +662,10 @@ public class Location extends Storable {
      * will return false.
      */
     public void removeSpeed() {
-        // check container
-        if (mExtraBasic == null) {
-            return;
+        if (mExtraBasic != null) {
+            mExtraBasic.speed = 0.0f;
         }
-
-        // remove parameter
-        mExtraBasic.speed = 0.0f;
-        mExtraBasic.hasSpeed = false;
-        checkExtraBasic();
+        mExtraFlags &= ~FLAG_SPEED;
     }
 
     // BEARING
@@ -625,8 +676,7 @@ public class Location extends Storable {
      * @return {@code true} if location has bearing value
      */
     public boolean hasBearing() {
-        return mExtraBasic != null &&
-                mExtraBasic.hasBearing;
+        return (mExtraFlags & FLAG_BEARING) != 0;
     }
 
     /**
@@ -635,10 +685,7 @@ public class Location extends Storable {
      * @return bearing value (in degrees)
      */
     public float getBearing() {
-        if (hasBearing()) {
-            return mExtraBasic.bearing;
-        }
-        return 0.0f;
+        return mExtraBasic == null ? 0.0f : mExtraBasic.bearing;
     }
 
     /**
@@ -653,12 +700,8 @@ public class Location extends Storable {
         while (bearing >= 360.0f) {
             bearing -= 360.0f;
         }
-
-        if (mExtraBasic == null) {
-            mExtraBasic = new ExtraBasic();
-        }
-        mExtraBasic.bearing = bearing;
-        mExtraBasic.hasBearing = true;
+        getExtraBasic().bearing = bearing;
+        mExtraFlags |= FLAG_BEARING;
     }
 
     /**
@@ -666,15 +709,10 @@ public class Location extends Storable {
      * will return false.
      */
     public void removeBearing() {
-        // check data
-        if (mExtraBasic == null) {
-            return;
+        if (mExtraBasic != null) {
+            mExtraBasic.bearing = 0.0f;
         }
-
-        // remove parameter
-        mExtraBasic.bearing = 0.0f;
-        mExtraBasic.hasBearing = false;
-        checkExtraBasic();
+        mExtraFlags &= ~FLAG_BEARING;
     }
 
     // ACCURACY
@@ -686,8 +724,7 @@ public class Location extends Storable {
      * @return {@code true} is location has defined accuracy
      */
     public boolean hasAccuracy() {
-        return mExtraBasic != null &&
-                mExtraBasic.hasAccuracy;
+        return (mExtraFlags & FLAG_ACCURACY) != 0;
     }
 
     /**
@@ -696,10 +733,7 @@ public class Location extends Storable {
      * @return accuracy value (in metres)
      */
     public float getAccuracy() {
-        if (hasAccuracy()) {
-            return mExtraBasic.accuracy;
-        }
-        return 0.0f;
+        return mExtraBasic == null ? 0.0f : mExtraBasic.accuracy;
     }
 
     /**
@@ -708,37 +742,18 @@ public class Location extends Storable {
      * @param accuracy accuracy value (in metres)
      */
     public void setAccuracy(float accuracy) {
-        if (mExtraBasic == null) {
-            mExtraBasic = new ExtraBasic();
-        }
-        mExtraBasic.accuracy = accuracy;
-        mExtraBasic.hasAccuracy = true;
+        getExtraBasic().accuracy = accuracy;
+        mExtraFlags |= FLAG_ACCURACY;
     }
 
     /**
      * Clears the accuracy of this fix.  Following this call, hasAccuracy() will return false.
      */
     public void removeAccuracy() {
-        // check container
-        if (mExtraBasic == null) {
-            return;
-        }
-
-        // remove data
-        mExtraBasic.accuracy = 0.0f;
-        mExtraBasic.hasAccuracy = false;
-        checkExtraBasic();
-    }
-
-    // TOOLS
-
-    /**
-     * Check extra data container and remove it if no data exists.
-     */
-    private void checkExtraBasic() {
-        if (!mExtraBasic.hasData()) {
-            mExtraBasic = null;
+        if (mExtraBasic != null) {
+            mExtraBasic.accuracy = 0.0f;
         }
+        mExtraFlags &= ~FLAG_ACCURACY;
     }
 
     //*************************************************
@@ -754,8 +769,7 @@ public class Location extends Storable {
      * @return {@code true} if location has HRM sensor data
      */
     public boolean hasSensorHeartRate() {
-        return mExtraSensor != null &&
-                mExtraSensor.hasHr;
+        return (mExtraFlags & FLAG_SENSOR_HR) != 0;
     }
 
     /**
@@ -764,10 +778,7 @@ public class Location extends Storable {
      * @return heart rate sensor value (in BPM)
      */
     public int getSensorHeartRate() {
-        if (hasSensorHeartRate()) {
-            return mExtraSensor.hr;
-        }
-        return 0;
+        return mExtraSensor == null ? 0 : mExtraSensor.hr;
     }
 
     /**
@@ -776,11 +787,8 @@ public class Location extends Storable {
      * @param heartRate heart rate value (in BPM)
      */
     public void setSensorHeartRate(int heartRate) {
-        if (mExtraSensor == null) {
-            mExtraSensor = new ExtraSensor();
-        }
-        mExtraSensor.hr = heartRate;
-        mExtraSensor.hasHr = true;
+        getExtraSensor().hr = heartRate;
+        mExtraFlags |= FLAG_SENSOR_HR;
     }
 
     /**
@@ -788,15 +796,10 @@ public class Location extends Storable {
      * will return false.
      */
     public void removeSensorHeartRate() {
-        // check container
-        if (mExtraSensor == null) {
-            return;
+        if (mExtraSensor != null) {
+            mExtraSensor.hr = 0;
         }
-
-        // remove parameter
-        mExtraSensor.hr = 0;
-        mExtraSensor.hasHr = false;
-        checkExtraSensor();
+        mExtraFlags &= ~FLAG_SENSOR_HR;
     }
 
     // CADENCE
@@ -808,8 +811,7 @@ public class Location extends Storable {
      * @return {@code true} if location has defined cadence value
      */
     public boolean hasSensorCadence() {
-        return mExtraSensor != null &&
-                mExtraSensor.hasCadence;
+        return (mExtraFlags & FLAG_SENSOR_CADENCE) != 0;
     }
 
     /**
@@ -818,10 +820,7 @@ public class Location extends Storable {
      * @return cadence value
      */
     public int getSensorCadence() {
-        if (hasSensorCadence()) {
-            return mExtraSensor.cadence;
-        }
-        return 0;
+        return mExtraSensor == null ? 0 : mExtraSensor.cadence;
     }
 
     /**
@@ -830,29 +829,18 @@ public class Location extends Storable {
      * @param cadence cadence value
      */
     public void setSensorCadence(int cadence) {
-        // check container
-        if (mExtraSensor == null) {
-            mExtraSensor = new ExtraSensor();
-        }
-
-        // set parameter
-        mExtraSensor.cadence = cadence;
-        mExtraSensor.hasCadence = true;
+        getExtraSensor().cadence = cadence;
+        mExtraFlags |= FLAG_SENSOR_CADENCE;
     }
 
     /**
      * Clears the cadence of this fix.  Following this call, hasCadence() will return false.
      */
     public void removeSensorCadence() {
-        // check container
-        if (mExtraSensor == null) {
-            return;
+        if (mExtraSensor != null) {
+            mExtraSensor.cadence = 0;
         }
-
-        // reove parameter
-        mExtraSensor.cadence = 0;
-        mExtraSensor.hasCadence = false;
-        checkExtraSensor();
+        mExtraFlags &= ~FLAG_SENSOR_CADENCE;
     }
 
     // SPEED
@@ -864,8 +852,7 @@ public class Location extends Storable {
      * @return {@code true} if location has defined sensor speed
      */
     public boolean hasSensorSpeed() {
-        return mExtraSensor != null &&
-                mExtraSensor.hasSpeed;
+        return (mExtraFlags & FLAG_SENSOR_SPEED) != 0;
     }
 
     /**
@@ -874,10 +861,7 @@ public class Location extends Storable {
      * @return sensor speed value (in metres/sec)
      */
     public float getSensorSpeed() {
-        if (hasSensorSpeed()) {
-            return mExtraSensor.speed;
-        }
-        return 0.0f;
+        return mExtraSensor == null ? 0.0f : mExtraSensor.speed;
     }
 
     /**
@@ -886,26 +870,18 @@ public class Location extends Storable {
      * @param speed sensor speed (in metres/sec)
      */
     public void setSensorSpeed(float speed) {
-        if (mExtraSensor == null) {
-            mExtraSensor = new ExtraSensor();
-        }
-        mExtraSensor.speed = speed;
-        mExtraSensor.hasSpeed = true;
+        getExtraSensor().speed = speed;
+        mExtraFlags |= FLAG_SENSOR_SPEED;
     }
 
     /**
      * Clears the speed of this fix.  Following this call, hasSensorSpeed() will return false.
      */
     public void removeSensorSpeed() {
-        // check container
-        if (mExtraSensor == null) {
-            return;
+        if (mExtraSensor != null) {
+            mExtraSensor.speed = 0.0f;
         }
-
-        // remove parameter
-        mExtraSensor.speed = 0.0f;
-        mExtraSensor.hasSpeed = false;
-        checkExtraSensor();
+        mExtraFlags &= ~FLAG_SENSOR_SPEED;
     }
 
     // POWER
@@ -917,8 +893,7 @@ public class Location extends Storable {
      * @return {@code true} is location has defined power value
      */
     public boolean hasSensorPower() {
-        return mExtraSensor != null &&
-                mExtraSensor.hasPower;
+        return (mExtraFlags & FLAG_SENSOR_POWER) != 0;
     }
 
     /**
@@ -927,10 +902,7 @@ public class Location extends Storable {
      * @return power value (in Watts)
      */
     public float getSensorPower() {
-        if (hasSensorPower()) {
-            return mExtraSensor.power;
-        }
-        return 0.0f;
+        return mExtraSensor == null ? 0.0f : mExtraSensor.power;
     }
 
     /**
@@ -939,11 +911,8 @@ public class Location extends Storable {
      * @param power power value (in Watts)
      */
     public void setSensorPower(float power) {
-        if (mExtraSensor == null) {
-            mExtraSensor = new ExtraSensor();
-        }
-        mExtraSensor.power = power;
-        mExtraSensor.hasPower = true;
+        getExtraSensor().power = power;
+        mExtraFlags |= FLAG_SENSOR_POWER;
     }
 
     /**
@@ -951,15 +920,10 @@ public class Location extends Storable {
      * will return false.
      */
     public void removeSensorPower() {
-        // check container
-        if (mExtraSensor == null) {
-            return;
+        if (mExtraSensor != null) {
+            mExtraSensor.power = 0.0f;
         }
-
-        // remove parameter
-        mExtraSensor.power = 0.0f;
-        mExtraSensor.hasPower = false;
-        checkExtraSensor();
+        mExtraFlags &= ~FLAG_SENSOR_POWER;
     }
 
     // STRIDES
@@ -971,8 +935,7 @@ public class Location extends Storable {
      * @return {@code true} if location has stride parameter
      */
     public boolean hasSensorStrides() {
-        return mExtraSensor != null &&
-                mExtraSensor.hasStrides;
+        return (mExtraFlags & FLAG_SENSOR_STRIDES) != 0;
     }
 
     /**
@@ -981,10 +944,7 @@ public class Location extends Storable {
      * @return number of strides since begin of track recording
      */
     public int getSensorStrides() {
-        if (hasSensorStrides()) {
-            return mExtraSensor.strides;
-        }
-        return 0;
+        return mExtraSensor == null ? 0 : mExtraSensor.strides;
     }
 
     /**
@@ -993,26 +953,18 @@ public class Location extends Storable {
      * @param strides number of strides
      */
     public void setSensorStrides(int strides) {
-        if (mExtraSensor == null) {
-            mExtraSensor = new ExtraSensor();
-        }
-        mExtraSensor.strides = strides;
-        mExtraSensor.hasStrides = true;
+        getExtraSensor().strides = strides;
+        mExtraFlags |= FLAG_SENSOR_STRIDES;
     }
 
     /**
      * Clears the num of strides. Following this call, hasSensorStrides() will return false.
      */
     public void removeSensorStrides() {
-        // check container
-        if (mExtraSensor == null) {
-            return;
+        if (mExtraSensor != null) {
+            mExtraSensor.strides = 0;
         }
-
-        // remove parameter
-        mExtraSensor.strides = 0;
-        mExtraSensor.hasStrides = false;
-        checkExtraSensor();
+        mExtraFlags &= ~FLAG_SENSOR_STRIDES;
     }
 
     // TEMPERATURE
@@ -1024,8 +976,7 @@ public class Location extends Storable {
      * @return {@code true} is sensor has temperature
      */
     public boolean hasSensorTemperature() {
-        return mExtraSensor != null &&
-                mExtraSensor.hasTemperature;
+        return (mExtraFlags & FLAG_SENSOR_TEMPERATURE) != 0;
     }
 
     /**
@@ -1034,10 +985,7 @@ public class Location extends Storable {
      * @return temperature value (in °C)
      */
     public float getSensorTemperature() {
-        if (hasSensorTemperature()) {
-            return mExtraSensor.temperature;
-        }
-        return 0.0f;
+        return mExtraSensor == null ? 0.0f : mExtraSensor.temperature;
     }
 
     /**
@@ -1046,14 +994,8 @@ public class Location extends Storable {
      * @param temperature temperature value (in °C)
      */
     public void setSensorTemperature(float temperature) {
-        // check container
-        if (mExtraSensor == null) {
-            mExtraSensor = new ExtraSensor();
-        }
-
-        // set parameter
-        mExtraSensor.temperature = temperature;
-        mExtraSensor.hasTemperature = true;
+        getExtraSensor().temperature = temperature;
+        mExtraFlags |= FLAG_SENSOR_TEMPERATURE;
     }
 
     /**
@@ -1061,23 +1003,10 @@ public class Location extends Storable {
      * will return false.
      */
     public void removeSensorTemperature() {
-        // check container
-        if (mExtraSensor == null) {
-            return;
-        }
-
-        // remove parameter
-        mExtraSensor.temperature = 0.0f;
-        mExtraSensor.hasTemperature = false;
-        checkExtraSensor();
-    }
-
-    // PRIVATE
-
-    private void checkExtraSensor() {
-        if (!mExtraSensor.hasData()) {
-            mExtraSensor = null;
+        if (mExtraSensor != null) {
+            mExtraSensor.temperature = 0.0f;
         }
+        mExtraFlags &= ~FLAG_SENSOR_TEMPERATURE;
     }
 
     //*************************************************
@@ -1107,6 +1036,19 @@ public class Location extends Storable {
         return com.distanceTo(dest);
     }
 
+    /**
+     * Returns the approximate distance in meters between this location and the given
+     * location, computed by defined strategy.
+     *
+     * @param dest     the destination location
+     * @param strategy method of compute, see {@link DistanceStrategy#select(double, double)}
+     * @return the approximate distance in meters
+     */
+    public float distanceTo(Location dest, DistanceStrategy strategy) {
+        return (float) strategy.computeDistance(latitude, longitude,
+                dest.latitude, dest.longitude);
+    }
+
     /**
      * Returns the approximate initial bearing in degrees East of true
      * North when traveling along the shortest path between this
@@ -1161,6 +1103,9 @@ public class Location extends Storable {
      * Clear all attached sensors values.
      */
     public void removeSensorAll() {
-        mExtraSensor = null;
+        if (mExtraSensor != null) {
+            mExtraSensor.clear();
+        }
+        mExtraFlags &= ~FLAGS_SENSOR;
     }
 }
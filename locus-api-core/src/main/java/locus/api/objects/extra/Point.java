@@ -23,6 +23,7 @@ package locus.api.objects.extra;
 import java.io.IOException;
 
 import locus.api.objects.GeoData;
+import locus.api.objects.Storable;
 import locus.api.objects.geocaching.GeocachingData;
 import locus.api.utils.DataReaderBigEndian;
 import locus.api.utils.DataWriterBigEndian;
@@ -33,6 +34,17 @@ public class Point extends GeoData {
     // tag for logger
     private static final String TAG = "Point";
 
+    /**
+     * Factory of empty objects, used for reading of lists.
+     */
+    public static final Storable.Factory<Point> FACTORY = new Storable.Factory<Point>() {
+
+        @Override
+        public Point create() {
+            return new Point();
+        }
+    };
+
     // callback parameter
     public static final String TAG_EXTRA_CALLBACK = "TAG_EXTRA_CALLBACK";
     // extra on-display parameter
@@ -259,13 +271,32 @@ public class Point extends GeoData {
 
     @Override
     protected void writeObject(DataWriterBigEndian dw) throws IOException {
+        writeObject(dw, null);
+    }
+
+    /**
+     * Write point with styles stored in registry of container instead of inline styles.
+     * Container is then responsible for writing the registry itself.
+     *
+     * @param dw       data writer
+     * @param registry registry of styles or 'null' to write styles inline
+     * @throws IOException thrown in case of invalid data format
+     */
+    public void write(DataWriterBigEndian dw, GeoDataStyleRegistry registry) throws IOException {
+        int startSize = writeHeader(dw);
+        writeObject(dw, registry);
+        writeSize(dw, startSize);
+    }
+
+    private void writeObject(DataWriterBigEndian dw, GeoDataStyleRegistry registry)
+            throws IOException {
         dw.writeLong(getId());
         dw.writeString(name);
         loc.write(dw);
 
         // write extra data
         writeExtraData(dw);
-        writeStyles(dw);
+        writeStyles(dw, registry);
 
         // write geocaching data
         writeGeocachingData(dw);
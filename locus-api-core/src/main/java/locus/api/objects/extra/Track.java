@@ -23,6 +23,7 @@ package locus.api.objects.extra;
 import locus.api.objects.GeoData;
 import locus.api.utils.DataReaderBigEndian;
 import locus.api.utils.DataWriterBigEndian;
+import locus.api.utils.LazyStorableList;
 import locus.api.utils.Logger;
 
 import java.io.IOException;
@@ -59,6 +60,19 @@ public class Track extends GeoData {
     // reference to Locus Store item (version ID)
     public long storeVersionId;
 
+    // bounding box of all points
+    private BoundingBox mBounds;
+    // bounding boxes of parts of track, with 'mSegmentBoundsSize' points
+    private List<BoundingBox> mSegmentBounds;
+    // number of points in single part of track with own bounding box, '0' to disable
+    private int mSegmentBoundsSize;
+    // list of points, bounding boxes were computed for
+    private List<Location> mBoundsPoints;
+    // number of points already included in bounding boxes
+    private int mBoundsCount;
+    // flag if points should be decoded only on demand during read
+    private boolean mReadLazy;
+
     // CONSTRUCTOR
 
     /**
@@ -92,6 +106,13 @@ public class Track extends GeoData {
         // V6
         storeItemId = -1L;
         storeVersionId = -1L;
+
+        // V7
+        mBounds = new BoundingBox();
+        mSegmentBounds = new ArrayList<>();
+        mSegmentBoundsSize = 0;
+        mBoundsPoints = null;
+        mBoundsCount = 0;
     }
 
     //*************************************************
@@ -215,6 +236,123 @@ public class Track extends GeoData {
         mActivityType = activityType;
     }
 
+    // BOUNDS
+
+    /**
+     * Get bounding box of all points. Box is updated incrementally, so only points added
+     * to the end of list since previous call are processed. If existing points are modified
+     * or removed, call {@link #invalidateBounds()}. Serialized boxes are always computed
+     * again from current points.
+     *
+     * @return bounding box of track, do not modify
+     */
+    public BoundingBox getBounds() {
+        updateBounds();
+        return mBounds;
+    }
+
+    /**
+     * Get bounding boxes of parts of track, every with {@link #getSegmentBoundsSize()}
+     * points. Part also includes first point of next part, so it covers also connecting
+     * line. Boxes allow fast culling of long tracks, that are only partially visible.
+     *
+     * @return bounding boxes of parts of track or empty list if disabled, do not modify
+     */
+    public List<BoundingBox> getSegmentBounds() {
+        updateBounds();
+        return mSegmentBounds;
+    }
+
+    /**
+     * Get number of points covered by single box of {@link #getSegmentBounds()}.
+     *
+     * @return number of points or '0' if boxes of parts are disabled
+     */
+    public int getSegmentBoundsSize() {
+        return mSegmentBoundsSize;
+    }
+
+    /**
+     * Set number of points covered by single box of {@link #getSegmentBounds()}. Boxes
+     * are serialized together with track, so receiving side may use them without decoding
+     * of points.
+     *
+     * @param segmentBoundsSize number of points or '0' to disable boxes of parts
+     */
+    public void setSegmentBoundsSize(int segmentBoundsSize) {
+        if (segmentBoundsSize < 0) {
+            throw new IllegalArgumentException("setSegmentBoundsSize(" + segmentBoundsSize + "), " +
+                    "invalid parameter");
+        }
+        if (mSegmentBoundsSize != segmentBoundsSize) {
+            mSegmentBoundsSize = segmentBoundsSize;
+            invalidateBounds();
+        }
+    }
+
+    /**
+     * Force full re-computation of bounding boxes.
+     */
+    public void invalidateBounds() {
+        mBoundsPoints = null;
+    }
+
+    /**
+     * Compute bounding boxes again before serialization, as points may be modified in place.
+     * Points that are still only in serialized form are unchanged, so their boxes are valid.
+     */
+    private void updateBoundsForWrite() {
+        if (!(points instanceof LazyStorableList && ((LazyStorableList<?>) points).isSerialized())) {
+            invalidateBounds();
+        }
+        updateBounds();
+    }
+
+    /**
+     * Include points added since last update into bounding boxes.
+     */
+    private void updateBounds() {
+        int size = points.size();
+        if (mBoundsPoints != points || mBoundsCount > size) {
+            mBounds = new BoundingBox();
+            mSegmentBounds = new ArrayList<>();
+            mBoundsPoints = points;
+            mBoundsCount = 0;
+        }
+
+        // include new points
+        for (int i = mBoundsCount; i < size; i++) {
+            Location loc = points.get(i);
+            mBounds.extend(loc);
+            if (mSegmentBoundsSize > 0) {
+                int segment = i / mSegmentBoundsSize;
+                if (segment == mSegmentBounds.size()) {
+                    mSegmentBounds.add(new BoundingBox());
+                }
+                mSegmentBounds.get(segment).extend(loc);
+                if (segment > 0 && i % mSegmentBoundsSize == 0) {
+                    mSegmentBounds.get(segment - 1).extend(loc);
+                }
+            }
+        }
+        mBoundsCount = size;
+    }
+
+    /**
+     * Read only bounding box of serialized track. Points are not decoded, if track
+     * was serialized with version 7 or above.
+     *
+     * @param data serialized track
+     * @return bounding box of track
+     * @throws IOException thrown in case of invalid data format
+     */
+    public static BoundingBox readBounds(byte[] data) throws IOException {
+        Track track = new Track();
+        track.mReadLazy = true;
+        track.read(data);
+        return track.getBounds();
+    }
+
     // STATISTICS
 
     /**
@@ -258,7 +396,7 @@ public class Track extends GeoData {
 
     @Override
     public int getVersion() {
-        return 6;
+        return 7;
     }
 
     @SuppressWarnings("unchecked")
@@ -268,7 +406,11 @@ public class Track extends GeoData {
         name = dr.readString();
 
         // load locations
-        points = dr.readListStorable(Location.class);
+        if (mReadLazy) {
+            points = LazyStorableList.read(Location.FACTORY, dr);
+        } else {
+            points = dr.readListStorable(Location.FACTORY);
+        }
 
         // read breaks
         int breaksSize = dr.readInt();
@@ -277,7 +419,11 @@ public class Track extends GeoData {
         }
 
         // read waypoints
-        waypoints = dr.readListStorable(Point.class);
+        if (mReadLazy) {
+            waypoints = LazyStorableList.read(Point.FACTORY, dr);
+        } else {
+            waypoints = dr.readListStorable(Point.FACTORY);
+        }
 
         // read extra part
         readExtraData(dr);
@@ -341,6 +487,18 @@ public class Track extends GeoData {
             storeItemId = dr.readLong();
             storeVersionId = dr.readLong();
         }
+
+        // V7
+        invalidateBounds();
+        mSegmentBoundsSize = 0;
+        if (version >= 7) {
+            mBounds = new BoundingBox();
+            mBounds.read(dr);
+            mSegmentBoundsSize = dr.readInt();
+            mSegmentBounds = dr.readListStorable(BoundingBox.class);
+            mBoundsPoints = points;
+            mBoundsCount = points.size();
+        }
     }
 
     @Override
@@ -406,5 +564,11 @@ public class Track extends GeoData {
         // V6
         dw.writeLong(storeItemId);
         dw.writeLong(storeVersionId);
+
+        // V7
+        updateBoundsForWrite();
+        dw.writeStorable(mBounds);
+        dw.writeInt(mSegmentBoundsSize);
+        dw.writeListStorable(mSegmentBounds);
     }
 }
@@ -0,0 +1,280 @@
+package locus.api.objects.geocaching;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import locus.api.objects.Storable;
+import locus.api.utils.DataReaderBigEndian;
+import locus.api.utils.DataWriterBigEndian;
+
+/**
+ * Compact representation of geocaching attributes as two bitsets, one for positive and
+ * one for negative attributes. Bit on position N represents attribute with real ID N
+ * (see {@link GeocachingAttribute#getIdReal()}).
+ * <br><br>
+ * Set allows fast filtering of caches, for example "dog friendly, but not night cache":
+ * <pre>
+ * GeocachingAttributeSet required = new GeocachingAttributeSet().add(1, true);
+ * GeocachingAttributeSet excluded = new GeocachingAttributeSet().add(52, true);
+ * boolean valid = attrs.containsAll(required) &amp;&amp; !attrs.containsAny(excluded);
+ * </pre>
+ */
+public class GeocachingAttributeSet extends Storable {
+
+    // maximal supported real ID of attribute (exclusive)
+    public static final int MAX_ID = 128;
+
+    // positive attributes, ID 0 - 63
+    private long mPositive0;
+    // positive attributes, ID 64 - 127
+    private long mPositive1;
+    // negative attributes, ID 0 - 63
+    private long mNegative0;
+    // negative attributes, ID 64 - 127
+    private long mNegative1;
+
+    /**
+     * Create empty set.
+     */
+    public GeocachingAttributeSet() {
+        clear();
+    }
+
+    /**
+     * Create set from list of attributes.
+     *
+     * @param attributes list of attributes
+     * @return created set
+     */
+    public static GeocachingAttributeSet from(List<GeocachingAttribute> attributes) {
+        GeocachingAttributeSet set = new GeocachingAttributeSet();
+        if (attributes != null) {
+            for (int i = 0, m = attributes.size(); i < m; i++) {
+                GeocachingAttribute attr = attributes.get(i);
+                int idReal = attr.getIdReal();
+                if (idReal >= 0 && idReal < MAX_ID) {
+                    set.add(idReal, attr.isPositive());
+                }
+            }
+        }
+        return set;
+    }
+
+    //*************************************************
+    // MODIFICATION
+    //*************************************************
+
+    /**
+     * Add attribute to set. Attribute with same ID and opposite value is removed.
+     *
+     * @param idReal   real ID of attribute
+     * @param positive {@code true} for positive attribute
+     * @return current object
+     */
+    public GeocachingAttributeSet add(int idReal, boolean positive) {
+        checkId(idReal);
+        remove(idReal);
+        long bit = 1L << idReal;
+        if (positive) {
+            if (idReal < 64) {
+                mPositive0 |= bit;
+            } else {
+                mPositive1 |= bit;
+            }
+        } else {
+            if (idReal < 64) {
+                mNegative0 |= bit;
+            } else {
+                mNegative1 |= bit;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Remove attribute from set.
+     *
+     * @param idReal real ID of attribute
+     * @return current object
+     */
+    public GeocachingAttributeSet remove(int idReal) {
+        checkId(idReal);
+        long mask = ~(1L << idReal);
+        if (idReal < 64) {
+            mPositive0 &= mask;
+            mNegative0 &= mask;
+        } else {
+            mPositive1 &= mask;
+            mNegative1 &= mask;
+        }
+        return this;
+    }
+
+    /**
+     * Remove all attributes.
+     */
+    public void clear() {
+        mPositive0 = 0L;
+        mPositive1 = 0L;
+        mNegative0 = 0L;
+        mNegative1 = 0L;
+    }
+
+    //*************************************************
+    // QUERIES
+    //*************************************************
+
+    /**
+     * Check if set contains positive attribute.
+     *
+     * @param idReal real ID of attribute
+     * @return {@code true} if attribute is positive
+     */
+    public boolean isPositive(int idReal) {
+        checkId(idReal);
+        long bits = idReal < 64 ? mPositive0 : mPositive1;
+        return (bits & (1L << idReal)) != 0L;
+    }
+
+    /**
+     * Check if set contains negative attribute.
+     *
+     * @param idReal real ID of attribute
+     * @return {@code true} if attribute is negative
+     */
+    public boolean isNegative(int idReal) {
+        checkId(idReal);
+        long bits = idReal < 64 ? mNegative0 : mNegative1;
+        return (bits & (1L << idReal)) != 0L;
+    }
+
+    /**
+     * Check if set contains attribute with any value.
+     *
+     * @param idReal real ID of attribute
+     * @return {@code true} if attribute is defined
+     */
+    public boolean contains(int idReal) {
+        return isPositive(idReal) || isNegative(idReal);
+    }
+
+    /**
+     * Check if all attributes of other set (with same value) are in this set.
+     *
+     * @param other set of required attributes
+     * @return {@code true} if all attributes are defined
+     */
+    public boolean containsAll(GeocachingAttributeSet other) {
+        return (mPositive0 & other.mPositive0) == other.mPositive0
+                && (mPositive1 & other.mPositive1) == other.mPositive1
+                && (mNegative0 & other.mNegative0) == other.mNegative0
+                && (mNegative1 & other.mNegative1) == other.mNegative1;
+    }
+
+    /**
+     * Check if any attribute of other set (with same value) is in this set.
+     *
+     * @param other set of attributes
+     * @return {@code true} if at least one attribute is defined
+     */
+    public boolean containsAny(GeocachingAttributeSet other) {
+        return (mPositive0 & other.mPositive0) != 0L
+                || (mPositive1 & other.mPositive1) != 0L
+                || (mNegative0 & other.mNegative0) != 0L
+                || (mNegative1 & other.mNegative1) != 0L;
+    }
+
+    /**
+     * Check if set is empty.
+     *
+     * @return {@code true} if no attribute is defined
+     */
+    public boolean isEmpty() {
+        return (mPositive0 | mPositive1 | mNegative0 | mNegative1) == 0L;
+    }
+
+    /**
+     * Get number of defined attributes.
+     *
+     * @return number of attributes
+     */
+    public int size() {
+        return Long.bitCount(mPositive0) + Long.bitCount(mPositive1)
+                + Long.bitCount(mNegative0) + Long.bitCount(mNegative1);
+    }
+
+    /**
+     * Convert set to list of attributes, sorted by ID.
+     *
+     * @return list of attributes
+     */
+    public List<GeocachingAttribute> toList() {
+        List<GeocachingAttribute> res = new ArrayList<>(size());
+        for (int i = 0; i < MAX_ID; i++) {
+            if (isPositive(i)) {
+                res.add(new GeocachingAttribute(i, true));
+            } else if (isNegative(i)) {
+                res.add(new GeocachingAttribute(i, false));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Check validity of attribute ID.
+     */
+    private static void checkId(int idReal) {
+        if (idReal < 0 || idReal >= MAX_ID) {
+            throw new IllegalArgumentException("Invalid attribute ID: " + idReal);
+        }
+    }
+
+    //*************************************************
+    // OBJECT
+    //*************************************************
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GeocachingAttributeSet)) {
+            return false;
+        }
+        GeocachingAttributeSet other = (GeocachingAttributeSet) o;
+        return mPositive0 == other.mPositive0 && mPositive1 == other.mPositive1
+                && mNegative0 == other.mNegative0 && mNegative1 == other.mNegative1;
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = mPositive0 ^ (mPositive1 * 31) ^ (mNegative0 * 961) ^ (mNegative1 * 29791);
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    //*************************************************
+    // STORABLE
+    //*************************************************
+
+    @Override
+    protected int getVersion() {
+        return 0;
+    }
+
+    @Override
+    protected void readObject(int version, DataReaderBigEndian dr) throws IOException {
+        mPositive0 = dr.readLong();
+        mPositive1 = dr.readLong();
+        mNegative0 = dr.readLong();
+        mNegative1 = dr.readLong();
+    }
+
+    @Override
+    protected void writeObject(DataWriterBigEndian dw) throws IOException {
+        dw.writeLong(mPositive0);
+        dw.writeLong(mPositive1);
+        dw.writeLong(mNegative0);
+        dw.writeLong(mNegative1);
+    }
+}
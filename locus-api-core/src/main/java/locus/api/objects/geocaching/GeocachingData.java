@@ -20,22 +20,23 @@
 
 package locus.api.objects.geocaching;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.NoSuchElementException;
+import java.util.zip.Deflater;
 
 import locus.api.objects.Storable;
 import locus.api.utils.DataReaderBigEndian;
 import locus.api.utils.DataWriterBigEndian;
+import locus.api.utils.LazyStorableList;
 import locus.api.utils.Logger;
 import locus.api.utils.Utils;
+import locus.api.utils.UtilsGzip;
 
 /**
  * Container for main Geocaching data
@@ -149,15 +150,25 @@ public class GeocachingData extends Storable {
     // of loaded GeocacheData object and also in cases, we don't need short/long
     // description, it also save quite a lot of CPU (not need to use GZIP)
     private byte[] mDescBytes;
-    // length of Short description in mDescBytes array. This parameter is needed
+    // length of Short description in mDescBytes array (in bytes). This parameter is needed
     // for correct storalization
     private int mShortDescLength;
+    // length of Short description in chars, as is written for readers before V4
+    private int mShortDescChars;
     // encoded hints
     private String mEncodedHints;
     // list of attributes
     public List<GeocachingAttribute> attributes;
-    // list of logs
+    // attributes in form of bitsets
+    private GeocachingAttributeSet mAttributeSet;
+    // list of attributes, 'mAttributeSet' was created for
+    private List<GeocachingAttribute> mAttributeSetList;
+    // size of list of attributes, 'mAttributeSet' was created for
+    private int mAttributeSetSize;
+    // list of logs. Loaded logs are kept serialized and decoded on demand
     public List<GeocachingLog> logs;
+    // cached order of logs by date
+    private volatile LogsOrder mLogsOrder;
     // list of travel bugs
     public List<GeocachingTrackable> trackables;
     // list of waypoints
@@ -219,6 +230,7 @@ public class GeocachingData extends Storable {
         mState = "";
         mDescBytes = null;
         mShortDescLength = 0;
+        mShortDescChars = 0;
         mEncodedHints = "";
         attributes = new ArrayList<>();
         logs = new ArrayList<>();
@@ -631,6 +643,11 @@ public class GeocachingData extends Storable {
 
     // DESCRIPTIONS
 
+    /**
+     * Get both descriptions at once.
+     *
+     * @return array with short (index 0) and long (index 1) description
+     */
     public String[] getDescriptions() {
         // prepare container
         String[] res = new String[]{"", ""};
@@ -640,42 +657,77 @@ public class GeocachingData extends Storable {
             return res;
         }
 
-        GZIPInputStream zis = null;
         try {
-            // prepare input stream
-            zis = new GZIPInputStream(
-                    new ByteArrayInputStream(mDescBytes), 10240);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-            // read data
-            int dataRead;
-            byte[] buffer = new byte[1024];
-            while ((dataRead = zis.read(buffer)) != -1) {
-                baos.write(buffer, 0, dataRead);
-            }
-            String result = Utils.doBytesToString(baos.toByteArray());
-
-            // read short description
-            if (mShortDescLength > 0) {
-                res[0] = result.substring(0, mShortDescLength);
-            }
-
-            // read long description
-            res[1] = result.substring(mShortDescLength);
-        } catch (IOException e) {
-            Logger.logE(TAG, "", e);
+            byte[] data = UtilsGzip.decompress(mDescBytes, 0, -1);
+            res[0] = new String(data, 0, mShortDescLength, "UTF-8");
+            res[1] = new String(data, mShortDescLength, data.length - mShortDescLength, "UTF-8");
+        } catch (Exception e) {
+            Logger.logE(TAG, "getDescriptions()", e);
             res[0] = "";
             res[1] = "";
-        } finally {
-            Utils.closeStream(zis);
         }
 
         // return result
         return res;
     }
 
+    /**
+     * Get short description. Only required part of descriptions is decompressed.
+     *
+     * @return short description
+     */
+    public String getShortDescription() {
+        if (mDescBytes == null || mDescBytes.length == 0 || mShortDescLength == 0) {
+            return "";
+        }
+        try {
+            return new String(UtilsGzip.decompress(mDescBytes, 0, mShortDescLength), "UTF-8");
+        } catch (Exception e) {
+            Logger.logE(TAG, "getShortDescription()", e);
+            return "";
+        }
+    }
+
+    /**
+     * Get long description.
+     *
+     * @return long description
+     */
+    public String getLongDescription() {
+        if (mDescBytes == null || mDescBytes.length == 0) {
+            return "";
+        }
+        try {
+            return new String(UtilsGzip.decompress(mDescBytes, mShortDescLength, -1), "UTF-8");
+        } catch (Exception e) {
+            Logger.logE(TAG, "getLongDescription()", e);
+            return "";
+        }
+    }
+
     public boolean setDescriptions(String shortDesc, boolean shortInHtml,
             String longDesc, boolean longInHtml) {
+        return setDescriptions(shortDesc, shortInHtml, longDesc, longInHtml,
+                Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Set descriptions compressed with defined level of compression.
+     *
+     * @param shortDesc        short description
+     * @param shortInHtml      flag if short description is in HTML
+     * @param longDesc         long description
+     * @param longInHtml       flag if long description is in HTML
+     * @param compressionLevel compression level (0 - 9) or {@link Deflater#DEFAULT_COMPRESSION}
+     * @return {@code true} if descriptions were stored
+     */
+    public boolean setDescriptions(String shortDesc, boolean shortInHtml,
+            String longDesc, boolean longInHtml, int compressionLevel) {
+        if (compressionLevel != Deflater.DEFAULT_COMPRESSION
+                && (compressionLevel < 0 || compressionLevel > 9)) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+
         // fix short description
         if (shortDesc == null) {
             shortDesc = "";
@@ -687,25 +739,31 @@ public class GeocachingData extends Storable {
         }
 
         // store descriptions
-        try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            GZIPOutputStream zos = new GZIPOutputStream(baos);
-
-            zos.write(Utils.doStringToBytes(shortDesc));
-            zos.write(Utils.doStringToBytes(longDesc));
-            zos.close();
+        byte[] shortBytes = Utils.doStringToBytes(shortDesc);
+        byte[] longBytes = Utils.doStringToBytes(longDesc);
+        mDescBytes = UtilsGzip.compress(compressionLevel, shortBytes, longBytes);
+        mShortDescLength = shortBytes.length;
+        mShortDescChars = shortDesc.length();
+        return true;
+    }
 
-            // store parameters
-            mDescBytes = baos.toByteArray();
-            mShortDescLength = shortDesc.length();
-            return true;
-        } catch (IOException e) {
-            Logger.logE(TAG, "setDescription(" + shortDesc + ", " + shortInHtml + ", " +
-                    longDesc + ", " + longInHtml + ")", e);
-            mDescBytes = null;
-            mShortDescLength = 0;
-            return false;
+    /**
+     * Compute length of short description in bytes from its length in chars, used by
+     * versions before V4.
+     *
+     * @param descBytes compressed descriptions
+     * @param chars     length of short description in chars
+     * @return length of short description in bytes
+     */
+    private static int computeShortDescLength(byte[] descBytes, int chars) throws IOException {
+        if (descBytes == null || descBytes.length == 0 || chars <= 0) {
+            return 0;
         }
+
+        // every char takes at most three bytes in UTF-8
+        byte[] data = UtilsGzip.decompress(descBytes, 0, (int) Math.min(3L * chars, Integer.MAX_VALUE));
+        String text = Utils.doBytesToString(data);
+        return Utils.doStringToBytes(text.substring(0, Math.min(chars, text.length()))).length;
     }
 
     // ENCODED HINTS
@@ -877,6 +935,211 @@ public class GeocachingData extends Storable {
         this.mLatOriginal = latOriginal;
     }
 
+    // ATTRIBUTES
+
+    /**
+     * Get attributes of cache in form of bitsets, useful for fast filtering. Set is created
+     * for current content of {@link #attributes} list and cached. Change of list is detected
+     * by change of its instance or size, so in case of replacement of single item, call
+     * {@link #invalidateAttributeSet()}.
+     * <br><br>
+     * Returned set should not be modified.
+     *
+     * @return set of attributes
+     */
+    public GeocachingAttributeSet getAttributeSet() {
+        int size = attributes != null ? attributes.size() : 0;
+        if (mAttributeSet == null || mAttributeSetList != attributes || mAttributeSetSize != size) {
+            setAttributeSet(GeocachingAttributeSet.from(attributes));
+        }
+        return mAttributeSet;
+    }
+
+    /**
+     * Force re-creation of set returned by {@link #getAttributeSet()}.
+     */
+    public void invalidateAttributeSet() {
+        mAttributeSet = null;
+    }
+
+    /**
+     * Set cached set of attributes, valid for current list of attributes.
+     *
+     * @param set set of attributes
+     */
+    private void setAttributeSet(GeocachingAttributeSet set) {
+        mAttributeSet = set;
+        mAttributeSetList = attributes;
+        mAttributeSetSize = attributes != null ? attributes.size() : 0;
+    }
+
+    // LOGS
+
+    /**
+     * Get number of attached logs.
+     *
+     * @return number of logs
+     */
+    public int getLogsCount() {
+        return logs != null ? logs.size() : 0;
+    }
+
+    /**
+     * Get complete list of logs in stored order. Logs of loaded cache are decoded on first
+     * access to certain item, so prefer {@link #getLogs(int, int)} or {@link #getLogsIterator()}
+     * if only part of logs is needed. Logs may be read from more threads, but modification
+     * of list requires external synchronization.
+     *
+     * @return list of logs
+     */
+    public List<GeocachingLog> getLogs() {
+        return logs;
+    }
+
+    /**
+     * Get page of logs, sorted from newest to oldest. Only returned logs are decoded.
+     * <br><br>
+     * Order of logs is computed only once and cached. Change of list is detected by change
+     * of its instance or size, so in case of replacement of single item or change of date
+     * of log, call {@link #invalidateLogsOrder()}.
+     *
+     * @param offset index of first log
+     * @param count  maximal number of logs
+     * @return logs on requested page
+     */
+    public List<GeocachingLog> getLogs(int offset, int count) {
+        int[] order = getLogsOrder();
+        int from = Math.max(0, offset);
+        int to = (int) Math.min(order.length, (long) from + count);
+        List<GeocachingLog> res = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            res.add(logs.get(order[i]));
+        }
+        return res;
+    }
+
+    /**
+     * Get iterator over logs, sorted from newest to oldest. Logs are decoded during iteration.
+     *
+     * @return iterator over logs
+     */
+    public Iterator<GeocachingLog> getLogsIterator() {
+        final int[] order = getLogsOrder();
+        return new Iterator<GeocachingLog>() {
+
+            // index of next returned log
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < order.length;
+            }
+
+            @Override
+            public GeocachingLog next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return logs.get(order[index++]);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Force re-sorting of logs returned by {@link #getLogs(int, int)} and
+     * {@link #getLogsIterator()}.
+     */
+    public void invalidateLogsOrder() {
+        mLogsOrder = null;
+    }
+
+    /**
+     * Get indexes of logs sorted by date from newest to oldest. Dates of not decoded logs are
+     * read directly from serialized data.
+     *
+     * @return sorted indexes of logs
+     */
+    @SuppressWarnings("unchecked")
+    private int[] getLogsOrder() {
+        List<GeocachingLog> list = logs;
+        int count = list != null ? list.size() : 0;
+        LogsOrder cached = mLogsOrder;
+        if (cached != null && cached.list == list && cached.size == count) {
+            return cached.order;
+        }
+
+        // read dates of logs
+        long[] dates = new long[count];
+        LazyStorableList<GeocachingLog> lazy = list instanceof LazyStorableList ?
+                (LazyStorableList<GeocachingLog>) list : null;
+        for (int i = 0; i < count; i++) {
+            if (lazy != null && lazy.isSerialized(i)) {
+                dates[i] = GeocachingLog.readDate(
+                        lazy.getSerializedData(), lazy.getSerializedOffset(i));
+            } else {
+                dates[i] = list.get(i).getDate();
+            }
+        }
+
+        // sort, logs with same date keep stored order
+        long[] sorted = dates.clone();
+        Arrays.sort(sorted);
+        int[] used = new int[count + 1];
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            // number of logs with same or older date
+            int end = upperBound(sorted, dates[i]);
+            order[count - end + used[end]++] = i;
+        }
+        mLogsOrder = new LogsOrder(list, count, order);
+        return order;
+    }
+
+    /**
+     * Find index after last value, that is lower or equal to defined value.
+     *
+     * @param sorted sorted values
+     * @param value  searched value
+     * @return index in array
+     */
+    private static int upperBound(long[] sorted, long value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Order of logs by date, valid for certain list of logs.
+     */
+    private static class LogsOrder {
+
+        // list of logs, order was created for
+        private final List<GeocachingLog> list;
+        // size of list, order was created for
+        private final int size;
+        // indexes of logs sorted from newest to oldest
+        private final int[] order;
+
+        LogsOrder(List<GeocachingLog> list, int size, int[] order) {
+            this.list = list;
+            this.size = size;
+            this.order = order;
+        }
+    }
+
     // IMAGES
 
     public void addImage(GeocachingImage image) {
@@ -893,7 +1156,7 @@ public class GeocachingData extends Storable {
 
     @Override
     protected int getVersion() {
-        return 3;
+        return 5;
     }
 
     @SuppressWarnings("unchecked")
@@ -921,8 +1184,8 @@ public class GeocachingData extends Storable {
 
         // total length
         int size = dr.readInt();
-        // length of short description
-        mShortDescLength = dr.readInt();
+        // length of short description (in chars)
+        mShortDescChars = dr.readInt();
         // read raw data
         if (size > 0) {
             mDescBytes = dr.readBytes(size);
@@ -931,7 +1194,8 @@ public class GeocachingData extends Storable {
         // read rest
         mEncodedHints = dr.readString();
         attributes = dr.readListStorable(GeocachingAttribute.class);
-        logs = dr.readListStorable(GeocachingLog.class);
+        logs = LazyStorableList.read(GeocachingLog.FACTORY, dr);
+        mLogsOrder = null;
         trackables = dr.readListStorable(GeocachingTrackable.class);
         waypoints = dr.readListStorable(GeocachingWaypoint.class);
         mNotes = dr.readString();
@@ -961,6 +1225,29 @@ public class GeocachingData extends Storable {
         if (version >= 3) {
             mSource = dr.readInt();
         }
+
+        // V4
+
+        if (version >= 4) {
+            mShortDescLength = dr.readInt();
+        } else {
+            // older versions store length in chars only
+            try {
+                mShortDescLength = computeShortDescLength(mDescBytes, mShortDescChars);
+            } catch (IOException e) {
+                Logger.logE(TAG, "readObject(), unable to read descriptions", e);
+                mShortDescLength = 0;
+            }
+        }
+
+        // V5
+
+        mAttributeSet = null;
+        if (version >= 5) {
+            GeocachingAttributeSet set = new GeocachingAttributeSet();
+            set.read(dr);
+            setAttributeSet(set);
+        }
     }
 
     @Override
@@ -992,8 +1279,8 @@ public class GeocachingData extends Storable {
         } else {
             // total length
             dw.writeInt(mDescBytes.length);
-            // length of short description
-            dw.writeInt(mShortDescLength);
+            // length of short description (in chars)
+            dw.writeInt(mShortDescChars);
             dw.write(mDescBytes);
         }
 
@@ -1024,6 +1311,15 @@ public class GeocachingData extends Storable {
         // V3
 
         dw.writeInt(mSource);
+
+        // V4
+
+        dw.writeInt(mDescBytes == null || mDescBytes.length == 0 ? 0 : mShortDescLength);
+
+        // V5
+
+        // set is created from current attributes, cached set is not modified during write
+        dw.writeStorable(GeocachingAttributeSet.from(attributes));
     }
 
     //*************************************************
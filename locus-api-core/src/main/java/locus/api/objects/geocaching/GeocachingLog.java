@@ -44,6 +44,17 @@ public class GeocachingLog extends Storable {
     // tag for logger
     private static final String TAG = "GeocachingLog";
 
+    /**
+     * Factory of empty objects, used for reading of lists.
+     */
+    public static final Storable.Factory<GeocachingLog> FACTORY = new Storable.Factory<GeocachingLog>() {
+
+        @Override
+        public GeocachingLog create() {
+            return new GeocachingLog();
+        }
+    };
+
     // LOG TYPES
 
     public static final int CACHE_LOG_TYPE_UNKNOWN = -1;
@@ -180,6 +191,23 @@ public class GeocachingLog extends Storable {
         this.mDate = date;
     }
 
+    /**
+     * Read date of log directly from serialized log, without decoding of whole object.
+     *
+     * @param data   serialized data
+     * @param offset offset of serialized log (including header with version and size)
+     * @return date of log
+     */
+    static long readDate(byte[] data, int offset) {
+        // skip header (version, size), ID and type
+        int pos = offset + 8 + 8 + 4;
+        long date = 0L;
+        for (int i = 0; i < 8; i++) {
+            date = (date << 8) | (data[pos + i] & 0xFF);
+        }
+        return date;
+    }
+
     // FINDER
 
     /**
@@ -0,0 +1,260 @@
+package locus.api.objects.utils;
+
+/**
+ * Method used for compute of distance between two points, together with bound of its error
+ * against distance defined using the WGS84 ellipsoid.
+ * <br><br>
+ * Available strategies, from the fastest one:
+ * <ul>
+ * <li>{@link #EQUIRECTANGULAR} - local flat approximation with radii of curvature of WGS84
+ * ellipsoid. Points too far from each other (or close to poles) are computed by
+ * {@link #VINCENTY}, so error bound is valid for any distance, but speed only for short
+ * distances</li>
+ * <li>{@link #HAVERSINE} - Earth approximated as sphere</li>
+ * <li>{@link #VINCENTY} - iterative solution on WGS84 ellipsoid</li>
+ * </ul>
+ * Use {@link #select(double, double)} to get the fastest strategy for required accuracy.
+ * Own strategies may be created by extending this class.
+ */
+public abstract class DistanceStrategy {
+
+    /**
+     * Vincenty's inverse formula on WGS84 ellipsoid. Nearly antipodal points may produce
+     * meaningless results.
+     */
+    public static final DistanceStrategy VINCENTY = new Vincenty();
+    /**
+     * Haversine formula on sphere with average radius of Earth.
+     */
+    public static final DistanceStrategy HAVERSINE = new Haversine();
+    /**
+     * Equirectangular projection with local radii of curvature of WGS84 ellipsoid.
+     */
+    public static final DistanceStrategy EQUIRECTANGULAR = new Equirectangular();
+
+    // strategies sorted by speed, from the fastest one
+    private static final DistanceStrategy[] STRATEGIES = new DistanceStrategy[]{
+            EQUIRECTANGULAR, HAVERSINE, VINCENTY};
+
+    // name of strategy
+    private final String mName;
+
+    /**
+     * Create strategy.
+     *
+     * @param name name of strategy
+     */
+    protected DistanceStrategy(String name) {
+        this.mName = name;
+    }
+
+    /**
+     * Get name of strategy.
+     *
+     * @return name
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Compute distance between two points.
+     *
+     * @param lat1 latitude of first point
+     * @param lon1 longitude of first point
+     * @param lat2 latitude of second point
+     * @param lon2 longitude of second point
+     * @return computed distance in metres
+     */
+    public abstract double computeDistance(double lat1, double lon1, double lat2, double lon2);
+
+    /**
+     * Get maximal error of computed distance against distance on WGS84 ellipsoid.
+     *
+     * @param distance distance between points (in metres)
+     * @return maximal error (in metres)
+     */
+    public abstract double getMaxError(double distance);
+
+    /**
+     * Get maximal distance, up to which strategy keeps its speed.
+     *
+     * @return distance (in metres)
+     */
+    public double getMaxEfficientDistance() {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Compute distances of all segments of track defined by arrays of coordinates.
+     * Output arrays are optional (may be {@code null}).
+     *
+     * @param lats       latitudes of points (in degrees)
+     * @param lons       longitudes of points (in degrees)
+     * @param count      number of points
+     * @param distances  array for distances of 'count - 1' segments (in metres)
+     * @param cumulative array for 'count' cumulative distances from first point (in metres)
+     * @return total distance (in metres)
+     */
+    public double computeDistances(double[] lats, double[] lons, int count,
+            double[] distances, double[] cumulative) {
+        LocationCompute.checkBatchParams(lats, lons, count, distances, null, cumulative);
+        if (count == 0) {
+            return 0.0;
+        }
+        if (cumulative != null) {
+            cumulative[0] = 0.0;
+        }
+        double total = 0.0;
+        for (int i = 1; i < count; i++) {
+            double d = computeDistance(lats[i - 1], lons[i - 1], lats[i], lons[i]);
+            total += d;
+            if (distances != null) {
+                distances[i - 1] = d;
+            }
+            if (cumulative != null) {
+                cumulative[i] = total;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "DistanceStrategy [" + mName + "]";
+    }
+
+    /**
+     * Select the fastest strategy, that computes distances up to 'maxDistance' with
+     * required accuracy.
+     *
+     * @param accuracy    maximal allowed error (in metres)
+     * @param maxDistance maximal expected distance between points (in metres)
+     * @return selected strategy, {@link #VINCENTY} if no other strategy is precise enough
+     */
+    public static DistanceStrategy select(double accuracy, double maxDistance) {
+        for (DistanceStrategy strategy : STRATEGIES) {
+            if (maxDistance <= strategy.getMaxEfficientDistance()
+                    && strategy.getMaxError(maxDistance) <= accuracy) {
+                return strategy;
+            }
+        }
+        return VINCENTY;
+    }
+
+    //*************************************************
+    // STRATEGIES
+    //*************************************************
+
+    private static class Vincenty extends DistanceStrategy {
+
+        // error of iterative solution (in metres)
+        private static final double MAX_ERROR = 0.001;
+
+        private Vincenty() {
+            super("Vincenty");
+        }
+
+        @Override
+        public double computeDistance(double lat1, double lon1, double lat2, double lon2) {
+            return LocationCompute.computeDistance(lat1, lon1, lat2, lon2);
+        }
+
+        @Override
+        public double getMaxError(double distance) {
+            return MAX_ERROR;
+        }
+
+        @Override
+        public double computeDistances(double[] lats, double[] lons, int count,
+                double[] distances, double[] cumulative) {
+            return LocationCompute.computeDistances(lats, lons, count,
+                    distances, null, cumulative);
+        }
+    }
+
+    private static class Haversine extends DistanceStrategy {
+
+        // relative error caused by spherical model (measured 0.56%)
+        private static final double MAX_RELATIVE_ERROR = 0.006;
+
+        private Haversine() {
+            super("Haversine");
+        }
+
+        @Override
+        public double computeDistance(double lat1, double lon1, double lat2, double lon2) {
+            return LocationCompute.computeDistanceFast(lat1, lon1, lat2, lon2);
+        }
+
+        @Override
+        public double getMaxError(double distance) {
+            return distance * MAX_RELATIVE_ERROR;
+        }
+
+        @Override
+        public double computeDistances(double[] lats, double[] lons, int count,
+                double[] distances, double[] cumulative) {
+            return LocationCompute.computeDistancesFast(lats, lons, count,
+                    distances, null, cumulative);
+        }
+    }
+
+    private static class Equirectangular extends DistanceStrategy {
+
+        // square of eccentricity of WGS84 ellipsoid
+        private static final double E2 = LocationCompute.parWgs84Flat
+                * (2.0 - LocationCompute.parWgs84Flat);
+        // limit of 'distance * max(1, tan(latitude))' for local approximation (in metres)
+        private static final double LOCAL_LIMIT = 0.01 * LocationCompute.parWgs84AxisA;
+        // relative error of local approximation (measured 5.3e-6)
+        private static final double MAX_RELATIVE_ERROR = 1.0e-5;
+        // distance, up to which most of segments is computed by local approximation
+        private static final double MAX_EFFICIENT_DISTANCE = 10000.0;
+
+        private Equirectangular() {
+            super("Equirectangular");
+        }
+
+        @Override
+        public double computeDistance(double lat1, double lon1, double lat2, double lon2) {
+            double phi1 = Math.toRadians(lat1);
+            double phi2 = Math.toRadians(lat2);
+            double dLon = Math.toRadians(lon2 - lon1);
+            if (dLon > Math.PI) {
+                dLon -= 2.0 * Math.PI;
+            } else if (dLon < -Math.PI) {
+                dLon += 2.0 * Math.PI;
+            }
+
+            // radii of curvature in mean latitude
+            double phiM = (phi1 + phi2) / 2.0;
+            double sinPhiM = Math.sin(phiM);
+            double cosPhiM = Math.cos(phiM);
+            double w = 1.0 - E2 * sinPhiM * sinPhiM;
+            double n = LocationCompute.parWgs84AxisA / Math.sqrt(w);
+            double m = n * (1.0 - E2) / w;
+
+            // distance in local plane
+            double dx = n * cosPhiM * dLon;
+            double dy = m * (phi2 - phi1);
+            double d = Math.sqrt(dx * dx + dy * dy);
+
+            // points are not close enough for local approximation
+            if (d * Math.max(cosPhiM, Math.abs(sinPhiM)) > LOCAL_LIMIT * cosPhiM) {
+                return LocationCompute.computeDistance(lat1, lon1, lat2, lon2);
+            }
+            return d;
+        }
+
+        @Override
+        public double getMaxError(double distance) {
+            return Math.max(distance * MAX_RELATIVE_ERROR, Vincenty.MAX_ERROR);
+        }
+
+        @Override
+        public double getMaxEfficientDistance() {
+            return MAX_EFFICIENT_DISTANCE;
+        }
+    }
+}
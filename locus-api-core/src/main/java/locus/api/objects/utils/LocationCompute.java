@@ -15,9 +15,18 @@ public class LocationCompute {
     private final float[] mResults = new float[2];
 
     // WGS84 parameters for compute
-    private static final double parWgs84AxisA = 6378137.0;
-    private static final double parWgs84AxisB = 6356752.3142;
-    private static final double parWgs84Flat = (parWgs84AxisA - parWgs84AxisB) / parWgs84AxisA;
+    static final double parWgs84AxisA = 6378137.0;
+    static final double parWgs84AxisB = 6356752.3142;
+    static final double parWgs84Flat = (parWgs84AxisA - parWgs84AxisB) / parWgs84AxisA;
+
+    // container for bearings of inverse geodetic problem, reused by every thread
+    private static final ThreadLocal<double[]> BEARINGS = new ThreadLocal<double[]>() {
+
+        @Override
+        protected double[] initialValue() {
+            return new double[2];
+        }
+    };
 
     public LocationCompute(Location loc) {
         this.loc = loc;
@@ -31,27 +40,73 @@ public class LocationCompute {
 
     public static void computeDistanceAndBearing(double lat1, double lon1, double lat2, double lon2,
             double a, double b, double f, float[] results) {
-        // Based on http://www.ngs.noaa.gov/PUBS_LIB/inverse.pdf
-        // using the "Inverse Formula" (section 4)
-
-        int MAXITERS = 20;
         // Convert lat/long to radians
         lat1 *= Math.PI / 180.0;
         lat2 *= Math.PI / 180.0;
         lon1 *= Math.PI / 180.0;
         lon2 *= Math.PI / 180.0;
 
-        double aSqMinusBSqOverBSq = (a * a - b * b) / (b * b);
-
-        double L = lon2 - lon1;
-        double A = 0.0;
         double U1 = Math.atan((1.0 - f) * Math.tan(lat1));
         double U2 = Math.atan((1.0 - f) * Math.tan(lat2));
 
-        double cosU1 = Math.cos(U1);
-        double cosU2 = Math.cos(U2);
-        double sinU1 = Math.sin(U1);
-        double sinU2 = Math.sin(U2);
+        // bearings are computed only if requested
+        double[] bearings = results.length > 1 ? BEARINGS.get() : null;
+        results[0] = (float) computeInverse(Math.sin(U1), Math.cos(U1), Math.sin(U2), Math.cos(U2),
+                lon2 - lon1, a, b, f, bearings);
+        if (bearings != null) {
+            float initialBearing = (float) bearings[0];
+            initialBearing *= 180.0 / Math.PI;
+            results[1] = initialBearing;
+            if (results.length > 2) {
+                float finalBearing = (float) bearings[1];
+                finalBearing *= 180.0 / Math.PI;
+                results[2] = finalBearing;
+            }
+        }
+    }
+
+    /**
+     * Compute distance between two points defined using the WGS84 ellipsoid, with double
+     * precision of result.
+     *
+     * @param lat1 latitude of first point
+     * @param lon1 longitude of first point
+     * @param lat2 latitude of second point
+     * @param lon2 longitude of second point
+     * @return computed distance in metres
+     */
+    public static double computeDistance(double lat1, double lon1, double lat2, double lon2) {
+        double U1 = Math.atan((1.0 - parWgs84Flat) * Math.tan(Math.toRadians(lat1)));
+        double U2 = Math.atan((1.0 - parWgs84Flat) * Math.tan(Math.toRadians(lat2)));
+        return computeInverse(Math.sin(U1), Math.cos(U1), Math.sin(U2), Math.cos(U2),
+                Math.toRadians(lon2) - Math.toRadians(lon1),
+                parWgs84AxisA, parWgs84AxisB, parWgs84Flat, null);
+    }
+
+    /**
+     * Solve inverse geodetic problem for points defined by their reduced latitudes.
+     *
+     * @param sinU1    sinus of reduced latitude of first point
+     * @param cosU1    cosinus of reduced latitude of first point
+     * @param sinU2    sinus of reduced latitude of second point
+     * @param cosU2    cosinus of reduced latitude of second point
+     * @param L        difference of longitudes (in radians)
+     * @param a        major axis of ellipsoid
+     * @param b        minor axis of ellipsoid
+     * @param f        flattening of ellipsoid
+     * @param bearings two sized array for initial and final bearing (in radians), or 'null'
+     *                 if bearings are not needed
+     * @return computed distance in metres
+     */
+    private static double computeInverse(double sinU1, double cosU1, double sinU2, double cosU2,
+            double L, double a, double b, double f, double[] bearings) {
+        // Based on http://www.ngs.noaa.gov/PUBS_LIB/inverse.pdf
+        // using the "Inverse Formula" (section 4)
+
+        int MAXITERS = 20;
+        double aSqMinusBSqOverBSq = (a * a - b * b) / (b * b);
+
+        double A = 0.0;
         double cosU1cosU2 = cosU1 * cosU2;
         double sinU1sinU2 = sinU1 * sinU2;
 
@@ -107,20 +162,13 @@ public class LocationCompute {
             }
         }
 
-        float distance = (float) (b * A * (sigma - deltaSigma));
-        results[0] = distance;
-        if (results.length > 1) {
-            float initialBearing = (float) Math.atan2(cosU2 * sinLambda, cosU1
+        if (bearings != null) {
+            bearings[0] = Math.atan2(cosU2 * sinLambda, cosU1
                     * sinU2 - sinU1 * cosU2 * cosLambda);
-            initialBearing *= 180.0 / Math.PI;
-            results[1] = initialBearing;
-            if (results.length > 2) {
-                float finalBearing = (float) Math.atan2(cosU1 * sinLambda,
-                        -sinU1 * cosU2 + cosU1 * sinU2 * cosLambda);
-                finalBearing *= 180.0 / Math.PI;
-                results[2] = finalBearing;
-            }
+            bearings[1] = Math.atan2(cosU1 * sinLambda,
+                    -sinU1 * cosU2 + cosU1 * sinU2 * cosLambda);
         }
+        return b * A * (sigma - deltaSigma);
     }
 
     /**
@@ -204,12 +252,6 @@ public class LocationCompute {
 
     public static final double AVERAGE_RADIUS_OF_EARTH = 6371000.0;
 
-    /**
-     * Temporary variable for fast location computes. Use in case, you
-     * need only a distance result
-     */
-    private static double[] mDistResult = new double[1];
-
     /**
      * Compute distance on Earth approximated as sphere.
      *
@@ -217,11 +259,10 @@ public class LocationCompute {
      * @param loc2 second location
      * @return computed distance in metres
      */
-    public static synchronized double computeDistanceFast(Location loc1, Location loc2) {
-        computeDistanceAndBearingFast(
+    public static double computeDistanceFast(Location loc1, Location loc2) {
+        return computeDistanceFast(
                 loc1.getLatitude(), loc1.getLongitude(),
-                loc2.getLatitude(), loc2.getLongitude(), mDistResult);
-        return mDistResult[0];
+                loc2.getLatitude(), loc2.getLongitude());
     }
 
     /**
@@ -233,11 +274,24 @@ public class LocationCompute {
      * @param lon2 longitude of second point
      * @return computed distance in metres
      */
-    public static synchronized double computeDistanceFast(double lat1, double lon1,
+    public static double computeDistanceFast(double lat1, double lon1,
             double lat2, double lon2) {
-        computeDistanceAndBearingFast(
-                lat1, lon1, lat2, lon2, mDistResult);
-        return mDistResult[0];
+        // convert lat/long to radians
+        lat1 *= Math.PI / 180.0;
+        lat2 *= Math.PI / 180.0;
+        lon1 *= Math.PI / 180.0;
+        lon2 *= Math.PI / 180.0;
+
+        // prepare variables
+        double sinDLat2 = Math.sin((lat2 - lat1) / 2.0);
+        double sinDLon2 = Math.sin((lon2 - lon1) / 2.0);
+
+        // compute values
+        double a = sinDLat2 * sinDLat2 + Math.cos(lat1) * Math.cos(lat2) * sinDLon2 * sinDLon2;
+        double d = 2.0 * Math.atan2(Math.sqrt(a), Math.sqrt(1.0 - a));
+
+        // convert to metres
+        return d * LocationCompute.AVERAGE_RADIUS_OF_EARTH;
     }
 
     /**
@@ -253,27 +307,18 @@ public class LocationCompute {
      */
     public static void computeDistanceAndBearingFast(double lat1, double lon1,
             double lat2, double lon2, double[] results) {
-        // convert lat/long to radians
-        lat1 *= Math.PI / 180.0;
-        lat2 *= Math.PI / 180.0;
-        lon1 *= Math.PI / 180.0;
-        lon2 *= Math.PI / 180.0;
-
-        // prepare variables
-        double cosLat1 = Math.cos(lat1);
-        double cosLat2 = Math.cos(lat2);
-        double sinDLat2 = Math.sin((lat2 - lat1) / 2.0);
-        double sinDLon2 = Math.sin((lon2 - lon1) / 2.0);
-
-        // compute values
-        double a = sinDLat2 * sinDLat2 + cosLat1 * cosLat2 * sinDLon2 * sinDLon2;
-        double d = 2.0 * Math.atan2(Math.sqrt(a), Math.sqrt(1.0 - a));
-
-        // convert to metres
-        results[0] = d * LocationCompute.AVERAGE_RADIUS_OF_EARTH;
+        // compute distance
+        results[0] = computeDistanceFast(lat1, lon1, lat2, lon2);
 
         // compute bearing
         if (results.length > 1) {
+            // convert lat/long to radians
+            lat1 *= Math.PI / 180.0;
+            lat2 *= Math.PI / 180.0;
+            lon1 *= Math.PI / 180.0;
+            lon2 *= Math.PI / 180.0;
+            double cosLat1 = Math.cos(lat1);
+            double cosLat2 = Math.cos(lat2);
             double y = Math.sin(lon2 - lon1) * cosLat2;
             double x = cosLat1 * Math.sin(lat2) - Math.sin(lat1) * cosLat2 * Math.cos(lon2 - lon1);
             results[1] = Math.toDegrees(Math.atan2(y, x));
@@ -301,4 +346,171 @@ public class LocationCompute {
 //		double x = cosLat1 * sinLat2 - sinLat1 * cosLat2 * cosDLon;
 //		results[1] = Math.toDegrees(Math.atan2(y, x));
     }
+
+    //*************************************************
+    // BATCH COMPUTE
+    //*************************************************
+
+    /**
+     * Compute distances and bearings of all segments of track defined by arrays of
+     * coordinates. Distance is defined using the WGS84 ellipsoid, so results are same
+     * as results of {@link #computeDistanceAndBearing(double, double, double, double, float[])}
+     * for every pair of points, but reduced latitude of every point is computed only once.
+     * <br><br>
+     * All output arrays are optional (may be {@code null}).
+     *
+     * @param lats       latitudes of points (in degrees)
+     * @param lons       longitudes of points (in degrees)
+     * @param count      number of points
+     * @param distances  array for distances of 'count - 1' segments (in metres)
+     * @param bearings   array for initial bearings of 'count - 1' segments (in degrees)
+     * @param cumulative array for 'count' cumulative distances from first point (in metres)
+     * @return total distance (in metres)
+     */
+    public static double computeDistances(double[] lats, double[] lons, int count,
+            double[] distances, double[] bearings, double[] cumulative) {
+        checkBatchParams(lats, lons, count, distances, bearings, cumulative);
+        if (count == 0) {
+            return 0.0;
+        }
+
+        // values of first point
+        double[] res = bearings != null ? new double[2] : null;
+        double lonPrev = Math.toRadians(lons[0]);
+        double uPrev = Math.atan((1.0 - parWgs84Flat) * Math.tan(Math.toRadians(lats[0])));
+        double sinUPrev = Math.sin(uPrev);
+        double cosUPrev = Math.cos(uPrev);
+        double total = 0.0;
+        if (cumulative != null) {
+            cumulative[0] = 0.0;
+        }
+
+        // compute segments
+        for (int i = 1; i < count; i++) {
+            double lon = Math.toRadians(lons[i]);
+            double u = Math.atan((1.0 - parWgs84Flat) * Math.tan(Math.toRadians(lats[i])));
+            double sinU = Math.sin(u);
+            double cosU = Math.cos(u);
+            double d = computeInverse(sinUPrev, cosUPrev, sinU, cosU, lon - lonPrev,
+                    parWgs84AxisA, parWgs84AxisB, parWgs84Flat, res);
+
+            // store results
+            total += d;
+            if (distances != null) {
+                distances[i - 1] = d;
+            }
+            if (bearings != null) {
+                bearings[i - 1] = Math.toDegrees(res[0]);
+            }
+            if (cumulative != null) {
+                cumulative[i] = total;
+            }
+
+            // move to next segment
+            lonPrev = lon;
+            sinUPrev = sinU;
+            cosUPrev = cosU;
+        }
+        return total;
+    }
+
+    /**
+     * Compute distances and bearings of all segments of track defined by arrays of
+     * coordinates, on Earth approximated as sphere. Results are same as results of
+     * {@link #computeDistanceAndBearingFast(double, double, double, double, double[])}
+     * for every pair of points, but sinus and cosinus of latitude of every point are
+     * computed only once and bearing reuses values already computed for distance.
+     * <br><br>
+     * All output arrays are optional (may be {@code null}).
+     *
+     * @param lats       latitudes of points (in degrees)
+     * @param lons       longitudes of points (in degrees)
+     * @param count      number of points
+     * @param distances  array for distances of 'count - 1' segments (in metres)
+     * @param bearings   array for initial bearings of 'count - 1' segments (in degrees)
+     * @param cumulative array for 'count' cumulative distances from first point (in metres)
+     * @return total distance (in metres)
+     */
+    public static double computeDistancesFast(double[] lats, double[] lons, int count,
+            double[] distances, double[] bearings, double[] cumulative) {
+        checkBatchParams(lats, lons, count, distances, bearings, cumulative);
+        if (count == 0) {
+            return 0.0;
+        }
+
+        // values of first point
+        double latPrev = Math.toRadians(lats[0]);
+        double lonPrev = Math.toRadians(lons[0]);
+        double sinLatPrev = Math.sin(latPrev);
+        double cosLatPrev = Math.cos(latPrev);
+        double total = 0.0;
+        if (cumulative != null) {
+            cumulative[0] = 0.0;
+        }
+
+        // compute segments
+        for (int i = 1; i < count; i++) {
+            double lat = Math.toRadians(lats[i]);
+            double lon = Math.toRadians(lons[i]);
+            double sinLat = Math.sin(lat);
+            double cosLat = Math.cos(lat);
+
+            // difference of longitudes normalized to <-PI, PI>, so cosinus of half angle is positive
+            double dLon = lon - lonPrev;
+            if (dLon > Math.PI) {
+                dLon -= 2.0 * Math.PI;
+            } else if (dLon < -Math.PI) {
+                dLon += 2.0 * Math.PI;
+            }
+
+            // distance by Haversine formula
+            double sinDLat2 = Math.sin((lat - latPrev) / 2.0);
+            double sinDLon2 = Math.sin(dLon / 2.0);
+            double a = sinDLat2 * sinDLat2 + cosLatPrev * cosLat * sinDLon2 * sinDLon2;
+            double d = 2.0 * Math.atan2(Math.sqrt(a), Math.sqrt(1.0 - a))
+                    * AVERAGE_RADIUS_OF_EARTH;
+
+            // store results
+            total += d;
+            if (distances != null) {
+                distances[i - 1] = d;
+            }
+            if (bearings != null) {
+                // sin(dLon) and cos(dLon) from half angle already computed for distance
+                double sinDLon2Sq = sinDLon2 * sinDLon2;
+                double sinDLon = 2.0 * sinDLon2 * Math.sqrt(1.0 - sinDLon2Sq);
+                double cosDLon = 1.0 - 2.0 * sinDLon2Sq;
+                double y = sinDLon * cosLat;
+                double x = cosLatPrev * sinLat - sinLatPrev * cosLat * cosDLon;
+                bearings[i - 1] = Math.toDegrees(Math.atan2(y, x));
+            }
+            if (cumulative != null) {
+                cumulative[i] = total;
+            }
+
+            // move to next segment
+            latPrev = lat;
+            lonPrev = lon;
+            sinLatPrev = sinLat;
+            cosLatPrev = cosLat;
+        }
+        return total;
+    }
+
+    /**
+     * Check parameters of batch computes.
+     */
+    static void checkBatchParams(double[] lats, double[] lons, int count,
+            double[] distances, double[] bearings, double[] cumulative) {
+        if (count < 0 || count > lats.length || count > lons.length) {
+            throw new IllegalArgumentException("Invalid count: " + count);
+        }
+        int segments = Math.max(0, count - 1);
+        if ((distances != null && distances.length < segments)
+                || (bearings != null && bearings.length < segments)
+                || (cumulative != null && cumulative.length < count)) {
+            throw new IllegalArgumentException("Output arrays are too small for "
+                    + count + " points");
+        }
+    }
 }
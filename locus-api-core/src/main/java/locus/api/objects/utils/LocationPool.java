@@ -0,0 +1,123 @@
+package locus.api.objects.utils;
+
+import locus.api.objects.extra.Location;
+
+/**
+ * Pool of reusable {@link Location} objects for producers of frequent locations (for example
+ * sensor fusion with 10+ Hz updates), that allows to work without creating of new objects.
+ * <br><br>
+ * Rules of ownership:
+ * <ul>
+ * <li>location returned by {@link #obtain()} belongs to caller, until it is returned by
+ * {@link #recycle(Location)}</li>
+ * <li>recycle only locations that are not referenced anywhere else. Location stored in other
+ * object (like {@code Point} or {@code Track}) or given to other component must not be recycled,
+ * give a copy instead</li>
+ * <li>once recycled, location must not be used anymore, because it may be returned by next
+ * {@link #obtain()} call</li>
+ * </ul>
+ * Pool is thread-safe.
+ */
+public class LocationPool {
+
+    // default maximal number of stored locations
+    private static final int DEFAULT_MAX_SIZE = 16;
+
+    // stored locations
+    private final Location[] mPool;
+    // number of stored locations
+    private int mSize;
+
+    /**
+     * Create pool with default capacity.
+     */
+    public LocationPool() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create pool.
+     *
+     * @param maxSize maximal number of stored locations
+     */
+    public LocationPool(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid size: " + maxSize);
+        }
+        mPool = new Location[maxSize];
+        mSize = 0;
+    }
+
+    /**
+     * Get empty location from pool or create a new one if pool is empty.
+     *
+     * @return location in default state
+     */
+    public Location obtain() {
+        Location loc = null;
+        synchronized (this) {
+            if (mSize > 0) {
+                loc = mPool[--mSize];
+                mPool[mSize] = null;
+            }
+        }
+        if (loc == null) {
+            return new Location();
+        }
+        loc.reset();
+        return loc;
+    }
+
+    /**
+     * Get location from pool with values copied from defined location.
+     *
+     * @param src source location
+     * @return copy of location
+     */
+    public Location obtain(Location src) {
+        Location loc = obtain();
+        loc.set(src);
+        return loc;
+    }
+
+    /**
+     * Return location to pool. Location is ignored if pool is already full.
+     *
+     * @param loc location that is not used anymore
+     * @throws IllegalStateException if location is already in pool
+     */
+    public void recycle(Location loc) {
+        if (loc == null) {
+            return;
+        }
+        synchronized (this) {
+            for (int i = 0; i < mSize; i++) {
+                if (mPool[i] == loc) {
+                    throw new IllegalStateException("Location already recycled");
+                }
+            }
+            if (mSize < mPool.length) {
+                mPool[mSize++] = loc;
+            }
+        }
+    }
+
+    /**
+     * Get number of locations stored in pool.
+     *
+     * @return number of locations
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Remove all locations from pool.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mPool[i] = null;
+        }
+        mSize = 0;
+    }
+}
@@ -0,0 +1,575 @@
+package locus.api.objects.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import locus.api.objects.extra.Location;
+import locus.api.objects.extra.Point;
+
+/**
+ * Static spatial index (packed R-tree) over collection of items with coordinates.
+ * <br><br>
+ * Index is built once by Sort-Tile-Recursive bulk loading and then allows fast
+ * bounding-box, radius and k-nearest queries. Distances are computed on sphere by
+ * {@link LocationCompute#computeDistanceAndBearingFast(double, double, double, double, double[])}.
+ * Index does not reflect later changes of indexed items, so it has to be created again
+ * in such case.
+ * <br><br>
+ * Instance is immutable after creation and may be used by more threads at once.
+ *
+ * @param <T> type of indexed items
+ */
+public class SpatialIndex<T> {
+
+    // maximal number of children in single node
+    private static final int NODE_CAPACITY = 16;
+
+    // indexed items, in order of leafs
+    private final Object[] mItems;
+    // latitudes of items
+    private final double[] mLats;
+    // longitudes of items
+    private final double[] mLons;
+
+    // bounding boxes of nodes, leafs first, root is the last node
+    private final double[] mNodeMinLat;
+    private final double[] mNodeMinLon;
+    private final double[] mNodeMaxLat;
+    private final double[] mNodeMaxLon;
+    // first child of node (item for leafs, node otherwise)
+    private final int[] mNodeStart;
+    // end (exclusive) of children of node
+    private final int[] mNodeEnd;
+    // number of leaf nodes
+    private final int mLeafCount;
+    // total number of nodes
+    private final int mNodeCount;
+    // height of tree
+    private final int mHeight;
+
+    /**
+     * Create index over list of points. Points without location are not indexed.
+     *
+     * @param points points to index
+     * @return created index
+     */
+    public static SpatialIndex<Point> createForPoints(List<Point> points) {
+        int count = points.size();
+        List<Point> items = new ArrayList<>(count);
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        for (int i = 0; i < count; i++) {
+            Point pt = points.get(i);
+            Location loc = pt != null ? pt.getLocation() : null;
+            if (loc == null) {
+                continue;
+            }
+            lats[items.size()] = loc.getLatitude();
+            lons[items.size()] = loc.getLongitude();
+            items.add(pt);
+        }
+        return new SpatialIndex<>(items, lats, lons);
+    }
+
+    /**
+     * Create index over list of locations. Empty items are not indexed.
+     *
+     * @param locations locations to index
+     * @return created index
+     */
+    public static SpatialIndex<Location> createForLocations(List<Location> locations) {
+        int count = locations.size();
+        List<Location> items = new ArrayList<>(count);
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        for (int i = 0; i < count; i++) {
+            Location loc = locations.get(i);
+            if (loc == null) {
+                continue;
+            }
+            lats[items.size()] = loc.getLatitude();
+            lons[items.size()] = loc.getLongitude();
+            items.add(loc);
+        }
+        return new SpatialIndex<>(items, lats, lons);
+    }
+
+    /**
+     * Create index over items with known coordinates.
+     *
+     * @param items items to index
+     * @param lats  latitudes of items
+     * @param lons  longitudes of items
+     */
+    public SpatialIndex(List<T> items, double[] lats, double[] lons) {
+        int count = items.size();
+        if (lats.length < count || lons.length < count) {
+            throw new IllegalArgumentException("Missing coordinates, items: " + count +
+                    ", lats: " + lats.length + ", lons: " + lons.length);
+        }
+
+        // sort items into tiles
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        int leafCount = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int slices = (int) Math.ceil(Math.sqrt(leafCount));
+        int sliceSize = slices * NODE_CAPACITY;
+        sortIndices(order, 0, count, lons);
+        for (int i = 0; i < count; i += sliceSize) {
+            sortIndices(order, i, Math.min(i + sliceSize, count), lats);
+        }
+
+        // store items in sorted order
+        mItems = new Object[count];
+        mLats = new double[count];
+        mLons = new double[count];
+        for (int i = 0; i < count; i++) {
+            int index = order[i];
+            mItems[i] = items.get(index);
+            mLats[i] = lats[index];
+            mLons[i] = lons[index];
+        }
+
+        // allocate nodes of all levels
+        int total = 0;
+        int levelCount = leafCount;
+        int height = 0;
+        while (levelCount > 0) {
+            total += levelCount;
+            height++;
+            if (levelCount == 1) {
+                break;
+            }
+            levelCount = (levelCount + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        }
+        mNodeMinLat = new double[total];
+        mNodeMinLon = new double[total];
+        mNodeMaxLat = new double[total];
+        mNodeMaxLon = new double[total];
+        mNodeStart = new int[total];
+        mNodeEnd = new int[total];
+        mLeafCount = leafCount;
+        mNodeCount = total;
+        mHeight = height;
+
+        // build tree
+        buildNodes();
+    }
+
+    /**
+     * Get number of indexed items.
+     *
+     * @return number of items
+     */
+    public int size() {
+        return mItems.length;
+    }
+
+    //*************************************************
+    // QUERIES
+    //*************************************************
+
+    /**
+     * Find all items inside bounding box. Box crossing 180° meridian is defined by
+     * {@code minLon > maxLon}.
+     *
+     * @param minLat minimal latitude
+     * @param minLon minimal (west) longitude
+     * @param maxLat maximal latitude
+     * @param maxLon maximal (east) longitude
+     * @param result container for result or 'null' to create new
+     * @return list with found items
+     */
+    public List<T> queryBox(double minLat, double minLon, double maxLat, double maxLon,
+            List<T> result) {
+        if (result == null) {
+            result = new ArrayList<>();
+        }
+        if (minLon > maxLon) {
+            queryBoxNoWrap(minLat, minLon, maxLat, 180.0, result);
+            queryBoxNoWrap(minLat, -180.0, maxLat, maxLon, result);
+        } else {
+            queryBoxNoWrap(minLat, minLon, maxLat, maxLon, result);
+        }
+        return result;
+    }
+
+    /**
+     * Find all items in certain distance from location.
+     *
+     * @param lat    latitude of center
+     * @param lon    longitude of center
+     * @param radius maximal distance [m]
+     * @param result container for result or 'null' to create new
+     * @return list with found items, not sorted
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> queryRadius(double lat, double lon, double radius, List<T> result) {
+        if (result == null) {
+            result = new ArrayList<>();
+        }
+        if (mNodeCount == 0) {
+            return result;
+        }
+
+        // traverse tree
+        double[] tmp = new double[1];
+        int[] stack = new int[mHeight * NODE_CAPACITY + 1];
+        int stackSize = 0;
+        stack[stackSize++] = mNodeCount - 1;
+        while (stackSize > 0) {
+            int node = stack[--stackSize];
+            if (distanceToNode(lat, lon, node, tmp) > radius) {
+                continue;
+            }
+            if (node < mLeafCount) {
+                for (int i = mNodeStart[node], m = mNodeEnd[node]; i < m; i++) {
+                    if (distance(lat, lon, mLats[i], mLons[i], tmp) <= radius) {
+                        result.add((T) mItems[i]);
+                    }
+                }
+            } else {
+                for (int i = mNodeStart[node], m = mNodeEnd[node]; i < m; i++) {
+                    stack[stackSize++] = i;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find nearest items to location.
+     *
+     * @param lat       latitude of center
+     * @param lon       longitude of center
+     * @param limit     maximal number of items
+     * @param maxRadius maximal distance of items [m]
+     * @return list of found items, sorted by distance from nearest
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> queryNearest(double lat, double lon, int limit, double maxRadius) {
+        List<T> result = new ArrayList<>(Math.max(0, Math.min(limit, mItems.length)));
+        if (mNodeCount == 0 || limit <= 0) {
+            return result;
+        }
+
+        // best-first search, items are stored in queue as negative values
+        double[] tmp = new double[1];
+        DistanceQueue queue = new DistanceQueue();
+        queue.add(distanceToNode(lat, lon, mNodeCount - 1, tmp), mNodeCount - 1);
+        while (!queue.isEmpty() && result.size() < limit) {
+            double dist = queue.peekDistance();
+            int value = queue.poll();
+            if (dist > maxRadius) {
+                break;
+            }
+
+            // item
+            if (value < 0) {
+                result.add((T) mItems[-value - 1]);
+                continue;
+            }
+
+            // node
+            if (value < mLeafCount) {
+                for (int i = mNodeStart[value], m = mNodeEnd[value]; i < m; i++) {
+                    queue.add(distance(lat, lon, mLats[i], mLons[i], tmp), -i - 1);
+                }
+            } else {
+                for (int i = mNodeStart[value], m = mNodeEnd[value]; i < m; i++) {
+                    queue.add(distanceToNode(lat, lon, i, tmp), i);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find items inside box, that does not cross 180° meridian.
+     */
+    @SuppressWarnings("unchecked")
+    private void queryBoxNoWrap(double minLat, double minLon, double maxLat, double maxLon,
+            List<T> result) {
+        if (mNodeCount == 0) {
+            return;
+        }
+
+        // traverse tree
+        int[] stack = new int[mHeight * NODE_CAPACITY + 1];
+        int stackSize = 0;
+        stack[stackSize++] = mNodeCount - 1;
+        while (stackSize > 0) {
+            int node = stack[--stackSize];
+            if (mNodeMinLat[node] > maxLat || mNodeMaxLat[node] < minLat
+                    || mNodeMinLon[node] > maxLon || mNodeMaxLon[node] < minLon) {
+                continue;
+            }
+            if (node < mLeafCount) {
+                for (int i = mNodeStart[node], m = mNodeEnd[node]; i < m; i++) {
+                    double lat = mLats[i];
+                    double lon = mLons[i];
+                    if (lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon) {
+                        result.add((T) mItems[i]);
+                    }
+                }
+            } else {
+                for (int i = mNodeStart[node], m = mNodeEnd[node]; i < m; i++) {
+                    stack[stackSize++] = i;
+                }
+            }
+        }
+    }
+
+    //*************************************************
+    // BUILD
+    //*************************************************
+
+    /**
+     * Fill already allocated nodes of all levels of tree over sorted items. Called only
+     * from constructor, so content of nodes is safely published by final fields.
+     */
+    private void buildNodes() {
+        // leafs
+        int leafCount = mLeafCount;
+        for (int node = 0; node < leafCount; node++) {
+            int start = node * NODE_CAPACITY;
+            int end = Math.min(start + NODE_CAPACITY, mItems.length);
+            double minLat = Double.POSITIVE_INFINITY;
+            double minLon = Double.POSITIVE_INFINITY;
+            double maxLat = Double.NEGATIVE_INFINITY;
+            double maxLon = Double.NEGATIVE_INFINITY;
+            for (int i = start; i < end; i++) {
+                minLat = Math.min(minLat, mLats[i]);
+                minLon = Math.min(minLon, mLons[i]);
+                maxLat = Math.max(maxLat, mLats[i]);
+                maxLon = Math.max(maxLon, mLons[i]);
+            }
+            setNode(node, start, end, minLat, minLon, maxLat, maxLon);
+        }
+
+        // upper levels
+        int levelStart = 0;
+        int levelCount = leafCount;
+        while (levelCount > 1) {
+            int nextStart = levelStart + levelCount;
+            int nextCount = (levelCount + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            for (int i = 0; i < nextCount; i++) {
+                int start = levelStart + i * NODE_CAPACITY;
+                int end = Math.min(start + NODE_CAPACITY, nextStart);
+                double minLat = Double.POSITIVE_INFINITY;
+                double minLon = Double.POSITIVE_INFINITY;
+                double maxLat = Double.NEGATIVE_INFINITY;
+                double maxLon = Double.NEGATIVE_INFINITY;
+                for (int child = start; child < end; child++) {
+                    minLat = Math.min(minLat, mNodeMinLat[child]);
+                    minLon = Math.min(minLon, mNodeMinLon[child]);
+                    maxLat = Math.max(maxLat, mNodeMaxLat[child]);
+                    maxLon = Math.max(maxLon, mNodeMaxLon[child]);
+                }
+                setNode(nextStart + i, start, end, minLat, minLon, maxLat, maxLon);
+            }
+            levelStart = nextStart;
+            levelCount = nextCount;
+        }
+    }
+
+    private void setNode(int node, int start, int end,
+            double minLat, double minLon, double maxLat, double maxLon) {
+        mNodeStart[node] = start;
+        mNodeEnd[node] = end;
+        mNodeMinLat[node] = minLat;
+        mNodeMinLon[node] = minLon;
+        mNodeMaxLat[node] = maxLat;
+        mNodeMaxLon[node] = maxLon;
+    }
+
+    /**
+     * Sort part of indexes by values (quicksort, insertion sort for small parts).
+     *
+     * @param idx    indexes to sort
+     * @param from   start of sorted part
+     * @param to     end (exclusive) of sorted part
+     * @param values values of indexes
+     */
+    private static void sortIndices(int[] idx, int from, int to, double[] values) {
+        while (to - from > 16) {
+            // median of three pivot
+            int mid = (from + to) >>> 1;
+            double a = values[idx[from]];
+            double b = values[idx[mid]];
+            double c = values[idx[to - 1]];
+            double pivot = a < b ? (b < c ? b : (a < c ? c : a)) : (a < c ? a : (b < c ? c : b));
+
+            // partition
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (values[idx[i]] < pivot) {
+                    i++;
+                }
+                while (values[idx[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = idx[i];
+                    idx[i] = idx[j];
+                    idx[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+
+            // recurse into smaller part, loop on larger
+            if (j - from < to - i) {
+                sortIndices(idx, from, j + 1, values);
+                from = i;
+            } else {
+                sortIndices(idx, i, to, values);
+                to = j + 1;
+            }
+        }
+
+        // insertion sort
+        for (int i = from + 1; i < to; i++) {
+            int value = idx[i];
+            double key = values[value];
+            int j = i - 1;
+            while (j >= from && values[idx[j]] > key) {
+                idx[j + 1] = idx[j];
+                j--;
+            }
+            idx[j + 1] = value;
+        }
+    }
+
+    //*************************************************
+    // DISTANCES
+    //*************************************************
+
+    /**
+     * Distance between two locations.
+     */
+    private static double distance(double lat1, double lon1, double lat2, double lon2, double[] tmp) {
+        LocationCompute.computeDistanceAndBearingFast(lat1, lon1, lat2, lon2, tmp);
+        return tmp[0];
+    }
+
+    /**
+     * Minimal distance from location to any place inside bounding box of node.
+     */
+    private double distanceToNode(double lat, double lon, int node, double[] tmp) {
+        double minLat = mNodeMinLat[node];
+        double maxLat = mNodeMaxLat[node];
+        double minLon = mNodeMinLon[node];
+        double maxLon = mNodeMaxLon[node];
+
+        // location is in range of longitudes, nearest place lies on same meridian
+        if (lon >= minLon && lon <= maxLon) {
+            if (lat >= minLat && lat <= maxLat) {
+                return 0.0;
+            }
+            double dLat = lat < minLat ? minLat - lat : lat - maxLat;
+            return Math.toRadians(dLat) * LocationCompute.AVERAGE_RADIUS_OF_EARTH;
+        }
+
+        // find nearest edge meridian
+        double dLonMin = lonDiff(lon, minLon);
+        double dLonMax = lonDiff(lon, maxLon);
+        double edgeLon = dLonMin < dLonMax ? minLon : maxLon;
+        double dLon = Math.min(dLonMin, dLonMax);
+
+        // nearest place on meridian segment
+        if (dLon < 90.0) {
+            double closestLat = Math.toDegrees(Math.atan(
+                    Math.tan(Math.toRadians(lat)) / Math.cos(Math.toRadians(dLon))));
+            closestLat = Math.max(minLat, Math.min(maxLat, closestLat));
+            return distance(lat, lon, closestLat, edgeLon, tmp);
+        }
+        return Math.min(distance(lat, lon, minLat, edgeLon, tmp),
+                distance(lat, lon, maxLat, edgeLon, tmp));
+    }
+
+    /**
+     * Absolute difference of two longitudes, in range 0 - 180°.
+     */
+    private static double lonDiff(double lon1, double lon2) {
+        double diff = Math.abs(lon1 - lon2) % 360.0;
+        return diff > 180.0 ? 360.0 - diff : diff;
+    }
+
+    /**
+     * Simple binary heap of values sorted by distance.
+     */
+    private static class DistanceQueue {
+
+        // distances
+        private double[] mDistances = new double[64];
+        // values
+        private int[] mValues = new int[64];
+        // number of items
+        private int mSize;
+
+        boolean isEmpty() {
+            return mSize == 0;
+        }
+
+        double peekDistance() {
+            return mDistances[0];
+        }
+
+        void add(double distance, int value) {
+            if (mSize == mDistances.length) {
+                mDistances = Arrays.copyOf(mDistances, mSize * 2);
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+
+            // sift up
+            int pos = mSize++;
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (mDistances[parent] <= distance) {
+                    break;
+                }
+                mDistances[pos] = mDistances[parent];
+                mValues[pos] = mValues[parent];
+                pos = parent;
+            }
+            mDistances[pos] = distance;
+            mValues[pos] = value;
+        }
+
+        int poll() {
+            int result = mValues[0];
+            mSize--;
+            if (mSize == 0) {
+                return result;
+            }
+
+            // sift down last item
+            double distance = mDistances[mSize];
+            int value = mValues[mSize];
+            int pos = 0;
+            while (true) {
+                int child = 2 * pos + 1;
+                if (child >= mSize) {
+                    break;
+                }
+                if (child + 1 < mSize && mDistances[child + 1] < mDistances[child]) {
+                    child++;
+                }
+                if (distance <= mDistances[child]) {
+                    break;
+                }
+                mDistances[pos] = mDistances[child];
+                mValues[pos] = mValues[child];
+                pos = child;
+            }
+            mDistances[pos] = distance;
+            mValues[pos] = value;
+            return result;
+        }
+    }
+}
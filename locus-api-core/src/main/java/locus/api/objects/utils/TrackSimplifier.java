@@ -0,0 +1,673 @@
+package locus.api.objects.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import locus.api.objects.extra.Location;
+import locus.api.objects.extra.Point;
+import locus.api.objects.extra.Track;
+import locus.api.utils.Logger;
+
+/**
+ * Simplification of track geometry with tolerance defined in metres.
+ * <br><br>
+ * Simplifier works over primitive view of coordinates, defined by {@link #setTrack(Track)} or
+ * {@link #setData(double[], double[], int, int[], int)}. Significance of every point is computed
+ * only once, by Douglas-Peucker or Visvalingam-Whyatt algorithm, so any number of levels of
+ * detail may be then created by simple filtering. Significance is monotonic, so point present
+ * on certain level is present also on all more detailed levels.
+ * <br><br>
+ * First and last point of every track segment (between breaks) and points nearest to
+ * waypoints of track are never removed.
+ * <br><br>
+ * Internal buffers are reused between calls, so single instance may be used for simplification
+ * of many tracks without further allocations. Instance is not thread-safe.
+ */
+public class TrackSimplifier {
+
+    // tag for logger
+    private static final String TAG = "TrackSimplifier";
+
+    /**
+     * Douglas-Peucker algorithm. Point is removed, if its distance from simplified line
+     * is smaller than tolerance.
+     */
+    public static final int METHOD_DOUGLAS_PEUCKER = 0;
+    /**
+     * Visvalingam-Whyatt algorithm. Point is removed, if square root of effective area of
+     * triangle created with its neighbours is smaller than tolerance.
+     */
+    public static final int METHOD_VISVALINGAM = 1;
+
+    // size of tile in pixels for zoom levels
+    private static final int TILE_SIZE = 256;
+    // size of world in metres on equator
+    private static final double WORLD_SIZE = 2.0 * Math.PI * LocationCompute.AVERAGE_RADIUS_OF_EARTH;
+
+    // number of points
+    private int mCount;
+    // latitudes of points
+    private double[] mLats;
+    // longitudes of points
+    private double[] mLons;
+    // indexes of points, after which follow break
+    private int[] mBreaks;
+    // number of valid breaks
+    private int mBreaksCount;
+    // flags of points that cannot be removed
+    private boolean[] mLocked;
+
+    // projected coordinates of points in metres
+    private double[] mX;
+    private double[] mY;
+    // computed significance of points in metres
+    private double[] mSignificance;
+    // method used for computed significance, '-1' if not computed
+    private int mSignificanceMethod;
+
+    // work stack for Douglas-Peucker and heap for Visvalingam
+    private int[] mWork;
+    // previous point for Visvalingam
+    private int[] mPrev;
+    // next point for Visvalingam
+    private int[] mNext;
+    // position of point in heap for Visvalingam
+    private int[] mHeapPos;
+
+    /**
+     * Create new simplifier.
+     */
+    public TrackSimplifier() {
+        mCount = 0;
+        mLats = new double[0];
+        mLons = new double[0];
+        mBreaks = new int[0];
+        mBreaksCount = 0;
+        mLocked = new boolean[0];
+        mX = new double[0];
+        mY = new double[0];
+        mSignificance = new double[0];
+        mSignificanceMethod = -1;
+        mWork = new int[0];
+        mPrev = new int[0];
+        mNext = new int[0];
+        mHeapPos = new int[0];
+    }
+
+    //*************************************************
+    // DATA
+    //*************************************************
+
+    /**
+     * Set track, that should be simplified. Points, breaks and waypoints of track are copied.
+     *
+     * @param track track to simplify
+     */
+    public void setTrack(Track track) {
+        List<Location> points = track.getPoints();
+        int count = points.size();
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            Location loc = points.get(i);
+            mLats[i] = loc.getLatitude();
+            mLons[i] = loc.getLongitude();
+        }
+
+        // copy breaks
+        List<Integer> breaks = track.getBreaks();
+        if (mBreaks.length < breaks.size()) {
+            mBreaks = new int[breaks.size()];
+        }
+        for (int i = 0, m = breaks.size(); i < m; i++) {
+            mBreaks[i] = breaks.get(i);
+        }
+        setDataInternal(count, breaks.size());
+
+        // lock points nearest to waypoints
+        List<Point> wpts = track.getWaypoints();
+        for (int i = 0, m = wpts.size(); i < m; i++) {
+            Location loc = wpts.get(i).getLocation();
+            if (loc != null) {
+                lockNearest(loc.getLatitude(), loc.getLongitude());
+            }
+        }
+    }
+
+    /**
+     * Set coordinates of track, that should be simplified. Data are copied.
+     *
+     * @param lats        latitudes of points
+     * @param lons        longitudes of points
+     * @param count       number of points
+     * @param breaks      indexes of points, after which follow break (may be 'null')
+     * @param breaksCount number of valid breaks
+     */
+    public void setData(double[] lats, double[] lons, int count, int[] breaks, int breaksCount) {
+        ensureCapacity(count);
+        System.arraycopy(lats, 0, mLats, 0, count);
+        System.arraycopy(lons, 0, mLons, 0, count);
+        if (mBreaks.length < breaksCount) {
+            mBreaks = new int[breaksCount];
+        }
+        if (breaksCount > 0) {
+            System.arraycopy(breaks, 0, mBreaks, 0, breaksCount);
+        }
+        setDataInternal(count, breaksCount);
+    }
+
+    /**
+     * Get number of points of current track.
+     *
+     * @return number of points
+     */
+    public int getPointsCount() {
+        return mCount;
+    }
+
+    /**
+     * Lock point, so it is never removed by simplification.
+     *
+     * @param index index of point
+     */
+    public void setLocked(int index) {
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index + ", count: " + mCount);
+        }
+        mLocked[index] = true;
+        mSignificanceMethod = -1;
+    }
+
+    /**
+     * Lock point of track nearest to defined coordinates.
+     *
+     * @param lat latitude of coordinates
+     * @param lon longitude of coordinates
+     * @return index of locked point or '-1' if track is empty
+     */
+    public int lockNearest(double lat, double lon) {
+        int best = -1;
+        double bestDist = Double.MAX_VALUE;
+        double cosLat = Math.cos(Math.toRadians(lat));
+        for (int i = 0; i < mCount; i++) {
+            double dLat = mLats[i] - lat;
+            double dLon = normalizeLon(mLons[i] - lon) * cosLat;
+            double dist = dLat * dLat + dLon * dLon;
+            if (dist < bestDist) {
+                bestDist = dist;
+                best = i;
+            }
+        }
+        if (best >= 0) {
+            setLocked(best);
+        }
+        return best;
+    }
+
+    /**
+     * Prepare internal data after new coordinates are set.
+     */
+    private void setDataInternal(int count, int breaksCount) {
+        mCount = count;
+        mBreaksCount = breaksCount;
+        Arrays.fill(mLocked, 0, count, false);
+        mSignificanceMethod = -1;
+
+        // sort and validate breaks
+        Arrays.sort(mBreaks, 0, breaksCount);
+        for (int i = 0; i < breaksCount; i++) {
+            int index = mBreaks[i];
+            if (index < 0 || index >= count) {
+                Logger.logW(TAG, "setData(), invalid break: " + index + ", count: " + count);
+                continue;
+            }
+            mLocked[index] = true;
+            if (index + 1 < count) {
+                mLocked[index + 1] = true;
+            }
+        }
+
+        // lock first and last point
+        if (count > 0) {
+            mLocked[0] = true;
+            mLocked[count - 1] = true;
+        }
+    }
+
+    /**
+     * Ensure capacity of buffers for defined number of points.
+     */
+    private void ensureCapacity(int count) {
+        if (mLats.length >= count) {
+            return;
+        }
+        mLats = new double[count];
+        mLons = new double[count];
+        mLocked = new boolean[count];
+        mX = new double[count];
+        mY = new double[count];
+        mSignificance = new double[count];
+        mWork = new int[Math.max(2 * count, 2)];
+        mPrev = new int[count];
+        mNext = new int[count];
+        mHeapPos = new int[count];
+    }
+
+    //*************************************************
+    // SIMPLIFICATION
+    //*************************************************
+
+    /**
+     * Simplify current track.
+     *
+     * @param method    method of simplification ({@link #METHOD_DOUGLAS_PEUCKER} or
+     *                  {@link #METHOD_VISVALINGAM})
+     * @param tolerance tolerance in metres
+     * @param result    container for indexes of kept points, with size at least
+     *                  {@link #getPointsCount()}
+     * @return number of kept points
+     */
+    public int simplify(int method, double tolerance, int[] result) {
+        double[] sig = getSignificance(method);
+        int size = 0;
+        for (int i = 0; i < mCount; i++) {
+            if (sig[i] > tolerance) {
+                result[size++] = i;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Simplify current track for display on certain zoom level.
+     *
+     * @param method          method of simplification
+     * @param zoom            zoom level of map (with 256px tiles)
+     * @param pixelsTolerance tolerance in pixels of map
+     * @param result          container for indexes of kept points, with size at least
+     *                        {@link #getPointsCount()}
+     * @return number of kept points
+     */
+    public int simplifyForZoom(int method, int zoom, double pixelsTolerance, int[] result) {
+        return simplify(method, getToleranceForZoom(zoom, pixelsTolerance), result);
+    }
+
+    /**
+     * Create set of simplified versions of current track for range of zoom levels.
+     *
+     * @param method          method of simplification
+     * @param minZoom         minimal zoom level (inclusive)
+     * @param maxZoom         maximal zoom level (inclusive)
+     * @param pixelsTolerance tolerance in pixels of map
+     * @return indexes of kept points for every zoom level, starting with 'minZoom'
+     */
+    public int[][] createPyramid(int method, int minZoom, int maxZoom, double pixelsTolerance) {
+        int[][] levels = new int[Math.max(0, maxZoom - minZoom + 1)][];
+        int[] buffer = new int[mCount];
+        for (int i = 0; i < levels.length; i++) {
+            int size = simplifyForZoom(method, minZoom + i, pixelsTolerance, buffer);
+            levels[i] = Arrays.copyOf(buffer, size);
+        }
+        return levels;
+    }
+
+    /**
+     * Get tolerance in metres equivalent to number of pixels on certain zoom level. Computed
+     * for Mercator projection on average latitude of current track.
+     *
+     * @param zoom            zoom level of map (with 256px tiles)
+     * @param pixelsTolerance tolerance in pixels
+     * @return tolerance in metres
+     */
+    public double getToleranceForZoom(int zoom, double pixelsTolerance) {
+        double minLat = 90.0;
+        double maxLat = -90.0;
+        for (int i = 0; i < mCount; i++) {
+            minLat = Math.min(minLat, mLats[i]);
+            maxLat = Math.max(maxLat, mLats[i]);
+        }
+        double lat = mCount > 0 ? (minLat + maxLat) / 2.0 : 0.0;
+        double metresPerPixel = WORLD_SIZE * Math.cos(Math.toRadians(lat)) / (TILE_SIZE * Math.pow(2, zoom));
+        return metresPerPixel * pixelsTolerance;
+    }
+
+    /**
+     * Simplify points of track. Track is modified, its points and breaks are replaced.
+     *
+     * @param track     track to simplify
+     * @param method    method of simplification
+     * @param tolerance tolerance in metres
+     * @return number of removed points
+     */
+    public static int simplify(Track track, int method, double tolerance) {
+        TrackSimplifier simplifier = new TrackSimplifier();
+        simplifier.setTrack(track);
+        int[] indexes = new int[simplifier.getPointsCount()];
+        int size = simplifier.simplify(method, tolerance, indexes);
+        return simplifier.apply(track, indexes, size);
+    }
+
+    /**
+     * Replace points and breaks of track by simplified version.
+     *
+     * @param track   track, that was set by {@link #setTrack(Track)}
+     * @param indexes indexes of kept points
+     * @param size    number of valid indexes
+     * @return number of removed points
+     */
+    public int apply(Track track, int[] indexes, int size) {
+        List<Location> points = track.getPoints();
+        if (points.size() != mCount) {
+            throw new IllegalArgumentException("Track does not match simplified data, " +
+                    "points: " + points.size() + ", expected: " + mCount);
+        }
+
+        // new points
+        List<Location> newPoints = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            newPoints.add(points.get(indexes[i]));
+        }
+
+        // new breaks, kept as all segment end points are locked
+        List<Integer> breaks = track.getBreaks();
+        breaks.clear();
+        int pos = 0;
+        for (int i = 0; i < mBreaksCount; i++) {
+            int index = mBreaks[i];
+            while (pos < size && indexes[pos] < index) {
+                pos++;
+            }
+            if (pos < size && indexes[pos] == index && (breaks.isEmpty() || breaks.get(breaks.size() - 1) != pos)) {
+                breaks.add(pos);
+            }
+        }
+        track.setPoints(newPoints);
+        return mCount - size;
+    }
+
+    //*************************************************
+    // SIGNIFICANCE
+    //*************************************************
+
+    /**
+     * Get significance of points for certain method. Significance is computed only if
+     * data or method changed.
+     */
+    private double[] getSignificance(int method) {
+        if (method != METHOD_DOUGLAS_PEUCKER && method != METHOD_VISVALINGAM) {
+            throw new IllegalArgumentException("Invalid method: " + method);
+        }
+        if (mSignificanceMethod == method) {
+            return mSignificance;
+        }
+
+        // compute significance for every segment
+        int start = 0;
+        for (int i = 0; i <= mBreaksCount; i++) {
+            int end = i < mBreaksCount ? mBreaks[i] : mCount - 1;
+            if (end < start || end >= mCount) {
+                continue;
+            }
+            project(start, end);
+
+            // locked points split segment into independent parts
+            int first = start;
+            for (int j = start + 1; j <= end; j++) {
+                if (!mLocked[j]) {
+                    continue;
+                }
+                if (method == METHOD_DOUGLAS_PEUCKER) {
+                    computeDouglasPeucker(first, j);
+                } else {
+                    computeVisvalingam(first, j);
+                }
+                first = j;
+            }
+            mSignificance[start] = Double.POSITIVE_INFINITY;
+            start = end + 1;
+        }
+        mSignificanceMethod = method;
+        return mSignificance;
+    }
+
+    /**
+     * Project points of segment to plane in metres, with scale of average latitude
+     * of segment. Longitudes are unwrapped over antimeridian.
+     */
+    private void project(int start, int end) {
+        double minLat = 90.0;
+        double maxLat = -90.0;
+        for (int i = start; i <= end; i++) {
+            minLat = Math.min(minLat, mLats[i]);
+            maxLat = Math.max(maxLat, mLats[i]);
+        }
+        double scaleY = Math.toRadians(1.0) * LocationCompute.AVERAGE_RADIUS_OF_EARTH;
+        double scaleX = scaleY * Math.cos(Math.toRadians((minLat + maxLat) / 2.0));
+
+        // project points
+        double lon = mLons[start];
+        for (int i = start; i <= end; i++) {
+            if (i > start) {
+                lon += normalizeLon(mLons[i] - mLons[i - 1]);
+            }
+            mX[i] = lon * scaleX;
+            mY[i] = mLats[i] * scaleY;
+        }
+    }
+
+    /**
+     * Compute significance of points of segment by Douglas-Peucker algorithm, as distance
+     * of point from simplified line at moment, when point is added.
+     */
+    private void computeDouglasPeucker(int start, int end) {
+        mSignificance[start] = Double.POSITIVE_INFINITY;
+        mSignificance[end] = Double.POSITIVE_INFINITY;
+
+        // process ranges from stack
+        int stack = 0;
+        mWork[stack++] = start;
+        mWork[stack++] = end;
+        while (stack > 0) {
+            int last = mWork[--stack];
+            int first = mWork[--stack];
+            if (last - first < 2) {
+                continue;
+            }
+
+            // find farthest point
+            int index = -1;
+            double maxDist = -1.0;
+            for (int i = first + 1; i < last; i++) {
+                double dist = getDistanceToSegmentSq(i, first, last);
+                if (dist > maxDist) {
+                    maxDist = dist;
+                    index = i;
+                }
+            }
+
+            // significance is limited by significance of parent range
+            double sig = Math.sqrt(maxDist);
+            double parent = Math.min(mSignificance[first], mSignificance[last]);
+            mSignificance[index] = Math.min(sig, parent);
+
+            // process both halves
+            mWork[stack++] = first;
+            mWork[stack++] = index;
+            mWork[stack++] = index;
+            mWork[stack++] = last;
+        }
+    }
+
+    /**
+     * Compute significance of points of segment by Visvalingam-Whyatt algorithm, as square root
+     * of effective area of point at moment, when point is removed.
+     */
+    private void computeVisvalingam(int start, int end) {
+        mSignificance[start] = Double.POSITIVE_INFINITY;
+        mSignificance[end] = Double.POSITIVE_INFINITY;
+        if (end - start < 2) {
+            return;
+        }
+
+        // build heap of inner points
+        int size = 0;
+        for (int i = start + 1; i < end; i++) {
+            mPrev[i] = i - 1;
+            mNext[i] = i + 1;
+            mSignificance[i] = getArea(i - 1, i, i + 1);
+            mWork[size] = i;
+            mHeapPos[i] = size;
+            size++;
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            heapDown(i, size);
+        }
+
+        // remove points with the smallest area
+        double maxArea = 0.0;
+        while (size > 0) {
+            int index = mWork[0];
+            size--;
+            if (size > 0) {
+                heapMove(mWork[size], 0);
+                heapDown(0, size);
+            }
+
+            // area is never smaller than area of already removed point
+            double area = Math.max(mSignificance[index], maxArea);
+            maxArea = area;
+            mSignificance[index] = area;
+
+            // update neighbours
+            int prev = mPrev[index];
+            int next = mNext[index];
+            if (prev > start) {
+                mNext[prev] = next;
+                mSignificance[prev] = getArea(mPrev[prev], prev, next);
+                heapUpdate(mHeapPos[prev], size);
+            }
+            if (next < end) {
+                mPrev[next] = prev;
+                mSignificance[next] = getArea(prev, next, mNext[next]);
+                heapUpdate(mHeapPos[next], size);
+            }
+        }
+
+        // convert areas to metres
+        for (int i = start + 1; i < end; i++) {
+            mSignificance[i] = Math.sqrt(mSignificance[i]);
+        }
+    }
+
+    /**
+     * Get squared distance of point from segment defined by two other points.
+     */
+    private double getDistanceToSegmentSq(int index, int first, int last) {
+        double x = mX[first];
+        double y = mY[first];
+        double dx = mX[last] - x;
+        double dy = mY[last] - y;
+        double len = dx * dx + dy * dy;
+        if (len > 0.0) {
+            double t = ((mX[index] - x) * dx + (mY[index] - y) * dy) / len;
+            if (t > 1.0) {
+                x = mX[last];
+                y = mY[last];
+            } else if (t > 0.0) {
+                x += dx * t;
+                y += dy * t;
+            }
+        }
+        dx = mX[index] - x;
+        dy = mY[index] - y;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Get area of triangle defined by three points.
+     */
+    private double getArea(int p1, int p2, int p3) {
+        return Math.abs((mX[p1] - mX[p3]) * (mY[p2] - mY[p1])
+                - (mX[p1] - mX[p2]) * (mY[p3] - mY[p1])) / 2.0;
+    }
+
+    //*************************************************
+    // HEAP
+    //*************************************************
+
+    /**
+     * Place point on certain position in heap.
+     */
+    private void heapMove(int index, int pos) {
+        mWork[pos] = index;
+        mHeapPos[index] = pos;
+    }
+
+    /**
+     * Restore heap after change of value on certain position.
+     */
+    private void heapUpdate(int pos, int size) {
+        if (pos >= size) {
+            return;
+        }
+        int index = mWork[pos];
+        heapUp(pos);
+        heapDown(mHeapPos[index], size);
+    }
+
+    /**
+     * Move item on position up in heap.
+     */
+    private void heapUp(int pos) {
+        int index = mWork[pos];
+        double value = mSignificance[index];
+        while (pos > 0) {
+            int parent = (pos - 1) / 2;
+            if (mSignificance[mWork[parent]] <= value) {
+                break;
+            }
+            heapMove(mWork[parent], pos);
+            pos = parent;
+        }
+        heapMove(index, pos);
+    }
+
+    /**
+     * Move item on position down in heap.
+     */
+    private void heapDown(int pos, int size) {
+        int index = mWork[pos];
+        double value = mSignificance[index];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && mSignificance[mWork[child + 1]] < mSignificance[mWork[child]]) {
+                child++;
+            }
+            if (mSignificance[mWork[child]] >= value) {
+                break;
+            }
+            heapMove(mWork[child], pos);
+            pos = child;
+        }
+        heapMove(index, pos);
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Normalize difference of longitudes into range -180 to 180.
+     */
+    private static double normalizeLon(double dLon) {
+        if (dLon > 180.0) {
+            return dLon - 360.0;
+        } else if (dLon < -180.0) {
+            return dLon + 360.0;
+        }
+        return dLon;
+    }
+}
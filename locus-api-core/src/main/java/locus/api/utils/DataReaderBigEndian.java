@@ -76,6 +76,11 @@ public class DataReaderBigEndian {
         System.arraycopy(mBuffer, mPosition - data.length, data, 0, data.length);
     }
 
+    public void readBytes(byte[] data, int offset, int count) {
+        checkPosition(count);
+        System.arraycopy(mBuffer, mPosition - count, data, offset, count);
+    }
+
     public boolean readBoolean() {
         checkPosition(1);
         return mBuffer[mPosition - 1] != 0;
@@ -174,31 +179,30 @@ public class DataReaderBigEndian {
         return objs;
     }
 
+    /**
+     * Read list of Storable objects.
+     *
+     * @param claz class parameter
+     * @param <E>  class type
+     * @return loaded list
+     * @throws IOException thrown in case of invalid data format or if class cannot be initialized
+     */
     public <E extends Storable> List<E> readListStorable(Class<E> claz)
             throws IOException {
-        // prepare container
-        List<E> objs = new ArrayList<>();
-
-        // read size
-        int count = readInt();
-        if (count == 0) {
-            return objs;
-        }
+        return Storable.readList(claz, this);
+    }
 
-        // read locations
-        for (int i = 0; i < count; i++) {
-            //noinspection TryWithIdenticalCatches
-            try {
-                E item = claz.newInstance();
-                item.read(this);
-                objs.add(item);
-            } catch (InstantiationException e) {
-                Logger.logE(TAG, "readList(" + claz + ")", e);
-            } catch (IllegalAccessException e) {
-                Logger.logE(TAG, "readList(" + claz + ")", e);
-            }
-        }
-        return objs;
+    /**
+     * Read list of Storable objects created by certain factory.
+     *
+     * @param factory factory of items
+     * @param <E>     class type
+     * @return loaded list
+     * @throws IOException thrown in case of invalid data format
+     */
+    public <E extends Storable> List<E> readListStorable(Storable.Factory<E> factory)
+            throws IOException {
+        return Storable.readList(factory, this);
     }
 
     // PRIVATE TOOLS
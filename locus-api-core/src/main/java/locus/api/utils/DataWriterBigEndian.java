@@ -325,6 +325,12 @@ public class DataWriterBigEndian {
     }
 
     public void writeListStorable(List<? extends Storable> objs) throws IOException {
+        // copy not decoded items directly
+        if (objs instanceof LazyStorableList) {
+            ((LazyStorableList<?>) objs).write(this);
+            return;
+        }
+
         // get size of list
         int size;
         if (objs == null) {
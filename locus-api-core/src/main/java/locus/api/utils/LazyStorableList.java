@@ -0,0 +1,264 @@
+package locus.api.utils;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import locus.api.objects.Storable;
+
+/**
+ * List of {@link Storable} objects, that keeps items in serialized form and decodes them
+ * only when accessed. Decoded items are cached, so modifications of obtained items are
+ * preserved.
+ * <br><br>
+ * Any structural modification of list (add, remove, set) decodes all items and list then
+ * behaves as a standard {@link ArrayList}.
+ * <br><br>
+ * Reading of list from more threads is safe, every item is decoded only once and all threads
+ * get the same instance. Serialized data stay valid for whole life of list. Modifications
+ * of list require external synchronization, same as for {@link ArrayList}.
+ *
+ * @param <E> type of stored items
+ */
+public class LazyStorableList<E extends Storable> extends AbstractList<E> implements RandomAccess {
+
+    // factory of items
+    private final Storable.Factory<E> mFactory;
+    // serialized items including their headers
+    private final byte[] mData;
+    // offsets of items in 'mData', last value defines end of data
+    private final int[] mOffsets;
+    // already decoded items
+    private final AtomicReferenceArray<E> mDecoded;
+    // decoded list used after structural modification
+    private volatile List<E> mItems;
+
+    private LazyStorableList(Storable.Factory<E> factory, byte[] data, int[] offsets) {
+        this.mFactory = factory;
+        this.mData = data;
+        this.mOffsets = offsets;
+        this.mDecoded = new AtomicReferenceArray<>(offsets.length - 1);
+        this.mItems = null;
+    }
+
+    /**
+     * Read list in format written by {@link DataWriterBigEndian#writeListStorable(List)}.
+     * Only headers of items are read, items itself are decoded on demand.
+     *
+     * @param claz class of items
+     * @param dr   data reader
+     * @param <E>  type of items
+     * @return loaded list
+     * @throws IOException thrown in case of invalid data format
+     */
+    public static <E extends Storable> LazyStorableList<E> read(Class<E> claz, DataReaderBigEndian dr)
+            throws IOException {
+        return read(Storable.getFactoryForRead(claz), dr);
+    }
+
+    /**
+     * Read list in format written by {@link DataWriterBigEndian#writeListStorable(List)}.
+     * Only headers of items are read, items itself are decoded on demand.
+     *
+     * @param factory factory of items
+     * @param dr      data reader
+     * @param <E>     type of items
+     * @return loaded list
+     * @throws IOException thrown in case of invalid data format
+     */
+    public static <E extends Storable> LazyStorableList<E> read(Storable.Factory<E> factory,
+            DataReaderBigEndian dr) throws IOException {
+        int count = dr.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid number of items: " + count);
+        }
+
+        // find offsets of items
+        int start = (int) dr.length() - dr.available();
+        int[] offsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            int pos = (int) dr.length() - dr.available();
+            offsets[i] = pos - start;
+
+            // skip version and body
+            dr.readInt();
+            int size = dr.readInt();
+            if (size < 0 || size > dr.available()) {
+                throw new IOException("Invalid size of item " + i + ": " + size);
+            }
+            dr.seek(pos + 8 + size);
+        }
+        int end = (int) dr.length() - dr.available();
+        offsets[count] = end - start;
+
+        // copy serialized items
+        dr.seek(start);
+        byte[] data = dr.readBytes(end - start);
+        return new LazyStorableList<>(factory, data, offsets);
+    }
+
+    /**
+     * Write list in format of {@link DataWriterBigEndian#writeListStorable(List)}. Not decoded
+     * items are copied directly in serialized form.
+     *
+     * @param dw data writer
+     * @throws IOException thrown in case of problem with serialization
+     */
+    public void write(DataWriterBigEndian dw) throws IOException {
+        List<E> items = mItems;
+        if (items != null) {
+            dw.writeInt(items.size());
+            for (int i = 0, m = items.size(); i < m; i++) {
+                items.get(i).write(dw);
+            }
+            return;
+        }
+
+        // write serialized or decoded items
+        dw.writeInt(mDecoded.length());
+        for (int i = 0, m = mDecoded.length(); i < m; i++) {
+            E item = mDecoded.get(i);
+            if (item != null) {
+                item.write(dw);
+            } else {
+                dw.write(mData, mOffsets[i], mOffsets[i + 1] - mOffsets[i]);
+            }
+        }
+    }
+
+    //*************************************************
+    // RAW DATA
+    //*************************************************
+
+    /**
+     * Check if item is still only in serialized form.
+     *
+     * @param index index of item
+     * @return {@code true} if item is not decoded yet
+     */
+    public boolean isSerialized(int index) {
+        return mItems == null && mDecoded.get(index) == null;
+    }
+
+    /**
+     * Check if all items are still only in serialized form, so they could not be modified
+     * since list was read.
+     *
+     * @return {@code true} if no item is decoded yet
+     */
+    public boolean isSerialized() {
+        if (mItems != null) {
+            return false;
+        }
+        for (int i = 0, m = mDecoded.length(); i < m; i++) {
+            if (mDecoded.get(i) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get buffer with serialized items. Valid only for items, where
+     * {@link #isSerialized(int)} returns {@code true}.
+     *
+     * @return buffer with data, do not modify
+     */
+    public byte[] getSerializedData() {
+        return mData;
+    }
+
+    /**
+     * Get offset of serialized item (including header with version and size) in buffer
+     * returned by {@link #getSerializedData()}.
+     *
+     * @param index index of item
+     * @return offset of item
+     */
+    public int getSerializedOffset(int index) {
+        return mOffsets[index];
+    }
+
+    //*************************************************
+    // LIST
+    //*************************************************
+
+    @Override
+    public E get(int index) {
+        List<E> items = mItems;
+        if (items != null) {
+            return items.get(index);
+        }
+
+        // return already decoded item
+        E item = mDecoded.get(index);
+        if (item != null) {
+            return item;
+        }
+
+        // decode item, in case of concurrent decoding, first stored item wins
+        try {
+            DataReaderBigEndian dr = new DataReaderBigEndian(mData);
+            dr.seek(mOffsets[index]);
+            E newItem = mFactory.create();
+            newItem.read(dr);
+            if (mDecoded.compareAndSet(index, null, newItem)) {
+                return newItem;
+            }
+            return mDecoded.get(index);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to decode item " + index, e);
+        }
+    }
+
+    @Override
+    public int size() {
+        List<E> items = mItems;
+        if (items != null) {
+            return items.size();
+        }
+        return mDecoded.length();
+    }
+
+    @Override
+    public E set(int index, E element) {
+        return getItems().set(index, element);
+    }
+
+    @Override
+    public void add(int index, E element) {
+        getItems().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        E item = getItems().remove(index);
+        modCount++;
+        return item;
+    }
+
+    @Override
+    public void clear() {
+        getItems().clear();
+        modCount++;
+    }
+
+    /**
+     * Get list of all decoded items, used after structural modification.
+     */
+    private List<E> getItems() {
+        List<E> items = mItems;
+        if (items == null) {
+            items = new ArrayList<>(mDecoded.length());
+            for (int i = 0, m = mDecoded.length(); i < m; i++) {
+                items.add(get(i));
+            }
+            mItems = items;
+        }
+        return items;
+    }
+}
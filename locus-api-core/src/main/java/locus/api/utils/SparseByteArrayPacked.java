@@ -0,0 +1,529 @@
+package locus.api.utils;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Sorted map of int keys to byte arrays, where all values are packed in one shared buffer.
+ * <br><br>
+ * Compared to {@link SparseArrayCompat} with {@code byte[]} values, this container does not
+ * need a separate array for every value. Values are appended to single buffer and referenced
+ * by offset and length. Space of removed or replaced values is reclaimed by compaction once
+ * it takes more than a half of the buffer.
+ * <br><br>
+ * Text values are expected in UTF-8. Typed getters parse numbers directly from stored bytes,
+ * without conversion to String.
+ */
+public class SparseByteArrayPacked {
+
+    // sorted keys
+    private int[] mKeys;
+    // offsets of values in data buffer
+    private int[] mOffsets;
+    // lengths of values
+    private int[] mLengths;
+    // number of valid items
+    private int mSize;
+
+    // buffer with values
+    private byte[] mData;
+    // number of used bytes in buffer
+    private int mDataSize;
+    // number of bytes used by removed values
+    private int mGarbage;
+
+    /**
+     * Creates a new empty container.
+     */
+    public SparseByteArrayPacked() {
+        this(4, 32);
+    }
+
+    /**
+     * Creates a new empty container with defined initial capacity.
+     *
+     * @param capacity  expected number of items
+     * @param dataBytes expected number of bytes of all values
+     */
+    public SparseByteArrayPacked(int capacity, int dataBytes) {
+        mKeys = new int[capacity];
+        mOffsets = new int[capacity];
+        mLengths = new int[capacity];
+        mData = new byte[dataBytes];
+        mSize = 0;
+        mDataSize = 0;
+        mGarbage = 0;
+    }
+
+    //*************************************************
+    // BASIC ACCESS
+    //*************************************************
+
+    /**
+     * Number of items in container.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Get key on certain index. Keys are sorted in ascending order.
+     */
+    public int keyAt(int index) {
+        return mKeys[index];
+    }
+
+    /**
+     * Offset of value on certain index in buffer returned by {@link #getData()}.
+     */
+    public int offsetAt(int index) {
+        return mOffsets[index];
+    }
+
+    /**
+     * Length of value on certain index.
+     */
+    public int lengthAt(int index) {
+        return mLengths[index];
+    }
+
+    /**
+     * Get shared buffer with all values. Do not modify content of this buffer. Buffer
+     * may be replaced by any modification of container.
+     */
+    public byte[] getData() {
+        return mData;
+    }
+
+    /**
+     * Get index of certain key.
+     *
+     * @param key key to search for
+     * @return index of key or negative value if key do not exists
+     */
+    public int indexOfKey(int key) {
+        int lo = 0;
+        int hi = mSize - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midVal = mKeys[mid];
+            if (midVal < key) {
+                lo = mid + 1;
+            } else if (midVal > key) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return ~lo;
+    }
+
+    /**
+     * Check if value for certain key exists.
+     */
+    public boolean containsKey(int key) {
+        return indexOfKey(key) >= 0;
+    }
+
+    /**
+     * Get copy of value stored under certain key.
+     *
+     * @param key key of value
+     * @return copy of value or 'null' if not exists
+     */
+    public byte[] get(int key) {
+        int index = indexOfKey(key);
+        if (index < 0) {
+            return null;
+        }
+        return Arrays.copyOfRange(mData, mOffsets[index], mOffsets[index] + mLengths[index]);
+    }
+
+    //*************************************************
+    // TYPED ACCESS
+    //*************************************************
+
+    /**
+     * Get value decoded as UTF-8 text.
+     *
+     * @param key key of value
+     * @return text or 'null' if value not exists
+     */
+    public String getString(int key) {
+        int index = indexOfKey(key);
+        if (index < 0) {
+            return null;
+        }
+        try {
+            return new String(mData, mOffsets[index], mLengths[index], "UTF-8");
+        } catch (IOException e) {
+            Logger.logE("SparseByteArrayPacked", "getString(" + key + ")", e);
+            return "";
+        }
+    }
+
+    /**
+     * Get value as a single byte.
+     *
+     * @param key      key of value
+     * @param defValue value returned if item not exists or has not exactly one byte
+     * @return stored byte
+     */
+    public byte getByte(int key, byte defValue) {
+        int index = indexOfKey(key);
+        if (index < 0 || mLengths[index] != 1) {
+            return defValue;
+        }
+        return mData[mOffsets[index]];
+    }
+
+    /**
+     * Get value stored as a text representation of integer number.
+     *
+     * @param key      key of value
+     * @param defValue value returned if item not exists or is not valid number
+     * @return parsed number
+     */
+    public int getInt(int key, int defValue) {
+        long value = getLong(key, Long.MIN_VALUE);
+        if (value == Long.MIN_VALUE || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return defValue;
+        }
+        return (int) value;
+    }
+
+    /**
+     * Get value stored as a text representation of long number.
+     *
+     * @param key      key of value
+     * @param defValue value returned if item not exists or is not valid number
+     * @return parsed number
+     */
+    public long getLong(int key, long defValue) {
+        int index = indexOfKey(key);
+        if (index < 0) {
+            return defValue;
+        }
+
+        // parse digits directly from buffer
+        int pos = mOffsets[index];
+        int end = pos + mLengths[index];
+        boolean negative = false;
+        if (pos < end && (mData[pos] == '-' || mData[pos] == '+')) {
+            negative = mData[pos] == '-';
+            pos++;
+        }
+        if (pos < end && end - pos <= 18) {
+            long result = 0;
+            for (; pos < end; pos++) {
+                int digit = mData[pos] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                result = result * 10 + digit;
+            }
+            if (pos == end) {
+                return negative ? -result : result;
+            }
+        }
+
+        // fallback for values with white spaces, long numbers or invalid values
+        try {
+            return Long.parseLong(getString(key).trim());
+        } catch (Exception e) {
+            return defValue;
+        }
+    }
+
+    /**
+     * Get value stored as a text representation of decimal number.
+     *
+     * @param key      key of value
+     * @param defValue value returned if item not exists or is not valid number
+     * @return parsed number
+     */
+    public double getDouble(int key, double defValue) {
+        int index = indexOfKey(key);
+        if (index < 0) {
+            return defValue;
+        }
+
+        // simple "[-]digits[.digits]" format is parsed directly
+        int pos = mOffsets[index];
+        int end = pos + mLengths[index];
+        boolean negative = false;
+        if (pos < end && (mData[pos] == '-' || mData[pos] == '+')) {
+            negative = mData[pos] == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        boolean simple = pos < end;
+        for (; pos < end && simple; pos++) {
+            byte b = mData[pos];
+            if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else if (b >= '0' && b <= '9' && digits < 15) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fraction >= 0) {
+                    fraction++;
+                }
+            } else {
+                simple = false;
+            }
+        }
+        if (simple && digits > 0) {
+            // both values are exactly representable, so division is correctly rounded
+            double result = fraction > 0 ? mantissa / POW_10[fraction] : mantissa;
+            return negative ? -result : result;
+        }
+
+        // fallback for exponents, long numbers or invalid values
+        String text = getString(key);
+        try {
+            return Double.parseDouble(text.trim().replace(",", "."));
+        } catch (Exception e) {
+            return defValue;
+        }
+    }
+
+    /**
+     * Get value stored as a text representation of decimal number.
+     *
+     * @param key      key of value
+     * @param defValue value returned if item not exists or is not valid number
+     * @return parsed number
+     */
+    public float getFloat(int key, float defValue) {
+        double value = getDouble(key, Double.NaN);
+        if (Double.isNaN(value)) {
+            return defValue;
+        }
+        return (float) value;
+    }
+
+    // powers of ten exactly representable in double
+    private static final double[] POW_10 = new double[]{
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16};
+
+    //*************************************************
+    // MODIFICATIONS
+    //*************************************************
+
+    /**
+     * Put value into container. Existing value with same key is replaced.
+     *
+     * @param key   key of value
+     * @param value value itself
+     */
+    public void put(int key, byte[] value) {
+        put(key, value, 0, value.length);
+    }
+
+    /**
+     * Put part of array into container. Existing value with same key is replaced.
+     *
+     * @param key    key of value
+     * @param value  source array
+     * @param offset offset in source array
+     * @param length number of bytes to store
+     */
+    public void put(int key, byte[] value, int offset, int length) {
+        int index = prepareSlot(key, length);
+        System.arraycopy(value, offset, mData, mOffsets[index], length);
+    }
+
+    /**
+     * Put text representation of number into container, without temporary String object.
+     *
+     * @param key   key of value
+     * @param value number to store
+     */
+    public void putLong(int key, long value) {
+        // compute number of characters
+        int length = value < 0 ? 2 : 1;
+        long abs = Math.abs(value);
+        if (value == Long.MIN_VALUE) {
+            put(key, Utils.doStringToBytes(Long.toString(value)));
+            return;
+        }
+        for (long rest = abs / 10; rest > 0; rest /= 10) {
+            length++;
+        }
+
+        // write digits from the end
+        int index = prepareSlot(key, length);
+        int start = mOffsets[index];
+        int pos = start + length - 1;
+        do {
+            mData[pos--] = (byte) ('0' + (abs % 10));
+            abs /= 10;
+        } while (abs > 0);
+        if (value < 0) {
+            mData[start] = '-';
+        }
+    }
+
+    /**
+     * Read value from reader directly into container.
+     *
+     * @param key    key of value
+     * @param dr     source reader
+     * @param length number of bytes to read
+     */
+    public void put(int key, DataReaderBigEndian dr, int length) {
+        int index = prepareSlot(key, length);
+        dr.readBytes(mData, mOffsets[index], length);
+    }
+
+    /**
+     * Remove value for certain key.
+     *
+     * @param key key of value
+     * @return {@code true} if value existed and was removed
+     */
+    public boolean remove(int key) {
+        int index = indexOfKey(key);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Remove value on certain index.
+     *
+     * @param index index of value
+     */
+    public void removeAt(int index) {
+        mGarbage += mLengths[index];
+        int move = mSize - index - 1;
+        if (move > 0) {
+            System.arraycopy(mKeys, index + 1, mKeys, index, move);
+            System.arraycopy(mOffsets, index + 1, mOffsets, index, move);
+            System.arraycopy(mLengths, index + 1, mLengths, index, move);
+        }
+        mSize--;
+
+        // all data removed, reset buffer
+        if (mSize == 0) {
+            mDataSize = 0;
+            mGarbage = 0;
+        }
+    }
+
+    /**
+     * Remove all values.
+     */
+    public void clear() {
+        mSize = 0;
+        mDataSize = 0;
+        mGarbage = 0;
+    }
+
+    /**
+     * Estimated number of bytes used by this container on heap.
+     */
+    public int getMemorySize() {
+        return 3 * 4 * mKeys.length + mData.length;
+    }
+
+    // PRIVATE TOOLS
+
+    /**
+     * Prepare space for value with certain key and length.
+     *
+     * @return index of prepared item
+     */
+    private int prepareSlot(int key, int length) {
+        int index = indexOfKey(key);
+        if (index >= 0) {
+            // reuse existing space if possible
+            if (mLengths[index] >= length) {
+                mGarbage += mLengths[index] - length;
+                mLengths[index] = length;
+                return index;
+            }
+            mGarbage += mLengths[index];
+        } else {
+            // insert new key
+            index = ~index;
+            if (mSize == mKeys.length) {
+                int newSize = mSize < 4 ? 4 : mSize * 2;
+                mKeys = Arrays.copyOf(mKeys, newSize);
+                mOffsets = Arrays.copyOf(mOffsets, newSize);
+                mLengths = Arrays.copyOf(mLengths, newSize);
+            }
+            int move = mSize - index;
+            if (move > 0) {
+                System.arraycopy(mKeys, index, mKeys, index + 1, move);
+                System.arraycopy(mOffsets, index, mOffsets, index + 1, move);
+                System.arraycopy(mLengths, index, mLengths, index + 1, move);
+            }
+            mKeys[index] = key;
+            mLengths[index] = 0;
+            mSize++;
+        }
+
+        // allocate space at the end of buffer
+        if (mGarbage > mDataSize / 2) {
+            compact(index);
+        }
+        ensureCapacity(mDataSize + length);
+        mOffsets[index] = mDataSize;
+        mLengths[index] = length;
+        mDataSize += length;
+        return index;
+    }
+
+    /**
+     * Remove space of removed values.
+     *
+     * @param skipIndex index of item, which value is going to be replaced
+     */
+    private void compact(int skipIndex) {
+        byte[] data = new byte[Math.max(mDataSize - mGarbage, 16)];
+        int pos = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (i == skipIndex) {
+                mLengths[i] = 0;
+                continue;
+            }
+            System.arraycopy(mData, mOffsets[i], data, pos, mLengths[i]);
+            mOffsets[i] = pos;
+            pos += mLengths[i];
+        }
+        mData = data;
+        mDataSize = pos;
+        mGarbage = 0;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > mData.length) {
+            mData = Arrays.copyOf(mData, Math.max(minCapacity, mData.length * 2));
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (mSize <= 0) {
+            return "{}";
+        }
+        StringBuilder buffer = new StringBuilder(mSize * 28);
+        buffer.append('{');
+        for (int i = 0; i < mSize; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(mKeys[i]);
+            buffer.append('=');
+            buffer.append(mLengths[i]).append('B');
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,208 @@
+package locus.api.utils;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Tools for work with data in GZIP format, that reuse {@link Inflater} and {@link Deflater}
+ * instances per thread and allow to decompress only part of data.
+ */
+public class UtilsGzip {
+
+    // GZIP magic header
+    private static final int GZIP_MAGIC = 0x8b1f;
+    // size of GZIP trailer (CRC32, size)
+    private static final int TRAILER_SIZE = 8;
+
+    // header flags
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    // inflater reused by current thread
+    private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    // deflater reused by current thread
+    private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+    };
+
+    /**
+     * Compress all parts into single GZIP stream.
+     *
+     * @param level compression level (0 - 9) or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param parts data to compress
+     * @return compressed data
+     */
+    public static byte[] compress(int level, byte[]... parts) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setLevel(level);
+        CRC32 crc = new CRC32();
+        int size = 0;
+
+        // write header
+        DataWriterBigEndian dw = new DataWriterBigEndian(1024);
+        dw.write(new byte[]{
+                (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED,
+                0, 0, 0, 0, 0, 0, 0});
+
+        // compress data
+        byte[] buffer = new byte[4096];
+        for (byte[] part : parts) {
+            deflater.setInput(part);
+            while (!deflater.needsInput()) {
+                int count = deflater.deflate(buffer);
+                dw.write(buffer, 0, count);
+            }
+            crc.update(part);
+            size += part.length;
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            dw.write(buffer, 0, count);
+        }
+
+        // write trailer
+        writeIntLE(dw, (int) crc.getValue());
+        writeIntLE(dw, size);
+        return dw.toByteArray();
+    }
+
+    /**
+     * Decompress part of GZIP stream. Decompression stops once requested part is ready.
+     *
+     * @param data   compressed data
+     * @param offset offset in decompressed data
+     * @param length number of bytes to decompress or '-1' to decompress till the end
+     * @return decompressed data
+     * @throws IOException thrown in case of invalid data format
+     */
+    public static byte[] decompress(byte[] data, int offset, int length) throws IOException {
+        // compute size of result
+        int sizeTotal = getUncompressedSize(data);
+        if (length < 0 || offset + length > sizeTotal) {
+            length = Math.max(0, sizeTotal - offset);
+        }
+        byte[] result = new byte[length];
+        if (length == 0) {
+            return result;
+        }
+
+        // prepare inflater
+        int start = readHeader(data);
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(data, start, data.length - start - TRAILER_SIZE);
+
+        // skip data before requested part
+        try {
+            if (offset > 0) {
+                byte[] skip = new byte[Math.min(offset, 8192)];
+                int skipped = 0;
+                while (skipped < offset) {
+                    int count = inflater.inflate(skip, 0, Math.min(skip.length, offset - skipped));
+                    if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Unexpected end of data");
+                    }
+                    skipped += count;
+                }
+            }
+
+            // decompress requested part
+            int read = 0;
+            while (read < length) {
+                int count = inflater.inflate(result, read, length - read);
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Unexpected end of data");
+                }
+                read += count;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed data", e);
+        }
+        return result;
+    }
+
+    /**
+     * Get size of decompressed data stored in trailer of GZIP stream.
+     *
+     * @param data compressed data
+     * @return size of decompressed data
+     * @throws IOException thrown in case of invalid data format
+     */
+    public static int getUncompressedSize(byte[] data) throws IOException {
+        if (data.length < 10 + TRAILER_SIZE) {
+            throw new IOException("Invalid GZIP data, size: " + data.length);
+        }
+        int pos = data.length - 4;
+        return (data[pos] & 0xFF)
+                | ((data[pos + 1] & 0xFF) << 8)
+                | ((data[pos + 2] & 0xFF) << 16)
+                | ((data[pos + 3] & 0xFF) << 24);
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Read GZIP header.
+     *
+     * @param data compressed data
+     * @return offset of compressed content
+     * @throws IOException thrown in case of invalid header
+     */
+    private static int readHeader(byte[] data) throws IOException {
+        if (((data[0] & 0xFF) | ((data[1] & 0xFF) << 8)) != GZIP_MAGIC
+                || data[2] != Deflater.DEFLATED) {
+            throw new IOException("Not in GZIP format");
+        }
+        int flags = data[3] & 0xFF;
+        int pos = 10;
+
+        // optional parts of header
+        if ((flags & FEXTRA) == FEXTRA) {
+            pos += 2 + ((data[pos] & 0xFF) | ((data[pos + 1] & 0xFF) << 8));
+        }
+        if ((flags & FNAME) == FNAME) {
+            while (data[pos++] != 0) {
+                // skip name
+            }
+        }
+        if ((flags & FCOMMENT) == FCOMMENT) {
+            while (data[pos++] != 0) {
+                // skip comment
+            }
+        }
+        if ((flags & FHCRC) == FHCRC) {
+            pos += 2;
+        }
+        return pos;
+    }
+
+    /**
+     * Write integer in little-endian order.
+     */
+    private static void writeIntLE(DataWriterBigEndian dw, int value) {
+        dw.write(value & 0xFF);
+        dw.write((value >>> 8) & 0xFF);
+        dw.write((value >>> 16) & 0xFF);
+        dw.write((value >>> 24) & 0xFF);
+    }
+}
@@ -0,0 +1,88 @@
+package locus.api.objects;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import locus.api.objects.extra.GeoDataExtra;
+import locus.api.objects.extra.Location;
+import locus.api.objects.extra.Track;
+import locus.api.objects.geocaching.GeocachingData;
+
+/**
+ * Samples stored in fixtures and generator of fixtures.
+ * <br><br>
+ * Fixtures in 'src/test/resources/fixtures' contain these samples serialized by
+ * a specific version of library and must never change. After intentional change
+ * of serialization format, run {@link #main(String[])} to create fixtures of the new
+ * version and add them next to existing ones.
+ */
+public class StorableFixtures {
+
+    // seeds of stored samples
+    private static final long SEED_LOCATIONS = 1L;
+    private static final long SEED_EXTRAS = 2L;
+    private static final long SEED_GEOCACHES = 3L;
+    private static final long SEED_TRACKS = 4L;
+
+    public static List<Location> locations() {
+        StorableSamples samples = new StorableSamples(SEED_LOCATIONS);
+        List<Location> res = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            res.add(samples.location());
+        }
+        return res;
+    }
+
+    public static List<GeoDataExtra> extras() {
+        StorableSamples samples = new StorableSamples(SEED_EXTRAS);
+        List<GeoDataExtra> res = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            res.add(samples.extra());
+        }
+        return res;
+    }
+
+    public static List<GeocachingData> geocaches() {
+        StorableSamples samples = new StorableSamples(SEED_GEOCACHES);
+        List<GeocachingData> res = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            res.add(samples.geocachingData());
+        }
+        return res;
+    }
+
+    public static List<Track> tracks() {
+        StorableSamples samples = new StorableSamples(SEED_TRACKS);
+        List<Track> res = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            res.add(samples.track(200));
+        }
+        return res;
+    }
+
+    /**
+     * Write fixtures with current version of serialization.
+     *
+     * @param args output directory and suffix of names (version), like 'v7'
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args[0]);
+        String suffix = args.length > 1 ? "_" + args[1] : "";
+        writeFixture(new File(dir, "locations" + suffix + ".bin"), locations());
+        writeFixture(new File(dir, "extras" + suffix + ".bin"), extras());
+        writeFixture(new File(dir, "geocaches" + suffix + ".bin"), geocaches());
+        writeFixture(new File(dir, "tracks" + suffix + ".bin"), tracks());
+    }
+
+    private static void writeFixture(File file, List<? extends Storable> items) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(StorableTestUtils.writeList(items));
+        } finally {
+            fos.close();
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package locus.api.objects;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import locus.api.objects.extra.GeoDataExtra;
+import locus.api.objects.extra.GeoDataStyle;
+import locus.api.objects.extra.Location;
+import locus.api.objects.extra.Point;
+import locus.api.objects.extra.Track;
+import locus.api.objects.extra.TrackStats;
+import locus.api.objects.geocaching.GeocachingAttribute;
+import locus.api.objects.geocaching.GeocachingData;
+import locus.api.objects.geocaching.GeocachingLog;
+import locus.api.objects.geocaching.GeocachingWaypoint;
+
+/**
+ * Generator of random, but reproducible, objects for tests of serialization.
+ * <br><br>
+ * Objects are created only over API available since version 0.3.14, so same generator
+ * was used to create fixtures of older versions.
+ */
+public class StorableSamples {
+
+    // fixed time used instead of current time, so generated objects are reproducible
+    public static final long TIME = 1546300800000L;
+
+    // texts with characters encoded by more bytes in UTF-8
+    private static final String[] TEXTS = new String[]{
+            "Prague", "Brno – centrum", "žluťoučký kůň úpěl ďábelské ódy",
+            "Zürich Straße", "東京都", "emoji 😀 smile", "<b>HTML</b> text"};
+
+    // source of random values
+    private final Random mRandom;
+
+    /**
+     * Create generator.
+     *
+     * @param seed seed of generated values
+     */
+    public StorableSamples(long seed) {
+        this.mRandom = new Random(seed);
+    }
+
+    //*************************************************
+    // OBJECTS
+    //*************************************************
+
+    /**
+     * Generate location with random set of optional values.
+     */
+    public Location location() {
+        Location loc = new Location(
+                mRandom.nextDouble() * 170.0 - 85.0,
+                mRandom.nextDouble() * 360.0 - 180.0);
+        loc.setId(mRandom.nextInt(1000));
+        loc.setProvider(mRandom.nextBoolean() ? "gps" : "network");
+        loc.setTime(TIME + mRandom.nextInt(1000000));
+        if (mRandom.nextBoolean()) {
+            loc.setAltitude(mRandom.nextDouble() * 3000.0);
+        }
+        if (mRandom.nextBoolean()) {
+            loc.setSpeed(1.0f + mRandom.nextFloat() * 30.0f);
+        }
+        if (mRandom.nextBoolean()) {
+            loc.setBearing(1.0f + mRandom.nextFloat() * 358.0f);
+        }
+        if (mRandom.nextBoolean()) {
+            loc.setAccuracy(1.0f + mRandom.nextFloat() * 50.0f);
+        }
+        if (mRandom.nextInt(3) == 0) {
+            loc.setSensorHeartRate(60 + mRandom.nextInt(120));
+            loc.setSensorCadence(50 + mRandom.nextInt(50));
+            loc.setSensorSpeed(1.0f + mRandom.nextFloat() * 10.0f);
+            loc.setSensorPower(10.0f + mRandom.nextFloat() * 300.0f);
+            loc.setSensorStrides(mRandom.nextInt(10000) + 1);
+            loc.setSensorTemperature(-10.0f + mRandom.nextFloat() * 40.0f);
+        }
+        return loc;
+    }
+
+    /**
+     * Generate container of extra parameters.
+     */
+    public GeoDataExtra extra() {
+        GeoDataExtra extra = new GeoDataExtra();
+        fillExtra(extra);
+        return extra;
+    }
+
+    /**
+     * Generate point with extra parameters and style.
+     */
+    public Point point() {
+        Point pt = new Point(text(), location());
+        pt.setId(mRandom.nextInt(100000));
+        pt.setTimeCreated(TIME);
+        pt.setParameterDescription(text());
+        pt.addParameter(GeoDataExtra.PAR_ADDRESS_CITY, text());
+        if (mRandom.nextBoolean()) {
+            pt.addPhone("+420 " + mRandom.nextInt(1000000));
+            pt.addUrl("https://www.locusmap.eu/" + mRandom.nextInt(1000));
+        }
+        if (mRandom.nextBoolean()) {
+            pt.styleNormal = style();
+        }
+        return pt;
+    }
+
+    /**
+     * Generate geocache.
+     */
+    public GeocachingData geocachingData() {
+        GeocachingData gc = new GeocachingData();
+        gc.setId(mRandom.nextInt(100000));
+        gc.setCacheID("GC" + Integer.toString(0x10000 + mRandom.nextInt(0xFFFFF), 16).toUpperCase());
+        gc.setName(text());
+        gc.setAvailable(mRandom.nextBoolean());
+        gc.setArchived(mRandom.nextBoolean());
+        gc.setPlacedBy(text());
+        gc.setOwner(text());
+        gc.setDateHidden(TIME - mRandom.nextInt(1000000));
+        gc.setDatePublished(TIME - mRandom.nextInt(1000000));
+        gc.setDateUpdated(TIME);
+        gc.setType(mRandom.nextInt(10));
+        gc.setContainer(mRandom.nextInt(6));
+        gc.setDifficulty(1.0f + mRandom.nextInt(9) / 2.0f);
+        gc.setTerrain(1.0f + mRandom.nextInt(9) / 2.0f);
+        gc.setCountry(text());
+        gc.setState(text());
+        gc.setDescriptions(texts(1 + mRandom.nextInt(3)), mRandom.nextBoolean(),
+                texts(mRandom.nextInt(20)), mRandom.nextBoolean());
+        gc.setEncodedHints(text());
+        gc.setNotes(text());
+        gc.setFavoritePoints(mRandom.nextInt(500));
+        gc.setGcVoteNumOfVotes(mRandom.nextInt(100));
+        gc.setGcVoteAverage(mRandom.nextFloat() * 5.0f);
+        gc.setLatOriginal(mRandom.nextDouble() * 90.0);
+        gc.setLonOriginal(mRandom.nextDouble() * 180.0);
+
+        // attributes
+        for (int i = 0, n = mRandom.nextInt(10); i < n; i++) {
+            gc.attributes.add(new GeocachingAttribute(1 + mRandom.nextInt(70), mRandom.nextBoolean()));
+        }
+
+        // logs
+        for (int i = 0, n = mRandom.nextInt(8); i < n; i++) {
+            GeocachingLog log = new GeocachingLog();
+            log.setId(mRandom.nextInt(1000000));
+            log.setType(mRandom.nextInt(10));
+            log.setDate(TIME - i * 86400000L);
+            log.setFinder(text());
+            log.setFindersId(mRandom.nextInt(100000));
+            log.setFindersFound(mRandom.nextInt(5000));
+            log.setLogText(texts(1 + mRandom.nextInt(5)));
+            gc.logs.add(log);
+        }
+
+        // waypoints
+        for (int i = 0, n = mRandom.nextInt(3); i < n; i++) {
+            GeocachingWaypoint wpt = new GeocachingWaypoint();
+            wpt.setCode("WP" + i);
+            wpt.setName(text());
+            wpt.setDesc(text());
+            wpt.setLat(mRandom.nextDouble() * 90.0);
+            wpt.setLon(mRandom.nextDouble() * 180.0);
+            gc.waypoints.add(wpt);
+        }
+        return gc;
+    }
+
+    /**
+     * Generate track with points, breaks, waypoints and statistics.
+     *
+     * @param count number of points
+     */
+    public Track track(int count) {
+        Track track = new Track();
+        track.setId(mRandom.nextInt(100000));
+        track.setName(text());
+        track.setTimeCreated(TIME);
+
+        // points
+        List<Location> points = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            points.add(location());
+        }
+        track.setPoints(points);
+        for (int i = 1; i < count; i += 1 + mRandom.nextInt(50)) {
+            track.getBreaks().add(i);
+        }
+
+        // waypoints
+        List<Point> wpts = new ArrayList<>();
+        for (int i = 0, n = mRandom.nextInt(3); i < n; i++) {
+            wpts.add(point());
+        }
+        track.setWaypoints(wpts);
+
+        // extra data and style
+        fillExtra(track);
+        track.styleNormal = style();
+
+        // statistics
+        TrackStats stats = new TrackStats();
+        stats.setNumOfPoints(count);
+        stats.setStartTime(TIME);
+        stats.setStopTime(TIME + count * 1000L);
+        stats.setTotalLength(mRandom.nextFloat() * 100000.0f);
+        stats.setTotalTime(count * 1000L);
+        stats.setSpeedMax(mRandom.nextFloat() * 50.0f);
+        stats.setAltitudeMax(mRandom.nextFloat() * 3000.0f);
+        stats.setAltitudeMin(mRandom.nextFloat() * 100.0f);
+        track.setStats(stats);
+        track.setActivityType(mRandom.nextInt(10));
+        return track;
+    }
+
+    /**
+     * Generate style with icon and line.
+     */
+    public GeoDataStyle style() {
+        GeoDataStyle style = new GeoDataStyle(text());
+        style.setIconStyle("file:///icons/" + mRandom.nextInt(20) + ".png",
+                mRandom.nextInt(), 0.0f, 1.0f + mRandom.nextInt(3));
+        style.setLineStyle(mRandom.nextInt(), 1.0f + mRandom.nextInt(10));
+        return style;
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Fill extra parameters into item.
+     */
+    private void fillExtra(GeoData item) {
+        for (int i = 0, n = 1 + mRandom.nextInt(5); i < n; i++) {
+            item.addParameter(2000 + mRandom.nextInt(100), text());
+        }
+        if (mRandom.nextBoolean()) {
+            item.addParameter(GeoDataExtra.PAR_RTE_INDEX, mRandom.nextInt(1000));
+        }
+        if (mRandom.nextBoolean()) {
+            item.addEmail("info@locusmap.eu");
+        }
+    }
+
+    /**
+     * Fill extra parameters into container.
+     */
+    private void fillExtra(GeoDataExtra extra) {
+        for (int i = 0, n = 1 + mRandom.nextInt(10); i < n; i++) {
+            extra.addParameter(2000 + mRandom.nextInt(100), text());
+        }
+        if (mRandom.nextBoolean()) {
+            extra.addParameter(GeoDataExtra.PAR_RTE_POINT_ACTION, (byte) mRandom.nextInt(50));
+        }
+        if (mRandom.nextBoolean()) {
+            extra.addPhone("+420 " + mRandom.nextInt(1000000));
+            extra.addUrl("https://www.locusmap.eu/" + mRandom.nextInt(1000));
+            extra.addPhoto("file:///photos/" + mRandom.nextInt(1000) + ".jpg");
+        }
+    }
+
+    /**
+     * Get random text.
+     */
+    private String text() {
+        return TEXTS[mRandom.nextInt(TEXTS.length)] + " " + mRandom.nextInt(1000);
+    }
+
+    /**
+     * Get random text composed of defined number of parts.
+     */
+    private String texts(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(text()).append('\n');
+        }
+        return sb.toString();
+    }
+}
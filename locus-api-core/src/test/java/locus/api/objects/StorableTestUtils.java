@@ -0,0 +1,100 @@
+package locus.api.objects;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import locus.api.utils.DataReaderBigEndian;
+import locus.api.utils.DataWriterBigEndian;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tools for tests of {@link Storable} objects.
+ */
+public class StorableTestUtils {
+
+    /**
+     * Serialize object. Unlike {@link Storable#getAsBytes()}, problems are not hidden.
+     */
+    public static byte[] write(Storable item) throws IOException {
+        DataWriterBigEndian dw = new DataWriterBigEndian();
+        item.write(dw);
+        return dw.toByteArray();
+    }
+
+    /**
+     * Serialize list of objects.
+     */
+    public static byte[] writeList(List<? extends Storable> items) throws IOException {
+        DataWriterBigEndian dw = new DataWriterBigEndian();
+        dw.writeListStorable(items);
+        return dw.toByteArray();
+    }
+
+    /**
+     * Read object of defined class.
+     */
+    public static <E extends Storable> E read(Class<E> claz, byte[] data) throws Exception {
+        E item = claz.newInstance();
+        item.read(data);
+        return item;
+    }
+
+    /**
+     * Read list of objects of defined class.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Storable> List<E> readList(Class<E> claz, byte[] data) throws IOException {
+        return (List<E>) new DataReaderBigEndian(data).readListStorable(claz);
+    }
+
+    /**
+     * Serialize object, read it back and check that serialized form of read object
+     * is identical.
+     *
+     * @return read object
+     */
+    public static <E extends Storable> E assertRoundTrip(E item, Class<E> claz) throws Exception {
+        byte[] data = write(item);
+        E copy = read(claz, data);
+        assertArrayEquals("Re-serialized " + claz.getSimpleName() + " differs", data, write(copy));
+        return copy;
+    }
+
+    /**
+     * Change version in header of serialized object. Reading of such data simulates reader
+     * of older version, that skips unknown content at the end of object.
+     */
+    public static byte[] withVersion(byte[] data, int version) {
+        byte[] res = data.clone();
+        res[0] = (byte) (version >>> 24);
+        res[1] = (byte) (version >>> 16);
+        res[2] = (byte) (version >>> 8);
+        res[3] = (byte) version;
+        return res;
+    }
+
+    /**
+     * Load fixture from test resources.
+     *
+     * @param name name of file in 'fixtures' directory
+     */
+    public static byte[] loadFixture(String name) throws IOException {
+        InputStream is = StorableTestUtils.class.getResourceAsStream("/fixtures/" + name);
+        assertNotNull("Missing fixture " + name, is);
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                baos.write(buffer, 0, read);
+            }
+            return baos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package locus.api.objects;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import locus.api.objects.extra.GeoDataExtra;
+import locus.api.objects.extra.Location;
+import locus.api.objects.extra.Point;
+import locus.api.objects.extra.Track;
+import locus.api.objects.geocaching.GeocachingData;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check of serialization cost against budgets stored in 'fixtures/storable_budgets.properties'.
+ * <br><br>
+ * For every type, three values are measured for single write and read of object
+ * <ul>
+ * <li>'bytes' - size of serialized object, must stay within 5% of budget</li>
+ * <li>'alloc' - allocated bytes per operation, must not exceed budget by more than 25%;
+ * checked only on JVM, that is able to measure allocations</li>
+ * <li>'ns' - time per operation, must not exceed budget multiplied by value of system
+ * property 'storable.nsTolerance' (default 4), as time depends on machine</li>
+ * </ul>
+ * Reading of parameters of {@link GeoData} is measured over {@value #CACHE_POINTS} points with
+ * cache of decoded parameters enabled and disabled. Cached read must allocate less then quarter
+ * of not cached read, and its time must fit into 'cache.ns' budget (with same tolerance as above).
+ * <br><br>
+ * Heap size of single {@link Location} object, with and without extra values, is checked
+ * against 'location.heap' budgets, that must not be exceeded at all.
+ * <br><br>
+ * Intentional change of serialization has to be followed by update of budgets.
+ */
+public class StorableThroughputTest {
+
+    // name of property with tolerance of time per operation
+    private static final String PROP_NS_TOLERANCE = "storable.nsTolerance";
+
+    // allowed deviation of serialized size
+    private static final double BYTES_TOLERANCE = 0.05;
+    // allowed increase of allocations
+    private static final double ALLOC_TOLERANCE = 1.25;
+    // default allowed increase of time
+    private static final double NS_TOLERANCE = 4.0;
+
+    // number of points for measure of cache of parameters
+    private static final int CACHE_POINTS = 100000;
+    // number of objects created for measure of heap size
+    private static final int HEAP_COUNT = 10000;
+
+    // minimal time of measurement
+    private static final long MEASURE_NS = 200000000L;
+
+    // loaded budgets
+    private static Properties budgets;
+
+    @BeforeClass
+    public static void loadBudgets() throws Exception {
+        InputStream is = StorableThroughputTest.class.getResourceAsStream(
+                "/fixtures/storable_budgets.properties");
+        assertNotNull("Missing budgets", is);
+        try {
+            budgets = new Properties();
+            budgets.load(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    @Test
+    public void location() throws Exception {
+        check("location", StorableFixtures.locations(), Location.class);
+    }
+
+    @Test
+    public void geoDataExtra() throws Exception {
+        check("extra", StorableFixtures.extras(), GeoDataExtra.class);
+    }
+
+    @Test
+    public void geocachingData() throws Exception {
+        check("geocache", StorableFixtures.geocaches(), GeocachingData.class);
+    }
+
+    @Test
+    public void track() throws Exception {
+        check("track", StorableFixtures.tracks(), Track.class);
+    }
+
+    @Test
+    public void geoDataParameterCache() {
+        StorableSamples samples = new StorableSamples(5L);
+        List<Point> points = new ArrayList<>(CACHE_POINTS);
+        for (int i = 0; i < CACHE_POINTS; i++) {
+            points.add(samples.point());
+        }
+        double[] off = measureParameters(points, false);
+        double[] on = measureParameters(points, true);
+        System.out.println(String.format("cache off: %.0f alloc/op, %.0f ns/op, " +
+                "cache on: %.0f alloc/op, %.0f ns/op", off[0], off[1], on[0], on[1]));
+
+        // cached values are not decoded again, only copy of list of attachments is created
+        if (on[0] >= 0.0) {
+            assertTrue("cache alloc/op " + on[0] + ", without cache " + off[0],
+                    on[0] * 4.0 < off[0]);
+        }
+        double budgetNs = getBudget("cache.ns");
+        assertTrue("cache ns/op " + on[1] + ", budget " + budgetNs,
+                on[1] <= budgetNs * getNsTolerance());
+    }
+
+    @Test
+    public void locationHeap() {
+        checkHeap("location.heap", false);
+        checkHeap("location.heapExtra", true);
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Measure write and read of all items and compare results with budgets.
+     *
+     * @param key   prefix of keys in budgets
+     * @param items measured items
+     * @param claz  class of items
+     */
+    private static <E extends Storable> void check(String key, List<E> items, Class<E> claz)
+            throws Exception {
+        // serialize all items
+        byte[][] data = new byte[items.size()][];
+        long bytes = 0;
+        for (int i = 0; i < items.size(); i++) {
+            data[i] = StorableTestUtils.write(items.get(i));
+            bytes += data[i].length;
+        }
+        double bytesPerOp = (double) bytes / items.size();
+
+        // warm-up and measure time
+        long ops = 0;
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < MEASURE_NS) {
+            ops += writeAndRead(items, data, claz);
+        }
+        ops = 0;
+        start = System.nanoTime();
+        while (System.nanoTime() - start < MEASURE_NS) {
+            ops += writeAndRead(items, data, claz);
+        }
+        double nsPerOp = (double) (System.nanoTime() - start) / ops;
+
+        // measure allocations
+        double allocPerOp = -1.0;
+        long allocStart = getAllocatedBytes();
+        if (allocStart >= 0) {
+            ops = 0;
+            for (int i = 0; i < 20; i++) {
+                ops += writeAndRead(items, data, claz);
+            }
+            allocPerOp = (double) (getAllocatedBytes() - allocStart) / ops;
+        }
+        System.out.println(String.format("%s: %.0f bytes/op, %.0f alloc/op, %.0f ns/op",
+                key, bytesPerOp, allocPerOp, nsPerOp));
+
+        // compare with budgets
+        double budgetBytes = getBudget(key + ".bytes");
+        assertTrue(key + " bytes/op " + bytesPerOp + ", budget " + budgetBytes,
+                Math.abs(bytesPerOp - budgetBytes) <= budgetBytes * BYTES_TOLERANCE);
+        if (allocPerOp >= 0.0) {
+            double budgetAlloc = getBudget(key + ".alloc");
+            assertTrue(key + " alloc/op " + allocPerOp + ", budget " + budgetAlloc,
+                    allocPerOp <= budgetAlloc * ALLOC_TOLERANCE);
+        }
+        double budgetNs = getBudget(key + ".ns");
+        assertTrue(key + " ns/op " + nsPerOp + ", budget " + budgetNs,
+                nsPerOp <= budgetNs * getNsTolerance());
+    }
+
+    /**
+     * Write and read all items once.
+     *
+     * @return number of operations
+     */
+    private static <E extends Storable> int writeAndRead(List<E> items, byte[][] data, Class<E> claz)
+            throws Exception {
+        for (int i = 0; i < items.size(); i++) {
+            StorableTestUtils.write(items.get(i));
+            StorableTestUtils.read(claz, data[i]);
+        }
+        return items.size();
+    }
+
+    /**
+     * Measure read of parameters of all points.
+     *
+     * @param points measured points
+     * @param cache  {@code true} to enable cache of decoded parameters
+     * @return allocated bytes per point ('-1' if not measured) and time per point
+     */
+    private static double[] measureParameters(List<Point> points, boolean cache) {
+        for (Point pt : points) {
+            pt.setParameterCacheEnabled(cache);
+        }
+
+        // warm-up and measure time
+        long ops = 0;
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < MEASURE_NS) {
+            ops += readParameters(points);
+        }
+        ops = 0;
+        start = System.nanoTime();
+        while (System.nanoTime() - start < MEASURE_NS) {
+            ops += readParameters(points);
+        }
+        double nsPerOp = (double) (System.nanoTime() - start) / ops;
+
+        // measure allocations
+        double allocPerOp = -1.0;
+        long allocStart = getAllocatedBytes();
+        if (allocStart >= 0) {
+            ops = readParameters(points);
+            allocPerOp = (double) (getAllocatedBytes() - allocStart) / ops;
+        }
+        return new double[]{allocPerOp, nsPerOp};
+    }
+
+    /**
+     * Read parameters, that are usually displayed for points.
+     *
+     * @return number of operations
+     */
+    private static int readParameters(List<Point> points) {
+        int length = 0;
+        for (Point pt : points) {
+            length += pt.getParameterDescription().length();
+            length += pt.getParameter(GeoDataExtra.PAR_ADDRESS_CITY).length();
+            length += pt.extraData.getAttachments(GeoDataExtra.AttachType.URL).size();
+        }
+        return length > 0 ? points.size() : 0;
+    }
+
+    /**
+     * Get allowed increase of time.
+     */
+    private static double getNsTolerance() {
+        return Double.parseDouble(System.getProperty(
+                PROP_NS_TOLERANCE, Double.toString(NS_TOLERANCE)));
+    }
+
+    /**
+     * Measure heap size of created locations and compare it with budget.
+     *
+     * @param key   key of budget
+     * @param extra {@code true} to define speed, accuracy and heart rate of locations
+     */
+    private static void checkHeap(String key, boolean extra) {
+        Location[] locs = new Location[HEAP_COUNT];
+        createLocations(locs, extra);
+        long allocStart = getAllocatedBytes();
+        if (allocStart < 0) {
+            return;
+        }
+        createLocations(locs, extra);
+        // rounded down, so rare allocations of measurement itself are ignored
+        long heapPerObject = (getAllocatedBytes() - allocStart) / HEAP_COUNT;
+        System.out.println(String.format("%s: %d bytes/object", key, heapPerObject));
+
+        // compare with budget
+        double budgetHeap = getBudget(key);
+        assertTrue(key + " " + heapPerObject + ", budget " + budgetHeap,
+                heapPerObject <= budgetHeap);
+    }
+
+    /**
+     * Fill array with new locations.
+     */
+    private static void createLocations(Location[] locs, boolean extra) {
+        for (int i = 0; i < locs.length; i++) {
+            Location loc = new Location(50.0, 14.0);
+            if (extra) {
+                loc.setSpeed(2.5f);
+                loc.setAccuracy(5.0f);
+                loc.setSensorHeartRate(120);
+            }
+            locs[i] = loc;
+        }
+    }
+
+    /**
+     * Get number of bytes allocated by current thread.
+     *
+     * @return allocated bytes or '-1' if JVM is not able to measure allocations
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+        if (mxBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunMxBean = (com.sun.management.ThreadMXBean) mxBean;
+            if (sunMxBean.isThreadAllocatedMemorySupported()
+                    && sunMxBean.isThreadAllocatedMemoryEnabled()) {
+                return sunMxBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Get value of budget.
+     *
+     * @param key key of budget
+     * @return value
+     */
+    private static double getBudget(String key) {
+        String value = budgets.getProperty(key);
+        assertNotNull("Missing budget " + key, value);
+        return Double.parseDouble(value);
+    }
+}
@@ -0,0 +1,124 @@
+package locus.api.objects.extra;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import locus.api.objects.StorableFixtures;
+import locus.api.objects.StorableSamples;
+import locus.api.objects.StorableTestUtils;
+import locus.api.objects.enums.PointRteAction;
+import locus.api.utils.DataWriterBigEndian;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GeoDataExtraTest {
+
+    @Test
+    public void roundTripRandom() throws Exception {
+        for (long seed = 0; seed < 200; seed++) {
+            GeoDataExtra extra = new StorableSamples(seed).extra();
+            GeoDataExtra copy = StorableTestUtils.assertRoundTrip(extra, GeoDataExtra.class);
+            assertEquals(extra.getCount(), copy.getCount());
+            assertEquals(extra.getPhones().size(), copy.getPhones().size());
+            assertEquals(extra.getPhotos(), copy.getPhotos());
+        }
+    }
+
+    @Test
+    public void parameters() throws Exception {
+        GeoDataExtra extra = new GeoDataExtra();
+        extra.addParameter(2010, "  value ");
+        extra.addParameter(2011, "žluťoučký kůň");
+        extra.addParameter(GeoDataExtra.PAR_RTE_POINT_ACTION, (byte) 5);
+        assertFalse(extra.addParameter(1500, "reserved"));
+        assertFalse(extra.addParameter(2012, ""));
+
+        GeoDataExtra copy = StorableTestUtils.assertRoundTrip(extra, GeoDataExtra.class);
+        assertEquals(3, copy.getCount());
+        assertEquals("value", copy.getParameter(2010));
+        assertEquals("žluťoučký kůň", copy.getParameter(2011));
+        assertArrayEquals(new byte[]{5}, copy.getParameterRaw(GeoDataExtra.PAR_RTE_POINT_ACTION));
+        assertNull(copy.getParameter(2012));
+
+        // removed parameter
+        copy.removeParameter(2010);
+        copy = StorableTestUtils.assertRoundTrip(copy, GeoDataExtra.class);
+        assertEquals(2, copy.getCount());
+        assertNull(copy.getParameter(2010));
+    }
+
+    @Test
+    public void decodedCacheConcurrentReads() throws Exception {
+        final GeoDataExtra extra = new GeoDataExtra();
+        for (int i = 0; i < 100; i++) {
+            extra.addParameter(2000 + i, "value " + i);
+            extra.addPhone("+420 " + i);
+        }
+        extra.setDecodedCacheEnabled(true);
+
+        // read all values from more threads at once
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int round = 0; round < 200; round++) {
+                        for (int i = 0; i < 100; i++) {
+                            if (!("value " + i).equals(extra.getParameter(2000 + i))) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                        if (extra.getPhones().size() != 100) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void emptyRteAction() throws Exception {
+        // parameter with empty value, as stored by older versions
+        DataWriterBigEndian dw = new DataWriterBigEndian();
+        dw.writeInt(0);
+        dw.writeInt(12);
+        dw.writeInt(1);
+        dw.writeInt(GeoDataExtra.PAR_RTE_POINT_ACTION);
+        dw.writeInt(0);
+        GeoDataExtra extra = StorableTestUtils.read(GeoDataExtra.class, dw.toByteArray());
+        assertTrue(extra.hasParameter(GeoDataExtra.PAR_RTE_POINT_ACTION));
+        assertFalse(extra.hasParameterValue(GeoDataExtra.PAR_RTE_POINT_ACTION));
+
+        Point pt = new Point("point", new Location(50.0, 14.0));
+        assertEquals(PointRteAction.UNDEFINED, pt.getParameterRteAction());
+        pt.extraData = extra;
+        assertEquals(PointRteAction.UNDEFINED, pt.getParameterRteAction());
+        pt.setParameterRteAction(PointRteAction.NO_MANEUVER);
+        assertEquals(PointRteAction.NO_MANEUVER, pt.getParameterRteAction());
+    }
+
+    @Test
+    public void readVersion0Fixture() throws Exception {
+        byte[] fixture = StorableTestUtils.loadFixture("extras_v0.bin");
+        List<GeoDataExtra> extras = StorableTestUtils.readList(GeoDataExtra.class, fixture);
+        assertEquals(StorableFixtures.extras().size(), extras.size());
+
+        // format of version 0 is unchanged
+        assertArrayEquals(fixture, StorableTestUtils.writeList(extras));
+        assertArrayEquals(fixture, StorableTestUtils.writeList(StorableFixtures.extras()));
+    }
+}
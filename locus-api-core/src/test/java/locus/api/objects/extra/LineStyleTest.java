@@ -0,0 +1,60 @@
+package locus.api.objects.extra;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import locus.api.objects.StorableTestUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class LineStyleTest {
+
+    @Test
+    public void coloringColorsRoundTrip() throws Exception {
+        LineStyle style = new LineStyle();
+        style.setColoring(LineStyle.Coloring.BY_ALTITUDE);
+        style.setColoringColors(new int[]{0xFF000000, 0x80FFFFFF});
+        LineStyle copy = StorableTestUtils.assertRoundTrip(style, LineStyle.class);
+        assertArrayEquals(new int[]{0xFF000000, 0x80FFFFFF}, copy.getColoringColors());
+
+        // lowest and highest value get first and last color of ramp
+        int[] colors = copy.getColors(new double[]{0.0, 255.0}, 2, null);
+        assertEquals(0xFF000000, colors[0]);
+        assertEquals(0x80FFFFFF, colors[1]);
+    }
+
+    @Test
+    public void coloringColorsDefault() {
+        LineStyle style = new LineStyle();
+        style.setColoringColors(new int[]{0xFF000000, 0xFFFFFFFF});
+        style.setColoringColors(null);
+        assertEquals(5, style.getColoringColors().length);
+        assertEquals(0xFF0000FF, style.getColoringColors()[0]);
+    }
+
+    @Test
+    public void colorsOfTrackIntoBuffers() {
+        Track track = new Track();
+        List<Location> points = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Location loc = new Location(50.0 + i / 1000.0, 14.0);
+            loc.setAltitude(100.0 * i);
+            points.add(loc);
+        }
+        track.setPoints(points);
+
+        LineStyle style = new LineStyle();
+        style.setColoring(LineStyle.Coloring.BY_ALTITUDE);
+        double[] values = new double[16];
+        int[] colors = new int[16];
+        assertSame(colors, style.getColors(track, values, colors));
+        assertEquals(50.0, values[0], 0.0);
+        assertEquals(850.0, values[8], 0.0);
+        assertArrayEquals(style.getColors(track, null), Arrays.copyOf(colors, 9));
+    }
+}
@@ -0,0 +1,222 @@
+package locus.api.objects.extra;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import locus.api.objects.Storable;
+import locus.api.objects.StorableFixtures;
+import locus.api.objects.StorableSamples;
+import locus.api.objects.StorableTestUtils;
+import locus.api.utils.DataReaderBigEndian;
+import locus.api.utils.DataWriterBigEndian;
+import locus.api.utils.LazyStorableList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class LocationTest {
+
+    @Test
+    public void roundTripRandom() throws Exception {
+        for (long seed = 0; seed < 200; seed++) {
+            StorableSamples samples = new StorableSamples(seed);
+            Location loc = samples.location();
+            assertLocationEquals(loc, StorableTestUtils.assertRoundTrip(loc, Location.class));
+        }
+    }
+
+    @Test
+    public void readVersion0() throws Exception {
+        DataWriterBigEndian dw = new DataWriterBigEndian();
+        writeBase(dw);
+        Location loc = StorableTestUtils.read(Location.class, withHeader(0, dw.toByteArray()));
+
+        assertBase(loc);
+        assertFalse(loc.hasSensorHeartRate());
+    }
+
+    @Test
+    public void readVersion1() throws Exception {
+        DataWriterBigEndian dw = new DataWriterBigEndian();
+        writeBase(dw);
+        dw.writeBoolean(true);
+        dw.writeBoolean(true);
+        dw.writeInt(120);
+        dw.writeBoolean(true);
+        dw.writeInt(80);
+        dw.writeBoolean(false);
+        dw.writeFloat(0.0f);
+        dw.writeBoolean(true);
+        dw.writeFloat(250.0f);
+        Location loc = StorableTestUtils.read(Location.class, withHeader(1, dw.toByteArray()));
+
+        assertBase(loc);
+        assertEquals(120, loc.getSensorHeartRate());
+        assertEquals(80, loc.getSensorCadence());
+        assertFalse(loc.hasSensorSpeed());
+        assertEquals(250.0f, loc.getSensorPower(), 0.0f);
+        assertFalse(loc.hasSensorStrides());
+    }
+
+    @Test
+    public void readVersion2Fixture() throws Exception {
+        byte[] fixture = StorableTestUtils.loadFixture("locations_v2.bin");
+        List<Location> expected = StorableFixtures.locations();
+        List<Location> locs = StorableTestUtils.readList(Location.class, fixture);
+        assertEquals(expected.size(), locs.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertLocationEquals(expected.get(i), locs.get(i));
+        }
+
+        // loaded locations are written in current version
+        assertArrayEquals(StorableTestUtils.writeList(expected), StorableTestUtils.writeList(locs));
+    }
+
+    @Test
+    public void readVersion3Fixture() throws Exception {
+        byte[] fixture = StorableTestUtils.loadFixture("locations_v3.bin");
+        List<Location> expected = StorableFixtures.locations();
+        List<Location> locs = StorableTestUtils.readList(Location.class, fixture);
+        assertEquals(expected.size(), locs.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertLocationEquals(expected.get(i), locs.get(i));
+        }
+
+        // format of version 3 is unchanged
+        assertArrayEquals(fixture, StorableTestUtils.writeList(expected));
+    }
+
+    @Test
+    public void reuseClearsExtraValues() throws Exception {
+        Location source = new Location(50.0, 14.0);
+        source.setSpeed(3.0f);
+        source.setSensorHeartRate(130);
+        source.setSensorTemperature(21.5f);
+        Location plain = new Location(49.0, 15.0);
+
+        // read and set into object with extra values
+        Location loc = new Location(source);
+        loc.read(StorableTestUtils.write(plain));
+        assertLocationEquals(plain, loc);
+        assertEquals(0.0f, loc.getSpeed(), 0.0f);
+        assertEquals(0, loc.getSensorHeartRate());
+        loc.set(source);
+        assertLocationEquals(source, loc);
+        loc.set(plain);
+        assertLocationEquals(plain, loc);
+        assertEquals(0.0f, loc.getSensorTemperature(), 0.0f);
+
+        // copy is independent of source
+        loc.set(source);
+        loc.setSensorHeartRate(90);
+        loc.removeSpeed();
+        assertEquals(130, source.getSensorHeartRate());
+        assertEquals(3.0f, source.getSpeed(), 0.0f);
+        loc.removeSensorAll();
+        assertFalse(loc.hasSensorTemperature());
+        assertEquals(21.5f, source.getSensorTemperature(), 0.0f);
+    }
+
+    @Test
+    public void readListOverFactory() throws Exception {
+        final int[] created = new int[1];
+        Storable.Factory<Location> factory = new Storable.Factory<Location>() {
+
+            @Override
+            public Location create() {
+                created[0]++;
+                return new Location();
+            }
+        };
+        List<Location> expected = StorableFixtures.locations();
+        byte[] data = StorableTestUtils.writeList(expected);
+
+        // every item is created by given factory
+        List<Location> locs = new DataReaderBigEndian(data).readListStorable(factory);
+        assertEquals(expected.size(), created[0]);
+        List<Location> lazy = LazyStorableList.read(factory, new DataReaderBigEndian(data));
+        for (int i = 0; i < expected.size(); i++) {
+            assertLocationEquals(expected.get(i), locs.get(i));
+            assertLocationEquals(expected.get(i), lazy.get(i));
+        }
+        assertEquals(2 * expected.size(), created[0]);
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Write values of version 0.
+     */
+    private static void writeBase(DataWriterBigEndian dw) throws IOException {
+        dw.writeLong(5L);
+        dw.writeString("gps");
+        dw.writeLong(StorableSamples.TIME);
+        dw.writeDouble(50.5);
+        dw.writeDouble(14.25);
+        dw.writeBoolean(true);
+        dw.writeDouble(350.0);
+        dw.writeBoolean(true);
+        dw.writeBoolean(true);
+        dw.writeFloat(5.0f);
+        dw.writeBoolean(false);
+        dw.writeFloat(0.0f);
+        dw.writeBoolean(true);
+        dw.writeFloat(12.5f);
+    }
+
+    /**
+     * Check values written by {@link #writeBase(DataWriterBigEndian)}.
+     */
+    private static void assertBase(Location loc) {
+        assertEquals(5L, loc.getId());
+        assertEquals("gps", loc.getProvider());
+        assertEquals(StorableSamples.TIME, loc.getTime());
+        assertEquals(50.5, loc.getLatitude(), 0.0);
+        assertEquals(14.25, loc.getLongitude(), 0.0);
+        assertEquals(350.0, loc.getAltitude(), 0.0);
+        assertEquals(5.0f, loc.getAccuracy(), 0.0f);
+        assertFalse(loc.hasBearing());
+        assertEquals(12.5f, loc.getSpeed(), 0.0f);
+    }
+
+    /**
+     * Add header of serialized object.
+     */
+    private static byte[] withHeader(int version, byte[] body) {
+        DataWriterBigEndian dw = new DataWriterBigEndian();
+        dw.writeInt(version);
+        dw.writeInt(body.length);
+        dw.write(body);
+        return dw.toByteArray();
+    }
+
+    /**
+     * Compare all values of locations.
+     */
+    static void assertLocationEquals(Location expected, Location loc) {
+        assertEquals(expected.getId(), loc.getId());
+        assertEquals(expected.getProvider(), loc.getProvider());
+        assertEquals(expected.getTime(), loc.getTime());
+        assertEquals(expected.getLatitude(), loc.getLatitude(), 0.0);
+        assertEquals(expected.getLongitude(), loc.getLongitude(), 0.0);
+        assertEquals(expected.hasAltitude(), loc.hasAltitude());
+        assertEquals(expected.getAltitude(), loc.getAltitude(), 0.0);
+        assertEquals(expected.hasSpeed(), loc.hasSpeed());
+        assertEquals(expected.getSpeed(), loc.getSpeed(), 0.0f);
+        assertEquals(expected.hasBearing(), loc.hasBearing());
+        assertEquals(expected.getBearing(), loc.getBearing(), 0.0f);
+        assertEquals(expected.hasAccuracy(), loc.hasAccuracy());
+        assertEquals(expected.getAccuracy(), loc.getAccuracy(), 0.0f);
+        assertEquals(expected.getSensorHeartRate(), loc.getSensorHeartRate());
+        assertEquals(expected.getSensorCadence(), loc.getSensorCadence());
+        assertEquals(expected.getSensorSpeed(), loc.getSensorSpeed(), 0.0f);
+        assertEquals(expected.getSensorPower(), loc.getSensorPower(), 0.0f);
+        assertEquals(expected.getSensorStrides(), loc.getSensorStrides());
+        assertEquals(expected.getSensorTemperature(), loc.getSensorTemperature(), 0.0f);
+    }
+}
@@ -0,0 +1,132 @@
+package locus.api.objects.extra;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import locus.api.objects.StorableFixtures;
+import locus.api.objects.StorableSamples;
+import locus.api.objects.StorableTestUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class TrackTest {
+
+    @Test
+    public void roundTripRandom() throws Exception {
+        for (long seed = 0; seed < 50; seed++) {
+            Track track = new StorableSamples(seed).track((int) (seed * 7));
+            assertTrackEquals(track, StorableTestUtils.assertRoundTrip(track, Track.class));
+        }
+    }
+
+    @Test
+    public void roundTripSegmentBounds() throws Exception {
+        Track track = new StorableSamples(10L).track(250);
+        track.setSegmentBoundsSize(32);
+        Track copy = StorableTestUtils.assertRoundTrip(track, Track.class);
+        assertEquals(32, copy.getSegmentBoundsSize());
+        assertEquals(track.getSegmentBounds().size(), copy.getSegmentBounds().size());
+        for (int i = 0; i < track.getSegmentBounds().size(); i++) {
+            assertEquals(track.getSegmentBounds().get(i), copy.getSegmentBounds().get(i));
+        }
+    }
+
+    @Test
+    public void readBounds() throws Exception {
+        Track track = new StorableSamples(11L).track(300);
+        BoundingBox bounds = Track.readBounds(StorableTestUtils.write(track));
+        assertEquals(track.getBounds(), bounds);
+    }
+
+    @Test
+    public void writeBoundsAfterInPlaceEdit() throws Exception {
+        Track track = new StorableSamples(12L).track(100);
+        track.setSegmentBoundsSize(16);
+        track.getBounds();
+
+        // modify point without invalidation of bounds
+        track.getPoint(50).setLatitude(89.5);
+        Track copy = StorableTestUtils.assertRoundTrip(track, Track.class);
+        assertEquals(89.5, copy.getBounds().getMaxLatitude(), 0.0);
+        assertEquals(89.5, copy.getSegmentBounds().get(3).getMaxLatitude(), 0.0);
+    }
+
+    @Test
+    public void readVersion6Fixture() throws Exception {
+        byte[] fixture = StorableTestUtils.loadFixture("tracks_v6.bin");
+        List<Track> expected = StorableFixtures.tracks();
+        List<Track> tracks = StorableTestUtils.readList(Track.class, fixture);
+        assertEquals(expected.size(), tracks.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrackEquals(expected.get(i), tracks.get(i));
+
+            // bounds are not stored in version 6, so they are computed from points
+            assertEquals(expected.get(i).getBounds(), tracks.get(i).getBounds());
+            assertEquals(expected.get(i).getBounds(),
+                    Track.readBounds(StorableTestUtils.write(tracks.get(i))));
+        }
+
+        // loaded tracks are written in current version
+        assertArrayEquals(StorableTestUtils.writeList(expected), StorableTestUtils.writeList(tracks));
+    }
+
+    @Test
+    public void readVersion7Fixture() throws Exception {
+        byte[] fixture = StorableTestUtils.loadFixture("tracks_v7.bin");
+        List<Track> expected = StorableFixtures.tracks();
+        List<Track> tracks = StorableTestUtils.readList(Track.class, fixture);
+        assertEquals(expected.size(), tracks.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrackEquals(expected.get(i), tracks.get(i));
+        }
+
+        // points are written in current version of location
+        assertArrayEquals(StorableTestUtils.writeList(expected), StorableTestUtils.writeList(tracks));
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Compare main values of tracks.
+     */
+    private static void assertTrackEquals(Track expected, Track track) {
+        assertEquals(expected.getId(), track.getId());
+        assertEquals(expected.getName(), track.getName());
+        assertEquals(expected.getTimeCreated(), track.getTimeCreated());
+        assertEquals(expected.getActivityType(), track.getActivityType());
+        assertEquals(expected.getBreaks(), track.getBreaks());
+        assertEquals(expected.getParamRteIndex(), track.getParamRteIndex());
+
+        // points
+        assertEquals(expected.getPointsCount(), track.getPointsCount());
+        for (int i = 0; i < expected.getPointsCount(); i++) {
+            LocationTest.assertLocationEquals(expected.getPoint(i), track.getPoint(i));
+        }
+
+        // waypoints
+        assertEquals(expected.getWaypoints().size(), track.getWaypoints().size());
+        for (int i = 0; i < expected.getWaypoints().size(); i++) {
+            Point expWpt = expected.getWaypoint(i);
+            Point wpt = track.getWaypoint(i);
+            assertEquals(expWpt.getName(), wpt.getName());
+            assertEquals(expWpt.getParameterDescription(), wpt.getParameterDescription());
+            LocationTest.assertLocationEquals(expWpt.getLocation(), wpt.getLocation());
+        }
+
+        // style
+        assertNotNull(track.styleNormal);
+        assertEquals(expected.styleNormal.getName(), track.styleNormal.getName());
+        assertEquals(expected.styleNormal.getLineStyle().getColorBase(),
+                track.styleNormal.getLineStyle().getColorBase());
+
+        // statistics
+        assertEquals(expected.getStats().getNumOfPoints(), track.getStats().getNumOfPoints());
+        assertEquals(expected.getStats().getTotalLength(), track.getStats().getTotalLength(), 0.0f);
+        assertEquals(expected.getStats().getTotalTime(), track.getStats().getTotalTime());
+    }
+}
@@ -0,0 +1,228 @@
+package locus.api.objects.geocaching;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+import locus.api.objects.StorableFixtures;
+import locus.api.objects.StorableSamples;
+import locus.api.objects.StorableTestUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class GeocachingDataTest {
+
+    @Test
+    public void roundTripRandom() throws Exception {
+        for (long seed = 0; seed < 100; seed++) {
+            GeocachingData gc = new StorableSamples(seed).geocachingData();
+            assertGeocacheEquals(gc, StorableTestUtils.assertRoundTrip(gc, GeocachingData.class));
+        }
+    }
+
+    @Test
+    public void descriptionsWithMultiByteCharacters() throws Exception {
+        GeocachingData gc = new GeocachingData();
+        gc.setDescriptions("žluťoučký 😀", false, "東京都 long", true, Deflater.BEST_COMPRESSION);
+        assertEquals("žluťoučký 😀", gc.getShortDescription());
+        assertEquals("東京都 long", gc.getLongDescription());
+
+        // current reader
+        GeocachingData copy = StorableTestUtils.assertRoundTrip(gc, GeocachingData.class);
+        assertEquals("žluťoučký 😀", copy.getShortDescription());
+        assertEquals("東京都 long", copy.getLongDescription());
+
+        // reader of version 3, which knows only length of short description in chars
+        copy = StorableTestUtils.read(GeocachingData.class,
+                StorableTestUtils.withVersion(StorableTestUtils.write(gc), 3));
+        assertEquals("žluťoučký 😀", copy.getShortDescription());
+        assertEquals("東京都 long", copy.getLongDescription());
+    }
+
+    @Test
+    public void logsConcurrentReads() throws Exception {
+        GeocachingData gc = new GeocachingData();
+        for (int i = 0; i < 200; i++) {
+            GeocachingLog log = new GeocachingLog();
+            log.setId(i);
+            log.setFinder("finder " + i);
+            gc.logs.add(log);
+        }
+        final GeocachingData copy = StorableTestUtils.read(GeocachingData.class,
+                StorableTestUtils.write(gc));
+
+        // decode logs from more threads at once, all threads get same instances
+        final GeocachingLog[][] results = new GeocachingLog[4][200];
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[results.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < 200; i++) {
+                        GeocachingLog log = copy.getLogs().get(i);
+                        if (log.getId() != i) {
+                            errors.incrementAndGet();
+                        }
+                        results[thread][i] = log;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, errors.get());
+        for (int t = 1; t < results.length; t++) {
+            for (int i = 0; i < 200; i++) {
+                assertSame(results[0][i], results[t][i]);
+            }
+        }
+    }
+
+    @Test
+    public void logsSortedByDate() throws Exception {
+        GeocachingData gc = new GeocachingData();
+        long[] dates = {3000L, 1000L, 3000L, 2000L, 1000L};
+        for (int i = 0; i < dates.length; i++) {
+            GeocachingLog log = new GeocachingLog();
+            log.setId(i);
+            log.setDate(dates[i]);
+            gc.logs.add(log);
+        }
+        GeocachingData copy = StorableTestUtils.read(GeocachingData.class,
+                StorableTestUtils.write(gc));
+
+        // newest first, logs with same date in stored order
+        assertLogIds(new long[]{0, 2, 3, 1, 4}, copy.getLogs(0, 10));
+        assertLogIds(new long[]{2, 3}, copy.getLogs(1, 2));
+        assertLogIds(new long[]{0, 2, 3, 1, 4}, toList(copy.getLogsIterator()));
+
+        // new log is detected by size of list
+        GeocachingLog log = new GeocachingLog();
+        log.setId(5);
+        log.setDate(4000L);
+        copy.logs.add(log);
+        assertLogIds(new long[]{5, 0, 2}, copy.getLogs(0, 3));
+
+        // change of date needs invalidation
+        copy.getLogs().get(4).setDate(5000L);
+        copy.invalidateLogsOrder();
+        assertLogIds(new long[]{4, 5, 0}, copy.getLogs(0, 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCompressionLevel() {
+        new GeocachingData().setDescriptions("short", false, "long", false, 10);
+    }
+
+    @Test
+    public void readVersion3Fixture() throws Exception {
+        // compressed descriptions of version 3 differ in header of GZIP stream, so only
+        // decoded values are compared
+        assertFixture("geocaches_v3.bin", false);
+    }
+
+    @Test
+    public void readVersion4Fixture() throws Exception {
+        assertFixture("geocaches_v4.bin", true);
+    }
+
+    @Test
+    public void readVersion5Fixture() throws Exception {
+        byte[] fixture = assertFixture("geocaches_v5.bin", true);
+
+        // format of version 5 is unchanged
+        assertArrayEquals(fixture, StorableTestUtils.writeList(StorableFixtures.geocaches()));
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Read geocaches from fixture and compare them with expected samples.
+     *
+     * @param name       name of fixture
+     * @param sameOutput {@code true} if loaded geocaches have to be written same as samples
+     * @return content of fixture
+     */
+    private static byte[] assertFixture(String name, boolean sameOutput) throws Exception {
+        byte[] fixture = StorableTestUtils.loadFixture(name);
+        List<GeocachingData> expected = StorableFixtures.geocaches();
+        List<GeocachingData> gcs = StorableTestUtils.readList(GeocachingData.class, fixture);
+        assertEquals(expected.size(), gcs.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertGeocacheEquals(expected.get(i), gcs.get(i));
+
+            // loaded geocache is written in current version
+            if (sameOutput) {
+                assertArrayEquals(StorableTestUtils.write(expected.get(i)),
+                        StorableTestUtils.write(gcs.get(i)));
+            }
+        }
+        return fixture;
+    }
+
+    private static void assertLogIds(long[] expected, List<GeocachingLog> logs) {
+        assertEquals(expected.length, logs.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], logs.get(i).getId());
+        }
+    }
+
+    private static List<GeocachingLog> toList(Iterator<GeocachingLog> iterator) {
+        List<GeocachingLog> res = new ArrayList<>();
+        while (iterator.hasNext()) {
+            res.add(iterator.next());
+        }
+        return res;
+    }
+
+    /**
+     * Compare main values of geocaches.
+     */
+    private static void assertGeocacheEquals(GeocachingData expected, GeocachingData gc) {
+        assertEquals(expected.getId(), gc.getId());
+        assertEquals(expected.getCacheID(), gc.getCacheID());
+        assertEquals(expected.getName(), gc.getName());
+        assertEquals(expected.getEncodedHints(), gc.getEncodedHints());
+        assertArrayEquals(expected.getDescriptions(), gc.getDescriptions());
+        assertEquals(expected.getShortDescription(), gc.getShortDescription());
+        assertEquals(expected.getLongDescription(), gc.getLongDescription());
+
+        // attributes
+        assertEquals(expected.attributes.size(), gc.attributes.size());
+        for (int i = 0; i < expected.attributes.size(); i++) {
+            assertEquals(expected.attributes.get(i).getId(), gc.attributes.get(i).getId());
+        }
+        assertEquals(expected.getAttributeSet(), gc.getAttributeSet());
+
+        // logs
+        assertEquals(expected.getLogsCount(), gc.getLogsCount());
+        for (int i = 0; i < expected.getLogsCount(); i++) {
+            GeocachingLog expLog = expected.getLogs().get(i);
+            GeocachingLog log = gc.getLogs().get(i);
+            assertEquals(expLog.getId(), log.getId());
+            assertEquals(expLog.getDate(), log.getDate());
+            assertEquals(expLog.getFinder(), log.getFinder());
+            assertEquals(expLog.getLogText(), log.getLogText());
+        }
+
+        // waypoints
+        assertEquals(expected.waypoints.size(), gc.waypoints.size());
+        for (int i = 0; i < expected.waypoints.size(); i++) {
+            assertEquals(expected.waypoints.get(i).getCode(), gc.waypoints.get(i).getCode());
+            assertEquals(expected.waypoints.get(i).getName(), gc.waypoints.get(i).getName());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package locus.api.objects.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of error bounds of {@link DistanceStrategy} against {@link DistanceStrategy#VINCENTY}.
+ */
+public class DistanceStrategyTest {
+
+    // number of sampled pairs of points
+    private static final int COUNT = 50000;
+
+    @Test
+    public void errorWithinBounds() {
+        Random random = new Random(1L);
+        DistanceStrategy[] strategies = {
+                DistanceStrategy.EQUIRECTANGULAR, DistanceStrategy.HAVERSINE};
+        for (int i = 0; i < COUNT; i++) {
+            // first point anywhere, also close to poles
+            double lat1 = Math.toDegrees(Math.asin(random.nextDouble() * 2.0 - 1.0));
+            if (i % 10 == 0) {
+                lat1 = Math.copySign(89.0 + random.nextDouble(), lat1);
+            }
+            double lon1 = random.nextDouble() * 360.0 - 180.0;
+
+            // second point in distance from 1 m to 10000 km
+            double[] dest = computeDestination(lat1, lon1, Math.pow(10.0, random.nextDouble() * 7.0),
+                    random.nextDouble() * 2.0 * Math.PI);
+            double lat2 = dest[0];
+            double lon2 = dest[1];
+
+            double reference = DistanceStrategy.VINCENTY.computeDistance(lat1, lon1, lat2, lon2);
+            for (DistanceStrategy strategy : strategies) {
+                double distance = strategy.computeDistance(lat1, lon1, lat2, lon2);
+                double error = Math.abs(distance - reference);
+                assertTrue(strategy + ", [" + lat1 + ", " + lon1 + "] - [" + lat2 + ", " + lon2
+                                + "], distance: " + reference + ", error: " + error,
+                        error <= strategy.getMaxError(reference));
+            }
+        }
+    }
+
+    @Test
+    public void errorBounds() {
+        assertEquals(0.001, DistanceStrategy.EQUIRECTANGULAR.getMaxError(10.0), 0.0);
+        assertEquals(0.1, DistanceStrategy.EQUIRECTANGULAR.getMaxError(10000.0), 1e-12);
+        assertEquals(6.0, DistanceStrategy.HAVERSINE.getMaxError(1000.0), 1e-12);
+        assertEquals(0.001, DistanceStrategy.VINCENTY.getMaxError(1e7), 0.0);
+    }
+
+    @Test
+    public void selectFastestPrecise() {
+        // short distances by local approximation
+        assertSame(DistanceStrategy.EQUIRECTANGULAR, DistanceStrategy.select(1.0, 1000.0));
+        assertSame(DistanceStrategy.EQUIRECTANGULAR, DistanceStrategy.select(0.1, 10000.0));
+
+        // longer distances by sphere if it is precise enough, otherwise on ellipsoid
+        assertSame(DistanceStrategy.HAVERSINE, DistanceStrategy.select(500.0, 50000.0));
+        assertSame(DistanceStrategy.VINCENTY, DistanceStrategy.select(1.0, 50000.0));
+
+        // accuracy not reachable by any strategy
+        assertSame(DistanceStrategy.VINCENTY, DistanceStrategy.select(0.0001, 100.0));
+
+        // selected strategy always fulfils required accuracy
+        Random random = new Random(2L);
+        for (int i = 0; i < 1000; i++) {
+            double accuracy = Math.pow(10.0, random.nextDouble() * 6.0 - 3.0);
+            double maxDistance = Math.pow(10.0, random.nextDouble() * 7.0);
+            DistanceStrategy strategy = DistanceStrategy.select(accuracy, maxDistance);
+            assertTrue(strategy == DistanceStrategy.VINCENTY
+                    || (strategy.getMaxError(maxDistance) <= accuracy
+                    && maxDistance <= strategy.getMaxEfficientDistance()));
+        }
+    }
+
+    @Test
+    public void customStrategy() {
+        DistanceStrategy manhattan = new DistanceStrategy("Manhattan") {
+
+            @Override
+            public double computeDistance(double lat1, double lon1, double lat2, double lon2) {
+                return (Math.abs(lat2 - lat1) + Math.abs(lon2 - lon1)) * 100000.0;
+            }
+
+            @Override
+            public double getMaxError(double distance) {
+                return distance;
+            }
+        };
+        assertEquals("Manhattan", manhattan.getName());
+
+        // batch compute by default implementation
+        double[] lats = {0.0, 0.001, 0.003};
+        double[] lons = {0.0, 0.001, 0.001};
+        double[] distances = new double[2];
+        double[] cumulative = new double[3];
+        assertEquals(400.0, manhattan.computeDistances(lats, lons, 3, distances, cumulative), 1e-9);
+        assertEquals(200.0, distances[0], 1e-9);
+        assertEquals(200.0, distances[1], 1e-9);
+        assertEquals(400.0, cumulative[2], 1e-9);
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Compute destination point on sphere.
+     *
+     * @return latitude and longitude of destination
+     */
+    private static double[] computeDestination(double lat, double lon,
+            double distance, double bearing) {
+        double phi = Math.toRadians(lat);
+        double delta = distance / LocationCompute.AVERAGE_RADIUS_OF_EARTH;
+        double phi2 = Math.asin(Math.sin(phi) * Math.cos(delta)
+                + Math.cos(phi) * Math.sin(delta) * Math.cos(bearing));
+        double lambda = Math.atan2(Math.sin(bearing) * Math.sin(delta) * Math.cos(phi),
+                Math.cos(delta) - Math.sin(phi) * Math.sin(phi2));
+        double lon2 = lon + Math.toDegrees(lambda);
+        lon2 = lon2 > 180.0 ? lon2 - 360.0 : (lon2 < -180.0 ? lon2 + 360.0 : lon2);
+        return new double[]{Math.toDegrees(phi2), lon2};
+    }
+}
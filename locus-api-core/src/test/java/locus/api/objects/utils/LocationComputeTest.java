@@ -0,0 +1,194 @@
+package locus.api.objects.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of batch computes of {@link LocationCompute} against per-pair methods.
+ */
+public class LocationComputeTest {
+
+    // number of points of tested tracks
+    private static final int COUNT = 2000;
+
+    @Test
+    public void batchSameAsPairs() {
+        for (long seed = 1; seed <= 5; seed++) {
+            double[][] track = createTrack(seed);
+            double[] lats = track[0];
+            double[] lons = track[1];
+            double[] distances = new double[COUNT - 1];
+            double[] bearings = new double[COUNT - 1];
+            double[] cumulative = new double[COUNT];
+            double total = LocationCompute.computeDistances(lats, lons, COUNT,
+                    distances, bearings, cumulative);
+
+            float[] res = new float[2];
+            double sum = 0.0;
+            for (int i = 1; i < COUNT; i++) {
+                assertEquals(LocationCompute.computeDistance(
+                        lats[i - 1], lons[i - 1], lats[i], lons[i]), distances[i - 1], 0.0);
+                LocationCompute.computeDistanceAndBearing(
+                        lats[i - 1], lons[i - 1], lats[i], lons[i], res);
+                assertEquals(res[0], distances[i - 1], Math.max(1e-3, res[0] * 1e-6));
+                assertBearing(res[1], bearings[i - 1], 1e-3);
+                sum += distances[i - 1];
+                assertEquals(sum, cumulative[i], 0.0);
+            }
+            assertEquals(0.0, cumulative[0], 0.0);
+            assertEquals(sum, total, 0.0);
+        }
+    }
+
+    @Test
+    public void batchFastSameAsPairs() {
+        for (long seed = 1; seed <= 5; seed++) {
+            double[][] track = createTrack(seed);
+            double[] lats = track[0];
+            double[] lons = track[1];
+            double[] distances = new double[COUNT - 1];
+            double[] bearings = new double[COUNT - 1];
+            double[] cumulative = new double[COUNT];
+            double total = LocationCompute.computeDistancesFast(lats, lons, COUNT,
+                    distances, bearings, cumulative);
+
+            double[] res = new double[2];
+            double sum = 0.0;
+            for (int i = 1; i < COUNT; i++) {
+                LocationCompute.computeDistanceAndBearingFast(
+                        lats[i - 1], lons[i - 1], lats[i], lons[i], res);
+                assertEquals(res[0], distances[i - 1], Math.max(1e-6, res[0] * 1e-9));
+                assertBearing(res[1], bearings[i - 1], 1e-6);
+                sum += distances[i - 1];
+                assertEquals(sum, cumulative[i], 0.0);
+            }
+            assertEquals(0.0, cumulative[0], 0.0);
+            assertEquals(sum, total, 0.0);
+        }
+    }
+
+    @Test
+    public void outputArraysOptional() {
+        double[][] track = createTrack(6L);
+        double[] lats = track[0];
+        double[] lons = track[1];
+        double[] distances = new double[COUNT - 1];
+        double[] cumulative = new double[COUNT];
+        double total = LocationCompute.computeDistances(lats, lons, COUNT,
+                distances, new double[COUNT - 1], cumulative);
+        double totalFast = LocationCompute.computeDistancesFast(lats, lons, COUNT,
+                null, new double[COUNT - 1], null);
+
+        // same results without any or with some outputs
+        assertEquals(total, LocationCompute.computeDistances(
+                lats, lons, COUNT, null, null, null), 0.0);
+        double[] distancesOnly = new double[COUNT - 1];
+        assertEquals(total, LocationCompute.computeDistances(
+                lats, lons, COUNT, distancesOnly, null, null), 0.0);
+        assertArrayEquals(distances, distancesOnly, 0.0);
+        double[] cumulativeOnly = new double[COUNT];
+        assertEquals(total, LocationCompute.computeDistances(
+                lats, lons, COUNT, null, null, cumulativeOnly), 0.0);
+        assertArrayEquals(cumulative, cumulativeOnly, 0.0);
+        assertEquals(totalFast, LocationCompute.computeDistancesFast(
+                lats, lons, COUNT, null, null, null), 0.0);
+
+        // only part of arrays, bigger outputs are allowed
+        double[] cumulativePart = new double[COUNT];
+        double part = LocationCompute.computeDistances(lats, lons, 100,
+                new double[COUNT], null, cumulativePart);
+        assertEquals(cumulative[99], part, 0.0);
+        assertEquals(0.0, cumulativePart[100], 0.0);
+
+        // no segments
+        for (int count = 0; count <= 1; count++) {
+            double[] single = {-1.0};
+            assertEquals(0.0, LocationCompute.computeDistances(
+                    lats, lons, count, new double[0], new double[0], single), 0.0);
+            assertEquals(0.0, LocationCompute.computeDistancesFast(
+                    lats, lons, count, new double[0], new double[0], single), 0.0);
+            assertEquals(count == 0 ? -1.0 : 0.0, single[0], 0.0);
+        }
+    }
+
+    @Test
+    public void invalidParameters() {
+        double[] lats = new double[10];
+        double[] lons = new double[10];
+        double[] segments = new double[9];
+        double[] points = new double[10];
+        double[] small = new double[8];
+
+        // invalid count
+        assertInvalid(lats, lons, -1, segments, segments, points);
+        assertInvalid(lats, lons, 11, null, null, null);
+        assertInvalid(lats, new double[9], 10, null, null, null);
+
+        // too small outputs
+        assertInvalid(lats, lons, 10, small, null, null);
+        assertInvalid(lats, lons, 10, null, small, null);
+        assertInvalid(lats, lons, 10, null, null, segments);
+        assertInvalid(lats, lons, 2, null, null, new double[1]);
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Create random track with short and long segments, repeated points and segments
+     * over 180° meridian.
+     *
+     * @return array of latitudes and longitudes
+     */
+    private static double[][] createTrack(long seed) {
+        Random random = new Random(seed);
+        double[] lats = new double[COUNT];
+        double[] lons = new double[COUNT];
+        double lat = random.nextDouble() * 160.0 - 80.0;
+        double lon = 179.0;
+        for (int i = 0; i < COUNT; i++) {
+            int type = random.nextInt(10);
+            if (type == 0) {
+                // jump to random place
+                lat = random.nextDouble() * 170.0 - 85.0;
+                lon = random.nextDouble() * 360.0 - 180.0;
+            } else if (type > 1) {
+                // short step, type 1 keeps same point
+                lat = Math.max(-89.0, Math.min(89.0, lat + random.nextGaussian() * 0.01));
+                lon += random.nextGaussian() * 0.1;
+                lon = lon > 180.0 ? lon - 360.0 : (lon < -180.0 ? lon + 360.0 : lon);
+            }
+            lats[i] = lat;
+            lons[i] = lon;
+        }
+        return new double[][]{lats, lons};
+    }
+
+    private static void assertBearing(double expected, double bearing, double delta) {
+        double diff = Math.abs(expected - bearing) % 360.0;
+        assertEquals("Expected: " + expected + ", bearing: " + bearing,
+                0.0, Math.min(diff, 360.0 - diff), delta);
+    }
+
+    private static void assertInvalid(double[] lats, double[] lons, int count,
+            double[] distances, double[] bearings, double[] cumulative) {
+        try {
+            LocationCompute.computeDistances(lats, lons, count, distances, bearings, cumulative);
+            fail("Exception expected for computeDistances");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            LocationCompute.computeDistancesFast(lats, lons, count, distances, bearings, cumulative);
+            fail("Exception expected for computeDistancesFast");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
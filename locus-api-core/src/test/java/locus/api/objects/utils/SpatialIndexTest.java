@@ -0,0 +1,166 @@
+package locus.api.objects.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import locus.api.objects.extra.Location;
+import locus.api.objects.extra.Point;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link SpatialIndex} queries against linear scan over all items.
+ */
+public class SpatialIndexTest {
+
+    // number of indexed locations
+    private static final int COUNT = 5000;
+    // centers of clusters of locations
+    private static final double[][] CLUSTERS = {
+            {50.0, 14.0}, {-33.9, 151.2}, {0.0, 179.5}, {10.0, -179.5}, {89.0, 0.0}};
+
+    @Test
+    public void queryBox() {
+        List<Location> locs = createLocations(1L);
+        SpatialIndex<Location> index = SpatialIndex.createForLocations(locs);
+        assertEquals(COUNT, index.size());
+        Random random = new Random(2L);
+        for (int i = 0; i < 200; i++) {
+            double lat1 = random.nextDouble() * 180.0 - 90.0;
+            double lat2 = random.nextDouble() * 180.0 - 90.0;
+            double minLat = Math.min(lat1, lat2);
+            double maxLat = Math.max(lat1, lat2);
+            double minLon = random.nextDouble() * 360.0 - 180.0;
+            double maxLon = random.nextDouble() * 360.0 - 180.0;
+
+            // box crosses 180° meridian if 'minLon > maxLon'
+            List<Location> expected = new ArrayList<>();
+            for (Location loc : locs) {
+                double lon = loc.getLongitude();
+                boolean inLon = minLon <= maxLon ?
+                        lon >= minLon && lon <= maxLon : lon >= minLon || lon <= maxLon;
+                if (inLon && loc.getLatitude() >= minLat && loc.getLatitude() <= maxLat) {
+                    expected.add(loc);
+                }
+            }
+            assertSameItems(expected, index.queryBox(minLat, minLon, maxLat, maxLon, null));
+        }
+    }
+
+    @Test
+    public void queryRadius() {
+        List<Location> locs = createLocations(3L);
+        SpatialIndex<Location> index = SpatialIndex.createForLocations(locs);
+        Random random = new Random(4L);
+        for (int i = 0; i < 200; i++) {
+            Location center = locs.get(random.nextInt(locs.size()));
+            double lat = center.getLatitude();
+            double lon = center.getLongitude();
+            double radius = random.nextDouble() * 2000000.0;
+
+            List<Location> expected = new ArrayList<>();
+            for (Location loc : locs) {
+                if (LocationCompute.computeDistanceFast(lat, lon,
+                        loc.getLatitude(), loc.getLongitude()) <= radius) {
+                    expected.add(loc);
+                }
+            }
+            assertSameItems(expected, index.queryRadius(lat, lon, radius, null));
+        }
+    }
+
+    @Test
+    public void queryNearest() {
+        List<Location> locs = createLocations(5L);
+        SpatialIndex<Location> index = SpatialIndex.createForLocations(locs);
+        Random random = new Random(6L);
+        for (int i = 0; i < 200; i++) {
+            double lat = random.nextDouble() * 180.0 - 90.0;
+            double lon = random.nextDouble() * 360.0 - 180.0;
+            int limit = 1 + random.nextInt(50);
+            double maxRadius = i % 2 == 0 ? Double.MAX_VALUE : random.nextDouble() * 3000000.0;
+
+            // distances of all locations, sorted from nearest
+            double[] dists = new double[locs.size()];
+            for (int j = 0; j < locs.size(); j++) {
+                dists[j] = LocationCompute.computeDistanceFast(lat, lon,
+                        locs.get(j).getLatitude(), locs.get(j).getLongitude());
+            }
+            Arrays.sort(dists);
+            int expected = 0;
+            while (expected < limit && dists[expected] <= maxRadius) {
+                expected++;
+            }
+
+            // compare distances, order of items with same distance is not defined
+            List<Location> found = index.queryNearest(lat, lon, limit, maxRadius);
+            assertEquals(expected, found.size());
+            for (int j = 0; j < found.size(); j++) {
+                assertEquals(dists[j], LocationCompute.computeDistanceFast(lat, lon,
+                        found.get(j).getLatitude(), found.get(j).getLongitude()), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void pointsWithoutLocation() {
+        List<Point> points = new ArrayList<>();
+        points.add(new Point("first", new Location(50.0, 14.0)));
+        points.add(new Point("empty", null));
+        points.add(new Point("second", new Location(50.1, 14.1)));
+        SpatialIndex<Point> index = SpatialIndex.createForPoints(points);
+        assertEquals(2, index.size());
+        List<Point> found = index.queryNearest(50.0, 14.0, 5, Double.MAX_VALUE);
+        assertEquals(2, found.size());
+        assertSame(points.get(0), found.get(0));
+        assertSame(points.get(2), found.get(1));
+    }
+
+    @Test
+    public void emptyIndex() {
+        SpatialIndex<Location> index = SpatialIndex.createForLocations(new ArrayList<Location>());
+        assertEquals(0, index.size());
+        assertTrue(index.queryBox(-90.0, -180.0, 90.0, 180.0, null).isEmpty());
+        assertTrue(index.queryRadius(0.0, 0.0, 1000.0, null).isEmpty());
+        assertTrue(index.queryNearest(0.0, 0.0, 10, Double.MAX_VALUE).isEmpty());
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Create random locations, half of them in clusters, some near 180° meridian and poles.
+     */
+    private static List<Location> createLocations(long seed) {
+        Random random = new Random(seed);
+        List<Location> res = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            double lat;
+            double lon;
+            if (i % 2 == 0) {
+                lat = random.nextDouble() * 180.0 - 90.0;
+                lon = random.nextDouble() * 360.0 - 180.0;
+            } else {
+                double[] cluster = CLUSTERS[i % CLUSTERS.length];
+                lat = Math.max(-90.0, Math.min(90.0, cluster[0] + random.nextGaussian()));
+                lon = cluster[1] + random.nextGaussian();
+                lon = lon > 180.0 ? lon - 360.0 : (lon < -180.0 ? lon + 360.0 : lon);
+            }
+            res.add(new Location(lat, lon));
+        }
+        return res;
+    }
+
+    private static void assertSameItems(List<Location> expected, List<Location> found) {
+        assertEquals(expected.size(), found.size());
+        assertEquals(new HashSet<>(expected), new HashSet<>(found));
+    }
+}
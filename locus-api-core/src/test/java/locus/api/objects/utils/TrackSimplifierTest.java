@@ -0,0 +1,171 @@
+package locus.api.objects.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import locus.api.objects.extra.Location;
+import locus.api.objects.extra.Point;
+import locus.api.objects.extra.Track;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TrackSimplifierTest {
+
+    // simplification methods
+    private static final int[] METHODS = {
+            TrackSimplifier.METHOD_DOUGLAS_PEUCKER, TrackSimplifier.METHOD_VISVALINGAM};
+
+    @Test
+    public void levelsAreMonotonic() {
+        Track track = createTrack(1L, 2000);
+        TrackSimplifier simplifier = new TrackSimplifier();
+        simplifier.setTrack(track);
+        int[] buffer = new int[simplifier.getPointsCount()];
+        for (int method : METHODS) {
+            // every point kept with higher tolerance is kept also with lower tolerance
+            int[] previous = null;
+            for (double tolerance = 1.0; tolerance < 100000.0; tolerance *= 2.0) {
+                int[] level = Arrays.copyOf(buffer, simplifier.simplify(method, tolerance, buffer));
+                if (previous != null) {
+                    assertTrue(level.length <= previous.length);
+                    assertSubset(level, previous);
+                }
+                previous = level;
+            }
+
+            // same for zoom levels
+            int[][] pyramid = simplifier.createPyramid(method, 5, 18, 1.0);
+            assertEquals(14, pyramid.length);
+            for (int i = 1; i < pyramid.length; i++) {
+                assertSubset(pyramid[i - 1], pyramid[i]);
+            }
+        }
+    }
+
+    @Test
+    public void endpointsAndBreaksKept() {
+        Track track = createTrack(2L, 300);
+        track.getBreaks().add(99);
+        track.getBreaks().add(199);
+        TrackSimplifier simplifier = new TrackSimplifier();
+        simplifier.setTrack(track);
+        int[] buffer = new int[simplifier.getPointsCount()];
+        for (int method : METHODS) {
+            int size = simplifier.simplify(method, Double.MAX_VALUE, buffer);
+            assertArrayEquals(new int[]{0, 99, 100, 199, 200, 299}, Arrays.copyOf(buffer, size));
+        }
+    }
+
+    @Test
+    public void applyRemapsBreaks() {
+        for (int method : METHODS) {
+            Track track = createTrack(3L, 300);
+            track.getBreaks().add(99);
+            track.getBreaks().add(199);
+            List<Location> points = new ArrayList<>(track.getPoints());
+
+            assertEquals(294, TrackSimplifier.simplify(track, method, Double.MAX_VALUE));
+            assertEquals(6, track.getPointsCount());
+            assertSame(points.get(99), track.getPoint(1));
+            assertSame(points.get(200), track.getPoint(4));
+            assertEquals(Arrays.asList(1, 3), track.getBreaks());
+        }
+    }
+
+    @Test
+    public void pointNearestWaypointKept() {
+        for (int method : METHODS) {
+            Track track = createTrack(4L, 500);
+            Location loc = track.getPoint(150);
+            List<Point> wpts = new ArrayList<>();
+            wpts.add(new Point("wpt", new Location(
+                    loc.getLatitude() + 0.00001, loc.getLongitude() - 0.00001)));
+            track.setWaypoints(wpts);
+
+            TrackSimplifier.simplify(track, method, Double.MAX_VALUE);
+            assertEquals(3, track.getPointsCount());
+            assertSame(loc, track.getPoint(1));
+        }
+    }
+
+    @Test
+    public void lineOverAntimeridian() {
+        // straight line along equator from 179° E to 179° W
+        int count = 21;
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        for (int i = 0; i < count; i++) {
+            double lon = 179.0 + i * 0.1;
+            lons[i] = lon > 180.0 ? lon - 360.0 : lon;
+        }
+        TrackSimplifier simplifier = new TrackSimplifier();
+        simplifier.setData(lats, lons, count, null, 0);
+        int[] buffer = new int[count];
+        for (int method : METHODS) {
+            int size = simplifier.simplify(method, 1.0, buffer);
+            assertArrayEquals(new int[]{0, count - 1}, Arrays.copyOf(buffer, size));
+        }
+
+        // same result as for track shifted away from antimeridian
+        Random random = new Random(5L);
+        double[] lonsShifted = new double[count];
+        for (int i = 0; i < count; i++) {
+            lats[i] = random.nextGaussian() * 0.001;
+            lonsShifted[i] = lons[i] < 0.0 ? lons[i] + 180.0 : lons[i] - 180.0;
+        }
+        TrackSimplifier shifted = new TrackSimplifier();
+        shifted.setData(lats, lonsShifted, count, null, 0);
+        simplifier.setData(lats, lons, count, null, 0);
+        int[] bufferShifted = new int[count];
+        for (int method : METHODS) {
+            for (double tolerance = 50.0; tolerance < 5000.0; tolerance *= 4.0) {
+                int size = simplifier.simplify(method, tolerance, buffer);
+                int sizeShifted = shifted.simplify(method, tolerance, bufferShifted);
+                assertArrayEquals(Arrays.copyOf(bufferShifted, sizeShifted), Arrays.copyOf(buffer, size));
+            }
+            assertTrue(simplifier.simplify(method, 5000.0, buffer) < count);
+        }
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Create track as random walk.
+     */
+    private static Track createTrack(long seed, int count) {
+        Random random = new Random(seed);
+        List<Location> points = new ArrayList<>();
+        double lat = 50.0;
+        double lon = 14.0;
+        for (int i = 0; i < count; i++) {
+            lat += random.nextGaussian() * 0.001;
+            lon += random.nextGaussian() * 0.001;
+            points.add(new Location(lat, lon));
+        }
+        Track track = new Track();
+        track.setPoints(points);
+        return track;
+    }
+
+    /**
+     * Check that all indexes of sorted 'subset' are included in sorted 'set'.
+     */
+    private static void assertSubset(int[] subset, int[] set) {
+        int pos = 0;
+        for (int index : subset) {
+            while (pos < set.length && set[pos] < index) {
+                pos++;
+            }
+            assertTrue("Missing index " + index, pos < set.length && set[pos] == index);
+        }
+    }
+}